@@ -30,7 +30,6 @@ import static com.bioinception.chem.fp.benchmark.helper.Base.readMDLMolecules;
 import com.bioinception.chem.fp.benchmark.helper.Data;
 import com.bioinception.chem.fp.fingerprints.bi.ScaffoldHashedFingerprinter;
 import com.bioinception.chem.fp.fingerprints.cdk.Fingerprinter;
-import com.google.common.collect.FluentIterable;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -145,10 +144,9 @@ public class BenchmarkFingerprint extends Base {
 //                            + " name fp orignal 1 " + fragment.get(1).getFPName());
                     if (original.get(0).getFPName().equals("CDK")
                             && fragment.get(0).getFPName().equals("CDK")) {
-                        boolean graph_match = FluentIterable.from(
-                                VentoFoggia.findSubstructure(original.get(0).getAtomContainer(),
-                                        atommatcher, bondmatcher)
-                                        .matchAll(fragment.get(0).getAtomContainer())).size() > 0;
+                        boolean graph_match = VentoFoggia.findSubstructure(original.get(0).getAtomContainer(),
+                                atommatcher, bondmatcher)
+                                .matches(fragment.get(0).getAtomContainer());
                         boolean fpMatch = FingerprinterTool.isSubset(
                                 original.get(0).getFingerprint(),
                                 fragment.get(0).getFingerprint());
@@ -170,9 +168,8 @@ public class BenchmarkFingerprint extends Base {
 
                     if (original.get(1).getFPName().equals("SCAFFOLD")
                             && fragment.get(1).getFPName().equals("SCAFFOLD")) {
-                        boolean graph_match = FluentIterable.from(
-                                VentoFoggia.findSubstructure(original.get(1).getAtomContainer())
-                                        .matchAll(fragment.get(1).getAtomContainer())).size() > 0;
+                        boolean graph_match = VentoFoggia.findSubstructure(original.get(1).getAtomContainer())
+                                .matches(fragment.get(1).getAtomContainer());
                         boolean fpMatch = FingerprinterTool.isSubset(original.get(1).getFingerprint(),
                                 fragment.get(1).getFingerprint());
 
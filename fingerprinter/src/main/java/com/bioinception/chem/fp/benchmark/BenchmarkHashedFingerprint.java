@@ -30,7 +30,7 @@ import static com.bioinception.chem.fp.benchmark.helper.Base.readMDLMolecules;
 import com.bioinception.chem.fp.benchmark.helper.Data;
 import com.bioinception.chem.fp.fingerprints.bi.ScaffoldHashedFingerprinter;
 import com.bioinception.chem.fp.fingerprints.cdk.Fingerprinter;
-import com.google.common.collect.FluentIterable;
+import com.bioinception.chem.fp.fingerprints.helper.HashVersion;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -40,6 +40,7 @@ import java.text.DecimalFormat;
 import java.util.Arrays;
 import java.util.BitSet;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Map;
 import java.util.function.Function;
 import org.openscience.cdk.exception.CDKException;
@@ -48,6 +49,7 @@ import org.openscience.cdk.fingerprint.IBitFingerprint;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.isomorphism.AtomMatcher;
 import org.openscience.cdk.isomorphism.BondMatcher;
+import org.openscience.cdk.isomorphism.Pattern;
 import org.openscience.cdk.isomorphism.VentoFoggia;
 
 /**
@@ -57,6 +59,9 @@ import org.openscience.cdk.isomorphism.VentoFoggia;
  * Test CDK default FP java -jar dist/CDKHashedFingerprint.jar test/data/mol cdk
  * 1000
  *
+ * Test new FP with query fingerprints for the fragments java -jar
+ * dist/CDKHashedFingerprint.jar test/data/mol scaffold-query 1000
+ *
  * @author Syed Asad Rahman <asad@ebi.ac.uk>
  */
 public class BenchmarkHashedFingerprint extends Base {
@@ -69,6 +74,11 @@ public class BenchmarkHashedFingerprint extends Base {
     private static final Map<String, Data> dataMap = new HashMap<String, Data>();
     private static final org.openscience.cdk.fingerprint.IFingerprinter cdkFingerprint = new Fingerprinter(1024);
     private static final org.openscience.cdk.fingerprint.IFingerprinter scaffoldFingerprint = new ScaffoldHashedFingerprinter(1024);
+    private static final ScaffoldHashedFingerprinter scaffoldQueryFingerprint = new ScaffoldHashedFingerprinter(1024);
+
+    static {
+        scaffoldQueryFingerprint.setHashVersion(HashVersion.SEGMENT_LAYOUT);
+    }
 
     /**
      * @param args the command line arguments
@@ -136,6 +146,10 @@ public class BenchmarkHashedFingerprint extends Base {
                     } else if (args.length >= 2 && args[1].equals("scaffold")) {
                         hashedFingerPrint = getScaffoldFingerprint(ac).asBitSet();
                         dataMap.put(inchiKey, new Data(hashedFingerPrint, ac));
+                    } else if (args.length >= 2 && args[1].equals("scaffold-query")) {
+                        hashedFingerPrint = scaffoldQueryFingerprint.getBitFingerprint(ac).asBitSet();
+                        BitSet queryFingerPrint = scaffoldQueryFingerprint.getQueryFingerprint(ac).asBitSet();
+                        dataMap.put(inchiKey, new Data(hashedFingerPrint, queryFingerPrint, ac));
                     }
 
                 } catch (Exception e) {
@@ -160,16 +174,18 @@ public class BenchmarkHashedFingerprint extends Base {
             BondMatcher bondmatcher = BondMatcher.forOrder();
             AtomMatcher atommatcher = AtomMatcher.forElement();
             long startTime = System.currentTimeMillis();
+            /*
+             * one pattern per query, matches() stops at the first mapping
+             */
+            Map<Data, Pattern> patterns = new IdentityHashMap<>();
+            dataMap.values().forEach(original -> patterns.put(original,
+                    VentoFoggia.findSubstructure(original.getAtomContainer(), atommatcher, bondmatcher)));
             dataMap.values().forEach((Data fragment) -> {
                 dataMap.values().stream().map((Data original) -> {
                     boolean FPMatch = FingerprinterTool.isSubset(
                             original.getFingerprint(),
-                            fragment.getFingerprint());
-                    int count_bond_match;
-                    count_bond_match = FluentIterable.from(
-                            VentoFoggia.findSubstructure(original.getAtomContainer(), atommatcher, bondmatcher)
-                                    .matchAll(fragment.getAtomContainer())).size();
-                    boolean trueMatch = count_bond_match > 0;
+                            fragment.getQueryFingerprint());
+                    boolean trueMatch = patterns.get(original).matches(fragment.getAtomContainer());
                     if (FPMatch && trueMatch) {
                         TP++;
                     } else if (FPMatch && !trueMatch) {
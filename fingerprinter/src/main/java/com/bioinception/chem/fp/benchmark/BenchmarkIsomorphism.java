@@ -28,7 +28,6 @@ package com.bioinception.chem.fp.benchmark;
 import com.bioinception.chem.fp.benchmark.helper.Base;
 import static com.bioinception.chem.fp.benchmark.helper.Base.readMDLMolecules;
 import com.bioinception.chem.fp.benchmark.helper.Data;
-import com.google.common.collect.FluentIterable;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -36,11 +35,13 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.text.DecimalFormat;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Map;
 import org.openscience.cdk.exception.CDKException;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.isomorphism.AtomMatcher;
 import org.openscience.cdk.isomorphism.BondMatcher;
+import org.openscience.cdk.isomorphism.Pattern;
 import org.openscience.cdk.isomorphism.VentoFoggia;
 
 /**
@@ -131,17 +132,20 @@ public class BenchmarkIsomorphism extends Base {
             AtomMatcher atommatcher = AtomMatcher.forElement();
 
             long startTime = System.currentTimeMillis();
+            /*
+             * one pattern per query, matches() stops at the first mapping
+             */
+            Map<Data, Pattern> bondPatterns = new IdentityHashMap<>();
+            Map<Data, Pattern> patterns = new IdentityHashMap<>();
+            dataMap.values().forEach(original -> {
+                bondPatterns.put(original, VentoFoggia.findSubstructure(original.getAtomContainer(),
+                        atommatcher, bondmatcher));
+                patterns.put(original, VentoFoggia.findSubstructure(original.getAtomContainer()));
+            });
             dataMap.values().forEach(fragment -> {
                 dataMap.values().stream().map(original -> {
-                    int count_bond_match = FluentIterable.from(
-                            VentoFoggia.findSubstructure(original.getAtomContainer(),
-                                    atommatcher, bondmatcher)
-                                    .matchAll(fragment.getAtomContainer())).size();
-                    int count_match = FluentIterable.from(
-                            VentoFoggia.findSubstructure(original.getAtomContainer())
-                                    .matchAll(fragment.getAtomContainer())).size();
-                    boolean trueMatch = count_bond_match > 0;
-                    boolean bondMatch = count_match > 0;
+                    boolean trueMatch = bondPatterns.get(original).matches(fragment.getAtomContainer());
+                    boolean bondMatch = patterns.get(original).matches(fragment.getAtomContainer());
                     if (trueMatch && bondMatch) {
                         TP++;
                     } else if (trueMatch && !bondMatch) {
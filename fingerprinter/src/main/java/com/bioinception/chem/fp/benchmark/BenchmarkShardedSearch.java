@@ -0,0 +1,137 @@
+/* $Revision$ $Author$ $Date$
+ *
+ * Copyright (C) 2011       Syed Asad Rahman <asad@ebi.ac.uk>
+ *           
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.bioinception.chem.fp.benchmark;
+
+import com.bioinception.chem.fp.benchmark.helper.Base;
+import static com.bioinception.chem.fp.benchmark.helper.Base.readMDLMolecules;
+import com.bioinception.chem.fp.fingerprints.bi.ScaffoldHashedFingerprinter;
+import com.bioinception.chem.fp.fingerprints.interfaces.IShard;
+import com.bioinception.chem.fp.fingerprints.search.LocalShard;
+import com.bioinception.chem.fp.fingerprints.search.ShardServer;
+import com.bioinception.chem.fp.fingerprints.search.ShardedSearchCoordinator;
+import com.bioinception.chem.fp.fingerprints.search.SocketShard;
+import com.bioinception.chem.fp.fingerprints.similarity.BatchSimilaritySearch;
+import com.bioinception.chem.fp.fingerprints.similarity.FingerprintBlock;
+import com.bioinception.chem.fp.fingerprints.similarity.Hit;
+import com.bioinception.chem.fp.fingerprints.similarity.SimilarityMeasure;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+
+/**
+ * Sharded similarity search and substructure screen against a single
+ * {@link BatchSimilaritySearch}, every molecule of the data set being a query.
+ *
+ * java -cp target/fingerprinter-1.0-SNAPSHOT-jar-with-dependencies.jar
+ * com.bioinception.chem.fp.benchmark.BenchmarkShardedSearch mol 4 1000 socket
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public class BenchmarkShardedSearch extends Base {
+
+    /**
+     * @param args mol_dir, number of shards, number of molecules and
+     * optionally "socket" to serve the shards over TCP
+     * @throws CDKException
+     * @throws IOException
+     */
+    public static void main(String[] args) throws CDKException, IOException {
+        System.out.print("\n***************************************\n");
+        System.out.println("Command args " + Arrays.toString(args));
+        if (args.length == 0) {
+            System.out.println("java -cp fingerprinter-1.0-SNAPSHOT.jar "
+                    + BenchmarkShardedSearch.class.getName() + " mol_dir 4 1000 [socket]");
+            System.exit(0);
+        }
+        File directory = new File(args[0]);
+        int shardCount = args.length >= 2 ? Integer.valueOf(args[1]) : 4;
+        int expectedDataSize = args.length >= 3 ? Integer.valueOf(args[2]) : 100;
+        boolean socket = args.length >= 4 && args[3].equals("socket");
+
+        Map<String, IAtomContainer> molecules = readMDLMolecules(directory, expectedDataSize);
+        System.out.println("\rTotal number of mols read: " + molecules.size());
+
+        ScaffoldHashedFingerprinter fingerprinter = new ScaffoldHashedFingerprinter(1024);
+        FingerprintBlock store = new FingerprintBlock(fingerprinter.getSize());
+        for (IAtomContainer ac : molecules.values()) {
+            try {
+                store.add(fingerprinter.getBitFingerprint(ac).asBitSet());
+            } catch (CDKException e) {
+                System.err.println("error in generating fp: " + ac.getID());
+            }
+        }
+        FingerprintBlock queries = store;
+
+        long startTime = System.nanoTime();
+        BatchSimilaritySearch single = new BatchSimilaritySearch(store);
+        List<List<Hit>> expected = single.search(queries, SimilarityMeasure.TANIMOTO, 10, 0.0);
+        List<int[]> expectedScreen = single.screen(queries);
+        System.out.println("Single store (ms): " + (System.nanoTime() - startTime) / 1000000);
+
+        List<ShardServer> servers = new ArrayList<>();
+        List<IShard> shards = new ArrayList<>();
+        for (FingerprintBlock part : ShardedSearchCoordinator.partition(store, shardCount)) {
+            LocalShard shard = new LocalShard(part);
+            if (socket) {
+                ShardServer server = new ShardServer(shard, 0);
+                servers.add(server);
+                shards.add(new SocketShard("localhost", server.getPort()));
+            } else {
+                shards.add(shard);
+            }
+        }
+
+        try (ShardedSearchCoordinator coordinator = new ShardedSearchCoordinator(shards)) {
+            startTime = System.nanoTime();
+            List<List<Hit>> hits = coordinator.search(queries, SimilarityMeasure.TANIMOTO, 10, 0.0);
+            List<int[]> screen = coordinator.screen(queries);
+            System.out.println(shardCount + " " + (socket ? "socket" : "local") + " shards (ms): "
+                    + (System.nanoTime() - startTime) / 1000000);
+            boolean same = true;
+            for (int q = 0; q < queries.getCount(); q++) {
+                same &= Arrays.equals(expectedScreen.get(q), screen.get(q));
+                for (int i = 0; i < hits.get(q).size(); i++) {
+                    same &= hits.get(q).get(i).getIndex() == expected.get(q).get(i).getIndex();
+                }
+            }
+            System.out.println("Same results: " + same);
+        } finally {
+            for (IShard shard : shards) {
+                if (shard instanceof SocketShard) {
+                    ((SocketShard) shard).close();
+                }
+            }
+            for (ShardServer server : servers) {
+                server.close();
+            }
+        }
+    }
+}
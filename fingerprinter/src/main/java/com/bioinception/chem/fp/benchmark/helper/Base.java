@@ -25,6 +25,8 @@
  */
 package com.bioinception.chem.fp.benchmark.helper;
 
+import com.bioinception.chem.fp.fingerprints.helper.RingPerceptionPolicy;
+import com.bioinception.chem.fp.fingerprints.helper.RingStrategy;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
@@ -51,7 +53,6 @@ import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.interfaces.IBond;
 import org.openscience.cdk.interfaces.IRingSet;
 import org.openscience.cdk.io.MDLV2000Reader;
-import org.openscience.cdk.ringsearch.AllRingsFinder;
 import org.openscience.cdk.tools.manipulator.AtomContainerManipulator;
 import org.openscience.cdk.tools.manipulator.RingSetManipulator;
 
@@ -61,6 +62,8 @@ import org.openscience.cdk.tools.manipulator.RingSetManipulator;
  */
 public class Base {
 
+    private static final RingPerceptionPolicy RING_POLICY = new RingPerceptionPolicy();
+
     public Base() {
     }
 
@@ -125,11 +128,10 @@ public class Base {
      * <p/>
      * We perform ring perception and aromaticity detection and set up the
      * appropriate properties. Right now, this function is called each time we
-     * need to do a query and this is inefficient.
+     * need to do a query and this is inefficient. The ring strategy used is
+     * set as the {@link RingPerceptionPolicy#STRATEGY} property.
      *
-     * @throws CDKException if there is a problem in ring perception or
-     * aromaticity detection, which is usually related to a timeout in the ring
-     * finding code.
+     * @throws CDKException if there is a problem in aromaticity detection
      */
     private static Integer initializeMolecule(IAtomContainer atomContainer) throws CDKException {
         Integer hashRings = 0;
@@ -176,34 +178,31 @@ public class Base {
         valencesTable.put("Mn", 2);
         valencesTable.put("Co", 2);
 
-        // do all ring perception
-        AllRingsFinder ringFinder = null;
-        if (ringFinder == null) {
-            ringFinder = new AllRingsFinder();
-        }
-
-        IRingSet allRings;
-        try {
-            allRings = ringFinder.findAllRings(atomContainer);
-            hashRings = allRings.getAtomContainerCount() == 0 ? 0 : 1;
-        } catch (CDKException e) {
-            throw new CDKException(e.toString(), e);
-        }
+        // do all ring perception, falling back to smaller ring sets on cages
+        IRingSet allRings = RING_POLICY.findRings(atomContainer);
+        RingStrategy strategy = RingPerceptionPolicy.getStrategy(allRings);
+        atomContainer.setProperty(RingPerceptionPolicy.STRATEGY, strategy);
+        hashRings = allRings.getAtomContainerCount() == 0 ? 0 : 1;
 
         // sets SSSR information
 //        SSSRFinder finder = new SSSRFinder(atomContainer);
 //        IRingSet sssr = finder.findEssentialRings();
         // all cycles or relevant or essential
-        CycleFinder cf = Cycles.mcb();
-
         IRingSet sssr = null;
-        try {
-            Cycles cycles = cf.find(atomContainer);
-            sssr = cycles.toRingSet();
+        if (strategy == RingStrategy.MCB) {
+            sssr = allRings;
             RingSetManipulator.markAromaticRings(sssr);
             RingSetManipulator.sort(sssr);
-        } catch (Intractable e) {
-            // ignore error - edge short cycles do not check tractability
+        } else {
+            CycleFinder cf = Cycles.mcb();
+            try {
+                Cycles cycles = cf.find(atomContainer);
+                sssr = cycles.toRingSet();
+                RingSetManipulator.markAromaticRings(sssr);
+                RingSetManipulator.sort(sssr);
+            } catch (Intractable e) {
+                // ignore error - edge short cycles do not check tractability
+            }
         }
 
         for (IAtom atom : atomContainer.atoms()) {
@@ -50,6 +50,7 @@ public class Data {
 
     private String fpName;
     private BitSet fingerprint;
+    private BitSet queryFingerprint;
     private final IAtomContainer atomContainer;
 
     /**
@@ -63,6 +64,19 @@ public class Data {
         this.atomContainer = atomContainer;
     }
 
+    /**
+     * Store the fingerprint, the query fingerprint and its structure
+     *
+     * @param fingerprint
+     * @param queryFingerprint
+     * @param atomContainer
+     */
+    public Data(BitSet fingerprint, BitSet queryFingerprint, IAtomContainer atomContainer) {
+        this.fingerprint = fingerprint;
+        this.queryFingerprint = queryFingerprint;
+        this.atomContainer = atomContainer;
+    }
+
     /**
      * Store the fingerprint and its structure
      *
@@ -79,6 +93,13 @@ public class Data {
         return fingerprint;
     }
 
+    /**
+     * @return the query fingerprint, the fingerprint if none was stored
+     */
+    public BitSet getQueryFingerprint() {
+        return queryFingerprint != null ? queryFingerprint : fingerprint;
+    }
+
     /**
      * @return the atomContainer
      */
@@ -26,6 +26,13 @@
  */
 package com.bioinception.chem.fp.fingerprints.bi;
 
+import com.bioinception.chem.fp.fingerprints.helper.CodedPathEncoder;
+import com.bioinception.chem.fp.fingerprints.helper.HashVersion;
+import com.bioinception.chem.fp.fingerprints.helper.PathCodes;
+import com.bioinception.chem.fp.fingerprints.helper.PathEncoderOptions;
+import com.bioinception.chem.fp.fingerprints.helper.PathSymmetry;
+import com.bioinception.chem.fp.fingerprints.helper.PerceptionOverlay;
+import com.bioinception.chem.fp.fingerprints.helper.StartAtomTask;
 import static com.bioinception.chem.fp.fingerprints.helper.RandomNumber.generateMersenneTwisterRandomNumber;
 import java.util.BitSet;
 import java.util.List;
@@ -42,9 +49,58 @@ import org.openscience.cdk.interfaces.IRingSet;
  */
 public class PathEncoder {
 
-    static void encodePaths(IAtomContainer mol, int minDepth, int maxDepth, BitSet fp, int size, int pathLimit, boolean hashPseudoAtoms) throws CDKException {
-        State state = new State(mol, fp, size, minDepth + 1, maxDepth + 1);
-        for (IAtom atom : mol.atoms()) {
+    /**
+     * Encodes the paths into the segment [offset, offset + size) of fp.
+     *
+     * @param options the settings of the fingerprinter
+     * @param overlay perception of the molecule, null to read the bonds. The
+     * overlay codes the bonds of the coded paths, the legacy string paths
+     * always read the bonds.
+     */
+    static void encodePaths(IAtomContainer mol, int minDepth, int maxDepth, BitSet fp, int offset, int size,
+            PathEncoderOptions options, PerceptionOverlay overlay) throws CDKException {
+        PathCodes codes = options.needsPathCodes() ? PathCodes.of(mol, overlay) : null;
+        int[] classes = options.isSymmetryPruning() ? PathSymmetry.classes(mol, codes) : null;
+        int n = mol.getAtomCount();
+        if (n < options.getParallelThreshold()) {
+            encodePaths(mol, codes, classes, 0, n, minDepth, maxDepth, fp, offset, size, options);
+            return;
+        }
+        fp.or(StartAtomTask.invoke(n, (from, to) -> {
+            BitSet local = new BitSet(offset + size);
+            encodePaths(mol, codes, classes, from, to, minDepth, maxDepth, local, offset, size, options);
+            return local;
+        }, (a, b) -> {
+            a.or(b);
+            return a;
+        }));
+    }
+
+    /**
+     * Encodes the paths starting at the atoms [from, to) with a State of its
+     * own.
+     */
+    private static void encodePaths(IAtomContainer mol, PathCodes codes, int[] classes, int from, int to,
+            int minDepth, int maxDepth, BitSet fp, int offset, int size, PathEncoderOptions options) throws CDKException {
+        int pathLimit = options.getPathLimit();
+        boolean hashPseudoAtoms = options.isHashPseudoAtoms();
+        if (options.getHashVersion().atLeast(HashVersion.PATH_CODES)) {
+            boolean fastMapping = options.getHashVersion().atLeast(HashVersion.FAST_MAPPING);
+            State state = new State(mol, fp, offset, size, minDepth + 1, maxDepth + 1, fastMapping);
+            CodedPathEncoder.encodePaths(codes, minDepth + 1, maxDepth + 1, pathLimit, hashPseudoAtoms, classes, from, to, state::addHash);
+            if (fastMapping) {
+                state.setBits();
+            }
+            return;
+        }
+        State state = new State(mol, fp, offset, size, minDepth + 1, maxDepth + 1, false);
+        state.setClasses(classes);
+        boolean[] starts = classes != null ? PathSymmetry.representatives(classes) : null;
+        for (int i = from; i < to; i++) {
+            if (starts != null && !starts[i]) {
+                continue;
+            }
+            IAtom atom = mol.getAtom(i);
             state.setNumPaths(0);
             state.visit(atom);
             traversePaths(state, atom, null, pathLimit, hashPseudoAtoms);
@@ -66,7 +122,11 @@ public class PathEncoder {
             return;
         }
         state.push(beg, prev);
-        state.addHash(encodeUniquePath(state.getAtomPath(), state.getBondPath(), state.buffer));
+        if (state.isEmitted(beg)) {
+            state.addHash(encodeUniquePath(state.getAtomPath(), state.getBondPath(), state.buffer));
+        } else {
+            state.skipPath();
+        }
         if (state.getNumPaths() > pathLimit) {
             throw new CDKException("Too many paths! Structure is likely a cage, reduce path length or increase path limit");
         }
@@ -134,6 +194,11 @@ public class PathEncoder {
         return hash;
     }
 
+    /**
+     * XXX: only the first character of the string is hashed, "Cl" and "Ca"
+     * give the same hash. Kept for backwards compatibility, see
+     * {@link HashVersion#PATH_CODES}.
+     */
     static int appendHash(int hash, String str) {
         int len = str.length();
         for (int i = 0; i < len; i++) {
@@ -27,6 +27,15 @@ package com.bioinception.chem.fp.fingerprints.bi;
 import static com.bioinception.chem.fp.fingerprints.bi.PathEncoder.encodePaths;
 import static com.bioinception.chem.fp.fingerprints.bi.PathEncoder.isPseudoAtom;
 import static com.bioinception.chem.fp.fingerprints.bi.PathEncoder.setRingBits;
+import com.bioinception.chem.fp.fingerprints.helper.FingerprintDescriptor;
+import com.bioinception.chem.fp.fingerprints.helper.FingerprintMetrics;
+import com.bioinception.chem.fp.fingerprints.helper.FingerprintStage;
+import com.bioinception.chem.fp.fingerprints.helper.HashVersion;
+import com.bioinception.chem.fp.fingerprints.helper.PathEncoderOptions;
+import com.bioinception.chem.fp.fingerprints.helper.PerceptionOverlay;
+import com.bioinception.chem.fp.fingerprints.helper.QueryGraph;
+import com.bioinception.chem.fp.fingerprints.helper.VersionedFingerprint;
+import com.bioinception.chem.fp.fingerprints.interfaces.IQueryFingerprinter;
 import org.openscience.cdk.aromaticity.Aromaticity;
 import org.openscience.cdk.exception.CDKException;
 import org.openscience.cdk.interfaces.IAtom;
@@ -37,7 +46,9 @@ import org.openscience.cdk.tools.LoggingToolFactory;
 import org.openscience.cdk.tools.manipulator.AtomContainerManipulator;
 
 import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.BitSet;
 import java.util.List;
 import java.util.Map;
@@ -70,6 +81,15 @@ import org.openscience.cdk.tools.manipulator.RingSetManipulator;
  *
  * <p>
  *
+ * From {@link HashVersion#SEGMENT_LAYOUT} the segments start at fixed offsets
+ * (0, 16 and 144) and {@link #getQueryFingerprint(IAtomContainer)} generates
+ * screening fingerprints for substructure queries. A query fingerprint only
+ * sets the path segment, from the paths of the query whose atom and bond
+ * symbols are the same in every superstructure (see {@link QueryGraph}). Ring
+ * bits and ring paths are left out: the minimum cycle basis of a
+ * superstructure need not contain the rings of the query.
+ * <p>
+ *
  * A fingerprint is generated for an AtomContainer with this code:
  * <pre>
  * Molecule molecule = new Molecule();
@@ -103,7 +123,7 @@ import org.openscience.cdk.tools.manipulator.RingSetManipulator;
  * </p>
  *
  */
-public class ScaffoldHashedFingerprinter extends AbstractFingerprinter implements IFingerprinter {
+public class ScaffoldHashedFingerprinter extends AbstractFingerprinter implements IFingerprinter, IQueryFingerprinter {
 
     /**
      * Throw an exception if too many paths (per atom) are generated.
@@ -118,12 +138,24 @@ public class ScaffoldHashedFingerprinter extends AbstractFingerprinter implement
      * The default search depth used to create the fingerprints.
      */
     public final static int DEFAULT_SEARCH_DEPTH = 7;
+    /**
+     * Bits of the ring size segment.
+     */
+    private final static int RING_BITS = 16;
+    /**
+     * Bits of the ring path segment.
+     */
+    private final static int RING_PATH_BITS = 128;
 
     private int size;
     private int searchDepth;
     private int pathLimit = DEFAULT_PATH_LIMIT;
 
     private boolean hashPseudoAtoms = false;
+    private HashVersion hashVersion = HashVersion.LEGACY;
+    private boolean symmetryPruning = false;
+    private int parallelThreshold = Integer.MAX_VALUE;
+    private PathEncoderOptions pathOptions = null;
 
     static int debugCounter = 0;
 
@@ -155,13 +187,44 @@ public class ScaffoldHashedFingerprinter extends AbstractFingerprinter implement
 
     }
 
+    /**
+     * The hash version is added only above {@link HashVersion#LEGACY}, the
+     * version description of legacy prints is the one they were stored with.
+     */
     @Override
     protected List<Map.Entry<String, String>> getParameters() {
-        return Arrays.<Map.Entry<String, String>>asList(
+        List<Map.Entry<String, String>> parameters = new ArrayList<>(Arrays.<Map.Entry<String, String>>asList(
                 new SimpleImmutableEntry<>("searchDepth", Integer.toString(searchDepth)),
                 new SimpleImmutableEntry<>("pathLimit", Integer.toString(pathLimit)),
                 new SimpleImmutableEntry<>("hashPseudoAtoms", Boolean.toString(hashPseudoAtoms))
-        );
+        ));
+        if (hashVersion != HashVersion.LEGACY) {
+            parameters.add(new SimpleImmutableEntry<>("hashVersion", Integer.toString(hashVersion.getVersion())));
+        }
+        return parameters;
+    }
+
+    /**
+     * The path limit is left out, it does not change the bits.
+     *
+     * @return the descriptor of the fingerprints
+     */
+    public FingerprintDescriptor getDescriptor() {
+        return new FingerprintDescriptor(getClass().getSimpleName(), size, searchDepth, hashVersion,
+                Collections.singletonMap("hashPseudoAtoms", Boolean.toString(hashPseudoAtoms)));
+    }
+
+    /**
+     * Generates a fingerprint together with the descriptor of this
+     * fingerprinter.
+     *
+     * @param container The AtomContainer for which a Fingerprint is generated
+     * @return the fingerprint and its descriptor
+     * @throws CDKException
+     */
+    public VersionedFingerprint getVersionedFingerprint(IAtomContainer container) throws CDKException {
+        FingerprintDescriptor descriptor = getDescriptor();
+        return new VersionedFingerprint(getBitFingerprint(container).asBitSet(), descriptor);
     }
 
     /**
@@ -175,17 +238,10 @@ public class ScaffoldHashedFingerprinter extends AbstractFingerprinter implement
      * @return A {@link BitSet} representing the fingerprint
      */
     public IBitFingerprint getBitFingerprint(IAtomContainer container, AllRingsFinder ringFinder) throws CDKException {
-        logger.debug("Entering Fingerprinter");
-        logger.debug("Starting Aromaticity Detection");
-        long before = System.currentTimeMillis();
-
-        if (!hasPseudoAtom(container.atoms())) {
-            AtomContainerManipulator.percieveAtomTypesAndConfigureAtoms(container);
-            Aromaticity.cdkLegacy().apply(container);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Entering Fingerprinter");
         }
-        long after = System.currentTimeMillis();
-        logger.debug("time for aromaticity calculation: " + (after - before) + " milliseconds");
-        logger.debug("Finished Aromaticity Detection");
+        PerceptionOverlay overlay = perceive(container);
 
 //        /* all cycles or relevant or essential*/
 //        CycleFinder cf = Cycles.or(Cycles.all(),
@@ -194,6 +250,7 @@ public class ScaffoldHashedFingerprinter extends AbstractFingerprinter implement
         /*minimal cycle basis*/
         CycleFinder cf = Cycles.mcb();
 
+        long start = FingerprintMetrics.start();
         IRingSet rings = null;
         try {
             Cycles cycles = cf.find(container);
@@ -203,10 +260,18 @@ public class ScaffoldHashedFingerprinter extends AbstractFingerprinter implement
         } catch (Intractable e) {
             // ignore error - edge short cycles do not check tractability
         }
+        FingerprintMetrics.stop(FingerprintStage.RING_FINDING, start);
+        start = FingerprintMetrics.start();
+        if (hashVersion.atLeast(HashVersion.SEGMENT_LAYOUT)) {
+            BitSet bitSet = encodeSegments(container, rings, overlay);
+            FingerprintMetrics.stop(FingerprintStage.PATH_WALKING, start);
+            FingerprintMetrics.recordBits(bitSet);
+            return new BitSetFingerprint(bitSet);
+        }
         /*
          * Encode Rings
          */
-        int size0 = 16;
+        int size0 = RING_BITS;
         BitSet bitSet0 = new BitSet(size0);
         if (rings != null) {
             setRingBits(bitSet0, rings, size0);
@@ -216,12 +281,12 @@ public class ScaffoldHashedFingerprinter extends AbstractFingerprinter implement
         /*
          * Encode Rings Path
          */
-        int size1 = 128;
+        int size1 = RING_PATH_BITS;
         BitSet bitSet1 = new BitSet(size1);
         if (rings != null) {
             for (int i = 0; i < rings.getAtomContainerCount(); i++) {
                 IAtomContainer ring = rings.getAtomContainer(i);
-                encodePaths(ring, 0, searchDepth, bitSet1, size1, pathLimit, hashPseudoAtoms);
+                encodePaths(ring, 0, searchDepth, bitSet1, 0, size1, getPathOptions(), null);
             }
         }
 //        System.out.println("BitSet - 1 " + bitSet1);
@@ -233,22 +298,24 @@ public class ScaffoldHashedFingerprinter extends AbstractFingerprinter implement
 //        int size4 = size - (size1);
 //        int size4 = size - (size0);
         BitSet bitSet4 = new BitSet(size4);
-        encodePaths(container, 0, searchDepth, bitSet4, size4, pathLimit, hashPseudoAtoms);
+        encodePaths(container, 0, searchDepth, bitSet4, 0, size4, getPathOptions(), null);
 //        System.out.println("BitSet - 4 " + bitSet4);
+        FingerprintMetrics.stop(FingerprintStage.PATH_WALKING, start);
 
         /*
          * Set all bits
          */
+        BitSet bitSet = new BitSet(size);
 //        BitSet concatenate_vectors = concatenate_vectors(bitSet4, bitSet0);
 //        BitSet concatenate_vectors = concatenate_vectors(bitSet4, bitSet1);
         BitSet concatenate_vectors = concatenate_vectors(bitSet1, bitSet0);
         concatenate_vectors = concatenate_vectors(bitSet4, concatenate_vectors);
 //        System.out.println("Concat BitSet " + concatenate_vectors);
 
-        BitSet bitSet = new BitSet(size);
         bitSet.or(concatenate_vectors);
 //        encodePaths(container, 0, searchDepth, bitSet, 2048, pathLimit, hashPseudoAtoms);
 //        System.out.println("BitSet: " + bitSet);
+        FingerprintMetrics.recordBits(bitSet);
         return new BitSetFingerprint(bitSet);
     }
 
@@ -264,6 +331,85 @@ public class ScaffoldHashedFingerprinter extends AbstractFingerprinter implement
         return getBitFingerprint(container, null);
     }
 
+    /**
+     * Generates the screening fingerprint of a substructure query, only the
+     * path segment is set. The query is perceived as the targets are, in
+     * place before {@link HashVersion#PERCEPTION_OVERLAY}.
+     *
+     * @param query the substructure query
+     * @return the query fingerprint
+     * @throws CDKException if there is a timeout in ring or aromaticity
+     * perception
+     * @throws IllegalStateException if the hash version is older than
+     * {@link HashVersion#SEGMENT_LAYOUT}, the offset of the path segment then
+     * depends on the ring bits of the target
+     */
+    @Override
+    public IBitFingerprint getQueryFingerprint(IAtomContainer query) throws CDKException {
+        if (!hashVersion.atLeast(HashVersion.SEGMENT_LAYOUT)) {
+            throw new IllegalStateException("Query fingerprints need hash version "
+                    + HashVersion.SEGMENT_LAYOUT + " or later, found " + hashVersion);
+        }
+        PerceptionOverlay overlay = perceive(query);
+        IAtomContainer reduced = QueryGraph.reduce(query,
+                bond -> (overlay == null ? bond.isAromatic() : overlay.isAromatic(bond))
+                || QueryGraph.isNeverAromatic(query, overlay, bond.getBegin())
+                || QueryGraph.isNeverAromatic(query, overlay, bond.getEnd()),
+                hashPseudoAtoms);
+        int offset = RING_BITS + RING_PATH_BITS;
+        BitSet bitSet = new BitSet(size);
+        encodePaths(reduced, 0, searchDepth, bitSet, offset, size - offset, getPathOptions(), overlay);
+        return new BitSetFingerprint(bitSet);
+    }
+
+    /**
+     * Perceives the atom types and aromaticity of the molecule, in place
+     * before {@link HashVersion#PERCEPTION_OVERLAY}.
+     *
+     * @return the perception overlay, null if the molecule was perceived in
+     * place
+     */
+    private PerceptionOverlay perceive(IAtomContainer container) throws CDKException {
+        boolean debug = logger.isDebugEnabled();
+        if (debug) {
+            logger.debug("Starting Aromaticity Detection");
+        }
+        long before = debug ? System.nanoTime() : FingerprintMetrics.start();
+
+        PerceptionOverlay overlay = null;
+        if (hashVersion.atLeast(HashVersion.PERCEPTION_OVERLAY)) {
+            overlay = PerceptionOverlay.perceive(container);
+        } else if (!hasPseudoAtom(container.atoms())) {
+            AtomContainerManipulator.percieveAtomTypesAndConfigureAtoms(container);
+            Aromaticity.cdkLegacy().apply(container);
+        }
+        FingerprintMetrics.stop(FingerprintStage.PERCEPTION, before);
+        if (debug) {
+            logger.debug("time for aromaticity calculation: " + (System.nanoTime() - before) / 1000000 + " milliseconds");
+            logger.debug("Finished Aromaticity Detection");
+        }
+        return overlay;
+    }
+
+    /**
+     * Fixed segment layout: ring sizes in [0, RING_BITS), ring paths in
+     * [RING_BITS, RING_BITS + RING_PATH_BITS) and the paths of the molecule in
+     * the rest. Each segment is written in place into one preallocated array.
+     */
+    private BitSet encodeSegments(IAtomContainer container, IRingSet rings, PerceptionOverlay overlay) throws CDKException {
+        BitSet bitSet = new BitSet(size);
+        if (rings != null) {
+            setRingBits(bitSet, rings, RING_BITS);
+            for (int i = 0; i < rings.getAtomContainerCount(); i++) {
+                IAtomContainer ring = rings.getAtomContainer(i);
+                encodePaths(ring, 0, searchDepth, bitSet, RING_BITS, RING_PATH_BITS, getPathOptions(), overlay);
+            }
+        }
+        int offset = RING_BITS + RING_PATH_BITS;
+        encodePaths(container, 0, searchDepth, bitSet, offset, size - offset, getPathOptions(), overlay);
+        return bitSet;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -272,12 +418,24 @@ public class ScaffoldHashedFingerprinter extends AbstractFingerprinter implement
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * @return the path encoder settings of the current configuration, built
+     * once and rebuilt after a setter changed them
+     */
+    private PathEncoderOptions getPathOptions() {
+        if (pathOptions == null) {
+            pathOptions = new PathEncoderOptions(pathLimit, hashPseudoAtoms, hashVersion, symmetryPruning, parallelThreshold);
+        }
+        return pathOptions;
+    }
+
     /**
      *
      * @param limit
      */
     public void setPathLimit(int limit) {
         this.pathLimit = limit;
+        this.pathOptions = null;
     }
 
     /**
@@ -286,6 +444,7 @@ public class ScaffoldHashedFingerprinter extends AbstractFingerprinter implement
      */
     public void setHashPseudoAtoms(boolean value) {
         this.hashPseudoAtoms = value;
+        this.pathOptions = null;
     }
 
     /**
@@ -296,6 +455,66 @@ public class ScaffoldHashedFingerprinter extends AbstractFingerprinter implement
         return searchDepth;
     }
 
+    /**
+     * @return the version of the path hashing
+     */
+    public HashVersion getHashVersion() {
+        return hashVersion;
+    }
+
+    /**
+     * Selects the version of the path hashing, fingerprints generated with
+     * different versions are not comparable.
+     *
+     * @param hashVersion the version of the path hashing
+     */
+    public void setHashVersion(HashVersion hashVersion) {
+        this.hashVersion = hashVersion;
+        this.pathOptions = null;
+    }
+
+    /**
+     * @return minimum number of atoms of a molecule whose paths are
+     * enumerated in parallel
+     */
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    /**
+     * Molecules with at least this many atoms have their start atoms split
+     * into ForkJoin subtasks. The bits are the same. Off by default
+     * ({@link Integer#MAX_VALUE}), a few hundred atoms is a sensible value
+     * for peptides and glycans.
+     *
+     * @param parallelThreshold minimum number of atoms of a parallel
+     * enumeration
+     */
+    public void setParallelThreshold(int parallelThreshold) {
+        this.parallelThreshold = parallelThreshold;
+        this.pathOptions = null;
+    }
+
+    /**
+     * @return true if the paths are enumerated from one atom per symmetry
+     * class
+     */
+    public boolean isSymmetryPruning() {
+        return symmetryPruning;
+    }
+
+    /**
+     * Enumerates the paths from one atom per symmetry class and emits every
+     * path from one end only. The bits are the same, symmetric molecules are
+     * encoded faster at the cost of a symmetry perception per molecule.
+     *
+     * @param symmetryPruning true to skip equivalent start atoms
+     */
+    public void setSymmetryPruning(boolean symmetryPruning) {
+        this.symmetryPruning = symmetryPruning;
+        this.pathOptions = null;
+    }
+
     @Override
     public int getSize() {
         return size;
@@ -323,23 +542,12 @@ public class ScaffoldHashedFingerprinter extends AbstractFingerprinter implement
      * @return
      */
     public static BitSet concatenate_vectors(BitSet vector_1_in, BitSet vector_2_in) {
-        BitSet vector_1_in_clone = (BitSet) vector_1_in.clone();
-        BitSet vector_2_in_clone = (BitSet) vector_2_in.clone();
-
-        BitSet vectorConcat = new BitSet(vector_1_in.length() + vector_2_in.length());
-
-        int index = -1;
-        while (index < (vector_2_in_clone.length() - 1)) {
-            index = vector_2_in_clone.nextSetBit((index + 1));
-            vectorConcat.set(index);
+        int offset = vector_2_in.length();
+        BitSet vectorConcat = new BitSet(vector_1_in.length() + offset);
+        vectorConcat.or(vector_2_in);
+        for (int i = vector_1_in.nextSetBit(0); i >= 0; i = vector_1_in.nextSetBit(i + 1)) {
+            vectorConcat.set(offset + i);
         }
-
-        index = -1;
-        while (index < (vector_1_in_clone.length() - 1)) {
-            index = vector_1_in_clone.nextSetBit((index + 1));
-            vectorConcat.set(vector_2_in_clone.length() + index);
-        }
-
         return vectorConcat;
     }
 
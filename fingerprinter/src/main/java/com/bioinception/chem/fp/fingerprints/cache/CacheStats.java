@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2003-2021 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package com.bioinception.chem.fp.fingerprints.cache;
+
+/**
+ * Snapshot of the counters of a {@link CachingFingerprinter}.
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public class CacheStats {
+
+    private final long hitCount;
+    private final long storeHitCount;
+    private final long missCount;
+    private final long evictionCount;
+
+    CacheStats(long hitCount, long storeHitCount, long missCount, long evictionCount) {
+        this.hitCount = hitCount;
+        this.storeHitCount = storeHitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+    }
+
+    /**
+     * @return number of requests answered from memory
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return number of requests answered from the persistent store
+     */
+    public long getStoreHitCount() {
+        return storeHitCount;
+    }
+
+    /**
+     * @return number of requests that generated the fingerprint
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @return number of fingerprints evicted from memory
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * @return fraction of requests that did not generate the fingerprint
+     */
+    public double getHitRate() {
+        long requests = hitCount + storeHitCount + missCount;
+        return requests == 0 ? 0.0 : (double) (hitCount + storeHitCount) / requests;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{hits=" + hitCount + ", storeHits=" + storeHitCount
+                + ", misses=" + missCount + ", evictions=" + evictionCount + "}";
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright (C) 2003-2021 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package com.bioinception.chem.fp.fingerprints.cache;
+
+import com.bioinception.chem.fp.fingerprints.helper.FingerprintDescriptor;
+import com.bioinception.chem.fp.fingerprints.interfaces.IFingerprintCache;
+import com.bioinception.chem.fp.fingerprints.interfaces.IFingerprintStore;
+import com.bioinception.chem.fp.fingerprints.interfaces.IFingerprinter;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.fingerprint.BitSetFingerprint;
+import org.openscience.cdk.fingerprint.IBitFingerprint;
+import org.openscience.cdk.fingerprint.ICountFingerprint;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.ringsearch.AllRingsFinder;
+import org.openscience.cdk.tools.ILoggingTool;
+import org.openscience.cdk.tools.LoggingToolFactory;
+
+/**
+ * Fingerprint cache in front of any {@link IFingerprinter}. A fingerprint is
+ * keyed by a canonical identifier of the structure ({@link StructureKey}) and
+ * the {@link FingerprintDescriptor} of the wrapped fingerprinter, so changing
+ * its size, depth, flags or hash version never returns a stale print.
+ * Repeated structures skip atom typing, aromaticity perception and path
+ * walking; only the identifier is generated, or nothing if the caller passes a
+ * precomputed one to {@link #getBitFingerprint(IAtomContainer, String)}.
+ *
+ * <pre>
+ * IFingerprinter fingerprinter = new CachingFingerprinter(new HashedFingerprinter(1024),
+ *         new TinyLFUFingerprintCache(100000), StructureKey.CANONICAL_SMILES);
+ * </pre>
+ *
+ * Misses are looked up in the optional persistent {@link IFingerprintStore}
+ * before generating the fingerprint. The returned bits are copies and may be
+ * modified by the caller.
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public class CachingFingerprinter implements IFingerprinter {
+
+    private final IFingerprinter fingerprinter;
+    private final IFingerprintCache cache;
+    private final IFingerprintStore store;
+    private final StructureKey structureKey;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong storeHitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private static final ILoggingTool logger
+            = LoggingToolFactory.createLoggingTool(CachingFingerprinter.class);
+
+    /**
+     * @param fingerprinter the fingerprinter to cache
+     * @param cache in-memory cache
+     * @param structureKey identifier of the structures
+     */
+    public CachingFingerprinter(IFingerprinter fingerprinter, IFingerprintCache cache, StructureKey structureKey) {
+        this(fingerprinter, cache, null, structureKey);
+    }
+
+    /**
+     * @param fingerprinter the fingerprinter to cache
+     * @param cache in-memory cache
+     * @param store persistent tier, may be null
+     * @param structureKey identifier of the structures
+     */
+    public CachingFingerprinter(IFingerprinter fingerprinter, IFingerprintCache cache,
+            IFingerprintStore store, StructureKey structureKey) {
+        this.fingerprinter = fingerprinter;
+        this.cache = cache;
+        this.store = store;
+        this.structureKey = structureKey;
+    }
+
+    /**
+     * Returns the fingerprint of a structure whose canonical identifier is
+     * already known, e.g. the InChIKey of a registered compound. The
+     * identifier must have been generated the same way for every structure.
+     *
+     * @param container the structure, only perceived on a miss
+     * @param key canonical identifier of the structure
+     * @return the fingerprint
+     * @throws CDKException
+     */
+    public IBitFingerprint getBitFingerprint(IAtomContainer container, String key) throws CDKException {
+        return new BitSetFingerprint((BitSet) lookup(container, key, null).clone());
+    }
+
+    @Override
+    public IBitFingerprint getBitFingerprint(IAtomContainer container) throws CDKException {
+        return getBitFingerprint(container, (AllRingsFinder) null);
+    }
+
+    @Override
+    public IBitFingerprint getBitFingerprint(IAtomContainer container, AllRingsFinder ringFinder) throws CDKException {
+        String key = structureKey.generate(container);
+        return new BitSetFingerprint((BitSet) lookup(container, key, ringFinder).clone());
+    }
+
+    private BitSet lookup(IAtomContainer container, String key, AllRingsFinder ringFinder) throws CDKException {
+        String cacheKey = fingerprinter.getDescriptor() + "\t" + key;
+        BitSet fp = cache.get(cacheKey);
+        if (fp != null) {
+            hitCount.incrementAndGet();
+            return fp;
+        }
+        if (store != null) {
+            try {
+                fp = store.get(cacheKey);
+            } catch (IOException e) {
+                logger.warn("Fingerprint store failed: " + e.getMessage());
+            }
+            if (fp != null) {
+                storeHitCount.incrementAndGet();
+                cache.put(cacheKey, fp);
+                return fp;
+            }
+        }
+        missCount.incrementAndGet();
+        fp = ringFinder == null
+                ? fingerprinter.getBitFingerprint(container).asBitSet()
+                : fingerprinter.getBitFingerprint(container, ringFinder).asBitSet();
+        fp = (BitSet) fp.clone();
+        cache.put(cacheKey, fp);
+        if (store != null) {
+            try {
+                store.put(cacheKey, fp);
+            } catch (IOException e) {
+                logger.warn("Fingerprint store failed: " + e.getMessage());
+            }
+        }
+        return fp;
+    }
+
+    /**
+     * @return counters of the cache
+     */
+    public CacheStats getStats() {
+        return new CacheStats(hitCount.get(), storeHitCount.get(), missCount.get(), cache.getEvictionCount());
+    }
+
+    /**
+     * @return the in-memory cache
+     */
+    public IFingerprintCache getCache() {
+        return cache;
+    }
+
+    /**
+     * @return the cached fingerprinter
+     */
+    public IFingerprinter getFingerprinter() {
+        return fingerprinter;
+    }
+
+    @Override
+    public FingerprintDescriptor getDescriptor() {
+        return fingerprinter.getDescriptor();
+    }
+
+    @Override
+    public ICountFingerprint getCountFingerprint(IAtomContainer container) throws CDKException {
+        return fingerprinter.getCountFingerprint(container);
+    }
+
+    @Override
+    public Map<String, Integer> getRawFingerprint(IAtomContainer container) throws CDKException {
+        return fingerprinter.getRawFingerprint(container);
+    }
+
+    @Override
+    public int getSearchDepth() {
+        return fingerprinter.getSearchDepth();
+    }
+
+    @Override
+    public int getSize() {
+        return fingerprinter.getSize();
+    }
+
+    @Override
+    public boolean isRespectFormalCharges() {
+        return fingerprinter.isRespectFormalCharges();
+    }
+
+    @Override
+    public boolean isRespectRingMatches() {
+        return fingerprinter.isRespectRingMatches();
+    }
+
+    @Override
+    public void setRespectFormalCharges(boolean respectFormalCharges) {
+        fingerprinter.setRespectFormalCharges(respectFormalCharges);
+    }
+
+    @Override
+    public void setRespectRingMatches(boolean respectRingMatches) {
+        fingerprinter.setRespectRingMatches(respectRingMatches);
+    }
+
+    @Override
+    public String getVersionDescription() {
+        return fingerprinter.getVersionDescription();
+    }
+
+    @Override
+    public BitSet getFingerprint(IAtomContainer container) throws CDKException {
+        return getBitFingerprint(container).asBitSet();
+    }
+}
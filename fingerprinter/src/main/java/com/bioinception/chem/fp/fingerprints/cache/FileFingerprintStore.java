@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2003-2021 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package com.bioinception.chem.fp.fingerprints.cache;
+
+import com.bioinception.chem.fp.fingerprints.interfaces.IFingerprintStore;
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Append-only text file of cache key and Base64 fingerprint per line. The
+ * file is scanned once when the store is opened to index the offset of each
+ * fingerprint; only the keys and offsets are held in memory, a fingerprint is
+ * read from the file when it is requested. Fingerprints are appended as they
+ * are put. Put an in-memory cache ({@link LRUFingerprintCache},
+ * {@link TinyLFUFingerprintCache}) in front of it for repeated lookups.
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public class FileFingerprintStore implements IFingerprintStore, Closeable {
+
+    private final Map<String, Entry> index = new HashMap<>();
+    private final FileChannel channel;
+    private long end;
+
+    /**
+     * @param file the store, created if it does not exist
+     * @throws IOException
+     */
+    public FileFingerprintStore(File file) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            scan(file);
+            if (end > 0 && !endsWithNewLine()) {
+                append(new byte[]{'\n'});
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void scan(File file) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file.toPath()))) {
+            byte[] line = new byte[256];
+            int length = 0;
+            int c;
+            while ((c = in.read()) >= 0) {
+                if (c != '\n') {
+                    if (length == line.length) {
+                        line = Arrays.copyOf(line, length * 2);
+                    }
+                    line[length++] = (byte) c;
+                    continue;
+                }
+                indexLine(file, line, length);
+                end += length + 1;
+                length = 0;
+            }
+            if (length > 0) {
+                indexLine(file, line, length);
+                end += length;
+            }
+        }
+    }
+
+    private void indexLine(File file, byte[] line, int length) throws IOException {
+        if (length > 0 && line[length - 1] == '\r') {
+            length--;
+        }
+        int tab = length - 1;
+        while (tab >= 0 && line[tab] != '\t') {
+            tab--;
+        }
+        if (tab < 0) {
+            throw new IOException("Invalid line in " + file + ": "
+                    + new String(line, 0, length, StandardCharsets.UTF_8));
+        }
+        index.put(new String(line, 0, tab, StandardCharsets.UTF_8),
+                new Entry(end + tab + 1, length - tab - 1));
+    }
+
+    private boolean endsWithNewLine() throws IOException {
+        ByteBuffer last = ByteBuffer.allocate(1);
+        channel.read(last, end - 1);
+        return last.get(0) == '\n';
+    }
+
+    @Override
+    public synchronized BitSet get(String key) throws IOException {
+        Entry entry = index.get(key);
+        if (entry == null) {
+            return null;
+        }
+        ByteBuffer value = ByteBuffer.allocate(entry.length);
+        while (value.hasRemaining()) {
+            if (channel.read(value, entry.offset + value.position()) < 0) {
+                throw new IOException("Truncated fingerprint of " + key);
+            }
+        }
+        return BitSet.valueOf(Base64.getDecoder().decode(value.array()));
+    }
+
+    @Override
+    public synchronized void put(String key, BitSet fingerprint) throws IOException {
+        if (key.indexOf('\n') >= 0 || key.indexOf('\r') >= 0) {
+            throw new IllegalArgumentException("Line break in key: " + key);
+        }
+        if (index.containsKey(key)) {
+            return;
+        }
+        byte[] k = key.getBytes(StandardCharsets.UTF_8);
+        byte[] v = Base64.getEncoder().encode(fingerprint.toByteArray());
+        byte[] line = Arrays.copyOf(k, k.length + v.length + 2);
+        line[k.length] = '\t';
+        System.arraycopy(v, 0, line, k.length + 1, v.length);
+        line[line.length - 1] = '\n';
+        long offset = end + k.length + 1;
+        append(line);
+        index.put(key, new Entry(offset, v.length));
+    }
+
+    private void append(byte[] bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            end += channel.write(buffer, end);
+        }
+    }
+
+    /**
+     * @return the number of stored fingerprints
+     */
+    public synchronized int size() {
+        return index.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Position of a Base64 fingerprint in the file.
+     */
+    private static final class Entry {
+
+        private final long offset;
+        private final int length;
+
+        Entry(long offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2003-2021 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package com.bioinception.chem.fp.fingerprints.cache;
+
+import com.bioinception.chem.fp.fingerprints.interfaces.IFingerprintCache;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least recently used eviction.
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public class LRUFingerprintCache implements IFingerprintCache {
+
+    private final int maximumSize;
+    private final LinkedHashMap<String, BitSet> map;
+    private long evictionCount = 0;
+
+    /**
+     * @param maximumSize maximum number of cached fingerprints
+     */
+    public LRUFingerprintCache(int maximumSize) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("Cache size must be positive: " + maximumSize);
+        }
+        this.maximumSize = maximumSize;
+        this.map = new LinkedHashMap<String, BitSet>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, BitSet> eldest) {
+                if (size() > LRUFingerprintCache.this.maximumSize) {
+                    evictionCount++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public synchronized BitSet get(String key) {
+        return map.get(key);
+    }
+
+    @Override
+    public synchronized void put(String key, BitSet fingerprint) {
+        map.put(key, fingerprint);
+    }
+
+    @Override
+    public synchronized int size() {
+        return map.size();
+    }
+
+    @Override
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    @Override
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    @Override
+    public synchronized void clear() {
+        map.clear();
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2003-2021 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package com.bioinception.chem.fp.fingerprints.cache;
+
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.inchi.InChIGenerator;
+import org.openscience.cdk.inchi.InChIGeneratorFactory;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.smiles.SmiFlavor;
+import org.openscience.cdk.smiles.SmilesGenerator;
+
+import net.sf.jniinchi.INCHI_RET;
+
+/**
+ * Canonical identifier of a structure used as (part of) the cache key.
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public enum StructureKey {
+
+    /**
+     * Absolute (canonical, isomeric) SMILES. Exact, the safe default. SMILES
+     * writes every pseudo atom as {@code *}, so their labels (e.g. R1, R2)
+     * are appended as CXSMILES atom labels; structures without labelled atoms
+     * keep their plain SMILES.
+     */
+    CANONICAL_SMILES {
+        @Override
+        public String generate(IAtomContainer container) throws CDKException {
+            return new SmilesGenerator(SmiFlavor.Absolute | SmiFlavor.CxAtomLabel).create(container);
+        }
+    },
+    /**
+     * Standard InChIKey, as computed by
+     * {@link com.bioinception.chem.fp.benchmark.helper.Base#generateInchiKey(IAtomContainer)}.
+     * Standard InChI merges mobile hydrogen tautomers, which may have
+     * different fingerprints, so a cached print of another tautomer can be
+     * returned. Only use it if that is acceptable. Structures with pseudo
+     * atoms have no InChI and throw.
+     */
+    INCHI_KEY {
+        @Override
+        public String generate(IAtomContainer container) throws CDKException {
+            InChIGenerator gen = InChIGeneratorFactory.getInstance().getInChIGenerator(container);
+            if (gen.getReturnStatus() != INCHI_RET.OKAY) {
+                throw new CDKException("InChI failed: " + gen.getMessage());
+            }
+            return gen.getInchiKey();
+        }
+    };
+
+    /**
+     * @param container the structure
+     * @return canonical identifier of the structure
+     * @throws CDKException if no identifier can be generated
+     */
+    public abstract String generate(IAtomContainer container) throws CDKException;
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2003-2021 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package com.bioinception.chem.fp.fingerprints.cache;
+
+import com.bioinception.chem.fp.fingerprints.interfaces.IFingerprintCache;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * W-TinyLFU eviction: new fingerprints enter a small LRU window, fingerprints
+ * leaving the window are only admitted to the main segmented LRU (probation
+ * and protected) if they were requested more often than the fingerprint they
+ * would evict. A scan of one-off structures therefore does not flush the
+ * frequently requested ones, e.g. shared reagents.
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public class TinyLFUFingerprintCache implements IFingerprintCache {
+
+    private final int maximumSize;
+    private final int windowSize;
+    private final int protectedSize;
+    private final LinkedHashMap<String, BitSet> window = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, BitSet> probation = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, BitSet> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+    private final FrequencySketch sketch;
+    private long evictionCount = 0;
+
+    /**
+     * @param maximumSize maximum number of cached fingerprints
+     */
+    public TinyLFUFingerprintCache(int maximumSize) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("Cache size must be positive: " + maximumSize);
+        }
+        this.maximumSize = maximumSize;
+        this.windowSize = Math.max(1, maximumSize / 100);
+        this.protectedSize = (int) (0.8 * (maximumSize - windowSize));
+        this.sketch = new FrequencySketch(maximumSize);
+    }
+
+    @Override
+    public synchronized BitSet get(String key) {
+        sketch.increment(key);
+        BitSet fp = window.get(key);
+        if (fp != null) {
+            return fp;
+        }
+        fp = protectedSegment.get(key);
+        if (fp != null) {
+            return fp;
+        }
+        fp = probation.remove(key);
+        if (fp != null) {
+            protectedSegment.put(key, fp);
+            if (protectedSegment.size() > protectedSize) {
+                Map.Entry<String, BitSet> demoted = removeEldest(protectedSegment);
+                probation.put(demoted.getKey(), demoted.getValue());
+            }
+        }
+        return fp;
+    }
+
+    @Override
+    public synchronized void put(String key, BitSet fingerprint) {
+        if (window.containsKey(key)) {
+            window.put(key, fingerprint);
+            return;
+        }
+        if (protectedSegment.containsKey(key)) {
+            protectedSegment.put(key, fingerprint);
+            return;
+        }
+        if (probation.containsKey(key)) {
+            probation.put(key, fingerprint);
+            return;
+        }
+        window.put(key, fingerprint);
+        if (window.size() > windowSize) {
+            Map.Entry<String, BitSet> candidate = removeEldest(window);
+            admit(candidate.getKey(), candidate.getValue());
+        }
+    }
+
+    private void admit(String key, BitSet fingerprint) {
+        int mainSize = maximumSize - windowSize;
+        if (probation.size() + protectedSegment.size() < mainSize) {
+            probation.put(key, fingerprint);
+            return;
+        }
+        evictionCount++;
+        if (mainSize == 0) {
+            return;
+        }
+        LinkedHashMap<String, BitSet> segment = probation.isEmpty() ? protectedSegment : probation;
+        String victim = segment.keySet().iterator().next();
+        if (sketch.frequency(key) > sketch.frequency(victim)) {
+            segment.remove(victim);
+            probation.put(key, fingerprint);
+        }
+    }
+
+    private static Map.Entry<String, BitSet> removeEldest(LinkedHashMap<String, BitSet> map) {
+        Iterator<Map.Entry<String, BitSet>> it = map.entrySet().iterator();
+        Map.Entry<String, BitSet> eldest = it.next();
+        Map.Entry<String, BitSet> copy = new SimpleImmutableEntry<>(eldest);
+        it.remove();
+        return copy;
+    }
+
+    @Override
+    public synchronized int size() {
+        return window.size() + probation.size() + protectedSegment.size();
+    }
+
+    @Override
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    @Override
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    @Override
+    public synchronized void clear() {
+        window.clear();
+        probation.clear();
+        protectedSegment.clear();
+    }
+}
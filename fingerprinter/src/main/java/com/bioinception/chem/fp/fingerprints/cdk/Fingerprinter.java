@@ -22,10 +22,21 @@
  */
 package com.bioinception.chem.fp.fingerprints.cdk;
 
+import static com.bioinception.chem.fp.fingerprints.cdk.PathEncoder.encodePathLengths;
 import static com.bioinception.chem.fp.fingerprints.cdk.PathEncoder.encodePaths;
 import static com.bioinception.chem.fp.fingerprints.cdk.PathEncoder.getAtomSymbol;
 import static com.bioinception.chem.fp.fingerprints.cdk.PathEncoder.getBondSymbol;
 import static com.bioinception.chem.fp.fingerprints.cdk.PathEncoder.isPseudoAtom;
+import com.bioinception.chem.fp.fingerprints.helper.AdaptiveDepthPolicy;
+import com.bioinception.chem.fp.fingerprints.helper.FingerprintDescriptor;
+import com.bioinception.chem.fp.fingerprints.helper.FingerprintMetrics;
+import com.bioinception.chem.fp.fingerprints.helper.FingerprintStage;
+import com.bioinception.chem.fp.fingerprints.helper.FingerprinterTool;
+import com.bioinception.chem.fp.fingerprints.helper.HashVersion;
+import com.bioinception.chem.fp.fingerprints.helper.PathEncoderOptions;
+import com.bioinception.chem.fp.fingerprints.helper.PerceptionOverlay;
+import com.bioinception.chem.fp.fingerprints.helper.VersionedFingerprint;
+import com.bioinception.chem.fp.fingerprints.interfaces.IMultiDepthFingerprinter;
 import org.openscience.cdk.aromaticity.Aromaticity;
 import org.openscience.cdk.exception.CDKException;
 import org.openscience.cdk.graph.PathTools;
@@ -38,6 +49,7 @@ import org.openscience.cdk.tools.LoggingToolFactory;
 import org.openscience.cdk.tools.manipulator.AtomContainerManipulator;
 
 import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
 import java.util.HashMap;
@@ -45,6 +57,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import org.openscience.cdk.fingerprint.AbstractFingerprinter;
 import org.openscience.cdk.fingerprint.BitSetFingerprint;
 import org.openscience.cdk.fingerprint.IBitFingerprint;
@@ -100,7 +113,7 @@ import org.openscience.cdk.fingerprint.IFingerprinter;
  * @cdk.module standard
  * @cdk.githash
  */
-public class Fingerprinter extends AbstractFingerprinter implements IFingerprinter {
+public class Fingerprinter extends AbstractFingerprinter implements IFingerprinter, IMultiDepthFingerprinter {
 
     /**
      * Throw an exception if too many paths (per atom) are generated.
@@ -121,6 +134,11 @@ public class Fingerprinter extends AbstractFingerprinter implements IFingerprint
     private int pathLimit = DEFAULT_PATH_LIMIT;
 
     private boolean hashPseudoAtoms = false;
+    private HashVersion hashVersion = HashVersion.LEGACY;
+    private boolean symmetryPruning = false;
+    private int parallelThreshold = Integer.MAX_VALUE;
+    private PathEncoderOptions pathOptions = null;
+    private AdaptiveDepthPolicy depthPolicy = null;
 
     static int debugCounter = 0;
 
@@ -152,13 +170,49 @@ public class Fingerprinter extends AbstractFingerprinter implements IFingerprint
 
     }
 
+    /**
+     * The hash version is added only above {@link HashVersion#LEGACY}, the
+     * version description of legacy prints is the one they were stored with.
+     */
     @Override
     protected List<Map.Entry<String, String>> getParameters() {
-        return Arrays.<Map.Entry<String, String>>asList(
+        List<Map.Entry<String, String>> parameters = new ArrayList<>(Arrays.<Map.Entry<String, String>>asList(
                 new SimpleImmutableEntry<>("searchDepth", Integer.toString(searchDepth)),
                 new SimpleImmutableEntry<>("pathLimit", Integer.toString(pathLimit)),
                 new SimpleImmutableEntry<>("hashPseudoAtoms", Boolean.toString(hashPseudoAtoms))
-        );
+        ));
+        if (hashVersion != HashVersion.LEGACY) {
+            parameters.add(new SimpleImmutableEntry<>("hashVersion", Integer.toString(hashVersion.getVersion())));
+        }
+        return parameters;
+    }
+
+    /**
+     * The path limit is left out, it does not change the bits.
+     *
+     * @return the descriptor of the fingerprints
+     */
+    public FingerprintDescriptor getDescriptor() {
+        Map<String, String> flags = new TreeMap<>();
+        flags.put("hashPseudoAtoms", Boolean.toString(hashPseudoAtoms));
+        if (depthPolicy != null) {
+            flags.put("depthPolicy", depthPolicy.toString());
+        }
+        return new FingerprintDescriptor(getClass().getSimpleName(), size, searchDepth, hashVersion, flags);
+    }
+
+    /**
+     * Generates a fingerprint together with the descriptor of this
+     * fingerprinter and the search depth the molecule was walked with.
+     *
+     * @param container The AtomContainer for which a Fingerprint is generated
+     * @return the fingerprint and its descriptor
+     * @throws CDKException
+     */
+    public VersionedFingerprint getVersionedFingerprint(IAtomContainer container) throws CDKException {
+        FingerprintDescriptor descriptor = getDescriptor();
+        int depth = getEffectiveDepth(container);
+        return new VersionedFingerprint(getBitFingerprint(container, depth).asBitSet(), descriptor, depth);
     }
 
     /**
@@ -172,19 +226,86 @@ public class Fingerprinter extends AbstractFingerprinter implements IFingerprint
      * @return A {@link BitSet} representing the fingerprint
      */
     public IBitFingerprint getBitFingerprint(IAtomContainer container, AllRingsFinder ringFinder) throws CDKException {
-        logger.debug("Entering Fingerprinter");
-        logger.debug("Starting Aromaticity Detection");
-        long before = System.currentTimeMillis();
-        if (!hasPseudoAtom(container.atoms())) {
+        return getBitFingerprint(container, getEffectiveDepth(container));
+    }
+
+    private IBitFingerprint getBitFingerprint(IAtomContainer container, int depth) throws CDKException {
+        PerceptionOverlay overlay = perceive(container);
+        BitSet bitSet = new BitSet(size);
+        encodePaths(container, depth, bitSet, size, getPathOptions(), overlay);
+        FingerprintMetrics.recordBits(bitSet);
+        return new BitSetFingerprint(bitSet);
+    }
+
+    /**
+     * Generates the fingerprints of several search depths from one traversal
+     * of the paths of the deepest search. The search depth of this
+     * fingerprinter is ignored, the path limit and the depth policy apply to
+     * the deepest search. A capped molecule has no fingerprints of the
+     * depths beyond the capped depth.
+     *
+     * @param container The AtomContainer for which the Fingerprints are
+     * generated
+     * @param depths search depths (number of bonds)
+     * @return the fingerprints keyed by the depth they were walked with,
+     * depths beyond the depth capped by the policy are keyed by the capped
+     * depth
+     * @throws CDKException if there is a timeout in ring or aromaticity
+     * perception, or too many paths
+     */
+    @Override
+    public Map<Integer, IBitFingerprint> getBitFingerprints(IAtomContainer container, int... depths) throws CDKException {
+        int[] sorted = FingerprinterTool.sortedDepths(depths);
+        int deepest = sorted[sorted.length - 1];
+        if (depthPolicy != null) {
+            deepest = depthPolicy.depth(container, deepest);
+            sorted = FingerprinterTool.cappedDepths(sorted, deepest);
+        }
+        PerceptionOverlay overlay = perceive(container);
+        int[] lengths = encodePathLengths(container, deepest, size, getPathOptions(), overlay);
+        long start = FingerprintMetrics.start();
+        Map<Integer, IBitFingerprint> fingerprints = new TreeMap<>();
+        for (int depth : sorted) {
+            BitSet bitSet = new BitSet(size);
+            for (int i = 0; i < lengths.length; i++) {
+                if (lengths[i] <= depth + 1) {
+                    bitSet.set(i);
+                }
+            }
+            FingerprintMetrics.recordBits(bitSet);
+            fingerprints.put(depth, new BitSetFingerprint(bitSet));
+        }
+        FingerprintMetrics.stop(FingerprintStage.BIT_SETTING, start);
+        return fingerprints;
+    }
+
+    /**
+     * Perceives the atom types and aromaticity of the molecule, in place
+     * before {@link HashVersion#PERCEPTION_OVERLAY}.
+     *
+     * @return the perception overlay, null if the molecule was perceived in
+     * place
+     */
+    private PerceptionOverlay perceive(IAtomContainer container) throws CDKException {
+        boolean debug = logger.isDebugEnabled();
+        if (debug) {
+            logger.debug("Entering Fingerprinter");
+            logger.debug("Starting Aromaticity Detection");
+        }
+        long before = debug ? System.nanoTime() : FingerprintMetrics.start();
+        PerceptionOverlay overlay = null;
+        if (hashVersion.atLeast(HashVersion.PERCEPTION_OVERLAY)) {
+            overlay = PerceptionOverlay.perceive(container);
+        } else if (!hasPseudoAtom(container.atoms())) {
             AtomContainerManipulator.percieveAtomTypesAndConfigureAtoms(container);
             Aromaticity.cdkLegacy().apply(container);
         }
-        long after = System.currentTimeMillis();
-        logger.debug("time for aromaticity calculation: " + (after - before) + " milliseconds");
-        logger.debug("Finished Aromaticity Detection");
-        BitSet bitSet = new BitSet(size);
-        encodePaths(container, searchDepth, bitSet, size, pathLimit, hashPseudoAtoms);
-        return new BitSetFingerprint(bitSet);
+        FingerprintMetrics.stop(FingerprintStage.PERCEPTION, before);
+        if (debug) {
+            logger.debug("time for aromaticity calculation: " + (System.nanoTime() - before) / 1000000 + " milliseconds");
+            logger.debug("Finished Aromaticity Detection");
+        }
+        return overlay;
     }
 
     /**
@@ -199,6 +320,17 @@ public class Fingerprinter extends AbstractFingerprinter implements IFingerprint
         return getBitFingerprint(container, null);
     }
 
+    /**
+     * @return the path encoder settings of the current configuration, built
+     * once and rebuilt after a setter changed them
+     */
+    private PathEncoderOptions getPathOptions() {
+        if (pathOptions == null) {
+            pathOptions = new PathEncoderOptions(pathLimit, hashPseudoAtoms, hashVersion, symmetryPruning, parallelThreshold);
+        }
+        return pathOptions;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -209,16 +341,107 @@ public class Fingerprinter extends AbstractFingerprinter implements IFingerprint
 
     public void setPathLimit(int limit) {
         this.pathLimit = limit;
+        this.pathOptions = null;
     }
 
     public void setHashPseudoAtoms(boolean value) {
         this.hashPseudoAtoms = value;
+        this.pathOptions = null;
     }
 
     public int getSearchDepth() {
         return searchDepth;
     }
 
+    /**
+     * @return the version of the path hashing
+     */
+    public HashVersion getHashVersion() {
+        return hashVersion;
+    }
+
+    /**
+     * Selects the version of the path hashing, fingerprints generated with
+     * different versions are not comparable.
+     *
+     * @param hashVersion the version of the path hashing
+     */
+    public void setHashVersion(HashVersion hashVersion) {
+        this.hashVersion = hashVersion;
+        this.pathOptions = null;
+    }
+
+    /**
+     * @return minimum number of atoms of a molecule whose paths are
+     * enumerated in parallel
+     */
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    /**
+     * Molecules with at least this many atoms have their start atoms split
+     * into ForkJoin subtasks. The bits are the same. Off by default
+     * ({@link Integer#MAX_VALUE}), a few hundred atoms is a sensible value
+     * for peptides and glycans.
+     *
+     * @param parallelThreshold minimum number of atoms of a parallel
+     * enumeration
+     */
+    public void setParallelThreshold(int parallelThreshold) {
+        this.parallelThreshold = parallelThreshold;
+        this.pathOptions = null;
+    }
+
+    /**
+     * @return the policy capping the search depth of large molecules, null
+     * if the search depth is fixed
+     */
+    public AdaptiveDepthPolicy getDepthPolicy() {
+        return depthPolicy;
+    }
+
+    /**
+     * Caps the search depth of molecules whose estimated number of paths
+     * exceeds the budget of the policy. Off (null) by default. The capped
+     * depth is recorded in {@link #getVersionedFingerprint}.
+     * Substructure screens with full fingerprints lose hits under a policy,
+     * see {@link AdaptiveDepthPolicy}.
+     *
+     * @param depthPolicy the policy, null for a fixed search depth
+     */
+    public void setDepthPolicy(AdaptiveDepthPolicy depthPolicy) {
+        this.depthPolicy = depthPolicy;
+    }
+
+    /**
+     * @param container the molecule
+     * @return the search depth the molecule is walked with
+     */
+    public int getEffectiveDepth(IAtomContainer container) {
+        return depthPolicy == null ? searchDepth : depthPolicy.depth(container, searchDepth);
+    }
+
+    /**
+     * @return true if the paths are enumerated from one atom per symmetry
+     * class
+     */
+    public boolean isSymmetryPruning() {
+        return symmetryPruning;
+    }
+
+    /**
+     * Enumerates the paths from one atom per symmetry class and emits every
+     * path from one end only. The bits are the same, symmetric molecules are
+     * encoded faster at the cost of a symmetry perception per molecule.
+     *
+     * @param symmetryPruning true to skip equivalent start atoms
+     */
+    public void setSymmetryPruning(boolean symmetryPruning) {
+        this.symmetryPruning = symmetryPruning;
+        this.pathOptions = null;
+    }
+
     @Override
     public int getSize() {
         return size;
@@ -26,8 +26,19 @@
  */
 package com.bioinception.chem.fp.fingerprints.cdk;
 
+import com.bioinception.chem.fp.fingerprints.helper.CodedPathEncoder;
+import com.bioinception.chem.fp.fingerprints.helper.FingerprintMetrics;
+import com.bioinception.chem.fp.fingerprints.helper.FingerprintStage;
+import com.bioinception.chem.fp.fingerprints.helper.HashVersion;
+import com.bioinception.chem.fp.fingerprints.helper.PathCodes;
+import com.bioinception.chem.fp.fingerprints.helper.PathEncoderOptions;
+import com.bioinception.chem.fp.fingerprints.helper.PathSymmetry;
+import com.bioinception.chem.fp.fingerprints.helper.PerceptionOverlay;
+import com.bioinception.chem.fp.fingerprints.helper.StartAtomTask;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.List;
+import java.util.function.LongConsumer;
 import org.openscience.cdk.exception.CDKException;
 import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
@@ -39,14 +50,143 @@ import org.openscience.cdk.interfaces.IBond;
  */
 public class PathEncoder {
 
-    static void encodePaths(IAtomContainer mol, int depth, BitSet fp, int size, int pathLimit, boolean hashPseudoAtoms) throws CDKException {
-        State state = new State(mol, fp, size, depth + 1);
-        for (IAtom atom : mol.atoms()) {
+    /**
+     * Times the walk as {@link FingerprintStage#PATH_WALKING} and the mapping
+     * of the coded hashes to bits as {@link FingerprintStage#BIT_SETTING}. The
+     * subtasks of a parallel encoding set their bits as they go, the encoding
+     * is timed as a whole as walking.
+     *
+     * @param options the settings of the fingerprinter
+     * @param overlay perception of the molecule, null to read the bonds. The
+     * overlay codes the bonds of the coded paths, the legacy string paths
+     * always read the bonds.
+     */
+    static void encodePaths(IAtomContainer mol, int depth, BitSet fp, int size, PathEncoderOptions options, PerceptionOverlay overlay) throws CDKException {
+        long start = FingerprintMetrics.start();
+        PathCodes codes = options.needsPathCodes() ? PathCodes.of(mol, overlay) : null;
+        int[] classes = options.isSymmetryPruning() ? PathSymmetry.classes(mol, codes) : null;
+        int n = mol.getAtomCount();
+        if (n < options.getParallelThreshold()) {
+            FingerprintMetrics.recordPaths(encodePaths(mol, codes, classes, 0, n, depth, fp, null, size, options, start));
+            return;
+        }
+        Encoded<BitSet> encoded = StartAtomTask.invoke(n, (from, to) -> {
+            BitSet local = new BitSet(size);
+            return new Encoded<>(local, encodePaths(mol, codes, classes, from, to, depth, local, null, size, options, FingerprintMetrics.NOT_STARTED));
+        }, (a, b) -> {
+            a.encoding.or(b.encoding);
+            return a.add(b);
+        });
+        fp.or(encoded.encoding);
+        FingerprintMetrics.stop(FingerprintStage.PATH_WALKING, start);
+        FingerprintMetrics.recordPaths(encoded.paths);
+    }
+
+    /**
+     * Encodes the paths up to the given depth in one traversal and records
+     * for every bit the number of atoms of the shortest path mapped to it.
+     * The fingerprint of a depth d &lt;= depth has the bits with a path
+     * length of at most d + 1 and equals the fingerprint encoded at depth d.
+     * Timed as {@link #encodePaths(IAtomContainer, int, BitSet, int, PathEncoderOptions, PerceptionOverlay)}.
+     *
+     * @return the shortest path length of every bit, Integer.MAX_VALUE if the
+     * bit is not set
+     */
+    static int[] encodePathLengths(IAtomContainer mol, int depth, int size, PathEncoderOptions options, PerceptionOverlay overlay) throws CDKException {
+        long start = FingerprintMetrics.start();
+        PathCodes codes = options.needsPathCodes() ? PathCodes.of(mol, overlay) : null;
+        int[] classes = options.isSymmetryPruning() ? PathSymmetry.classes(mol, codes) : null;
+        int n = mol.getAtomCount();
+        if (n < options.getParallelThreshold()) {
+            int[] lengths = newPathLengths(size);
+            FingerprintMetrics.recordPaths(encodePaths(mol, codes, classes, 0, n, depth, null, lengths, size, options, start));
+            return lengths;
+        }
+        Encoded<int[]> encoded = StartAtomTask.invoke(n, (from, to) -> {
+            int[] local = newPathLengths(size);
+            return new Encoded<>(local, encodePaths(mol, codes, classes, from, to, depth, null, local, size, options, FingerprintMetrics.NOT_STARTED));
+        }, (a, b) -> {
+            for (int i = 0; i < a.encoding.length; i++) {
+                a.encoding[i] = Math.min(a.encoding[i], b.encoding[i]);
+            }
+            return a.add(b);
+        });
+        FingerprintMetrics.stop(FingerprintStage.PATH_WALKING, start);
+        FingerprintMetrics.recordPaths(encoded.paths);
+        return encoded.encoding;
+    }
+
+    private static int[] newPathLengths(int size) {
+        int[] lengths = new int[size];
+        Arrays.fill(lengths, Integer.MAX_VALUE);
+        return lengths;
+    }
+
+    /**
+     * The encoding of a range of start atoms and the number of paths walked
+     * for it, merged by the reduce of the {@link StartAtomTask}.
+     */
+    private static final class Encoded<T> {
+
+        private final T encoding;
+        private long paths;
+
+        Encoded(T encoding, long paths) {
+            this.encoding = encoding;
+            this.paths = paths;
+        }
+
+        Encoded<T> add(Encoded<T> other) {
+            paths += other.paths;
+            return this;
+        }
+    }
+
+    /**
+     * Encodes the paths starting at the atoms [from, to) with a State of its
+     * own, into fp or into the path lengths of the bits.
+     *
+     * @param start the start of the walk from {@link FingerprintMetrics#start()},
+     * {@link FingerprintMetrics#NOT_STARTED} to leave the stages untimed
+     * @return the number of paths walked
+     */
+    private static long encodePaths(IAtomContainer mol, PathCodes codes, int[] classes, int from, int to, int depth, BitSet fp, int[] pathLengths, int size, PathEncoderOptions options, long start) throws CDKException {
+        int pathLimit = options.getPathLimit();
+        boolean hashPseudoAtoms = options.isHashPseudoAtoms();
+        if (options.getHashVersion().atLeast(HashVersion.PATH_CODES)) {
+            boolean fastMapping = options.getHashVersion().atLeast(HashVersion.FAST_MAPPING);
+            State state = new State(mol, fp, pathLengths, size, depth + 1, fastMapping);
+            LongConsumer[] sinks = new LongConsumer[depth + 1];
+            for (int i = 0; i < sinks.length; i++) {
+                final int length = i + 1;
+                sinks[i] = hash -> state.addHash(hash, length);
+            }
+            CodedPathEncoder.encodePaths(codes, 1, depth + 1, pathLimit, hashPseudoAtoms, classes, from, to, sinks);
+            FingerprintMetrics.stop(FingerprintStage.PATH_WALKING, start);
+            if (fastMapping) {
+                start = start == FingerprintMetrics.NOT_STARTED ? start : FingerprintMetrics.start();
+                state.setBits();
+                FingerprintMetrics.stop(FingerprintStage.BIT_SETTING, start);
+            }
+            return state.getNumPaths();
+        }
+        long paths = 0;
+        State state = new State(mol, fp, pathLengths, size, depth + 1, false);
+        state.setClasses(classes);
+        boolean[] starts = classes != null ? PathSymmetry.representatives(classes) : null;
+        for (int i = from; i < to; i++) {
+            if (starts != null && !starts[i]) {
+                continue;
+            }
+            IAtom atom = mol.getAtom(i);
             state.setNumPaths(0);
             state.visit(atom);
             traversePaths(state, atom, null, pathLimit, hashPseudoAtoms);
             state.unvisit(atom);
+            paths += state.getNumPaths();
         }
+        FingerprintMetrics.stop(FingerprintStage.PATH_WALKING, start);
+        return paths;
     }
 
     /**
@@ -59,11 +199,50 @@ public class PathEncoder {
      * @throws CDKException
      */
     static void traversePaths(State state, IAtom beg, IBond prev, int pathLimit, boolean hashPseudoAtoms) throws CDKException {
+        traversePaths(state, beg, prev, 0, 0, 1, pathLimit, hashPseudoAtoms);
+    }
+
+    /**
+     * Each frame extends the forward and reverse hashes of its parent path,
+     * giving the same values as {@link #hashPath(List, List)} and
+     * {@link #hashRevPath(List, List)} in constant time. The hash of a
+     * sequence of symbols followed by the parent path is the hash of the
+     * symbols times 31 to the number of characters of the parent path
+     * (pow) plus the hash of the parent path.
+     *
+     * Choosing the direction is not constant time: when the two hashes
+     * differ the path is compared with its reverse by
+     * {@link #compare(List, List)}, walking inwards from both ends in
+     * O(depth). Every new atom pairs up the ends differently, so no part of
+     * the comparison of the parent path can be kept. When the hashes are
+     * equal either direction gives the same value and the comparison is
+     * skipped.
+     */
+    private static void traversePaths(State state, IAtom beg, IBond prev, int fwd, int rev, int pow,
+            int pathLimit, boolean hashPseudoAtoms) throws CDKException {
         if (!hashPseudoAtoms && isPseudoAtom(beg)) {
             return;
         }
         state.push(beg, prev);
-        state.addHash(encodeUniquePath(state.getAtomPath(), state.getBondPath(), state.buffer));
+        final String atomSymbol = getAtomSymbol(beg);
+        if (prev == null) {
+            fwd = appendHash(0, atomSymbol);
+            rev = fwd;
+            pow = power(atomSymbol.length());
+            state.addHash(atomSymbol.hashCode());
+        } else {
+            final String bondSymbol = getBondSymbol(prev);
+            fwd = appendHash(appendHash(fwd, bondSymbol), atomSymbol);
+            rev = appendHash(appendHash(0, atomSymbol), bondSymbol) * pow + rev;
+            pow *= power(atomSymbol.length() + bondSymbol.length());
+            if (!state.isEmitted(beg)) {
+                state.skipPath();
+            } else if (fwd == rev || compare(state.getAtomPath(), state.getBondPath()) >= 0) {
+                state.addHash(fwd);
+            } else {
+                state.addHash(rev);
+            }
+        }
         if (state.getNumPaths() > pathLimit) {
             throw new CDKException("Too many paths! Structure is likely a cage, reduce path length or increase path limit");
         }
@@ -74,7 +253,7 @@ public class PathEncoder {
                 }
                 final IAtom nbr = bond.getOther(beg);
                 if (state.visit(nbr)) {
-                    traversePaths(state, nbr, bond, pathLimit, hashPseudoAtoms);
+                    traversePaths(state, nbr, bond, fwd, rev, pow, pathLimit, hashPseudoAtoms);
                     state.unvisit(nbr); // traverse all paths
                 }
             }
@@ -82,6 +261,18 @@ public class PathEncoder {
         state.pop();
     }
 
+    /**
+     * @param n exponent
+     * @return 31 to the power n, modulo 2<sup>32</sup>
+     */
+    private static int power(int n) {
+        int pow = 1;
+        for (int i = 0; i < n; i++) {
+            pow *= 31;
+        }
+        return pow;
+    }
+
     /**
      *
      * @param apath
@@ -127,6 +318,11 @@ public class PathEncoder {
         return hash;
     }
 
+    /**
+     * XXX: only the first character of the string is hashed, "Cl" and "Ca"
+     * give the same hash. Kept for backwards compatibility, see
+     * {@link HashVersion#PATH_CODES}.
+     */
     static int appendHash(int hash, String str) {
         int len = str.length();
         for (int i = 0; i < len; i++) {
@@ -26,7 +26,9 @@
  */
 package com.bioinception.chem.fp.fingerprints.cdk;
 
+import com.bioinception.chem.fp.fingerprints.helper.FastHash;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.HashSet;
 import java.util.IdentityHashMap;
@@ -80,8 +82,12 @@ class State {
     }
 
     private int numPaths = 0;
-    private final Random rand = new Random();
+    private final Random rand;
+    private final boolean fastMapping;
+    private long[] hashes;
+    private int hashCount = 0;
     private final BitSet fp;
+    private final int[] pathLengths;
     private final IAtomContainer mol;
     private final Set<IAtom> visited = new HashSet<>();
     private final List<IAtom> apath = new ArrayList<>();
@@ -89,13 +95,66 @@ class State {
     private final int maxDepth;
     private final int fpsize;
     private final Map<IAtom, List<IBond>> cache = new IdentityHashMap<>();
+    private Map<IAtom, Integer> classes;
     public StringBuilder buffer = new StringBuilder();
 
     public State(IAtomContainer mol, BitSet fp, int fpsize, int maxDepth) {
+        this(mol, fp, fpsize, maxDepth, false);
+    }
+
+    /**
+     * @param fastMapping buffer the path hashes and map them to bits with
+     * {@link FastHash#reduce(long, int)} in {@link #setBits()}
+     */
+    public State(IAtomContainer mol, BitSet fp, int fpsize, int maxDepth, boolean fastMapping) {
+        this(mol, fp, null, fpsize, maxDepth, fastMapping);
+    }
+
+    /**
+     * @param pathLengths if not null the bits are not set in fp, instead every
+     * bit records the number of atoms of the shortest path mapped to it
+     */
+    public State(IAtomContainer mol, BitSet fp, int[] pathLengths, int fpsize, int maxDepth, boolean fastMapping) {
         this.mol = mol;
         this.fp = fp;
+        this.pathLengths = pathLengths;
         this.fpsize = fpsize;
         this.maxDepth = maxDepth;
+        this.fastMapping = fastMapping;
+        this.rand = fastMapping ? null : new Random();
+        this.hashes = fastMapping ? new long[64] : null;
+    }
+
+    /**
+     * @param classes symmetry classes of the atoms, in the atom order of the
+     * molecule, or null to emit every path
+     */
+    void setClasses(int[] classes) {
+        if (classes == null) {
+            this.classes = null;
+            return;
+        }
+        this.classes = new IdentityHashMap<>(2 * classes.length);
+        int i = 0;
+        for (IAtom atom : mol.atoms()) {
+            this.classes.put(atom, classes[i++]);
+        }
+    }
+
+    /**
+     * @param end last atom of the current path
+     * @return true if the path is emitted from its first atom, its class is
+     * not higher than that of the last atom
+     */
+    boolean isEmitted(IAtom end) {
+        return classes == null || classes.get(apath.get(0)) <= classes.get(end);
+    }
+
+    /**
+     * Counts a path that is not emitted towards the path limit.
+     */
+    void skipPath() {
+        numPaths++;
     }
 
     List<IBond> getBonds(IAtom atom) {
@@ -136,6 +195,60 @@ class State {
         rand.setSeed(x);
         // XXX: fp.set(x % size); would work just as well but would encode a
         //      different bit
+        int bit = rand.nextInt(fpsize);
+        if (pathLengths != null) {
+            setPathLength(bit, apath.size());
+        } else {
+            fp.set(bit);
+        }
+    }
+
+    /**
+     * @param x hash of a path
+     * @param length number of atoms of the path
+     */
+    void addHash(long x, int length) {
+        if (pathLengths == null) {
+            addHash(x);
+            return;
+        }
+        setNumPaths(getNumPaths() + 1);
+        int bit;
+        if (fastMapping) {
+            bit = FastHash.reduce(x, fpsize);
+        } else {
+            rand.setSeed(x);
+            bit = rand.nextInt(fpsize);
+        }
+        setPathLength(bit, length);
+    }
+
+    private void setPathLength(int bit, int length) {
+        if (length < pathLengths[bit]) {
+            pathLengths[bit] = length;
+        }
+    }
+
+    void addHash(long x) {
+        setNumPaths(getNumPaths() + 1);
+        if (fastMapping) {
+            if (hashCount == hashes.length) {
+                hashes = Arrays.copyOf(hashes, 2 * hashCount);
+            }
+            hashes[hashCount++] = x;
+            return;
+        }
+        rand.setSeed(x);
         fp.set(rand.nextInt(fpsize));
     }
+
+    /**
+     * Sets the bits of the buffered path hashes in one pass.
+     */
+    void setBits() {
+        for (int i = 0; i < hashCount; i++) {
+            fp.set(FastHash.reduce(hashes[i], fpsize));
+        }
+        hashCount = 0;
+    }
 }
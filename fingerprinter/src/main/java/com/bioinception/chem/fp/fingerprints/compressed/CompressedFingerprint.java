@@ -0,0 +1,238 @@
+/*
+ * Copyright (C) 2003-2021 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package com.bioinception.chem.fp.fingerprints.compressed;
+
+import com.bioinception.chem.fp.fingerprints.similarity.FingerprintBlock;
+import com.bioinception.chem.fp.fingerprints.similarity.SimilarityKernels;
+import com.bioinception.chem.fp.fingerprints.similarity.SimilarityMeasure;
+import java.io.ByteArrayOutputStream;
+import java.util.BitSet;
+
+/**
+ * Immutable fingerprint of a fixed size, held either dense (packed 64-bit
+ * words) or sparse (sorted bit positions), whichever is smaller for its
+ * cardinality. A hashed print of a small molecule sets well under 64 of 1024
+ * bits and is held sparse.
+ *
+ * The similarity and subset kernels work on both forms without decompressing.
+ * {@link #toBytes()} is the archive form: the packed words of a dense print,
+ * or the Elias-Fano code of the positions of a sparse print (about
+ * {@code 2 + log2(size / cardinality)} bits per set bit).
+ *
+ * <pre>
+ * CompressedFingerprint fp = CompressedFingerprint.of(bitSet, 1024);
+ * byte[] archived = fp.toBytes();
+ * double score = CompressedFingerprint.score(SimilarityMeasure.TANIMOTO, query, CompressedFingerprint.fromBytes(archived));
+ * </pre>
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public abstract class CompressedFingerprint {
+
+    static final byte DENSE = 0;
+    static final byte SPARSE = 1;
+
+    /**
+     * Largest size held sparse, positions are stored as chars. Larger
+     * fingerprints are also archived dense, so that reading an archive never
+     * allocates more than its bytes imply.
+     */
+    static final int MAX_SPARSE_SIZE = 1 << 16;
+
+    final int size;
+
+    CompressedFingerprint(int size) {
+        this.size = size;
+    }
+
+    /**
+     * Compresses a fingerprint, sparse if two bytes per set bit take less
+     * space than the packed words.
+     *
+     * @param fingerprint the fingerprint
+     * @param size number of bits of the fingerprint
+     * @return the compressed fingerprint
+     * @throws IllegalArgumentException if a bit beyond size is set
+     */
+    public static CompressedFingerprint of(BitSet fingerprint, int size) {
+        long[] words = FingerprintBlock.pack(fingerprint, size);
+        int cardinality = SimilarityKernels.cardinality(words, 0, words.length);
+        if (isSparse(cardinality, size)) {
+            char[] positions = new char[cardinality];
+            int n = 0;
+            for (int bit = fingerprint.nextSetBit(0); bit >= 0; bit = fingerprint.nextSetBit(bit + 1)) {
+                positions[n++] = (char) bit;
+            }
+            return new SparseFingerprint(size, positions);
+        }
+        return new DenseFingerprint(size, words, cardinality);
+    }
+
+    static boolean isSparse(int cardinality, int size) {
+        return size <= MAX_SPARSE_SIZE && 2L * cardinality < 8L * FingerprintBlock.wordCount(size);
+    }
+
+    /**
+     * Reads a fingerprint written by {@link #toBytes()}.
+     *
+     * @param bytes the archived fingerprint
+     * @return the fingerprint, dense or sparse by its cardinality
+     * @throws IllegalArgumentException if the bytes are not a fingerprint
+     */
+    public static CompressedFingerprint fromBytes(byte[] bytes) {
+        if (bytes.length == 0) {
+            throw new IllegalArgumentException("Empty fingerprint");
+        }
+        int[] pos = {1};
+        int size = VarInt.read(bytes, pos);
+        if (size < 1) {
+            throw new IllegalArgumentException("Fingerprint size must be positive: " + size);
+        }
+        if (bytes[0] == SPARSE && size > MAX_SPARSE_SIZE) {
+            throw new IllegalArgumentException("Sparse fingerprint of size " + size
+                    + " above " + MAX_SPARSE_SIZE);
+        }
+        BitSet fingerprint;
+        switch (bytes[0]) {
+            case DENSE:
+                fingerprint = DenseFingerprint.readWords(bytes, pos[0], size);
+                break;
+            case SPARSE:
+                fingerprint = EliasFano.decode(bytes, pos[0], size);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown fingerprint encoding: " + bytes[0]);
+        }
+        return of(fingerprint, size);
+    }
+
+    /**
+     * @return number of bits of the fingerprint
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return true if held as sorted positions
+     */
+    public abstract boolean isSparse();
+
+    /**
+     * @return number of bits set
+     */
+    public abstract int getCardinality();
+
+    /**
+     * @param bit a bit of the fingerprint
+     * @return true if the bit is set
+     * @throws IndexOutOfBoundsException if the bit is outside the fingerprint
+     */
+    public abstract boolean get(int bit);
+
+    void checkBit(int bit) {
+        if (bit < 0 || bit >= size) {
+            throw new IndexOutOfBoundsException("Bit " + bit + " of a fingerprint of size " + size);
+        }
+    }
+
+    /**
+     * @return the fingerprint as a new BitSet
+     */
+    public abstract BitSet asBitSet();
+
+    /**
+     * Encodes the fingerprint in the smaller of the dense and the Elias-Fano
+     * form.
+     *
+     * @return the archived fingerprint
+     */
+    public byte[] toBytes() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int cardinality = getCardinality();
+        boolean sparse = size <= MAX_SPARSE_SIZE
+                && EliasFano.byteCount(cardinality, size) < 8 * FingerprintBlock.wordCount(size);
+        out.write(sparse ? SPARSE : DENSE);
+        VarInt.write(out, size);
+        if (sparse) {
+            EliasFano.encode(out, positions(), size);
+        } else {
+            DenseFingerprint.writeWords(out, words());
+        }
+        return out.toByteArray();
+    }
+
+    abstract int[] positions();
+
+    abstract long[] words();
+
+    /**
+     * @param a a fingerprint
+     * @param b a fingerprint of the same size
+     * @return number of bits set in both
+     */
+    public static int andCardinality(CompressedFingerprint a, CompressedFingerprint b) {
+        checkSize(a, b);
+        if (a.isSparse()) {
+            return ((SparseFingerprint) a).andCardinality(b);
+        }
+        if (b.isSparse()) {
+            return ((SparseFingerprint) b).andCardinality(a);
+        }
+        return ((DenseFingerprint) a).andCardinality((DenseFingerprint) b);
+    }
+
+    /**
+     * @param target a fingerprint
+     * @param query a fingerprint of the same size
+     * @return true if every bit of the query is set in the target
+     */
+    public static boolean contains(CompressedFingerprint target, CompressedFingerprint query) {
+        checkSize(target, query);
+        if (query.getCardinality() > target.getCardinality()) {
+            return false;
+        }
+        if (query.isSparse()) {
+            return ((SparseFingerprint) query).isContainedIn(target);
+        }
+        if (target.isSparse()) {
+            // a dense query fits in a sparse target only if it is as sparse
+            return ((SparseFingerprint) target).containsAll(query.positions());
+        }
+        long[] t = target.words();
+        long[] q = query.words();
+        return SimilarityKernels.contains(t, 0, q, 0, q.length);
+    }
+
+    /**
+     * @param measure the similarity measure
+     * @param query a fingerprint
+     * @param target a fingerprint of the same size
+     * @return the similarity
+     */
+    public static double score(SimilarityMeasure measure, CompressedFingerprint query, CompressedFingerprint target) {
+        return measure.score(query.getCardinality(), target.getCardinality(), andCardinality(query, target));
+    }
+
+    private static void checkSize(CompressedFingerprint a, CompressedFingerprint b) {
+        if (a.size != b.size) {
+            throw new IllegalArgumentException("Fingerprints of different size: " + a.size + " and " + b.size);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2003-2021 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package com.bioinception.chem.fp.fingerprints.compressed;
+
+import com.bioinception.chem.fp.fingerprints.similarity.SimilarityKernels;
+import java.io.ByteArrayOutputStream;
+import java.util.BitSet;
+
+/**
+ * Packed 64-bit words.
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+final class DenseFingerprint extends CompressedFingerprint {
+
+    private final long[] words;
+    private final int cardinality;
+
+    DenseFingerprint(int size, long[] words, int cardinality) {
+        super(size);
+        this.words = words;
+        this.cardinality = cardinality;
+    }
+
+    @Override
+    public boolean isSparse() {
+        return false;
+    }
+
+    @Override
+    public int getCardinality() {
+        return cardinality;
+    }
+
+    @Override
+    public boolean get(int bit) {
+        checkBit(bit);
+        return (words[bit >>> 6] & (1L << bit)) != 0L;
+    }
+
+    @Override
+    public BitSet asBitSet() {
+        return BitSet.valueOf(words);
+    }
+
+    @Override
+    int[] positions() {
+        int[] positions = new int[cardinality];
+        int n = 0;
+        for (int i = 0; i < words.length; i++) {
+            long word = words[i];
+            while (word != 0L) {
+                positions[n++] = (i << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+            }
+        }
+        return positions;
+    }
+
+    @Override
+    long[] words() {
+        return words;
+    }
+
+    int andCardinality(DenseFingerprint other) {
+        return SimilarityKernels.andCardinality(words, 0, other.words, 0, words.length);
+    }
+
+    static void writeWords(ByteArrayOutputStream out, long[] words) {
+        for (long word : words) {
+            for (int shift = 0; shift < 64; shift += 8) {
+                out.write((int) (word >>> shift));
+            }
+        }
+    }
+
+    static BitSet readWords(byte[] bytes, int offset, int size) {
+        if (bytes.length - offset < 8L * ((size + 63L) >>> 6)) {
+            throw new IllegalArgumentException("Truncated dense fingerprint");
+        }
+        long[] words = new long[(size + 63) >>> 6];
+        for (int i = 0; i < words.length; i++) {
+            long word = 0L;
+            for (int b = 7; b >= 0; b--) {
+                word = (word << 8) | (bytes[offset + 8 * i + b] & 0xFF);
+            }
+            words[i] = word;
+        }
+        return BitSet.valueOf(words);
+    }
+}
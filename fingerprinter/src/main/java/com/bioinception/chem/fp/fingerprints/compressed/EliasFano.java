@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2003-2021 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package com.bioinception.chem.fp.fingerprints.compressed;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+
+/**
+ * Elias-Fano code of the sorted positions of a fingerprint: the low
+ * {@code L = floor(log2(size / n))} bits of every position packed, followed by
+ * the high parts in unary (position {@code i} sets bit
+ * {@code (p >>> L) + i}).
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+final class EliasFano {
+
+    private EliasFano() {
+    }
+
+    static int lowBits(int n, int size) {
+        if (n == 0 || size / n == 0) {
+            return 0;
+        }
+        return 31 - Integer.numberOfLeadingZeros(size / n);
+    }
+
+    private static long bitCount(int n, int size) {
+        int low = lowBits(n, size);
+        return n == 0 ? 0 : (long) n * low + n + (size >>> low) + 1;
+    }
+
+    /**
+     * @param n number of positions
+     * @param size number of bits of the fingerprint
+     * @return bytes written by {@link #encode} for n positions
+     */
+    static long byteCount(int n, int size) {
+        return VarInt.length(n) + (bitCount(n, size) + 7) / 8;
+    }
+
+    static void encode(ByteArrayOutputStream out, int[] positions, int size) {
+        int n = positions.length;
+        VarInt.write(out, n);
+        int low = lowBits(n, size);
+        long lowLength = (long) n * low;
+        BitSet bits = new BitSet();
+        long mask = (1L << low) - 1;
+        for (int i = 0; i < n; i++) {
+            long value = positions[i] & mask;
+            for (int b = 0; b < low; b++) {
+                if ((value & (1L << b)) != 0L) {
+                    bits.set(i * low + b);
+                }
+            }
+            bits.set((int) (lowLength + (positions[i] >>> low) + i));
+        }
+        byte[] packed = bits.toByteArray();
+        int length = (int) ((bitCount(n, size) + 7) / 8);
+        out.write(packed, 0, packed.length);
+        for (int i = packed.length; i < length; i++) {
+            out.write(0);
+        }
+    }
+
+    static BitSet decode(byte[] bytes, int offset, int size) {
+        int[] pos = {offset};
+        int n = VarInt.read(bytes, pos);
+        if (n < 0 || n > size) {
+            throw new IllegalArgumentException("Bad number of positions: " + n);
+        }
+        int low = lowBits(n, size);
+        int length = (int) ((bitCount(n, size) + 7) / 8);
+        if (bytes.length - pos[0] < length) {
+            throw new IllegalArgumentException("Truncated Elias-Fano code");
+        }
+        BitSet bits = BitSet.valueOf(ByteBuffer.wrap(bytes, pos[0], length));
+        BitSet fingerprint = new BitSet(size);
+        int lowLength = n * low;
+        int i = 0;
+        for (int b = bits.nextSetBit(lowLength); b >= 0 && i < n; b = bits.nextSetBit(b + 1), i++) {
+            int high = b - lowLength - i;
+            int value = 0;
+            for (int k = 0; k < low; k++) {
+                if (bits.get(i * low + k)) {
+                    value |= 1 << k;
+                }
+            }
+            int position = (high << low) | value;
+            if (position >= size) {
+                throw new IllegalArgumentException("Position " + position + " beyond size " + size);
+            }
+            fingerprint.set(position);
+        }
+        if (i != n) {
+            throw new IllegalArgumentException("Expected " + n + " positions, found " + i);
+        }
+        return fingerprint;
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2003-2021 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package com.bioinception.chem.fp.fingerprints.compressed;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Sorted bit positions, two bytes each.
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+final class SparseFingerprint extends CompressedFingerprint {
+
+    private final char[] positions;
+
+    SparseFingerprint(int size, char[] positions) {
+        super(size);
+        this.positions = positions;
+    }
+
+    @Override
+    public boolean isSparse() {
+        return true;
+    }
+
+    @Override
+    public int getCardinality() {
+        return positions.length;
+    }
+
+    @Override
+    public boolean get(int bit) {
+        checkBit(bit);
+        return Arrays.binarySearch(positions, (char) bit) >= 0;
+    }
+
+    @Override
+    public BitSet asBitSet() {
+        BitSet bitSet = new BitSet(size);
+        for (char p : positions) {
+            bitSet.set(p);
+        }
+        return bitSet;
+    }
+
+    @Override
+    int[] positions() {
+        int[] copy = new int[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            copy[i] = positions[i];
+        }
+        return copy;
+    }
+
+    @Override
+    long[] words() {
+        long[] words = new long[(size + 63) >>> 6];
+        for (char p : positions) {
+            words[p >>> 6] |= 1L << p;
+        }
+        return words;
+    }
+
+    int andCardinality(CompressedFingerprint other) {
+        if (other.isSparse()) {
+            char[] b = ((SparseFingerprint) other).positions;
+            int common = 0;
+            for (int i = 0, j = 0; i < positions.length && j < b.length;) {
+                if (positions[i] < b[j]) {
+                    i++;
+                } else if (positions[i] > b[j]) {
+                    j++;
+                } else {
+                    common++;
+                    i++;
+                    j++;
+                }
+            }
+            return common;
+        }
+        int common = 0;
+        for (char p : positions) {
+            if (other.get(p)) {
+                common++;
+            }
+        }
+        return common;
+    }
+
+    boolean isContainedIn(CompressedFingerprint target) {
+        if (target.isSparse()) {
+            return andCardinality(target) == positions.length;
+        }
+        for (char p : positions) {
+            if (!target.get(p)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    boolean containsAll(int[] query) {
+        int j = 0;
+        for (int q : query) {
+            while (j < positions.length && positions[j] < q) {
+                j++;
+            }
+            if (j == positions.length || positions[j] != q) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -23,6 +23,10 @@
  */
 package com.bioinception.chem.fp.fingerprints.feature;
 
+import com.bioinception.chem.fp.fingerprints.helper.FingerprintDescriptor;
+import com.bioinception.chem.fp.fingerprints.helper.FingerprintMetrics;
+import com.bioinception.chem.fp.fingerprints.helper.FingerprintStage;
+import com.bioinception.chem.fp.fingerprints.helper.HashVersion;
 import com.bioinception.chem.fp.fingerprints.interfaces.IFingerprinter;
 import java.util.ArrayList;
 import java.util.BitSet;
@@ -50,7 +54,6 @@ import org.openscience.cdk.ringsearch.AllRingsFinder;
 import org.openscience.cdk.ringsearch.SSSRFinder;
 import org.openscience.cdk.similarity.Tanimoto;
 import org.openscience.cdk.smiles.SmilesParser;
-import org.openscience.cdk.tools.manipulator.AtomContainerManipulator;
 import org.openscience.cdk.tools.manipulator.RingSetManipulator;
 import org.openscience.cdk.tools.periodictable.PeriodicTable;
 
@@ -187,61 +190,52 @@ public class FeatureFingerprinter implements IFingerprinter {
             bitSet.set(i, false);
         }
 
-        try {
-            IAtomContainer clonedContainer = container.clone();
-
-            try {
-                AtomContainerManipulator.percieveAtomTypesAndConfigureAtoms(clonedContainer);
-            } catch (CDKException ex) {
-                Logger.getLogger(FeatureGenerator.class.getName()).log(Level.SEVERE, null, ex);
+        /*
+         Store all the atoms
+         */
+        for (IAtom a : container.atoms()) {
+            bitSet.set(toPosition(a.getSymbol().hashCode()));
+        }
+        /*
+         Generate hashing information for atoms using connectivity information
+         etc. and store all the atom invariants. The invariants need no
+         perception, they read the implicit hydrogen counts of the atoms and
+         the input is left untouched
+         */
+        for (int hashCode : FeatureGenerator.getAtomInvariantHashes(container, null)) {
+            if (DEBUG) {
+                System.out.println("invariant " + hashCode);
             }
+            bitSet.set(toPosition(hashCode));
+        }
 
-            /*
-             Generate hashing information for atoms using connectivity information etc.
-             */
-            Map<IAtom, String> atomInvariantsMap = FeatureGenerator.getAtomInvariants(clonedContainer);
-            /*
-            Store all the atoms
-             */
-            atomInvariantsMap.keySet().stream().map(a -> a.getSymbol().hashCode()).map(hashCode -> hashCode >= 0 ? hashCode : ((hashCode & 0x7FFFFFFF) | (1L << 31))).forEachOrdered(b -> {
-                bitSet.set((int) (b % fingerprintSize));
-            });
-            /*
-            Store all the atom invariants
-             */
-            atomInvariantsMap.values().stream().map(invariant -> {
-                int hashCode = invariant.hashCode();
-                if (DEBUG) {
-                    System.out.println("invariant " + invariant);
-                }
-                long b = hashCode >= 0 ? hashCode : ((hashCode & 0x7FFFFFFF) | (1L << 31));
-                return b;
-            }).forEachOrdered(b -> {
-                bitSet.set((int) (b % fingerprintSize));
-            });
-
-            //minimal cycle basis
-            CycleFinder cf = Cycles.mcb();
-
-            IRingSet rings = null;
-            try {
-                Cycles cycles = cf.find(container);
-                rings = cycles.toRingSet();
-                RingSetManipulator.markAromaticRings(rings);
-                RingSetManipulator.sort(rings);
-            } catch (Intractable e) {
-                // ignore error - edge short cycles do not check tractability
-            }
-            setRingBits(bitSet, rings);
+        //minimal cycle basis
+        CycleFinder cf = Cycles.mcb();
 
-        } catch (CloneNotSupportedException exception) {
-            throw new CDKException(
-                    "Exception while cloning the input: " + exception.getMessage(),
-                    exception);
+        long start = FingerprintMetrics.start();
+        IRingSet rings = null;
+        try {
+            Cycles cycles = cf.find(container);
+            rings = cycles.toRingSet();
+            RingSetManipulator.markAromaticRings(rings);
+            RingSetManipulator.sort(rings);
+        } catch (Intractable e) {
+            // ignore error - edge short cycles do not check tractability
         }
+        FingerprintMetrics.stop(FingerprintStage.RING_FINDING, start);
+        setRingBits(bitSet, rings);
+
+        FingerprintMetrics.recordBits(bitSet);
         return new BitSetFingerprint(bitSet);
     }
 
+    /**
+     * Maps a hash code, read as an unsigned int, to its bit position.
+     */
+    private int toPosition(int hashCode) {
+        return (int) ((hashCode & 0xFFFFFFFFL) % fingerprintSize);
+    }
+
     private void setRingBits(BitSet bitSet, IRingSet rings) {
         Map<String, Integer> ringMap = new HashMap<>();
         for (IAtomContainer ring : rings.atomContainers()) {
@@ -267,9 +261,7 @@ public class FeatureFingerprinter implements IFingerprinter {
         ringMap.keySet().forEach(p -> {
             int counter = ringMap.get(p);
             while (counter-- > 0) {
-                int hashCode = p.concat(String.valueOf(counter)).hashCode();
-                long b = hashCode >= 0 ? hashCode : ((hashCode & 0x7FFFFFFF) | (1L << 31));
-                bitSet.set((int) (b % fingerprintSize));
+                bitSet.set(toPosition(p.concat(String.valueOf(counter)).hashCode()));
             }
         });
     }
@@ -289,9 +281,21 @@ public class FeatureFingerprinter implements IFingerprinter {
         return fingerprintSize;
     }
 
+    /**
+     * The features are not paths, the search depth is 0 and the hash version
+     * always {@link HashVersion#LEGACY}.
+     *
+     * @return the descriptor of the fingerprints
+     */
+    @Override
+    public FingerprintDescriptor getDescriptor() {
+        return new FingerprintDescriptor(getClass().getSimpleName(), fingerprintSize, 0,
+                HashVersion.LEGACY, Collections.<String, String>emptyMap());
+    }
+
     @Override
     public String getVersionDescription() {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+        return getDescriptor().toString();
     }
 
     @Override
@@ -23,7 +23,8 @@
  */
 package com.bioinception.chem.fp.fingerprints.feature;
 
-import java.util.ArrayList;
+import com.bioinception.chem.fp.fingerprints.helper.PerceptionOverlay;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -42,7 +43,6 @@ import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.interfaces.IBond;
 import org.openscience.cdk.smiles.SmilesParser;
-import org.openscience.cdk.tools.manipulator.AtomContainerManipulator;
 import org.openscience.cdk.tools.periodictable.PeriodicTable;
 
 /**
@@ -152,9 +152,21 @@ public class FeatureGenerator {
      * @return
      */
     public static Map<IAtom, String> getAtomInvariants(IAtomContainer ac) {
+        return getAtomInvariants(ac, null);
+    }
+
+    /**
+     * Generates the atom invariants reading the implicit hydrogen counts from
+     * a perception overlay, the molecule is not modified.
+     *
+     * @param ac
+     * @param overlay perception of the molecule, null to read the atoms
+     * @return
+     */
+    public static Map<IAtom, String> getAtomInvariants(IAtomContainer ac, PerceptionOverlay overlay) {
         Map<IAtom, String> map = new HashMap<>();
         for (IAtom a : ac.atoms()) {
-            String atomFeature = getAtomFeature(ac, a);
+            String atomFeature = getAtomFeature(ac, overlay, a);
             map.put(a, atomFeature);
         }
         /*
@@ -183,118 +195,117 @@ public class FeatureGenerator {
      * @return
      */
     public static String getAtomFeature(IAtomContainer ac, IAtom a) {
-        List<String> feature = new ArrayList<>();
-//        //(0) Symbol of the atom
-//        String symbol = a.getSymbol();
-//        feature.add("[" + symbol + "]");
+        return getAtomFeature(ac, null, a);
+    }
 
-        //(i) number of non-hydrogen connections
-        int nonHConnections = getNonHydrogenConnections(ac.getConnectedAtomsList(a));
-        feature.add(nonHConnections + "");
-        //System.out.println("feature " + feature);
-        //(ii) number of non-hydrogen bonds
-        int nonHBond = getNonHydrogenBonds(ac.getConnectedBondsList(a));
-        feature.add(nonHBond + "");
-        //System.out.println("feature " + feature);
-        //(iii) atomic numbers
-        int atomicNumber;
-        atomicNumber = Objects.equals(a.getAtomicNumber(), CDKConstants.UNSET)
-                ? 0 : a.getAtomicNumber();
-        int atomNumber = atomicNumber;
-        feature.add(atomNumber + "");
-        //System.out.println("feature " + feature);
-        //(iv) sign of charge
-        Double charge;
-        charge = Objects.equals(a.getCharge(), CDKConstants.UNSET) ? 0.0 : a.getCharge();
-        // Sign of charge
-        if (charge < 0) {
-            feature.add(1 + "");
-        } else {
-            feature.add(0 + "");
-        }
-        //System.out.println("feature " + feature);
-        //(v) absolute charge
-        int absCharge
-                = (int) Math.abs(
-                        (Objects.equals(a.getFormalCharge(), CDKConstants.UNSET)
-                        ? 0.0 : a.getFormalCharge()));
-        feature.add(absCharge + "");
-        //System.out.println("feature " + feature);
-        //(vi) number of connected hydrogens
-        int countHydrogens = getTotalHyderogenCount(ac, a);
-        feature.add(countHydrogens + "");
-        //(vii) atomic numbers of neighboring atoms
-        List<Integer> neighboringAtomicNumbers = getNeighboringAtomicNumbers(ac.getConnectedAtomsList(a));
-        neighboringAtomicNumbers.forEach(i -> {
-            feature.add(i + "");
-        });
+    /**
+     *
+     * @param ac
+     * @param overlay perception of the molecule, null to read the atoms
+     * @param a
+     * @return
+     */
+    public static String getAtomFeature(IAtomContainer ac, PerceptionOverlay overlay, IAtom a) {
         /*
-         All the feature are concatenated and 
-         then rank ordered using the natural ordering for strings
+         All the feature are concatenated and
+         then rank ordered, the natural ordering of the number strings
          */
-        Collections.sort(feature, new NaturalOrderComparator());
         StringBuilder sb = new StringBuilder();
-        feature.forEach(s -> {
-            sb.append(s);
-        });
+        for (int feature : getFeatures(ac, overlay, a)) {
+            sb.append(feature);
+        }
         return sb.toString();
     }
 
+    /**
+     * Hashes of the atom invariants, in the atom order of the molecule. Each
+     * hash equals the hash code of the invariant string of
+     * {@link #getAtomFeature(IAtomContainer, PerceptionOverlay, IAtom)}, it is
+     * rolled over the decimal digits of the sorted features without building
+     * the string.
+     *
+     * @param ac
+     * @param overlay perception of the molecule, null to read the atoms
+     * @return the invariant hash of every atom
+     */
+    public static int[] getAtomInvariantHashes(IAtomContainer ac, PerceptionOverlay overlay) {
+        int[] hashes = new int[ac.getAtomCount()];
+        int i = 0;
+        for (IAtom a : ac.atoms()) {
+            int hash = 0;
+            for (int feature : getFeatures(ac, overlay, a)) {
+                hash = appendDigits(hash, feature);
+            }
+            hashes[i++] = hash;
+        }
+        return hashes;
+    }
+
     /*
-     @returns number of connected hydrogens
+     @returns the string hash rolled over the decimal digits of a non-negative value
      */
-    private static int getTotalHyderogenCount(IAtomContainer ac, IAtom a) {
-        int hydrogenCount = AtomContainerManipulator.countExplicitHydrogens(ac, a);
-        if (a.getImplicitHydrogenCount() == null) {
-            throw new IllegalArgumentException("an atom had with unknown (null) implicit hydrogens");
+    private static int appendDigits(int hash, int value) {
+        if (value >= 10) {
+            hash = appendDigits(hash, value / 10);
         }
-        hydrogenCount += a.getImplicitHydrogenCount();
-//        System.out.println("hydrogenCount " + hydrogenCount);
-        return hydrogenCount;
+        return 31 * hash + ('0' + value % 10);
     }
 
     /*
-     @returns atomic numbers of neighboring atoms
+     The features of an atom in ascending order, all of them are
+     non-negative and the natural ordering of their strings is the numeric one
      */
-    private static List<Integer> getNeighboringAtomicNumbers(List<IAtom> connectedAtomsList) {
-        List<Integer> atomicNumbersList = new ArrayList<>();
-        connectedAtomsList.stream().map(a -> {
-            if (a.getAtomicNumber() == null) {
+    private static int[] getFeatures(IAtomContainer ac, PerceptionOverlay overlay, IAtom a) {
+        List<IBond> bonds = ac.getConnectedBondsList(a);
+        int[] features = new int[6 + bonds.size()];
+        boolean hydrogen = isHydrogen(a);
+        int explicitHydrogens = 0;
+        int nonHBond = 0;
+        int n = 6;
+        for (IBond b : bonds) {
+            IAtom nbr = b.getOther(a);
+            //(vii) atomic numbers of neighboring atoms
+            if (nbr.getAtomicNumber() == null) {
                 throw new IllegalArgumentException("an atom had with unknown (null) atomic number");
             }
-            return a;
-        }).forEachOrdered(a -> {
-            //            System.out.println("getAtomicNumber " + a.getAtomicNumber());
-            atomicNumbersList.add(a.getAtomicNumber());
-        });
-        return atomicNumbersList;
+            features[n++] = nbr.getAtomicNumber();
+            if (isHydrogen(nbr)) {
+                explicitHydrogens++;
+            } else if (!hydrogen) {
+                nonHBond += b.getOrder().numeric();
+            }
+        }
+        //(i) number of non-hydrogen connections
+        features[0] = bonds.size() - explicitHydrogens;
+        //(ii) number of non-hydrogen bonds
+        features[1] = nonHBond;
+        //(iii) atomic numbers
+        features[2] = Objects.equals(a.getAtomicNumber(), CDKConstants.UNSET)
+                ? 0 : a.getAtomicNumber();
+        //(iv) sign of charge
+        Double charge = a.getCharge();
+        features[3] = charge != null && charge < 0 ? 1 : 0;
+        //(v) absolute charge
+        Integer formalCharge = a.getFormalCharge();
+        features[4] = formalCharge == null ? 0 : Math.abs(formalCharge);
+        //(vi) number of connected hydrogens
+        features[5] = explicitHydrogens + getImplicitHydrogenCount(overlay, a);
+        Arrays.sort(features);
+        return features;
     }
 
-    /*
-     @returns number of non-hydrogen connections
-     */
-    private static int getNonHydrogenConnections(List<IAtom> connectedAtomsList) {
-        int i = 0;
-        i = connectedAtomsList.stream().filter(a -> !(Elements.HYDROGEN.getSymbol().equals(a.getSymbol()))).map(_item -> 1).reduce(i, Integer::sum);
-        return i;
+    private static boolean isHydrogen(IAtom a) {
+        return Elements.HYDROGEN.getSymbol().equals(a.getSymbol());
     }
 
     /*
-     @returns number of hydrogen connections
+     @returns number of implicit hydrogens
      */
-
-    private static int getNonHydrogenBonds(List<IBond> connectedAtomsList) {
-        int i = 0;
-        for (IBond b : connectedAtomsList) {
-            IAtom a1 = b.getAtom(0);
-            IAtom a2 = b.getAtom(1);
-
-            if (Elements.HYDROGEN.getSymbol().equals(a1.getSymbol())
-                    || Elements.HYDROGEN.getSymbol().equals(a2.getSymbol())) {
-                continue;
-            }
-            i += b.getOrder().numeric();
+    private static int getImplicitHydrogenCount(PerceptionOverlay overlay, IAtom a) {
+        Integer implicitHydrogens = overlay == null ? a.getImplicitHydrogenCount() : overlay.getImplicitHydrogenCount(a);
+        if (implicitHydrogens == null) {
+            throw new IllegalArgumentException("an atom had with unknown (null) implicit hydrogens");
         }
-        return i;
+        return implicitHydrogens;
     }
 }
@@ -27,13 +27,21 @@
 package com.bioinception.chem.fp.fingerprints.hashed;
 
 import com.bioinception.chem.fp.fingerprints.helper.BloomFilter;
+import com.bioinception.chem.fp.fingerprints.helper.FingerprintDescriptor;
+import com.bioinception.chem.fp.fingerprints.helper.FingerprintMetrics;
+import com.bioinception.chem.fp.fingerprints.helper.FingerprintStage;
+import com.bioinception.chem.fp.fingerprints.helper.HashVersion;
 import com.bioinception.chem.fp.fingerprints.helper.MoleculeWalker;
+import com.bioinception.chem.fp.fingerprints.helper.PerceptionOverlay;
 import com.bioinception.chem.fp.fingerprints.helper.RandomNumber;
+import com.bioinception.chem.fp.fingerprints.helper.RingPerceptionPolicy;
+import com.bioinception.chem.fp.fingerprints.helper.RingStrategy;
 import static com.bioinception.chem.fp.fingerprints.helper.RandomNumber.generateMersenneTwisterRandomNumber;
 import com.bioinception.chem.fp.fingerprints.interfaces.IFingerprinter;
 import com.bioinception.chem.fp.fingerprints.interfaces.IWalker;
 import java.util.BitSet;
 import java.util.Map;
+import java.util.TreeMap;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.openscience.cdk.RingSet;
 import org.openscience.cdk.aromaticity.Aromaticity;
@@ -72,9 +80,12 @@ public class HashedBloomFingerprinter extends RandomNumber implements IFingerpri
     private int ringBitCount;
     private boolean respectRingMatches;
     private int searchDepth;
+    private HashVersion hashVersion;
+    private int parallelThreshold = Integer.MAX_VALUE;
     static int debugCounter = 0;
     // do all ring perception
     private AllRingsFinder arf;
+    private RingPerceptionPolicy ringPolicy = null;
     private static ILoggingTool logger
             = LoggingToolFactory.createLoggingTool(HashedBloomFingerprinter.class);
 
@@ -102,6 +113,7 @@ public class HashedBloomFingerprinter extends RandomNumber implements IFingerpri
         this.searchDepth = searchDepth;
         this.respectRingMatches = false;
         this.ringBitCount = 10;
+        this.hashVersion = HashVersion.LEGACY;
         this.arf = new AllRingsFinder();
         setFingerprintLength(fingerPrintSize);
     }
@@ -148,17 +160,29 @@ public class HashedBloomFingerprinter extends RandomNumber implements IFingerpri
         if (ringFinder != null) {
             this.arf = ringFinder;
         }
-        logger.debug("Entering Fingerprinter");
-        logger.debug("Starting Aromaticity Detection");
-        long before = System.currentTimeMillis();
-        AtomContainerManipulator.percieveAtomTypesAndConfigureAtoms(container);
-        Aromaticity.cdkLegacy().apply(container);
-        long after = System.currentTimeMillis();
-        logger.debug("time for aromaticity calculation: "
-                + (after - before) + " milliseconds");
-        logger.debug("Finished Aromaticity Detection");
-        findPaths(container, searchDepth);
-        return new BitSetFingerprint(generateFingerprint(container));
+        boolean debug = logger.isDebugEnabled();
+        if (debug) {
+            logger.debug("Entering Fingerprinter");
+            logger.debug("Starting Aromaticity Detection");
+        }
+        long before = debug ? System.nanoTime() : FingerprintMetrics.start();
+        PerceptionOverlay overlay = null;
+        if (hashVersion.atLeast(HashVersion.PERCEPTION_OVERLAY)) {
+            overlay = PerceptionOverlay.perceive(container);
+        } else {
+            AtomContainerManipulator.percieveAtomTypesAndConfigureAtoms(container);
+            Aromaticity.cdkLegacy().apply(container);
+        }
+        FingerprintMetrics.stop(FingerprintStage.PERCEPTION, before);
+        if (debug) {
+            logger.debug("time for aromaticity calculation: "
+                    + (System.nanoTime() - before) / 1000000 + " milliseconds");
+            logger.debug("Finished Aromaticity Detection");
+        }
+        findPaths(container, searchDepth, overlay);
+        BitSet fingerprint = generateFingerprint(container);
+        FingerprintMetrics.recordBits(fingerprint);
+        return new BitSetFingerprint(fingerprint);
     }
 
     /**
@@ -198,9 +222,27 @@ public class HashedBloomFingerprinter extends RandomNumber implements IFingerpri
      * @param searchDepth The maximum path length desired
      */
     protected void findPaths(IAtomContainer container, int searchDepth) {
-        IWalker walker = new MoleculeWalker(searchDepth, container);
+        findPaths(container, searchDepth, null);
+    }
+
+    /**
+     * Get all paths of lengths 0 to the specified length, reading the
+     * perceived atoms and bonds from an overlay.
+     *
+     * @param container The molecule to search
+     * @param searchDepth The maximum path length desired
+     * @param overlay the perception of the molecule, null to read the atoms
+     * and bonds
+     */
+    protected void findPaths(IAtomContainer container, int searchDepth, PerceptionOverlay overlay) {
+        long start = FingerprintMetrics.start();
+        IWalker walker = new MoleculeWalker(searchDepth, container, hashVersion, parallelThreshold, overlay);
+        FingerprintMetrics.stop(FingerprintStage.PATH_WALKING, start);
+        FingerprintMetrics.recordPaths(walker.getPaths().size());
         // convert paths to BitSet
+        start = FingerprintMetrics.start();
         bloomFilter.addAll(walker.getPaths());
+        FingerprintMetrics.stop(FingerprintStage.BIT_SETTING, start);
     }
 
     /**
@@ -239,30 +281,104 @@ public class HashedBloomFingerprinter extends RandomNumber implements IFingerpri
         this.respectRingMatches = respectRingMatches;
     }
 
+    /**
+     * @return the version of the path hashing
+     */
+    public HashVersion getHashVersion() {
+        return hashVersion;
+    }
+
+    /**
+     * Selects the version of the path hashing, fingerprints generated with
+     * different versions are not comparable.
+     *
+     * @param hashVersion the version of the path hashing
+     */
+    public void setHashVersion(HashVersion hashVersion) {
+        this.hashVersion = hashVersion;
+    }
+
+    /**
+     * @return minimum number of atoms of a molecule whose paths are
+     * enumerated in parallel
+     */
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    /**
+     * Molecules with at least this many atoms have their start atoms split
+     * into ForkJoin subtasks. The bits are the same. Off by default
+     * ({@link Integer#MAX_VALUE}), a few hundred atoms is a sensible value
+     * for peptides and glycans.
+     *
+     * @param parallelThreshold minimum number of atoms of a parallel
+     * enumeration
+     */
+    public void setParallelThreshold(int parallelThreshold) {
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    /**
+     * @return the ring perception policy, null if all rings are found with
+     * the {@link AllRingsFinder}
+     */
+    public RingPerceptionPolicy getRingPolicy() {
+        return ringPolicy;
+    }
+
+    /**
+     * Perceives the rings of the ring bits with a policy instead of the
+     * {@link AllRingsFinder}. The policy enumerates all rings within a budget
+     * and falls back to cheaper ring sets on cage compounds, whose ring bits
+     * then differ from those of the ring finder, which gives up on them. The
+     * policy is part of the descriptor.
+     *
+     * @param ringPolicy the policy, null to find all rings with the
+     * {@link AllRingsFinder}
+     */
+    public void setRingPolicy(RingPerceptionPolicy ringPolicy) {
+        this.ringPolicy = ringPolicy;
+    }
+
     private BitSet generateFingerprint(IAtomContainer container) {
         BitSet walkBits = bloomFilter.toBitSet();
         BitSet result = new BitSet(getFingerprintLength());
         result.or(walkBits);
         if (isRespectRingMatches()) {
+            long start = FingerprintMetrics.start();
             IRingSet rings = new RingSet();
-            IRingSet allRings;
-            try {
-                allRings = arf.findAllRings(container);
+            RingStrategy strategy = null;
+            if (ringPolicy != null) {
+                IRingSet allRings = ringPolicy.findRings(container);
+                strategy = RingPerceptionPolicy.getStrategy(allRings);
+                if (logger.isDebugEnabled()) {
+                    logger.debug("rings perceived with " + strategy);
+                }
                 rings.add(allRings);
-            } catch (CDKException e) {
-                logger.debug(e.toString());
+            } else {
+                IRingSet allRings;
+                try {
+                    allRings = arf.findAllRings(container);
+                    rings.add(allRings);
+                } catch (CDKException e) {
+                    logger.debug(e.toString());
+                }
             }
 
-            // sets SSSR information
-            CycleFinder cf = Cycles.mcb();
-            IRingSet allrings = null;
-            try {
-                Cycles cycles = cf.find(container);
-                allrings = cycles.toRingSet();
-                rings.add(allrings);
-            } catch (Intractable e) {
-                // ignore error - edge short cycles do not check tractability
+            // sets SSSR information, unless the policy fell back to it
+            if (strategy != RingStrategy.MCB) {
+                CycleFinder cf = Cycles.mcb();
+                IRingSet allrings = null;
+                try {
+                    Cycles cycles = cf.find(container);
+                    allrings = cycles.toRingSet();
+                    rings.add(allrings);
+                } catch (Intractable e) {
+                    // ignore error - edge short cycles do not check tractability
+                }
             }
+            FingerprintMetrics.stop(FingerprintStage.RING_FINDING, start);
 
             RingSetManipulator.markAromaticRings(rings);
             RingSetManipulator.sort(rings);
@@ -310,9 +426,20 @@ public class HashedBloomFingerprinter extends RandomNumber implements IFingerpri
         throw new UnsupportedOperationException("Not supported yet.");
     }
 
+    @Override
+    public FingerprintDescriptor getDescriptor() {
+        Map<String, String> flags = new TreeMap<>();
+        flags.put("respectRingMatches", Boolean.toString(respectRingMatches));
+        flags.put("ringBitCount", Integer.toString(ringBitCount));
+        if (ringPolicy != null) {
+            flags.put("ringPolicy", ringPolicy.toString());
+        }
+        return new FingerprintDescriptor(getClass().getSimpleName(), fingerPrintSize, searchDepth, hashVersion, flags);
+    }
+
     @Override
     public String getVersionDescription() {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+        return getDescriptor().toString();
     }
 
     @Override
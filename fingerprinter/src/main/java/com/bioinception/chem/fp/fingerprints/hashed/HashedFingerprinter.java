@@ -26,10 +26,22 @@
  */
 package com.bioinception.chem.fp.fingerprints.hashed;
 
+import com.bioinception.chem.fp.fingerprints.helper.AdaptiveDepthPolicy;
+import com.bioinception.chem.fp.fingerprints.helper.FastHash;
+import com.bioinception.chem.fp.fingerprints.helper.FingerprintDescriptor;
+import com.bioinception.chem.fp.fingerprints.helper.FingerprintMetrics;
+import com.bioinception.chem.fp.fingerprints.helper.FingerprintStage;
+import com.bioinception.chem.fp.fingerprints.helper.FingerprinterTool;
+import com.bioinception.chem.fp.fingerprints.helper.HashVersion;
 import com.bioinception.chem.fp.fingerprints.helper.MoleculeWalker;
+import com.bioinception.chem.fp.fingerprints.helper.PerceptionOverlay;
+import com.bioinception.chem.fp.fingerprints.helper.QueryGraph;
 import com.bioinception.chem.fp.fingerprints.helper.RandomNumber;
+import com.bioinception.chem.fp.fingerprints.helper.VersionedFingerprint;
 import static com.bioinception.chem.fp.fingerprints.helper.RandomNumber.generateMersenneTwisterRandomNumber;
 import com.bioinception.chem.fp.fingerprints.interfaces.IFingerprinter;
+import com.bioinception.chem.fp.fingerprints.interfaces.IMultiDepthFingerprinter;
+import com.bioinception.chem.fp.fingerprints.interfaces.IQueryFingerprinter;
 import com.bioinception.chem.fp.fingerprints.interfaces.IWalker;
 import java.util.ArrayList;
 import java.util.BitSet;
@@ -79,6 +91,13 @@ import org.openscience.cdk.interfaces.IAtomContainerSet;
  * <p>
  *
  * The FingerPrinter assumes that hydrogen's are explicitly given!
+ * <p>
+ *
+ * Substructure queries are screened with
+ * {@link #getQueryFingerprint(IAtomContainer)}, which only sets the bits of
+ * the paths whose atom and bond symbols are the same in every superstructure
+ * (see {@link QueryGraph}). The ring, charge, stereo, radical and lone pair
+ * features describe the whole molecule and are left out.
  *
  * <font color="#FF0000">Warning: The aromaticity detection for this
  * FingerPrinter relies on AllRingsFinder, which is known to take very long for
@@ -102,7 +121,7 @@ import org.openscience.cdk.interfaces.IAtomContainerSet;
  * 07-11-2011 @cdk.keyword fingerprint
  * @cdk.keyword similarity @cdk.module standard @cdk.githash
  */
-public class HashedFingerprinter extends RandomNumber implements IFingerprinter {
+public class HashedFingerprinter extends RandomNumber implements IFingerprinter, IQueryFingerprinter, IMultiDepthFingerprinter {
 
     /**
      * The default length of created fingerprints.
@@ -117,6 +136,10 @@ public class HashedFingerprinter extends RandomNumber implements IFingerprinter
     private boolean respectFormalCharges;
     private boolean respectStereoAssignments;
     private int searchDepth;
+    private HashVersion hashVersion;
+    private boolean hashPseudoAtoms;
+    private int parallelThreshold = Integer.MAX_VALUE;
+    private AdaptiveDepthPolicy depthPolicy = null;
     private static ILoggingTool logger
             = LoggingToolFactory.createLoggingTool(HashedFingerprinter.class);
     private AllRingsFinder arf;
@@ -147,6 +170,8 @@ public class HashedFingerprinter extends RandomNumber implements IFingerprinter
         this.respectRingMatches = false;
         this.respectFormalCharges = false;
         this.respectStereoAssignments = false;
+        this.hashVersion = HashVersion.LEGACY;
+        this.hashPseudoAtoms = false;
         this.arf = new AllRingsFinder();
     }
 
@@ -170,34 +195,202 @@ public class HashedFingerprinter extends RandomNumber implements IFingerprinter
         if (ringFinder != null) {
             this.arf = ringFinder;
         }
-        logger.debug("Entering Fingerprinter");
-        logger.debug("Starting Aromaticity Detection");
-        long before = System.currentTimeMillis();
-        AtomContainerManipulator.percieveAtomTypesAndConfigureAtoms(container);
-        Aromaticity.cdkLegacy().apply(container);
-        long after = System.currentTimeMillis();
-        logger.debug("time for aromaticity calculation: "
-                + (after - before) + " milliseconds");
-        logger.debug("Finished Aromaticity Detection");
+        return getBitFingerprint(container, getEffectiveDepth(container));
+    }
+
+    private IBitFingerprint getBitFingerprint(IAtomContainer container, int depth) throws CDKException {
+        PerceptionOverlay overlay = perceive(container);
         BitSet bitSet = new BitSet(fingerprintLength);
 
+        long paths = 0;
+        for (IAtomContainer atomContainer : components(container)) {
+            paths += addUniquePath(atomContainer, depth, bitSet, overlay);
+        }
+        FingerprintMetrics.recordPaths(paths);
+        FingerprintMetrics.recordBits(bitSet);
+        return new BitSetFingerprint(bitSet);
+    }
+
+    /**
+     * @return the molecule itself if it is connected, else its components
+     */
+    private static Iterable<IAtomContainer> components(IAtomContainer container) {
+        long start = FingerprintMetrics.start();
+        Iterable<IAtomContainer> components;
         if (!ConnectivityChecker.isConnected(container)) {
             IAtomContainerSet partitionedMolecules = ConnectivityChecker.partitionIntoMolecules(container);
-            for (IAtomContainer atomContainer : partitionedMolecules.atomContainers()) {
-                addUniquePath(atomContainer, bitSet);
+            components = partitionedMolecules.atomContainers();
+        } else {
+            components = Collections.singletonList(container);
+        }
+        FingerprintMetrics.stop(FingerprintStage.PARTITIONING, start);
+        return components;
+    }
+
+    /**
+     * Generates a fingerprint together with the descriptor of this
+     * fingerprinter and the search depth the molecule was walked with.
+     *
+     * @param container The AtomContainer for which a Fingerprint is generated
+     * @return the fingerprint and its descriptor
+     * @throws CDKException
+     */
+    @Override
+    public VersionedFingerprint getVersionedFingerprint(IAtomContainer container) throws CDKException {
+        FingerprintDescriptor descriptor = getDescriptor();
+        int depth = getEffectiveDepth(container);
+        return new VersionedFingerprint(getBitFingerprint(container, depth).asBitSet(), descriptor, depth);
+    }
+
+    /**
+     * Generates the fingerprints of several search depths from one walk of
+     * the deepest search. Each path goes into the fingerprints of the depths
+     * of at least its number of bonds, the ring, charge and stereo features
+     * into all of them. The search depth of this fingerprinter is ignored,
+     * the depth policy applies to the deepest search. A capped molecule has
+     * no fingerprints of the depths beyond the capped depth.
+     *
+     * @param container The AtomContainer for which the Fingerprints are
+     * generated
+     * @param depths search depths (number of bonds)
+     * @return the fingerprints keyed by the depth they were walked with,
+     * depths beyond the depth capped by the policy are keyed by the capped
+     * depth
+     * @throws CDKException if there is a timeout in ring or aromaticity
+     * perception
+     */
+    @Override
+    public Map<Integer, IBitFingerprint> getBitFingerprints(IAtomContainer container, int... depths) throws CDKException {
+        int[] sorted = FingerprinterTool.sortedDepths(depths);
+        int deepest = sorted[sorted.length - 1];
+        if (depthPolicy != null) {
+            deepest = depthPolicy.depth(container, deepest);
+            sorted = FingerprinterTool.cappedDepths(sorted, deepest);
+        }
+        PerceptionOverlay overlay = perceive(container);
+        BitSet[] bitSets = new BitSet[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            bitSets[i] = new BitSet(fingerprintLength);
+        }
+        long paths = 0;
+        for (IAtomContainer atomContainer : components(container)) {
+            paths += addUniquePaths(atomContainer, deepest, sorted, bitSets, overlay);
+        }
+        FingerprintMetrics.recordPaths(paths);
+        Map<Integer, IBitFingerprint> fingerprints = new TreeMap<>();
+        for (int i = 0; i < sorted.length; i++) {
+            FingerprintMetrics.recordBits(bitSets[i]);
+            fingerprints.put(sorted[i], new BitSetFingerprint(bitSets[i]));
+        }
+        return fingerprints;
+    }
+
+    /**
+     * @return the number of paths of the component
+     */
+    private int addUniquePaths(IAtomContainer container, int deepest, int[] depths, BitSet[] bitSets, PerceptionOverlay overlay) {
+        long start = FingerprintMetrics.start();
+        MoleculeWalker walker = new MoleculeWalker(deepest, container, hashVersion, parallelThreshold, overlay);
+        FingerprintMetrics.stop(FingerprintStage.PATH_WALKING, start);
+        List<Integer> features = new ArrayList<>();
+        addFeatureHashes(container, features);
+        start = FingerprintMetrics.start();
+        for (Map.Entry<String, Integer> path : walker.getPathDepths().entrySet()) {
+            int position = toPosition(path.getKey().hashCode());
+            for (int i = depths.length - 1; i >= 0 && depths[i] >= path.getValue(); i--) {
+                bitSets[i].set(position);
             }
+        }
+        for (Integer hash : features) {
+            int position = toPosition(hash);
+            for (BitSet bitSet : bitSets) {
+                bitSet.set(position);
+            }
+        }
+        FingerprintMetrics.stop(FingerprintStage.BIT_SETTING, start);
+        return walker.getPathDepths().size();
+    }
+
+    /**
+     * Perceives the atom types and aromaticity of the molecule, in place
+     * before {@link HashVersion#PERCEPTION_OVERLAY}.
+     *
+     * @return the perception overlay, null if the molecule was perceived in
+     * place
+     */
+    private PerceptionOverlay perceive(IAtomContainer container) throws CDKException {
+        boolean debug = logger.isDebugEnabled();
+        if (debug) {
+            logger.debug("Entering Fingerprinter");
+            logger.debug("Starting Aromaticity Detection");
+        }
+        long before = debug ? System.nanoTime() : FingerprintMetrics.start();
+        PerceptionOverlay overlay = null;
+        if (hashVersion.atLeast(HashVersion.PERCEPTION_OVERLAY)) {
+            overlay = PerceptionOverlay.perceive(container);
         } else {
-            addUniquePath(container, bitSet);
+            AtomContainerManipulator.percieveAtomTypesAndConfigureAtoms(container);
+            Aromaticity.cdkLegacy().apply(container);
+        }
+        FingerprintMetrics.stop(FingerprintStage.PERCEPTION, before);
+        if (debug) {
+            logger.debug("time for aromaticity calculation: "
+                    + (System.nanoTime() - before) / 1000000 + " milliseconds");
+            logger.debug("Finished Aromaticity Detection");
+        }
+        return overlay;
+    }
+
+    /**
+     * Generates the screening fingerprint of a substructure query. The query
+     * is perceived as the targets are, in place before
+     * {@link HashVersion#PERCEPTION_OVERLAY}. With a depth policy a target
+     * may hold the paths up to the minimum depth of the policy only, so the
+     * query is walked no deeper.
+     *
+     * @param query the substructure query
+     * @return the query fingerprint
+     * @throws CDKException if the atom types can not be perceived
+     */
+    @Override
+    public IBitFingerprint getQueryFingerprint(IAtomContainer query) throws CDKException {
+        PerceptionOverlay overlay = perceive(query);
+        IAtomContainer reduced = QueryGraph.reduce(query,
+                bond -> QueryGraph.isHybridizationFixed(query, overlay, bond.getBegin())
+                && QueryGraph.isHybridizationFixed(query, overlay, bond.getEnd()),
+                hashPseudoAtoms);
+        BitSet bitSet = new BitSet(fingerprintLength);
+        int depth = depthPolicy == null ? searchDepth : Math.min(searchDepth, depthPolicy.getMinDepth());
+        IWalker walker = new MoleculeWalker(depth, reduced, hashVersion, parallelThreshold, overlay);
+        for (String s : walker.getPaths()) {
+            bitSet.set(toPosition(s.hashCode()));
         }
         return new BitSetFingerprint(bitSet);
     }
 
-    private void addUniquePath(IAtomContainer container, BitSet bitSet) {
-        Integer[] hashes = findPaths(container, searchDepth);
+    /**
+     * @return the number of paths of the component
+     */
+    private int addUniquePath(IAtomContainer container, int depth, BitSet bitSet, PerceptionOverlay overlay) {
+        List<Integer> hashes = walkPaths(container, depth, overlay);
+        int paths = hashes.size();
+        addFeatureHashes(container, hashes);
+        long start = FingerprintMetrics.start();
         for (Integer hash : hashes) {
-            int position = (int) generateMersenneTwisterRandomNumber(fingerprintLength, hash);
-            bitSet.set(position);
+            bitSet.set(toPosition(hash));
+        }
+        FingerprintMetrics.stop(FingerprintStage.BIT_SETTING, start);
+        return paths;
+    }
+
+    /**
+     * Maps a path hash to its bit position.
+     */
+    private int toPosition(int hash) {
+        if (hashVersion.atLeast(HashVersion.FAST_MAPPING)) {
+            return FastHash.reduce(FastHash.mix(hash), fingerprintLength);
         }
+        return (int) generateMersenneTwisterRandomNumber(fingerprintLength, hash);
     }
 
     /**
@@ -232,8 +425,7 @@ public class HashedFingerprinter extends RandomNumber implements IFingerprinter
     private void addUniquePaths(IAtomContainer atomContainer, Map<String, Integer> uniquePaths) {
         Integer[] hashes = findPaths(atomContainer, searchDepth);
         for (Integer hash : hashes) {
-            int position = (int) generateMersenneTwisterRandomNumber(fingerprintLength, hash);
-            uniquePaths.put(Integer.toString(position), hash);
+            uniquePaths.put(Integer.toString(toPosition(hash)), hash);
         }
     }
 
@@ -248,18 +440,49 @@ public class HashedFingerprinter extends RandomNumber implements IFingerprinter
      * @return A map of path strings, keyed on themselves
      */
     protected Integer[] findPaths(IAtomContainer container, int searchDepth) {
+        return findPaths(container, searchDepth, null);
+    }
 
-        IWalker walker = new MoleculeWalker(searchDepth, container);
+    /**
+     * Get all paths of lengths 0 to the specified length, reading the
+     * perceived atoms and bonds from an overlay.
+     *
+     * @param container The molecule to search
+     * @param searchDepth The maximum path length desired
+     * @param overlay the perception of the molecule, null to read the atoms
+     * and bonds
+     * @return the hashes of the paths and features
+     */
+    protected Integer[] findPaths(IAtomContainer container, int searchDepth, PerceptionOverlay overlay) {
+        List<Integer> paths = walkPaths(container, searchDepth, overlay);
+        addFeatureHashes(container, paths);
+        return paths.toArray(new Integer[paths.size()]);
+    }
+
+    /**
+     * @return the hashes of the paths, without the features
+     */
+    private List<Integer> walkPaths(IAtomContainer container, int searchDepth, PerceptionOverlay overlay) {
+        long start = FingerprintMetrics.start();
+        IWalker walker = new MoleculeWalker(searchDepth, container, hashVersion, parallelThreshold, overlay);
         // convert paths to hashes
         List<Integer> paths = new ArrayList<>();
-        int patternIndex = 0;
-
         for (String s : walker.getPaths()) {
-            int toHashCode = s.hashCode();
-            paths.add(patternIndex, toHashCode);
-            patternIndex++;
+            paths.add(s.hashCode());
         }
+        FingerprintMetrics.stop(FingerprintStage.PATH_WALKING, start);
+        return paths;
+    }
 
+    /**
+     * Adds the hashes of the features which do not depend on the search
+     * depth: rings, formal charges, stereo parities, radicals and lone pairs.
+     *
+     * @param container The molecule to search
+     * @param paths the hashes to add to
+     */
+    private void addFeatureHashes(IAtomContainer container, List<Integer> paths) {
+        int patternIndex = paths.size();
         if (isRespectRingMatches()) {
 //            SSSRFinder finder = new SSSRFinder(container);
 //            IRingSet sssr = finder.findEssentialRings();
@@ -267,9 +490,15 @@ public class HashedFingerprinter extends RandomNumber implements IFingerprinter
             // all cycles or relevant or essential
             CycleFinder cf = Cycles.mcb();
             IRingSet sssr = null;
+            long start = FingerprintMetrics.start();
             try {
                 Cycles cycles = cf.find(container);
                 sssr = cycles.toRingSet();
+            } catch (Intractable e) {
+                // ignore error - edge short cycles do not check tractability
+            }
+            FingerprintMetrics.stop(FingerprintStage.RING_FINDING, start);
+            if (sssr != null) {
                 RingSetManipulator.markAromaticRings(sssr);
                 RingSetManipulator.sort(sssr);
                 int ringCounter = sssr.getAtomContainerCount();
@@ -279,8 +508,6 @@ public class HashedFingerprinter extends RandomNumber implements IFingerprinter
                     patternIndex++;
                     ringCounter--;
                 }
-            } catch (Intractable e) {
-                // ignore error - edge short cycles do not check tractability
             }
         }
 
@@ -327,7 +554,6 @@ public class HashedFingerprinter extends RandomNumber implements IFingerprinter
             paths.add(patternIndex, lpInformation.toString().hashCode());
             patternIndex++;
         }
-        return paths.toArray(new Integer[paths.size()]);
     }
 
     /**
@@ -397,14 +623,112 @@ public class HashedFingerprinter extends RandomNumber implements IFingerprinter
         this.respectStereoAssignments = respectStereoAssignments;
     }
 
+    /**
+     * @return the version of the path hashing
+     */
+    public HashVersion getHashVersion() {
+        return hashVersion;
+    }
+
+    /**
+     * Selects the version of the path hashing, fingerprints generated with
+     * different versions are not comparable.
+     *
+     * @param hashVersion the version of the path hashing
+     */
+    public void setHashVersion(HashVersion hashVersion) {
+        this.hashVersion = hashVersion;
+    }
+
+    /**
+     * @return minimum number of atoms of a molecule whose paths are
+     * enumerated in parallel
+     */
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    /**
+     * Molecules with at least this many atoms have their start atoms split
+     * into ForkJoin subtasks. The bits are the same. Off by default
+     * ({@link Integer#MAX_VALUE}), a few hundred atoms is a sensible value
+     * for peptides and glycans.
+     *
+     * @param parallelThreshold minimum number of atoms of a parallel
+     * enumeration
+     */
+    public void setParallelThreshold(int parallelThreshold) {
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    /**
+     * @return the policy capping the search depth of large molecules, null
+     * if the search depth is fixed
+     */
+    public AdaptiveDepthPolicy getDepthPolicy() {
+        return depthPolicy;
+    }
+
+    /**
+     * Caps the search depth of molecules whose estimated number of paths
+     * exceeds the budget of the policy. Off (null) by default. The capped
+     * depth is recorded in {@link #getVersionedFingerprint}.
+     * Substructure screens with full fingerprints lose hits under a policy,
+     * see {@link AdaptiveDepthPolicy}.
+     *
+     * @param depthPolicy the policy, null for a fixed search depth
+     */
+    public void setDepthPolicy(AdaptiveDepthPolicy depthPolicy) {
+        this.depthPolicy = depthPolicy;
+    }
+
+    /**
+     * @param container the molecule
+     * @return the search depth the molecule is walked with
+     */
+    public int getEffectiveDepth(IAtomContainer container) {
+        return depthPolicy == null ? searchDepth : depthPolicy.depth(container, searchDepth);
+    }
+
+    /**
+     * @return true if query fingerprints keep the paths through pseudo atoms
+     */
+    public boolean isHashPseudoAtoms() {
+        return hashPseudoAtoms;
+    }
+
+    /**
+     * Pseudo atoms of a query are wildcards and their paths are left out of
+     * the query fingerprint, unless set. The full fingerprints always hash
+     * pseudo atoms.
+     *
+     * @param hashPseudoAtoms keep the paths through pseudo atoms in query
+     * fingerprints
+     */
+    public void setHashPseudoAtoms(boolean hashPseudoAtoms) {
+        this.hashPseudoAtoms = hashPseudoAtoms;
+    }
+
     @Override
     public ICountFingerprint getCountFingerprint(IAtomContainer iac) throws CDKException {
         throw new UnsupportedOperationException("Not supported yet.");
     }
 
+    @Override
+    public FingerprintDescriptor getDescriptor() {
+        Map<String, String> flags = new TreeMap<>();
+        flags.put("respectRingMatches", Boolean.toString(respectRingMatches));
+        flags.put("respectFormalCharges", Boolean.toString(respectFormalCharges));
+        flags.put("respectStereoAssignments", Boolean.toString(respectStereoAssignments));
+        if (depthPolicy != null) {
+            flags.put("depthPolicy", depthPolicy.toString());
+        }
+        return new FingerprintDescriptor(getClass().getSimpleName(), fingerprintLength, searchDepth, hashVersion, flags);
+    }
+
     @Override
     public String getVersionDescription() {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+        return getDescriptor().toString();
     }
 
     @Override
@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2003-2021 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package com.bioinception.chem.fp.fingerprints.helper;
+
+import org.openscience.cdk.graph.GraphUtil;
+import org.openscience.cdk.interfaces.IAtomContainer;
+
+/**
+ * Caps the search depth of a molecule so that the number of paths to walk
+ * stays within a budget.
+ *
+ * The number of paths grows exponentially with the branching of a molecule
+ * and a few large or highly branched molecules cost orders of magnitude more
+ * than the median. Before walking, the paths of every length are estimated
+ * from the degrees of the atoms by counting the non-backtracking walks, the
+ * walks which never return along the bond they came from. Without ring
+ * closures these are exactly the paths, every ring closure adds walks around
+ * the ring, so the estimate is an upper bound. The depth is the largest one,
+ * up to the configured search depth, whose estimate is within the budget and
+ * never below the minimum depth.
+ *
+ * Fingerprints of a molecule with a capped depth hold the paths up to that
+ * depth only, the depth used is recorded in the {@link VersionedFingerprint}.
+ * A substructure screen with the full fingerprint of a query is therefore
+ * unsafe: the longer paths of a small query are missing from a capped
+ * superstructure, which is screened out. Query fingerprints of the
+ * {@link com.bioinception.chem.fp.fingerprints.hashed.HashedFingerprinter}
+ * are walked no deeper than the minimum depth and screen safely.
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public class AdaptiveDepthPolicy {
+
+    /**
+     * The default budget of paths per molecule.
+     */
+    public static final long DEFAULT_MAX_PATHS = 1000000;
+    /**
+     * The default minimum search depth.
+     */
+    public static final int DEFAULT_MIN_DEPTH = 4;
+
+    private final long maxPaths;
+    private final int minDepth;
+
+    public AdaptiveDepthPolicy() {
+        this(DEFAULT_MAX_PATHS, DEFAULT_MIN_DEPTH);
+    }
+
+    /**
+     * @param maxPaths budget of paths per molecule, counted from every start
+     * atom
+     * @param minDepth the depth is never capped below this depth
+     */
+    public AdaptiveDepthPolicy(long maxPaths, int minDepth) {
+        if (maxPaths < 1) {
+            throw new IllegalArgumentException("The path budget must be positive: " + maxPaths);
+        }
+        if (minDepth < 0) {
+            throw new IllegalArgumentException("Negative minimum depth: " + minDepth);
+        }
+        this.maxPaths = maxPaths;
+        this.minDepth = minDepth;
+    }
+
+    /**
+     * @return budget of paths per molecule
+     */
+    public long getMaxPaths() {
+        return maxPaths;
+    }
+
+    /**
+     * @return minimum search depth
+     */
+    public int getMinDepth() {
+        return minDepth;
+    }
+
+    /**
+     * @param mol the molecule
+     * @param searchDepth configured search depth (number of bonds)
+     * @return the search depth to walk the molecule with
+     */
+    public int depth(IAtomContainer mol, int searchDepth) {
+        if (searchDepth <= minDepth) {
+            return searchDepth;
+        }
+        double[] estimates = estimatePaths(mol, searchDepth);
+        int depth = searchDepth;
+        while (depth > minDepth && estimates[depth] > maxPaths) {
+            depth--;
+        }
+        return depth;
+    }
+
+    /**
+     * Estimates the paths walked from every start atom of a molecule.
+     *
+     * @param mol the molecule
+     * @param depth maximum number of bonds of a path
+     * @return element d is the estimate of the paths of up to d bonds
+     */
+    public static double[] estimatePaths(IAtomContainer mol, int depth) {
+        int[][] adj = GraphUtil.toAdjList(mol);
+        // walks[v][j]: walks of the current length ending with the bond from
+        // the j-th neighbour of v to v
+        double[][] walks = new double[adj.length][];
+        double[] ending = new double[adj.length];
+        double[] estimates = new double[depth + 1];
+        double total = adj.length;
+        estimates[0] = total;
+        for (int v = 0; v < adj.length; v++) {
+            walks[v] = new double[adj[v].length];
+        }
+        for (int length = 1; length <= depth; length++) {
+            for (int v = 0; v < adj.length; v++) {
+                double sum = 0;
+                for (double w : walks[v]) {
+                    sum += w;
+                }
+                ending[v] = sum;
+            }
+            double count = 0;
+            double[][] next = new double[adj.length][];
+            for (int x = 0; x < adj.length; x++) {
+                next[x] = new double[adj[x].length];
+                for (int k = 0; k < adj[x].length; k++) {
+                    int v = adj[x][k];
+                    // extend the walks ending at v, except those coming from x
+                    next[x][k] = length == 1 ? 1 : ending[v] - walks[v][indexOf(adj[v], x)];
+                    count += next[x][k];
+                }
+            }
+            walks = next;
+            total += count;
+            estimates[length] = total;
+        }
+        return estimates;
+    }
+
+    private static int indexOf(int[] nbrs, int atom) {
+        for (int i = 0; i < nbrs.length; i++) {
+            if (nbrs[i] == atom) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("Adjacency is not symmetric");
+    }
+
+    @Override
+    public String toString() {
+        return maxPaths + ":" + minDepth;
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright (C) 2003-2021 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package com.bioinception.chem.fp.fingerprints.helper;
+
+import static com.bioinception.chem.fp.fingerprints.helper.FastHash.append;
+import static com.bioinception.chem.fp.fingerprints.helper.FastHash.mix;
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+import org.openscience.cdk.exception.CDKException;
+
+/**
+ * Depth first enumeration of the unique paths of a molecule on its
+ * {@link PathCodes}, hashing every path into 64 bits.
+ *
+ * A path and its reverse are hashed as polynomials over their atom and bond
+ * codes and the lower of the two is kept, so both directions of a path give
+ * the same hash. This is the encoding of {@link HashVersion#PATH_CODES}.
+ *
+ * Both hashes are rolled along the depth first search: a path extends the
+ * forward hash of its parent by one bond and one atom code, and prepends the
+ * same codes to the reverse hash using a precomputed power of the multiplier,
+ * so every path is hashed in constant time whatever its length.
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public class CodedPathEncoder {
+
+    private final PathCodes codes;
+    private final int minDepth;
+    private final int maxDepth;
+    private final int pathLimit;
+    private final boolean hashPseudoAtoms;
+    private final LongConsumer[] sinks;
+    private final int[] classes;
+    private final boolean[] visited;
+    private final int[] apath;
+    private final int[] bpath;
+    private final long[] fwd;
+    private final long[] rev;
+    private final long[] powers;
+    private int length;
+    private int numPaths;
+
+    private CodedPathEncoder(PathCodes codes, int minDepth, int maxDepth, int pathLimit,
+            boolean hashPseudoAtoms, int[] classes, LongConsumer[] sinks) {
+        this.codes = codes;
+        this.minDepth = minDepth;
+        this.maxDepth = maxDepth;
+        this.pathLimit = pathLimit;
+        this.hashPseudoAtoms = hashPseudoAtoms;
+        this.sinks = sinks;
+        this.classes = classes;
+        this.visited = new boolean[codes.getAtomCount()];
+        this.apath = new int[maxDepth];
+        this.bpath = new int[maxDepth];
+        this.fwd = new long[maxDepth];
+        this.rev = new long[maxDepth];
+        this.powers = new long[Math.max(1, 2 * maxDepth - 1)];
+        powers[0] = 1L;
+        for (int i = 1; i < powers.length; i++) {
+            powers[i] = powers[i - 1] * FastHash.MULTIPLIER;
+        }
+    }
+
+    /**
+     * Hashes all paths starting at every atom of the molecule.
+     *
+     * @param codes code table of the molecule
+     * @param minDepth paths are only extended once they have this many atoms
+     * @param maxDepth maximum number of atoms in a path
+     * @param pathLimit maximum number of paths per start atom
+     * @param hashPseudoAtoms include paths through pseudo atoms
+     * @param sink receives the hash of every path
+     * @throws CDKException if a start atom yields more than pathLimit paths
+     */
+    public static void encodePaths(PathCodes codes, int minDepth, int maxDepth, int pathLimit,
+            boolean hashPseudoAtoms, LongConsumer sink) throws CDKException {
+        encodePaths(codes, minDepth, maxDepth, pathLimit, hashPseudoAtoms, null, sink);
+    }
+
+    /**
+     * Hashes the unique paths starting at one atom of every symmetry class.
+     * A path is only passed to the sink from the end with the lower class, its
+     * reverse is found from the representative of the other class. The sink
+     * receives the same distinct hashes as without classes, about half as
+     * many times.
+     *
+     * @param codes code table of the molecule
+     * @param minDepth paths are only extended once they have this many atoms
+     * @param maxDepth maximum number of atoms in a path
+     * @param pathLimit maximum number of paths per start atom
+     * @param hashPseudoAtoms include paths through pseudo atoms
+     * @param classes symmetry classes from {@link PathSymmetry#classes}, or
+     * null to start from every atom
+     * @param sink receives the hash of every path
+     * @throws CDKException if a start atom yields more than pathLimit paths
+     */
+    public static void encodePaths(PathCodes codes, int minDepth, int maxDepth, int pathLimit,
+            boolean hashPseudoAtoms, int[] classes, LongConsumer sink) throws CDKException {
+        encodePaths(codes, minDepth, maxDepth, pathLimit, hashPseudoAtoms, classes, 0, codes.getAtomCount(), sink);
+    }
+
+    /**
+     * Hashes the paths starting at the atoms [from, to), the ranges of a
+     * molecule can be encoded concurrently with one sink each.
+     *
+     * @param codes code table of the molecule
+     * @param minDepth paths are only extended once they have this many atoms
+     * @param maxDepth maximum number of atoms in a path
+     * @param pathLimit maximum number of paths per start atom
+     * @param hashPseudoAtoms include paths through pseudo atoms
+     * @param classes symmetry classes from {@link PathSymmetry#classes}, or
+     * null to start from every atom
+     * @param from index of the first start atom
+     * @param to index after the last start atom
+     * @param sink receives the hash of every path
+     * @throws CDKException if a start atom yields more than pathLimit paths
+     */
+    public static void encodePaths(PathCodes codes, int minDepth, int maxDepth, int pathLimit,
+            boolean hashPseudoAtoms, int[] classes, int from, int to, LongConsumer sink) throws CDKException {
+        LongConsumer[] sinks = new LongConsumer[maxDepth];
+        Arrays.fill(sinks, sink);
+        encodePaths(codes, minDepth, maxDepth, pathLimit, hashPseudoAtoms, classes, from, to, sinks);
+    }
+
+    /**
+     * Hashes the paths starting at the atoms [from, to) into one sink per
+     * path length.
+     *
+     * @param codes code table of the molecule
+     * @param minDepth paths are only extended once they have this many atoms
+     * @param maxDepth maximum number of atoms in a path
+     * @param pathLimit maximum number of paths per start atom
+     * @param hashPseudoAtoms include paths through pseudo atoms
+     * @param classes symmetry classes from {@link PathSymmetry#classes}, or
+     * null to start from every atom
+     * @param from index of the first start atom
+     * @param to index after the last start atom
+     * @param sinks element i receives the hashes of the paths of i + 1 atoms
+     * @throws CDKException if a start atom yields more than pathLimit paths
+     */
+    public static void encodePaths(PathCodes codes, int minDepth, int maxDepth, int pathLimit,
+            boolean hashPseudoAtoms, int[] classes, int from, int to, LongConsumer[] sinks) throws CDKException {
+        CodedPathEncoder encoder = new CodedPathEncoder(codes, minDepth, maxDepth, pathLimit, hashPseudoAtoms, classes, sinks);
+        boolean[] starts = classes != null ? PathSymmetry.representatives(classes) : null;
+        for (int atom = from; atom < to; atom++) {
+            if (starts != null && !starts[atom]) {
+                continue;
+            }
+            encoder.numPaths = 0;
+            encoder.visited[atom] = true;
+            encoder.traversePaths(atom, -1);
+            encoder.visited[atom] = false;
+        }
+    }
+
+    private void traversePaths(int beg, int prev) throws CDKException {
+        if (!hashPseudoAtoms && codes.isPseudoAtom(beg)) {
+            return;
+        }
+        apath[length] = beg;
+        if (prev >= 0) {
+            bpath[length - 1] = prev;
+        }
+        length++;
+        long hash = hashUniquePath(beg, prev);
+        if (classes == null || classes[apath[0]] <= classes[beg]) {
+            sinks[length - 1].accept(hash);
+        }
+        if (++numPaths > pathLimit) {
+            throw new CDKException("Too many paths! Structure is likely a cage, reduce path length or increase path limit");
+        }
+        if (length >= minDepth && length < maxDepth) {
+            int[] nbrs = codes.getNeighbours(beg);
+            int[] bonds = codes.getBonds(beg);
+            for (int i = 0; i < nbrs.length; i++) {
+                if (bonds[i] == prev) {
+                    continue;
+                }
+                final int nbr = nbrs[i];
+                if (!visited[nbr]) {
+                    visited[nbr] = true;
+                    traversePaths(nbr, bonds[i]);
+                    visited[nbr] = false; // traverse all paths
+                }
+            }
+        }
+        length--;
+    }
+
+    /**
+     * Extends the hashes of the parent path, a path of n atoms has 2n - 1
+     * codes and its reverse hash is prefixed with the new atom and bond
+     * codes times the multiplier to the power 2n - 3.
+     */
+    private long hashUniquePath(int atom, int bond) {
+        int last = length - 1;
+        int atomCode = codes.getAtomCode(atom);
+        if (last == 0) {
+            fwd[0] = atomCode;
+            rev[0] = atomCode;
+        } else {
+            int bondCode = codes.getBondCode(bond);
+            fwd[last] = append(append(fwd[last - 1], bondCode), atomCode);
+            rev[last] = append(atomCode, bondCode) * powers[2 * last - 1] + rev[last - 1];
+        }
+        return mix(Math.min(fwd[last], rev[last]));
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2003-2021 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package com.bioinception.chem.fp.fingerprints.helper;
+
+/**
+ * 64-bit hashing primitives for integer coded paths.
+ *
+ * A path is hashed as a polynomial over its codes (Horner's rule modulo
+ * 2<sup>64</sup>) and finished with the MurmurHash3 64-bit finaliser, so that
+ * every code changes every bit of the result.
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public class FastHash {
+
+    /**
+     * Odd multiplier of the polynomial path hash (the 64-bit golden ratio).
+     */
+    public static final long MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    private FastHash() {
+    }
+
+    /**
+     * Appends a code to a polynomial hash.
+     *
+     * @param hash the hash so far
+     * @param code the code to append
+     * @return the extended hash
+     */
+    public static long append(long hash, int code) {
+        return hash * MULTIPLIER + code;
+    }
+
+    /**
+     * MurmurHash3 64-bit finaliser.
+     *
+     * @param hash value to mix
+     * @return the mixed value
+     */
+    public static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * Maps a mixed hash onto [0, range) by multiply-shift on its upper 32 bits,
+     * the replacement for reseeding a {@link java.util.Random} per path.
+     *
+     * @param hash a well mixed hash
+     * @param range size of the range, positive
+     * @return a position in [0, range)
+     */
+    public static int reduce(long hash, int range) {
+        return (int) (((hash >>> 32) * range) >>> 32);
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2003-2021 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package com.bioinception.chem.fp.fingerprints.helper;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Describes everything that determines the bits of a fingerprint: the
+ * algorithm, the size, the search depth, the flags of the fingerprinter and the
+ * {@link HashVersion}. Two fingerprints can only be compared if their
+ * descriptors are equal.
+ *
+ * The descriptor is persisted with every fingerprint in its string form,
+ * <pre>
+ * HashedFingerprinter/1 size=1024 searchDepth=8 respectRingMatches=false
+ * </pre> which is read back with {@link #parse(String)}.
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public class FingerprintDescriptor {
+
+    private static final String SIZE = "size";
+    private static final String SEARCH_DEPTH = "searchDepth";
+
+    private final String algorithm;
+    private final int size;
+    private final int searchDepth;
+    private final HashVersion hashVersion;
+    private final SortedMap<String, String> flags;
+
+    /**
+     * @param algorithm name of the fingerprinter, without white space
+     * @param size number of bits of the fingerprint
+     * @param searchDepth search depth, 0 if the algorithm has none
+     * @param hashVersion version of the path hashing
+     * @param flags options of the fingerprinter which change its bits
+     */
+    public FingerprintDescriptor(String algorithm, int size, int searchDepth,
+            HashVersion hashVersion, Map<String, String> flags) {
+        if (algorithm == null || algorithm.isEmpty() || containsSeparator(algorithm)) {
+            throw new IllegalArgumentException("Invalid algorithm name: " + algorithm);
+        }
+        for (Map.Entry<String, String> e : flags.entrySet()) {
+            if (containsSeparator(e.getKey()) || containsSeparator(e.getValue())
+                    || e.getKey().contains("=") || SIZE.equals(e.getKey()) || SEARCH_DEPTH.equals(e.getKey())) {
+                throw new IllegalArgumentException("Invalid flag: " + e.getKey() + "=" + e.getValue());
+            }
+        }
+        this.algorithm = algorithm;
+        this.size = size;
+        this.searchDepth = searchDepth;
+        this.hashVersion = Objects.requireNonNull(hashVersion);
+        this.flags = Collections.unmodifiableSortedMap(new TreeMap<>(flags));
+    }
+
+    private static boolean containsSeparator(String s) {
+        return s.indexOf(' ') >= 0 || s.indexOf('/') >= 0 || s.indexOf('\t') >= 0;
+    }
+
+    /**
+     * Reads a descriptor from its string form.
+     *
+     * @param description string form of a descriptor
+     * @return the descriptor
+     * @throws IllegalArgumentException if the string is not a descriptor
+     */
+    public static FingerprintDescriptor parse(String description) {
+        String[] tokens = description.trim().split(" ");
+        int slash = tokens[0].indexOf('/');
+        if (slash < 0) {
+            throw new IllegalArgumentException("Missing hash version: " + description);
+        }
+        String algorithm = tokens[0].substring(0, slash);
+        HashVersion hashVersion;
+        try {
+            hashVersion = HashVersion.of(Integer.parseInt(tokens[0].substring(slash + 1)));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid hash version: " + description, e);
+        }
+        Integer size = null;
+        Integer searchDepth = null;
+        Map<String, String> flags = new TreeMap<>();
+        for (int i = 1; i < tokens.length; i++) {
+            int eq = tokens[i].indexOf('=');
+            if (eq < 0) {
+                throw new IllegalArgumentException("Invalid parameter " + tokens[i] + ": " + description);
+            }
+            String key = tokens[i].substring(0, eq);
+            String value = tokens[i].substring(eq + 1);
+            try {
+                if (SIZE.equals(key)) {
+                    size = Integer.parseInt(value);
+                } else if (SEARCH_DEPTH.equals(key)) {
+                    searchDepth = Integer.parseInt(value);
+                } else {
+                    flags.put(key, value);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid parameter " + tokens[i] + ": " + description, e);
+            }
+        }
+        if (size == null || searchDepth == null) {
+            throw new IllegalArgumentException("Missing size or search depth: " + description);
+        }
+        return new FingerprintDescriptor(algorithm, size, searchDepth, hashVersion, flags);
+    }
+
+    /**
+     * @return name of the fingerprinter
+     */
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * @return number of bits of the fingerprint
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return search depth, 0 if the algorithm has none
+     */
+    public int getSearchDepth() {
+        return searchDepth;
+    }
+
+    /**
+     * @return version of the path hashing
+     */
+    public HashVersion getHashVersion() {
+        return hashVersion;
+    }
+
+    /**
+     * @return options of the fingerprinter, sorted by name
+     */
+    public SortedMap<String, String> getFlags() {
+        return flags;
+    }
+
+    /**
+     * @param other another descriptor
+     * @return true if fingerprints of both descriptors can be compared
+     */
+    public boolean isCompatible(FingerprintDescriptor other) {
+        return equals(other);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof FingerprintDescriptor)) {
+            return false;
+        }
+        FingerprintDescriptor other = (FingerprintDescriptor) obj;
+        return size == other.size
+                && searchDepth == other.searchDepth
+                && hashVersion == other.hashVersion
+                && algorithm.equals(other.algorithm)
+                && flags.equals(other.flags);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(algorithm, size, searchDepth, hashVersion, flags);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(algorithm).append('/').append(hashVersion.getVersion());
+        sb.append(' ').append(SIZE).append('=').append(size);
+        sb.append(' ').append(SEARCH_DEPTH).append('=').append(searchDepth);
+        flags.forEach((k, v) -> sb.append(' ').append(k).append('=').append(v));
+        return sb.toString();
+    }
+}
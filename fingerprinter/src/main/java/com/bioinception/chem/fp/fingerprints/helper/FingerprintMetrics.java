@@ -0,0 +1,307 @@
+/*
+ * Copyright (C) 2003-2021 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package com.bioinception.chem.fp.fingerprints.helper;
+
+import com.bioinception.chem.fp.fingerprints.interfaces.IFingerprintMetricsListener;
+import com.bioinception.chem.fp.fingerprints.interfaces.IFingerprintMetricsMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.TreeMap;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Timings of the {@link FingerprintStage}s and the distributions of the paths
+ * walked per molecule and the bits set per fingerprint, recorded by all
+ * fingerprinters of the JVM.
+ *
+ * Recording is off by default, the fingerprinters then pay a volatile read
+ * per stage. When on, every value goes into a {@link LogLinearHistogram} and
+ * to the registered listeners without allocating. The metrics are read
+ * through the {@link IFingerprintMetricsMXBean}, registered with the platform
+ * MBean server by {@link #registerMBean()}.
+ *
+ * A fingerprinter times a stage with
+ * <pre>
+ *   long start = FingerprintMetrics.start();
+ *   ...
+ *   FingerprintMetrics.stop(FingerprintStage.PERCEPTION, start);
+ * </pre>
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public class FingerprintMetrics implements IFingerprintMetricsMXBean {
+
+    /**
+     * The name of the histogram of the paths per molecule, one sample per
+     * fingerprint summed over the components of the molecule: the paths
+     * walked by the path encoders, the distinct paths found by the
+     * {@link MoleculeWalker} of the hashed fingerprinters.
+     */
+    public static final String PATHS = "PATHS";
+    /**
+     * The name of the histogram of the bits set per fingerprint.
+     */
+    public static final String BITS = "BITS";
+    /**
+     * The JMX object name of the metrics.
+     */
+    public static final String OBJECT_NAME = "com.bioinception.chem.fp:type=FingerprintMetrics";
+    /**
+     * Start time returned while recording is off, ignored by
+     * {@link #stop(FingerprintStage, long)}.
+     */
+    public static final long NOT_STARTED = Long.MIN_VALUE;
+
+    private static final IFingerprintMetricsListener[] NO_LISTENERS = new IFingerprintMetricsListener[0];
+    private static final FingerprintStage[] STAGES = FingerprintStage.values();
+
+    private static volatile boolean enabled = false;
+    private static volatile IFingerprintMetricsListener[] listeners = NO_LISTENERS;
+    private static final FingerprintMetrics INSTANCE = new FingerprintMetrics();
+
+    private final LogLinearHistogram[] stages = new LogLinearHistogram[STAGES.length];
+    private final LogLinearHistogram paths = new LogLinearHistogram();
+    private final LogLinearHistogram bits = new LogLinearHistogram();
+
+    private FingerprintMetrics() {
+        for (int i = 0; i < stages.length; i++) {
+            stages[i] = new LogLinearHistogram();
+        }
+    }
+
+    /**
+     * @return the metrics of the JVM
+     */
+    public static FingerprintMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return true if recording is on
+     */
+    public static boolean isRecording() {
+        return enabled;
+    }
+
+    /**
+     * @return the start time of a stage, {@link #NOT_STARTED} if recording
+     * is off
+     */
+    public static long start() {
+        return enabled ? System.nanoTime() : NOT_STARTED;
+    }
+
+    /**
+     * Records the time of a stage.
+     *
+     * @param stage the stage
+     * @param start the start time from {@link #start()}
+     */
+    public static void stop(FingerprintStage stage, long start) {
+        if (!enabled || start == NOT_STARTED) {
+            return;
+        }
+        long nanos = System.nanoTime() - start;
+        INSTANCE.stages[stage.ordinal()].record(nanos);
+        for (IFingerprintMetricsListener listener : listeners) {
+            listener.stageTimed(stage, nanos);
+        }
+    }
+
+    /**
+     * @param count number of paths of a molecule, see {@link #PATHS}
+     */
+    public static void recordPaths(long count) {
+        if (!enabled) {
+            return;
+        }
+        INSTANCE.paths.record(count);
+        for (IFingerprintMetricsListener listener : listeners) {
+            listener.pathsCounted(count);
+        }
+    }
+
+    /**
+     * @param fingerprint a fingerprint, its bits are only counted while
+     * recording is on
+     */
+    public static void recordBits(BitSet fingerprint) {
+        if (!enabled) {
+            return;
+        }
+        int count = fingerprint.cardinality();
+        INSTANCE.bits.record(count);
+        for (IFingerprintMetricsListener listener : listeners) {
+            listener.bitsSet(count);
+        }
+    }
+
+    /**
+     * @param listener receives every value recorded from now on
+     */
+    public static synchronized void addListener(IFingerprintMetricsListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("No listener");
+        }
+        IFingerprintMetricsListener[] extended = new IFingerprintMetricsListener[listeners.length + 1];
+        System.arraycopy(listeners, 0, extended, 0, listeners.length);
+        extended[listeners.length] = listener;
+        listeners = extended;
+    }
+
+    /**
+     * @param listener a registered listener
+     * @return true if the listener was registered
+     */
+    public static synchronized boolean removeListener(IFingerprintMetricsListener listener) {
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] == listener) {
+                IFingerprintMetricsListener[] reduced = new IFingerprintMetricsListener[listeners.length - 1];
+                System.arraycopy(listeners, 0, reduced, 0, i);
+                System.arraycopy(listeners, i + 1, reduced, i, reduced.length - i);
+                listeners = reduced.length == 0 ? NO_LISTENERS : reduced;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server, under
+     * {@link #OBJECT_NAME}, unless they are registered already.
+     */
+    public static synchronized void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(INSTANCE, name);
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Can not register the fingerprint metrics: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Unregisters the metrics from the platform MBean server, if registered.
+     */
+    public static synchronized void unregisterMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Can not unregister the fingerprint metrics: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @param name {@link #PATHS}, {@link #BITS} or the name of a
+     * {@link FingerprintStage}
+     * @return the histogram
+     */
+    public LogLinearHistogram getHistogram(String name) {
+        if (PATHS.equals(name)) {
+            return paths;
+        }
+        if (BITS.equals(name)) {
+            return bits;
+        }
+        for (FingerprintStage stage : STAGES) {
+            if (stage.name().equals(name)) {
+                return stages[stage.ordinal()];
+            }
+        }
+        throw new IllegalArgumentException("Unknown histogram: " + name);
+    }
+
+    /**
+     * @param stage a stage
+     * @return the histogram of the stage, in nanoseconds
+     */
+    public LogLinearHistogram getHistogram(FingerprintStage stage) {
+        return stages[stage.ordinal()];
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        FingerprintMetrics.enabled = enabled;
+    }
+
+    @Override
+    public Map<String, Long> getCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        for (String name : names()) {
+            counts.put(name, getHistogram(name).getCount());
+        }
+        return counts;
+    }
+
+    @Override
+    public Map<String, Long> getTotals() {
+        Map<String, Long> totals = new TreeMap<>();
+        for (String name : names()) {
+            totals.put(name, getHistogram(name).getTotal());
+        }
+        return totals;
+    }
+
+    @Override
+    public Map<String, Long> getMaxima() {
+        Map<String, Long> maxima = new TreeMap<>();
+        for (String name : names()) {
+            maxima.put(name, getHistogram(name).getMax());
+        }
+        return maxima;
+    }
+
+    @Override
+    public long getPercentile(String histogram, double percentile) {
+        return getHistogram(histogram).getPercentile(percentile);
+    }
+
+    @Override
+    public void reset() {
+        for (LogLinearHistogram stage : stages) {
+            stage.reset();
+        }
+        paths.reset();
+        bits.reset();
+    }
+
+    private static String[] names() {
+        String[] names = new String[STAGES.length + 2];
+        for (int i = 0; i < STAGES.length; i++) {
+            names[i] = STAGES[i].name();
+        }
+        names[STAGES.length] = PATHS;
+        names[STAGES.length + 1] = BITS;
+        return names;
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2003-2021 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package com.bioinception.chem.fp.fingerprints.helper;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The fingerprint descriptors known to an index, each with a small integer id
+ * so that the descriptor needs to be stored only once. All comparisons go
+ * through the registry, which rejects fingerprints of unknown or incompatible
+ * descriptors instead of returning a meaningless similarity.
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public class FingerprintRegistry {
+
+    private final Map<FingerprintDescriptor, Integer> ids = new HashMap<>();
+    private final List<FingerprintDescriptor> descriptors = new ArrayList<>();
+
+    /**
+     * Registers a descriptor, registering it again returns the same id.
+     *
+     * @param descriptor the descriptor
+     * @return id of the descriptor
+     */
+    public synchronized int register(FingerprintDescriptor descriptor) {
+        Integer id = ids.get(descriptor);
+        if (id == null) {
+            id = descriptors.size();
+            descriptors.add(descriptor);
+            ids.put(descriptor, id);
+        }
+        return id;
+    }
+
+    /**
+     * @param id id of a descriptor
+     * @return the descriptor
+     * @throws IllegalArgumentException if the id is unknown
+     */
+    public synchronized FingerprintDescriptor getDescriptor(int id) {
+        if (id < 0 || id >= descriptors.size()) {
+            throw new IllegalArgumentException("Unknown fingerprint descriptor id: " + id);
+        }
+        return descriptors.get(id);
+    }
+
+    /**
+     * @param descriptor the descriptor
+     * @return true if the descriptor is registered
+     */
+    public synchronized boolean isRegistered(FingerprintDescriptor descriptor) {
+        return ids.containsKey(descriptor);
+    }
+
+    /**
+     * Checks that two fingerprints can be compared.
+     *
+     * @param fp1 first fingerprint
+     * @param fp2 second fingerprint
+     * @throws IllegalArgumentException if a descriptor is not registered or
+     * the descriptors are not compatible
+     */
+    public void checkComparable(VersionedFingerprint fp1, VersionedFingerprint fp2) {
+        if (!isRegistered(fp1.getDescriptor())) {
+            throw new IllegalArgumentException("Unregistered fingerprint: " + fp1.getDescriptor());
+        }
+        if (!fp1.isCompatible(fp2)) {
+            throw new IllegalArgumentException("Incompatible fingerprints: "
+                    + fp1.getDescriptor() + " vs " + fp2.getDescriptor());
+        }
+    }
+
+    /**
+     * @param fp1 first fingerprint
+     * @param fp2 second fingerprint
+     * @return Tanimoto similarity of the fingerprints, 0 if both are empty
+     * @throws IllegalArgumentException if the fingerprints can not be compared
+     */
+    public double tanimoto(VersionedFingerprint fp1, VersionedFingerprint fp2) {
+        checkComparable(fp1, fp2);
+        BitSet common = (BitSet) fp1.getBits().clone();
+        common.and(fp2.getBits());
+        int c = common.cardinality();
+        int union = fp1.getBits().cardinality() + fp2.getBits().cardinality() - c;
+        return union == 0 ? 0.0 : (double) c / union;
+    }
+
+    /**
+     * @param target fingerprint of the target
+     * @param query fingerprint of the query
+     * @return true if the query bits are a subset of the target bits
+     * @throws IllegalArgumentException if the fingerprints can not be compared
+     */
+    public boolean isSubset(VersionedFingerprint target, VersionedFingerprint query) {
+        checkComparable(target, query);
+        return FingerprinterTool.isSubset(target.getBits(), query.getBits());
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2003-2021 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package com.bioinception.chem.fp.fingerprints.helper;
+
+/**
+ * Stages of generating a fingerprint timed by the {@link FingerprintMetrics}.
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public enum FingerprintStage {
+
+    /**
+     * Atom typing and aromaticity perception.
+     */
+    PERCEPTION,
+    /**
+     * Ring perception for the ring bits and ring features.
+     */
+    RING_FINDING,
+    /**
+     * Splitting a disconnected molecule into its components.
+     */
+    PARTITIONING,
+    /**
+     * Enumerating and hashing the paths. Fingerprinters which set the bits
+     * as they walk include the bit setting.
+     */
+    PATH_WALKING,
+    /**
+     * Mapping the hashes of the paths and features to bits.
+     */
+    BIT_SETTING
+}
@@ -5,6 +5,7 @@
  */
 package com.bioinception.chem.fp.fingerprints.helper;
 
+import java.util.Arrays;
 import java.util.BitSet;
 
 /**
@@ -26,4 +27,36 @@ public class FingerprinterTool {
         clone.and(bs2);
         return bs2.cardinality() > 0 && clone.equals(bs2);
     }
+
+    /**
+     * Validates the search depths of a multi-depth fingerprint.
+     *
+     * @param depths search depths (number of bonds)
+     * @return the distinct depths in ascending order
+     * @throws IllegalArgumentException if there are no depths or a negative
+     * depth
+     */
+    public static int[] sortedDepths(int... depths) {
+        if (depths == null || depths.length == 0) {
+            throw new IllegalArgumentException("No search depth given");
+        }
+        int[] sorted = Arrays.stream(depths).sorted().distinct().toArray();
+        if (sorted[0] < 0) {
+            throw new IllegalArgumentException("Negative search depth: " + sorted[0]);
+        }
+        return sorted;
+    }
+
+    /**
+     * Caps the search depths of a multi-depth fingerprint at the depth a
+     * depth policy walks the molecule with. The depths beyond it collapse
+     * into the capped depth, as their paths are not walked.
+     *
+     * @param sorted distinct search depths in ascending order
+     * @param deepest the capped depth of the deepest search
+     * @return the distinct capped depths in ascending order
+     */
+    public static int[] cappedDepths(int[] sorted, int deepest) {
+        return Arrays.stream(sorted).map(depth -> Math.min(depth, deepest)).distinct().toArray();
+    }
 }
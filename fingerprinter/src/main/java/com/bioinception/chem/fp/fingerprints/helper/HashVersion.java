@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2003-2021 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package com.bioinception.chem.fp.fingerprints.helper;
+
+/**
+ * Version of the hashing scheme used to turn paths into fingerprint bits.
+ *
+ * Every change in the way paths are encoded changes the bits of a
+ * fingerprint, so prints generated with different versions must never be
+ * compared. Versions are cumulative: a fingerprinter configured with a version
+ * applies every change up to and including that version which has a
+ * counterpart in its own encoding, and ignores the others. The default of all
+ * fingerprinters is {@link #LEGACY}, so stored prints stay valid.
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public enum HashVersion {
+
+    /**
+     * The original encoding.
+     */
+    LEGACY(1, "legacy string encoding"),
+    /**
+     * Paths in the {@link MoleculeWalker} are canonicalised by comparing the
+     * atom and bond codes end-to-end instead of reversing the path string
+     * character by character (which turns "Cl" into "lC").
+     */
+    CANONICAL_PATH(2, "canonical path direction on atom/bond codes"),
+    /**
+     * The path encoders hash the integer atom and bond codes of a
+     * {@link PathCodes} table with a 64-bit polynomial hash instead of looking
+     * up a String per atom and bond and hashing only its first character.
+     */
+    PATH_CODES(3, "64-bit hash of integer atom/bond codes"),
+    /**
+     * Path hashes are mapped to bits with {@link FastHash#reduce(long, int)}
+     * instead of reseeding a {@link java.util.Random} (or a Mersenne Twister)
+     * per path. The path encoders buffer the hashes of a molecule and set the
+     * bits in one pass.
+     */
+    FAST_MAPPING(4, "multiply-shift mapping of mixed hashes to bits"),
+    /**
+     * The segments of the scaffold fingerprint (ring sizes, ring paths and
+     * paths) start at fixed offsets instead of after the highest set bit of
+     * the previous segment, so that a bit means the same feature in every
+     * fingerprint. Needed for query fingerprints.
+     */
+    SEGMENT_LAYOUT(5, "fixed segment offsets"),
+    /**
+     * Molecules are perceived into a {@link PerceptionOverlay} instead of
+     * having their atom types and aromaticity set in place, the input is left
+     * unchanged. The aromaticity follows the Daylight model, which needs no
+     * atom types on the atoms, instead of the CDK legacy model.
+     */
+    PERCEPTION_OVERLAY(6, "non-mutating perception overlay");
+
+    private final int version;
+    private final String description;
+
+    HashVersion(int version, String description) {
+        this.version = version;
+        this.description = description;
+    }
+
+    /**
+     * @return the version number
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the description
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * @param other version to check against
+     * @return true if this version includes the changes of the other version
+     */
+    public boolean atLeast(HashVersion other) {
+        return version >= other.version;
+    }
+
+    /**
+     * @param version version number
+     * @return the hash version with the given number
+     * @throws IllegalArgumentException if the version is unknown
+     */
+    public static HashVersion of(int version) {
+        for (HashVersion v : values()) {
+            if (v.version == version) {
+                return v;
+            }
+        }
+        throw new IllegalArgumentException("Unknown hash version: " + version);
+    }
+}
@@ -44,12 +44,13 @@ public class MoleculeWalker implements IWalker, Serializable {
 
     private static final long serialVersionUID = 0x3b728f46;
     private final IAtomContainer atomContainer;
-    private final Set<String> cleanPath;
+    private final Map<String, Integer> cleanPath;
     private final List<String> pseudoAtoms;
     private int pseduoAtomCounter;
-    private final List<StringBuffer> allPaths;
-    private final Map<IAtom, Map<IAtom, IBond>> cache;
     private final int maximumDepth;
+    private final HashVersion hashVersion;
+    private final int parallelThreshold;
+    private final transient PerceptionOverlay overlay;
 
     /**
      *
@@ -57,13 +58,53 @@ public class MoleculeWalker implements IWalker, Serializable {
      * @param atomContainer
      */
     public MoleculeWalker(int maximumDepth, IAtomContainer atomContainer) {
-        this.cleanPath = new HashSet<>();
+        this(maximumDepth, atomContainer, HashVersion.LEGACY);
+    }
+
+    /**
+     *
+     * @param maximumDepth
+     * @param atomContainer
+     * @param hashVersion version of the path encoding
+     */
+    public MoleculeWalker(int maximumDepth, IAtomContainer atomContainer, HashVersion hashVersion) {
+        this(maximumDepth, atomContainer, hashVersion, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Molecules with at least parallelThreshold atoms and without pseudo
+     * atoms are walked with the start atoms split into ForkJoin subtasks, see
+     * {@link StartAtomTask}. The paths are the same, pseudo atoms are coded in
+     * order of appearance and keep the walk sequential.
+     *
+     * @param maximumDepth
+     * @param atomContainer
+     * @param hashVersion version of the path encoding
+     * @param parallelThreshold minimum number of atoms of a parallel walk
+     */
+    public MoleculeWalker(int maximumDepth, IAtomContainer atomContainer, HashVersion hashVersion, int parallelThreshold) {
+        this(maximumDepth, atomContainer, hashVersion, parallelThreshold, null);
+    }
+
+    /**
+     * Walks a molecule with the hybridisation of an overlay instead of the
+     * one set on its atoms.
+     *
+     * @param maximumDepth
+     * @param atomContainer
+     * @param hashVersion version of the path encoding
+     * @param parallelThreshold minimum number of atoms of a parallel walk
+     * @param overlay perception of the molecule, null to read the atoms
+     */
+    public MoleculeWalker(int maximumDepth, IAtomContainer atomContainer, HashVersion hashVersion, int parallelThreshold, PerceptionOverlay overlay) {
+        this.overlay = overlay;
+        this.cleanPath = new HashMap<>();
         this.atomContainer = atomContainer;
         this.maximumDepth = maximumDepth;
+        this.hashVersion = hashVersion;
+        this.parallelThreshold = parallelThreshold;
         this.pseudoAtoms = new ArrayList<>();
         this.pseduoAtomCounter = 0;
-        this.allPaths = new ArrayList<>();
-        this.cache = new HashMap<>();
         findPaths();
     }
 
@@ -88,7 +129,19 @@ public class MoleculeWalker implements IWalker, Serializable {
      */
     @Override
     public Set<String> getPaths() {
-        return Collections.unmodifiableSet(cleanPath);
+        return Collections.unmodifiableSet(cleanPath.keySet());
+    }
+
+    /**
+     * A path string is found by every walk of a length from the shortest one
+     * up to the maximum depth, so the paths of a shorter walk are those with
+     * a depth of at most its maximum depth.
+     *
+     * @return the paths with the number of bonds of the shortest path
+     * encoded by each
+     */
+    public Map<String, Integer> getPathDepths() {
+        return Collections.unmodifiableMap(cleanPath);
     }
 
     /**
@@ -101,74 +154,276 @@ public class MoleculeWalker implements IWalker, Serializable {
 
     private void findPaths() {
         pseudoAtoms.clear();
-        getBondPaths();
-        for (StringBuffer s : allPaths) {
-            String s1 = s.toString().trim();
-            if (s1.equals("")) {
-                continue;
+        int atomCount = atomContainer.getAtomCount();
+        PathCodes codes = PathCodes.of(atomContainer, overlay);
+        char[] bondSymbols = new char[maximumDepth > 0 ? atomContainer.getBondCount() : 0];
+        for (int i = 0; i < bondSymbols.length; i++) {
+            bondSymbols[i] = getBondSymbol(atomContainer.getBond(i));
+        }
+        int[] atomCodes = null;
+        String[] atomPatterns = new String[atomCount];
+        if (hashVersion.atLeast(HashVersion.CANONICAL_PATH)) {
+            registerPseudoAtoms();
+            atomCodes = new int[atomCount];
+            for (int i = 0; i < atomCount; i++) {
+                atomCodes[i] = toAtomCode(atomContainer.getAtom(i));
+                atomPatterns[i] = atomCodes[i] > PeriodicTable.getElementCount()
+                        ? String.valueOf((char) atomCodes[i])
+                        : toAtomPattern(atomContainer.getAtom(i));
+            }
+        } else {
+            for (int i = 0; i < atomCount; i++) {
+                atomPatterns[i] = toAtomPattern(atomContainer.getAtom(i));
             }
-            cleanPath.add(s1);
         }
+        final int[] codedAtoms = atomCodes;
+        if (atomCount >= parallelThreshold && !hasPseudoAtom()) {
+            cleanPath.putAll(StartAtomTask.invoke(atomCount,
+                    (from, to) -> new PathVisitor(codes, bondSymbols, codedAtoms, atomPatterns).visit(from, to),
+                    (a, b) -> {
+                        b.forEach((path, depth) -> a.merge(path, depth, Math::min));
+                        return a;
+                    }));
+            return;
+        }
+        cleanPath.putAll(new PathVisitor(codes, bondSymbols, codedAtoms, atomPatterns).visit(0, atomCount));
     }
 
-    private void getBondPaths() {
-        for (IAtom sourceAtom : atomContainer.atoms()) {
-            List<List<IAtom>> pathsOfLengthUpto = PathTools.getPathsOfLengthUpto(atomContainer, sourceAtom, getMaximumDepth());
-            for (List<IAtom> path : pathsOfLengthUpto) {
-                StringBuffer sb = new StringBuffer();
-                IAtom x = path.get(0);
+    private boolean hasPseudoAtom() {
+        for (IAtom atom : atomContainer.atoms()) {
+            if (atom instanceof IPseudoAtom) {
+                return true;
+            }
+        }
+        return false;
+    }
 
-                if (x instanceof IPseudoAtom) {
-                    if (!pseudoAtoms.contains(x.getSymbol())) {
-                        pseudoAtoms.add(pseduoAtomCounter, x.getSymbol());
-                        pseduoAtomCounter += 1;
-                    }
-                    sb.append((char) (PeriodicTable.getElementCount()
-                            + pseudoAtoms.indexOf(x.getSymbol()) + 1));
-                } else {
-                    Integer atnum = PeriodicTable.getAtomicNumber(x.getSymbol());
-                    if (atnum != null) {
-                        sb.append(toAtomPattern(x));
-                    } else {
-                        sb.append((char) PeriodicTable.getElementCount() + 1);
+    /**
+     * Canonical paths code pseudo atoms in order of their first appearance
+     * in the paths of {@link PathTools#getPathsOfLengthUpto}. With more than
+     * one pseudo atom symbol that order is replayed before the walk, so the
+     * codes do not depend on the order of the depth first search.
+     *
+     * PathTools extends the paths of a start atom one bond at a time, in the
+     * order of the connected atoms, so an atom first appears on one of its
+     * shortest paths. A breadth first search from the start atom visits the
+     * atoms in that order without building the paths.
+     */
+    private void registerPseudoAtoms() {
+        Set<String> symbols = new HashSet<>();
+        for (IAtom atom : atomContainer.atoms()) {
+            if (atom instanceof IPseudoAtom) {
+                symbols.add(atom.getSymbol());
+            }
+        }
+        if (symbols.size() < 2) {
+            return;
+        }
+        int n = atomContainer.getAtomCount();
+        Map<IAtom, Integer> index = new IdentityHashMap<>(2 * n);
+        for (IAtom atom : atomContainer.atoms()) {
+            index.put(atom, index.size());
+        }
+        int[] queue = new int[n];
+        int[] depth = new int[n];
+        int[] seen = new int[n];
+        for (int source = 0; source < n; source++) {
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = source;
+            seen[source] = source + 1;
+            depth[source] = 0;
+            while (head < tail) {
+                int u = queue[head++];
+                IAtom atom = atomContainer.getAtom(u);
+                toAtomCode(atom);
+                if (depth[u] == getMaximumDepth()) {
+                    continue;
+                }
+                for (IAtom nbr : atomContainer.getConnectedAtomsList(atom)) {
+                    int v = index.get(nbr);
+                    if (seen[v] != source + 1) {
+                        seen[v] = source + 1;
+                        depth[v] = depth[u] + 1;
+                        queue[tail++] = v;
                     }
                 }
+            }
+            if (pseudoAtoms.size() == symbols.size()) {
+                return;
+            }
+        }
+    }
 
-                for (int i = 1; i < path.size(); i++) {
-                    final IAtom[] y = {path.get(i)};
-                    Map<IAtom, IBond> m = cache.get(x);
-                    final IBond[] b = {m != null ? m.get(y[0]) : null};
-                    if (b[0] == null) {
-                        b[0] = atomContainer.getBond(x, y[0]);
-                        cache.put(x,
-                                new HashMap<IAtom, IBond>() {
-
-                                    {
-                                        put(y[0], b[0]);
-                                    }
-                                    private static final long serialVersionUID = 0xb3a7a32449fL;
-                                });
-                    }
-                    sb.append(getBondSymbol(b[0]));
-                    sb.append(toAtomPattern(y[0]));
-                    x = y[0];
+    /**
+     * Depth first search over the start atoms of a range that encodes every
+     * path as it is found. The atoms and bonds of the current path are kept
+     * on index stacks and the bond symbols are looked up by bond index.
+     */
+    private class PathVisitor {
+
+        private final PathCodes codes;
+        private final char[] bondSymbols;
+        private final int[] atomCodes;
+        private final String[] atomPatterns;
+        private final boolean[] visited;
+        private final int[] apath;
+        private final int[] pathCodes;
+        private final int[] bondCodes;
+        private final StringBuilder sb = new StringBuilder();
+        private final Map<String, Integer> paths = new HashMap<>();
+
+        PathVisitor(PathCodes codes, char[] bondSymbols, int[] atomCodes, String[] atomPatterns) {
+            this.codes = codes;
+            this.bondSymbols = bondSymbols;
+            this.atomCodes = atomCodes;
+            this.atomPatterns = atomPatterns;
+            this.visited = new boolean[codes.getAtomCount()];
+            int length = Math.min(getMaximumDepth(), codes.getAtomCount()) + 1;
+            this.apath = new int[length];
+            this.pathCodes = new int[length];
+            this.bondCodes = new int[length];
+        }
+
+        /**
+         * @return the paths starting at the atoms [from, to) with the number
+         * of bonds of the shortest path encoded by each
+         */
+        Map<String, Integer> visit(int from, int to) {
+            for (int atom = from; atom < to; atom++) {
+                sb.setLength(0);
+                if (atomCodes == null) {
+                    appendSourceAtom(atomContainer.getAtom(atom));
                 }
+                visited[atom] = true;
+                extend(atom, 0);
+                visited[atom] = false;
+            }
+            return paths;
+        }
 
-                // we store the lexicographically lower one of the
-                // string and its reverse
-                StringBuffer revForm = new StringBuffer(sb);
-                revForm.reverse();
-                if (sb.toString().compareTo(revForm.toString()) <= 0) {
-                    if (!allPaths.contains(sb)) {
-                        allPaths.add(sb);
-                    }
+        private void extend(int atom, int last) {
+            apath[last] = atom;
+            if (atomCodes == null) {
+                addPath(last);
+            } else {
+                pathCodes[last] = atomCodes[atom];
+                addCanonicalPath(last);
+            }
+            if (last == getMaximumDepth()) {
+                return;
+            }
+            int[] nbrs = codes.getNeighbours(atom);
+            int[] bonds = codes.getBonds(atom);
+            for (int i = 0; i < nbrs.length; i++) {
+                int nbr = nbrs[i];
+                if (visited[nbr]) {
+                    continue;
+                }
+                int mark = sb.length();
+                if (atomCodes == null) {
+                    sb.append(bondSymbols[bonds[i]]);
+                    sb.append(atomPatterns[nbr]);
+                }
+                visited[nbr] = true;
+                bondCodes[last] = bondSymbols[bonds[i]];
+                extend(nbr, last + 1);
+                visited[nbr] = false;
+                sb.setLength(mark);
+            }
+        }
+
+        private void appendSourceAtom(IAtom x) {
+            if (x instanceof IPseudoAtom) {
+                if (!pseudoAtoms.contains(x.getSymbol())) {
+                    pseudoAtoms.add(pseduoAtomCounter, x.getSymbol());
+                    pseduoAtomCounter += 1;
+                }
+                sb.append((char) (PeriodicTable.getElementCount()
+                        + pseudoAtoms.indexOf(x.getSymbol()) + 1));
+            } else {
+                Integer atnum = PeriodicTable.getAtomicNumber(x.getSymbol());
+                if (atnum != null) {
+                    sb.append(toAtomPattern(x));
                 } else {
-                    if (!allPaths.contains(revForm)) {
-                        allPaths.add(revForm);
-                    }
+                    sb.append((char) PeriodicTable.getElementCount() + 1);
                 }
             }
         }
+
+        /**
+         * Legacy encoding, the lexicographically lower one of the path string
+         * and its reverse.
+         */
+        private void addPath(int last) {
+            String path = sb.toString();
+            String revForm = new StringBuilder(path).reverse().toString();
+            String s1 = (path.compareTo(revForm) <= 0 ? path : revForm).trim();
+            if (!s1.isEmpty()) {
+                paths.merge(s1, last, Math::min);
+            }
+        }
+
+        /**
+         * Encodes the path with the lexicographically lower direction chosen
+         * on the atom and bond codes, end-to-end. Unlike reversing the path
+         * string this keeps multi-character element symbols intact.
+         */
+        private void addCanonicalPath(int last) {
+            sb.setLength(0);
+            if (compare(pathCodes, bondCodes, last) <= 0) {
+                sb.append(atomPatterns[apath[0]]);
+                for (int i = 1; i <= last; i++) {
+                    sb.append((char) bondCodes[i - 1]);
+                    sb.append(atomPatterns[apath[i]]);
+                }
+            } else {
+                sb.append(atomPatterns[apath[last]]);
+                for (int i = last - 1; i >= 0; i--) {
+                    sb.append((char) bondCodes[i]);
+                    sb.append(atomPatterns[apath[i]]);
+                }
+            }
+            paths.merge(sb.toString(), last, Math::min);
+        }
+    }
+
+    /**
+     * Compares a path with its reverse, atom and bond codes end-to-end.
+     *
+     * @param atomCodes codes of the atoms in the path
+     * @param bondCodes codes of the bonds in the path
+     * @param last index of the last atom in the path
+     * @return &lt;0 forward is lower, &gt;0 reverse is lower, 0 palindrome
+     */
+    private static int compare(int[] atomCodes, int[] bondCodes, int last) {
+        for (int i = 0, j = last; i < j; i++, j--) {
+            int cmp = Integer.compare(atomCodes[i], atomCodes[j]);
+            if (cmp != 0) {
+                return cmp;
+            }
+            cmp = Integer.compare(bondCodes[i], bondCodes[j - 1]);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Atoms are coded by their atomic number, pseudo atoms follow the last
+     * element of the periodic table in order of appearance.
+     */
+    private int toAtomCode(IAtom atom) {
+        if (atom instanceof IPseudoAtom) {
+            if (!pseudoAtoms.contains(atom.getSymbol())) {
+                pseudoAtoms.add(pseduoAtomCounter, atom.getSymbol());
+                pseduoAtomCounter += 1;
+            }
+            return PeriodicTable.getElementCount() + pseudoAtoms.indexOf(atom.getSymbol()) + 1;
+        }
+        Integer atnum = PeriodicTable.getAtomicNumber(atom.getSymbol());
+        return atnum != null ? atnum : PeriodicTable.getElementCount() + 1;
     }
 
     private String toAtomPattern(IAtom atom) {
@@ -205,17 +460,21 @@ public class MoleculeWalker implements IWalker, Serializable {
      */
     private boolean isSP2Bond(IBond bond) {
         if (bond.getAtomCount() == 2
-                && bond.getAtom(0).getHybridization() == IAtomType.Hybridization.SP2
-                && bond.getAtom(1).getHybridization() == IAtomType.Hybridization.SP2) {
+                && getHybridization(bond.getAtom(0)) == IAtomType.Hybridization.SP2
+                && getHybridization(bond.getAtom(1)) == IAtomType.Hybridization.SP2) {
             return true;
         }
         return false;
     }
 
+    private IAtomType.Hybridization getHybridization(IAtom atom) {
+        return overlay == null ? atom.getHybridization() : overlay.getHybridization(atom);
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
-        for (String path : cleanPath) {
+        for (String path : cleanPath.keySet()) {
             sb.append(path).append("->");
         }
         return sb.toString();
@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2003-2021 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package com.bioinception.chem.fp.fingerprints.helper;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+
+/**
+ * Integer codes of the atoms and bonds of a molecule together with its
+ * adjacency, built once per molecule so that paths can be encoded without a
+ * String lookup per atom and bond.
+ *
+ * Atoms are coded by atomic number plus one (pseudo atoms and atoms without
+ * an atomic number are 1), bonds by order with aromatic bonds kept apart. All
+ * codes are non-zero.
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public class PathCodes {
+
+    public static final int SINGLE = 1;
+    public static final int DOUBLE = 2;
+    public static final int TRIPLE = 3;
+    public static final int QUADRUPLE = 4;
+    public static final int AROMATIC = 5;
+    public static final int UNKNOWN = 6;
+
+    private final int[] atomCodes;
+    private final int[] bondCodes;
+    private final int[][] neighbours;
+    private final int[][] bonds;
+
+    private PathCodes(int[] atomCodes, int[] bondCodes, int[][] neighbours, int[][] bonds) {
+        this.atomCodes = atomCodes;
+        this.bondCodes = bondCodes;
+        this.neighbours = neighbours;
+        this.bonds = bonds;
+    }
+
+    /**
+     * Builds the code table of a molecule.
+     *
+     * @param mol the molecule
+     * @return the code table
+     */
+    public static PathCodes of(IAtomContainer mol) {
+        return of(mol, null);
+    }
+
+    /**
+     * Builds the code table of a molecule with the aromaticity of an overlay.
+     *
+     * @param mol the molecule
+     * @param overlay perception of the molecule, null to read the bonds
+     * @return the code table
+     */
+    public static PathCodes of(IAtomContainer mol, PerceptionOverlay overlay) {
+        int n = mol.getAtomCount();
+        int m = mol.getBondCount();
+        Map<IAtom, Integer> index = new IdentityHashMap<>(2 * n);
+        int[] atomCodes = new int[n];
+        int i = 0;
+        for (IAtom atom : mol.atoms()) {
+            index.put(atom, i);
+            atomCodes[i++] = getAtomCode(atom);
+        }
+
+        int[] bondCodes = new int[m];
+        int[] begin = new int[m];
+        int[] end = new int[m];
+        int[] degree = new int[n];
+        int j = 0;
+        for (IBond bond : mol.bonds()) {
+            begin[j] = index.get(bond.getBegin());
+            end[j] = index.get(bond.getEnd());
+            bondCodes[j] = getBondCode(bond, overlay == null ? bond.isAromatic() : overlay.isAromatic(bond));
+            degree[begin[j]]++;
+            degree[end[j]]++;
+            j++;
+        }
+
+        int[][] neighbours = new int[n][];
+        int[][] bonds = new int[n][];
+        for (int k = 0; k < n; k++) {
+            neighbours[k] = new int[degree[k]];
+            bonds[k] = new int[degree[k]];
+            degree[k] = 0;
+        }
+        for (int k = 0; k < m; k++) {
+            int u = begin[k];
+            int v = end[k];
+            neighbours[u][degree[u]] = v;
+            bonds[u][degree[u]++] = k;
+            neighbours[v][degree[v]] = u;
+            bonds[v][degree[v]++] = k;
+        }
+        return new PathCodes(atomCodes, bondCodes, neighbours, bonds);
+    }
+
+    /**
+     * @param atom the atom
+     * @return the code of an atom, atomic number plus one
+     */
+    public static int getAtomCode(IAtom atom) {
+        Integer elem = atom.getAtomicNumber();
+        return elem == null ? 1 : elem + 1;
+    }
+
+    /**
+     * @param bond the bond
+     * @return the code of a bond
+     */
+    public static int getBondCode(IBond bond) {
+        return getBondCode(bond, bond.isAromatic());
+    }
+
+    private static int getBondCode(IBond bond, boolean aromatic) {
+        if (aromatic) {
+            return AROMATIC;
+        }
+        if (bond.getOrder() == null) {
+            return UNKNOWN;
+        }
+        switch (bond.getOrder()) {
+            case SINGLE:
+                return SINGLE;
+            case DOUBLE:
+                return DOUBLE;
+            case TRIPLE:
+                return TRIPLE;
+            case QUADRUPLE:
+                return QUADRUPLE;
+            default:
+                return UNKNOWN;
+        }
+    }
+
+    /**
+     * @return number of atoms
+     */
+    public int getAtomCount() {
+        return atomCodes.length;
+    }
+
+    /**
+     * @param atom index of the atom
+     * @return code of the atom
+     */
+    public int getAtomCode(int atom) {
+        return atomCodes[atom];
+    }
+
+    /**
+     * @param bond index of the bond
+     * @return code of the bond
+     */
+    public int getBondCode(int bond) {
+        return bondCodes[bond];
+    }
+
+    /**
+     * @param atom index of the atom
+     * @return indices of the neighbouring atoms
+     */
+    public int[] getNeighbours(int atom) {
+        return neighbours[atom];
+    }
+
+    /**
+     * @param atom index of the atom
+     * @return indices of the bonds to the neighbours, in the same order as
+     * {@link #getNeighbours(int)}
+     */
+    public int[] getBonds(int atom) {
+        return bonds[atom];
+    }
+
+    /**
+     * @param atom index of the atom
+     * @return true if the atom is a pseudo atom (no atomic number)
+     */
+    public boolean isPseudoAtom(int atom) {
+        return atomCodes[atom] == 1;
+    }
+}
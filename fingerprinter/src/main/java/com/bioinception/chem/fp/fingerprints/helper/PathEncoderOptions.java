@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2003-2021 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package com.bioinception.chem.fp.fingerprints.helper;
+
+/**
+ * Settings of the path encoders that are fixed per fingerprinter: the path
+ * limit, pseudo atom hashing, the hash version, symmetry pruning and the
+ * parallel threshold. A fingerprinter builds it once for its configuration
+ * and passes it to every encoding, the depth, the bit segment and the
+ * perception of a molecule are passed per call.
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public final class PathEncoderOptions {
+
+    private final int pathLimit;
+    private final boolean hashPseudoAtoms;
+    private final HashVersion hashVersion;
+    private final boolean symmetryPruning;
+    private final int parallelThreshold;
+
+    /**
+     * Sequential legacy encoding.
+     *
+     * @param pathLimit the maximum number of paths per start atom
+     * @param hashPseudoAtoms encode the paths through pseudo atoms
+     */
+    public PathEncoderOptions(int pathLimit, boolean hashPseudoAtoms) {
+        this(pathLimit, hashPseudoAtoms, HashVersion.LEGACY, false, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param pathLimit the maximum number of paths per start atom
+     * @param hashPseudoAtoms encode the paths through pseudo atoms
+     * @param hashVersion the hash version
+     * @param symmetryPruning start the paths from one atom per symmetry class
+     * and emit every path from one end only, see {@link PathSymmetry}. The
+     * bits are the same.
+     * @param parallelThreshold molecules with at least this many atoms are
+     * encoded with their start atoms split into ForkJoin subtasks, see
+     * {@link StartAtomTask}. The bits are the same.
+     */
+    public PathEncoderOptions(int pathLimit, boolean hashPseudoAtoms, HashVersion hashVersion,
+            boolean symmetryPruning, int parallelThreshold) {
+        if (hashVersion == null) {
+            throw new IllegalArgumentException("No hash version");
+        }
+        this.pathLimit = pathLimit;
+        this.hashPseudoAtoms = hashPseudoAtoms;
+        this.hashVersion = hashVersion;
+        this.symmetryPruning = symmetryPruning;
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    /**
+     * @return the maximum number of paths per start atom
+     */
+    public int getPathLimit() {
+        return pathLimit;
+    }
+
+    /**
+     * @return true if the paths through pseudo atoms are encoded
+     */
+    public boolean isHashPseudoAtoms() {
+        return hashPseudoAtoms;
+    }
+
+    /**
+     * @return the hash version
+     */
+    public HashVersion getHashVersion() {
+        return hashVersion;
+    }
+
+    /**
+     * @return true if the paths start from one atom per symmetry class
+     */
+    public boolean isSymmetryPruning() {
+        return symmetryPruning;
+    }
+
+    /**
+     * @return the number of atoms from which the encoding is parallel
+     */
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    /**
+     * @return true if the paths are encoded from atom and bond codes, which
+     * the legacy string paths only need for symmetry pruning
+     */
+    public boolean needsPathCodes() {
+        return symmetryPruning || hashVersion.atLeast(HashVersion.PATH_CODES);
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright (C) 2003-2021 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package com.bioinception.chem.fp.fingerprints.helper;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.isomorphism.AtomMatcher;
+import org.openscience.cdk.isomorphism.BondMatcher;
+import org.openscience.cdk.isomorphism.VentoFoggia;
+
+/**
+ * Symmetry classes of the atoms of a molecule under the atom and bond codes
+ * of its {@link PathCodes}, used to enumerate the paths of a molecule from
+ * one start atom per class.
+ *
+ * The atoms are first partitioned by refining their codes with those of
+ * their neighbours. Atoms in the same refined class are not necessarily
+ * equivalent, so every class is split into orbits by searching for an
+ * automorphism that maps its first atom onto each of the others. Atoms of an
+ * orbit start the same set of paths, so the classes can be used to skip start
+ * atoms without changing the bits of a fingerprint.
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public class PathSymmetry {
+
+    private PathSymmetry() {
+    }
+
+    /**
+     * Classes are numbered in the order of their first atom, an atom is the
+     * representative of its class if no atom before it has the same class.
+     *
+     * @param mol the molecule
+     * @param codes code table of the molecule
+     * @return the symmetry class of every atom, in the atom order of the
+     * molecule
+     */
+    public static int[] classes(IAtomContainer mol, PathCodes codes) {
+        int n = codes.getAtomCount();
+        int[] refined = refine(codes);
+        int[] parent = new int[n];
+        for (int i = 0; i < n; i++) {
+            parent[i] = i;
+        }
+
+        Map<IAtom, Integer> atomIndex = null;
+        Map<IBond, Integer> bondIndex = null;
+        List<List<Integer>> members = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            if (refined[i] == members.size()) {
+                members.add(new ArrayList<>());
+            }
+            members.get(refined[i]).add(i);
+        }
+        for (List<Integer> cls : members) {
+            for (int i = 0; i < cls.size(); i++) {
+                int u = cls.get(i);
+                if (find(parent, u) != u) {
+                    continue;
+                }
+                for (int j = i + 1; j < cls.size(); j++) {
+                    int w = cls.get(j);
+                    if (find(parent, w) == find(parent, u)) {
+                        continue;
+                    }
+                    if (atomIndex == null) {
+                        atomIndex = index(mol.atoms(), mol.getAtomCount());
+                        bondIndex = index(mol.bonds(), mol.getBondCount());
+                    }
+                    int[] mapping = automorphism(mol, codes, atomIndex, bondIndex, mol.getAtom(u), mol.getAtom(w));
+                    for (int v = 0; v < mapping.length; v++) {
+                        union(parent, v, mapping[v]);
+                    }
+                }
+            }
+        }
+
+        // the root of an orbit is its first atom
+        int[] classes = new int[n];
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            int root = find(parent, i);
+            classes[i] = root == i ? count++ : classes[root];
+        }
+        return classes;
+    }
+
+    /**
+     * @param classes symmetry classes from {@link #classes}
+     * @return true for the first atom of every class
+     */
+    public static boolean[] representatives(int[] classes) {
+        boolean[] representatives = new boolean[classes.length];
+        int next = 0;
+        for (int i = 0; i < classes.length; i++) {
+            if (classes[i] == next) {
+                representatives[i] = true;
+                next++;
+            }
+        }
+        return representatives;
+    }
+
+    /**
+     * @param classes symmetry classes from {@link #classes}
+     * @return number of classes
+     */
+    public static int count(int[] classes) {
+        int count = 0;
+        for (int cls : classes) {
+            count = Math.max(count, cls + 1);
+        }
+        return count;
+    }
+
+    /**
+     * Refines the atom codes with the codes of the bonds and the classes of
+     * the neighbours until the number of classes is stable.
+     */
+    private static int[] refine(PathCodes codes) {
+        int n = codes.getAtomCount();
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = codes.getAtomCode(i);
+        }
+        int[] classes = new int[n];
+        int count = number(keys, classes);
+        while (true) {
+            for (int i = 0; i < n; i++) {
+                int[] nbrs = codes.getNeighbours(i);
+                int[] bonds = codes.getBonds(i);
+                long sum = 0;
+                for (int k = 0; k < nbrs.length; k++) {
+                    sum += FastHash.mix(FastHash.append(codes.getBondCode(bonds[k]), classes[nbrs[k]]));
+                }
+                keys[i] = FastHash.append(FastHash.mix(sum), classes[i]);
+            }
+            int[] next = new int[n];
+            int refined = number(keys, next);
+            classes = next;
+            if (refined == count) {
+                return classes;
+            }
+            count = refined;
+        }
+    }
+
+    /**
+     * Numbers the distinct keys in the order of their first occurrence.
+     */
+    private static int number(long[] keys, int[] classes) {
+        Map<Long, Integer> ids = new HashMap<>();
+        for (int i = 0; i < keys.length; i++) {
+            Integer id = ids.get(keys[i]);
+            if (id == null) {
+                id = ids.size();
+                ids.put(keys[i], id);
+            }
+            classes[i] = id;
+        }
+        return ids.size();
+    }
+
+    /**
+     * @return the index of every atom or bond, by identity as in
+     * {@link PathCodes#of(IAtomContainer, PerceptionOverlay)}
+     */
+    private static <T> Map<T, Integer> index(Iterable<T> items, int count) {
+        Map<T, Integer> index = new IdentityHashMap<>(2 * count);
+        for (T item : items) {
+            index.put(item, index.size());
+        }
+        return index;
+    }
+
+    /**
+     * Matches the atoms and bonds on their codes in the code table, so that
+     * the automorphisms respect the aromaticity the codes were built with.
+     *
+     * @return an automorphism mapping the atom from onto the atom to, empty
+     * if there is none
+     */
+    private static int[] automorphism(IAtomContainer mol, PathCodes codes, Map<IAtom, Integer> atomIndex,
+            Map<IBond, Integer> bondIndex, IAtom from, IAtom to) {
+        AtomMatcher atomMatcher = new AtomMatcher() {
+            @Override
+            public boolean matches(IAtom a, IAtom b) {
+                return codes.getAtomCode(atomIndex.get(a)) == codes.getAtomCode(atomIndex.get(b))
+                        && (a != from || b == to);
+            }
+        };
+        BondMatcher bondMatcher = new BondMatcher() {
+            @Override
+            public boolean matches(IBond a, IBond b) {
+                return codes.getBondCode(bondIndex.get(a)) == codes.getBondCode(bondIndex.get(b));
+            }
+        };
+        return VentoFoggia.findIdentical(mol, atomMatcher, bondMatcher).match(mol);
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private static void union(int[] parent, int a, int b) {
+        int ra = find(parent, a);
+        int rb = find(parent, b);
+        if (ra < rb) {
+            parent[rb] = ra;
+        } else if (rb < ra) {
+            parent[ra] = rb;
+        }
+    }
+}
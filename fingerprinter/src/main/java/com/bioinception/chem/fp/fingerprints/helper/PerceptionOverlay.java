@@ -0,0 +1,247 @@
+/*
+ * Copyright (C) 2003-2021 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package com.bioinception.chem.fp.fingerprints.helper;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import org.openscience.cdk.AtomRef;
+import org.openscience.cdk.BondRef;
+import org.openscience.cdk.aromaticity.Aromaticity;
+import org.openscience.cdk.aromaticity.ElectronDonation;
+import org.openscience.cdk.atomtype.CDKAtomTypeMatcher;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.graph.Cycles;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IAtomType;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.interfaces.IPseudoAtom;
+
+/**
+ * Atom types, hybridisation, aromaticity and implicit hydrogen counts of a
+ * molecule, held in arrays indexed by atom and bond instead of on the atoms
+ * and bonds themselves.
+ *
+ * {@link #perceive(IAtomContainer)} types the atoms and perceives the
+ * aromaticity without touching the molecule, so that shared molecules can be
+ * read concurrently and need not be cloned. The atoms are typed with the
+ * {@link CDKAtomTypeMatcher}, the aromaticity follows the Daylight model
+ * which needs no atom types on the atoms. {@link #of(IAtomContainer)} takes
+ * the values as they are set on a molecule perceived in place.
+ *
+ * Atoms and bonds are looked up by identity, past their container
+ * references, an overlay also answers for a container sharing the atoms and
+ * bonds of its molecule, such as a component, a ring or a reduced query.
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public class PerceptionOverlay {
+
+    private static final IAtomType.Hybridization[] HYBRIDIZATIONS = IAtomType.Hybridization.values();
+    private static final Aromaticity DAYLIGHT
+            = new Aromaticity(ElectronDonation.daylight(), Cycles.or(Cycles.all(), Cycles.relevant()));
+
+    private final Map<IAtom, Integer> atomIndex;
+    private final Map<IBond, Integer> bondIndex;
+    private final String[] atomTypeNames;
+    /**
+     * ordinal of the hybridisation plus one, 0 if unset
+     */
+    private final byte[] hybridizations;
+    private final boolean[] aromaticAtoms;
+    private final boolean[] aromaticBonds;
+    /**
+     * implicit hydrogen count, -1 if unset
+     */
+    private final int[] implicitHydrogens;
+
+    private PerceptionOverlay(IAtomContainer container) {
+        int n = container.getAtomCount();
+        int m = container.getBondCount();
+        this.atomIndex = new IdentityHashMap<>(2 * n);
+        this.bondIndex = new IdentityHashMap<>(2 * m);
+        this.atomTypeNames = new String[n];
+        this.hybridizations = new byte[n];
+        this.aromaticAtoms = new boolean[n];
+        this.aromaticBonds = new boolean[m];
+        this.implicitHydrogens = new int[n];
+        for (int i = 0; i < n; i++) {
+            IAtom atom = container.getAtom(i);
+            atomIndex.put(AtomRef.deref(atom), i);
+            Integer hydrogens = atom.getImplicitHydrogenCount();
+            implicitHydrogens[i] = hydrogens == null ? -1 : hydrogens;
+        }
+        for (int i = 0; i < m; i++) {
+            bondIndex.put(BondRef.deref(container.getBond(i)), i);
+        }
+    }
+
+    /**
+     * Reads the atom types, hybridisation and aromaticity set on the atoms and
+     * bonds of a molecule.
+     *
+     * @param container a molecule, usually perceived in place
+     * @return the overlay of the molecule
+     */
+    public static PerceptionOverlay of(IAtomContainer container) {
+        PerceptionOverlay overlay = new PerceptionOverlay(container);
+        for (int i = 0; i < container.getAtomCount(); i++) {
+            IAtom atom = container.getAtom(i);
+            overlay.atomTypeNames[i] = atom.getAtomTypeName();
+            overlay.setHybridization(i, atom.getHybridization());
+        }
+        overlay.copyAromaticity(container);
+        return overlay;
+    }
+
+    /**
+     * Types the atoms and perceives the aromaticity of a molecule, leaving the
+     * molecule unchanged. Molecules the Daylight model can not handle, with
+     * pseudo atoms or unset bond orders or hydrogen counts, keep the
+     * aromaticity flags they were read with.
+     *
+     * @param container the molecule
+     * @return the overlay of the molecule
+     * @throws CDKException if the atoms can not be typed or the ring systems
+     * are too complex
+     */
+    public static PerceptionOverlay perceive(IAtomContainer container) throws CDKException {
+        PerceptionOverlay overlay = new PerceptionOverlay(container);
+        CDKAtomTypeMatcher matcher = CDKAtomTypeMatcher.getInstance(container.getBuilder());
+        for (int i = 0; i < container.getAtomCount(); i++) {
+            IAtom atom = container.getAtom(i);
+            if (atom instanceof IPseudoAtom) {
+                overlay.atomTypeNames[i] = atom.getAtomTypeName();
+                overlay.setHybridization(i, atom.getHybridization());
+                continue;
+            }
+            IAtomType type = matcher.findMatchingAtomType(container, atom);
+            if (type == null || "X".equals(type.getAtomTypeName())) {
+                overlay.atomTypeNames[i] = "X";
+            } else {
+                overlay.atomTypeNames[i] = type.getAtomTypeName();
+                overlay.setHybridization(i, type.getHybridization());
+            }
+        }
+        if (!isDaylightTypeable(container)) {
+            overlay.copyAromaticity(container);
+            return overlay;
+        }
+        Set<IBond> aromatic;
+        try {
+            aromatic = DAYLIGHT.findBonds(container);
+        } catch (IllegalArgumentException | UnsupportedOperationException e) {
+            overlay.copyAromaticity(container);
+            return overlay;
+        }
+        for (IBond bond : aromatic) {
+            overlay.aromaticBonds[overlay.indexOf(bond)] = true;
+            overlay.aromaticAtoms[overlay.indexOf(bond.getBegin())] = true;
+            overlay.aromaticAtoms[overlay.indexOf(bond.getEnd())] = true;
+        }
+        return overlay;
+    }
+
+    private static boolean isDaylightTypeable(IAtomContainer container) {
+        for (IAtom atom : container.atoms()) {
+            if (atom instanceof IPseudoAtom || atom.getAtomicNumber() == null
+                    || atom.getImplicitHydrogenCount() == null) {
+                return false;
+            }
+        }
+        for (IBond bond : container.bonds()) {
+            if (bond.getOrder() == null || bond.getOrder() == IBond.Order.UNSET) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void setHybridization(int atom, IAtomType.Hybridization hybridization) {
+        hybridizations[atom] = (byte) (hybridization == null ? 0 : hybridization.ordinal() + 1);
+    }
+
+    private void copyAromaticity(IAtomContainer container) {
+        for (int i = 0; i < aromaticAtoms.length; i++) {
+            aromaticAtoms[i] = container.getAtom(i).isAromatic();
+        }
+        for (int i = 0; i < aromaticBonds.length; i++) {
+            aromaticBonds[i] = container.getBond(i).isAromatic();
+        }
+    }
+
+    private int indexOf(IAtom atom) {
+        Integer index = atomIndex.get(AtomRef.deref(atom));
+        if (index == null) {
+            throw new IllegalArgumentException("Atom is not part of the perceived molecule");
+        }
+        return index;
+    }
+
+    private int indexOf(IBond bond) {
+        Integer index = bondIndex.get(BondRef.deref(bond));
+        if (index == null) {
+            throw new IllegalArgumentException("Bond is not part of the perceived molecule");
+        }
+        return index;
+    }
+
+    /**
+     * @param atom an atom of the molecule
+     * @return name of the atom type, "X" if no type matched
+     */
+    public String getAtomTypeName(IAtom atom) {
+        return atomTypeNames[indexOf(atom)];
+    }
+
+    /**
+     * @param atom an atom of the molecule
+     * @return hybridisation of the atom type, null if unset
+     */
+    public IAtomType.Hybridization getHybridization(IAtom atom) {
+        int hybridization = hybridizations[indexOf(atom)];
+        return hybridization == 0 ? null : HYBRIDIZATIONS[hybridization - 1];
+    }
+
+    /**
+     * @param atom an atom of the molecule
+     * @return true if the atom is aromatic
+     */
+    public boolean isAromatic(IAtom atom) {
+        return aromaticAtoms[indexOf(atom)];
+    }
+
+    /**
+     * @param bond a bond of the molecule
+     * @return true if the bond is aromatic
+     */
+    public boolean isAromatic(IBond bond) {
+        return aromaticBonds[indexOf(bond)];
+    }
+
+    /**
+     * @param atom an atom of the molecule
+     * @return implicit hydrogen count of the atom, null if unset
+     */
+    public Integer getImplicitHydrogenCount(IAtom atom) {
+        int hydrogens = implicitHydrogens[indexOf(atom)];
+        return hydrogens < 0 ? null : hydrogens;
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2003-2021 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package com.bioinception.chem.fp.fingerprints.helper;
+
+import java.util.function.Predicate;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.interfaces.IPseudoAtom;
+
+/**
+ * Reduces a perceived substructure query to the part whose paths are encoded
+ * the same way in every superstructure.
+ *
+ * Hydrogens are dropped, a target may carry them implicitly. A bond is kept
+ * only if its symbol can not change when the query is embedded in a larger
+ * structure: an atom whose hydrogens may be replaced by a double bond, or by
+ * a ring closure, may change hybridisation or aromaticity in the target. The
+ * aromaticity perceived on the query is trusted, an aromatic ring of the
+ * query is taken to stay aromatic in its superstructures.
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public class QueryGraph {
+
+    private QueryGraph() {
+    }
+
+    /**
+     * @param query the perceived query
+     * @param settled bonds to keep
+     * @param keepPseudoAtoms keep pseudo atoms, otherwise they are dropped
+     * as wildcards
+     * @return a container sharing the kept atoms and bonds of the query
+     */
+    public static IAtomContainer reduce(IAtomContainer query, Predicate<IBond> settled, boolean keepPseudoAtoms) {
+        IAtomContainer reduced = query.getBuilder().newAtomContainer();
+        for (IAtom atom : query.atoms()) {
+            if (isKept(atom, keepPseudoAtoms)) {
+                reduced.addAtom(atom);
+            }
+        }
+        for (IBond bond : query.bonds()) {
+            if (isKept(bond.getBegin(), keepPseudoAtoms)
+                    && isKept(bond.getEnd(), keepPseudoAtoms)
+                    && settled.test(bond)) {
+                reduced.addBond(bond);
+            }
+        }
+        return reduced;
+    }
+
+    /**
+     * An atom with at most one hydrogen can not gain a double bond, its
+     * hybridisation is set by the query. Nitrogens with single bonds only are
+     * the exception, they are typed as amides next to a carbonyl of the
+     * target.
+     *
+     * @param container the query
+     * @param atom an atom of the query
+     * @return true if the atom has the same hybridisation in every
+     * superstructure
+     */
+    public static boolean isHybridizationFixed(IAtomContainer container, IAtom atom) {
+        return isHybridizationFixed(container, null, atom);
+    }
+
+    /**
+     * @param container the query
+     * @param overlay perception of the query, null to read the atoms
+     * @param atom an atom of the query
+     * @return true if the atom has the same hybridisation in every
+     * superstructure
+     */
+    public static boolean isHybridizationFixed(IAtomContainer container, PerceptionOverlay overlay, IAtom atom) {
+        if (isAromatic(overlay, atom)) {
+            return true;
+        }
+        int hydrogens = getHydrogenCount(container, overlay, atom);
+        if (hydrogens < 0 || hydrogens > 1) {
+            return false;
+        }
+        if (getElement(atom) == 7) {
+            return !hasSingleBondsOnly(container, overlay, atom);
+        }
+        return true;
+    }
+
+    /**
+     * Saturated sp3 carbons and saturated terminal atoms are never part of
+     * an aromatic ring.
+     *
+     * @param container the query
+     * @param atom an atom of the query
+     * @return true if the atom is not aromatic in any superstructure
+     */
+    public static boolean isNeverAromatic(IAtomContainer container, IAtom atom) {
+        return isNeverAromatic(container, null, atom);
+    }
+
+    /**
+     * @param container the query
+     * @param overlay perception of the query, null to read the atoms
+     * @param atom an atom of the query
+     * @return true if the atom is not aromatic in any superstructure
+     */
+    public static boolean isNeverAromatic(IAtomContainer container, PerceptionOverlay overlay, IAtom atom) {
+        if (isAromatic(overlay, atom)) {
+            return false;
+        }
+        int hydrogens = getHydrogenCount(container, overlay, atom);
+        if (hydrogens < 0) {
+            return false;
+        }
+        int element = getElement(atom);
+        int degree = container.getConnectedBondsCount(atom) - (hydrogens - implicitHydrogens(overlay, atom));
+        if (element == 6) {
+            return hasSingleBondsOnly(container, overlay, atom) && degree + hydrogens == 4 && hydrogens <= 1;
+        }
+        switch (element) {
+            case 7:
+            case 8:
+            case 9:
+            case 17:
+            case 35:
+            case 53:
+                return degree == 1 && hydrogens == 0;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @param container the query
+     * @param atom an atom of the query
+     * @return implicit and explicit hydrogens of the atom, -1 if the implicit
+     * hydrogen count is unset
+     */
+    public static int getHydrogenCount(IAtomContainer container, IAtom atom) {
+        return getHydrogenCount(container, null, atom);
+    }
+
+    private static int getHydrogenCount(IAtomContainer container, PerceptionOverlay overlay, IAtom atom) {
+        Integer implicit = overlay == null ? atom.getImplicitHydrogenCount() : overlay.getImplicitHydrogenCount(atom);
+        if (implicit == null) {
+            return -1;
+        }
+        int count = implicit;
+        for (IAtom nbr : container.getConnectedAtomsList(atom)) {
+            if (getElement(nbr) == 1) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static int implicitHydrogens(PerceptionOverlay overlay, IAtom atom) {
+        Integer implicit = overlay == null ? atom.getImplicitHydrogenCount() : overlay.getImplicitHydrogenCount(atom);
+        return implicit == null ? 0 : implicit;
+    }
+
+    private static boolean isAromatic(PerceptionOverlay overlay, IAtom atom) {
+        return overlay == null ? atom.isAromatic() : overlay.isAromatic(atom);
+    }
+
+    private static boolean isAromatic(PerceptionOverlay overlay, IBond bond) {
+        return overlay == null ? bond.isAromatic() : overlay.isAromatic(bond);
+    }
+
+    private static boolean hasSingleBondsOnly(IAtomContainer container, PerceptionOverlay overlay, IAtom atom) {
+        for (IBond bond : container.getConnectedBondsList(atom)) {
+            if (isAromatic(overlay, bond) || bond.getOrder() != IBond.Order.SINGLE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isKept(IAtom atom, boolean keepPseudoAtoms) {
+        int element = getElement(atom);
+        if (element == 1) {
+            return false;
+        }
+        return keepPseudoAtoms || (element != 0 && !(atom instanceof IPseudoAtom));
+    }
+
+    private static int getElement(IAtom atom) {
+        Integer element = atom.getAtomicNumber();
+        return element == null ? 0 : element;
+    }
+}
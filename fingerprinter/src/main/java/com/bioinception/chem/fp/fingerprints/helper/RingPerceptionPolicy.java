@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2003-2021 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package com.bioinception.chem.fp.fingerprints.helper;
+
+import org.openscience.cdk.graph.AllCycles;
+import org.openscience.cdk.graph.ConnectedComponents;
+import org.openscience.cdk.graph.EssentialCycles;
+import org.openscience.cdk.graph.GraphUtil;
+import org.openscience.cdk.graph.GraphUtil.EdgeToBondMap;
+import org.openscience.cdk.graph.MinimumCycleBasis;
+import org.openscience.cdk.graph.RelevantCycles;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IRing;
+import org.openscience.cdk.interfaces.IRingSet;
+
+/**
+ * Perceives the rings of a molecule with a preferred {@link RingStrategy}
+ * within a budget, falling back to the next cheaper strategy when the budget
+ * is exceeded.
+ *
+ * All rings are enumerated only while the path graph of the molecule stays
+ * within the maximum degree, the same measure of complexity as the thresholds
+ * of the {@link org.openscience.cdk.ringsearch.AllRingsFinder}. The relevant
+ * cycles are counted before they are enumerated. Neither set is kept if it
+ * has more rings than the budget. The essential cycles are kept only if they
+ * span the cycle space, that is when the minimum cycle basis is unique. Cages
+ * have interchangeable rings and few or no essential cycles, keeping those
+ * would leave ring atoms outside of every ring. The minimum cycle basis is
+ * polynomial and always kept. The budget is counted in steps of the
+ * algorithms, not in time, so the strategy used for a molecule does not
+ * depend on the load of the machine; it is recorded on the ring set.
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public class RingPerceptionPolicy {
+
+    /**
+     * The default maximum degree of the path graph, that of the
+     * {@link org.openscience.cdk.ringsearch.AllRingsFinder} by default.
+     */
+    public static final int DEFAULT_MAX_DEGREE = 684;
+    /**
+     * The property of the ring set holding the {@link RingStrategy} used.
+     */
+    public static final String STRATEGY = "RingPerceptionPolicy.strategy";
+
+    private static final RingStrategy[] STRATEGIES = RingStrategy.values();
+
+    private final RingStrategy strategy;
+    private final int maxDegree;
+    private final int maxRings;
+
+    /**
+     * All rings up to the default maximum degree, without limit on the number
+     * of rings.
+     */
+    public RingPerceptionPolicy() {
+        this(RingStrategy.ALL, DEFAULT_MAX_DEGREE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param strategy the preferred ring set
+     * @param maxDegree maximum degree of the path graph when enumerating all
+     * rings
+     * @param maxRings maximum number of all or relevant rings
+     */
+    public RingPerceptionPolicy(RingStrategy strategy, int maxDegree, int maxRings) {
+        if (strategy == null) {
+            throw new IllegalArgumentException("No ring strategy");
+        }
+        if (maxDegree < 1) {
+            throw new IllegalArgumentException("The maximum degree must be positive: " + maxDegree);
+        }
+        if (maxRings < 0) {
+            throw new IllegalArgumentException("Negative ring budget: " + maxRings);
+        }
+        this.strategy = strategy;
+        this.maxDegree = maxDegree;
+        this.maxRings = maxRings;
+    }
+
+    /**
+     * @return the preferred ring set
+     */
+    public RingStrategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * @return maximum degree of the path graph when enumerating all rings
+     */
+    public int getMaxDegree() {
+        return maxDegree;
+    }
+
+    /**
+     * @return maximum number of all or relevant rings
+     */
+    public int getMaxRings() {
+        return maxRings;
+    }
+
+    /**
+     * Perceives the rings of a molecule, the molecule is not modified.
+     *
+     * @param container the molecule
+     * @return the rings, with the strategy used as the {@link #STRATEGY}
+     * property
+     */
+    public IRingSet findRings(IAtomContainer container) {
+        EdgeToBondMap bondMap = EdgeToBondMap.withSpaceFor(container);
+        int[][] graph = GraphUtil.toAdjList(container, bondMap);
+        for (int i = strategy.ordinal();; i++) {
+            int[][] paths = findPaths(STRATEGIES[i], graph);
+            if (paths != null) {
+                IRingSet rings = toRingSet(container, paths, bondMap);
+                rings.setProperty(STRATEGY, STRATEGIES[i]);
+                return rings;
+            }
+        }
+    }
+
+    /**
+     * @param rings rings found by a policy
+     * @return the strategy used, null if the rings were not found by a policy
+     */
+    public static RingStrategy getStrategy(IRingSet rings) {
+        return rings.getProperty(STRATEGY);
+    }
+
+    /**
+     * @return the cycles as closed paths, null if they are over the budget or
+     * do not span the cycle space
+     */
+    private int[][] findPaths(RingStrategy ringStrategy, int[][] graph) {
+        switch (ringStrategy) {
+            case ALL:
+                AllCycles all = new AllCycles(graph, graph.length, maxDegree);
+                return all.completed() && all.size() <= maxRings ? all.paths() : null;
+            case RELEVANT:
+                RelevantCycles relevant = new RelevantCycles(graph);
+                return relevant.size() <= maxRings ? relevant.paths() : null;
+            case ESSENTIAL:
+                EssentialCycles essential = new EssentialCycles(graph);
+                return essential.size() == circuitRank(graph) ? essential.paths() : null;
+            case MCB:
+                return new MinimumCycleBasis(graph).paths();
+            default:
+                throw new IllegalStateException("Unknown ring strategy: " + ringStrategy);
+        }
+    }
+
+    /**
+     * @return the dimension of the cycle space, the number of rings of a
+     * minimum cycle basis
+     */
+    private static int circuitRank(int[][] graph) {
+        int edges = 0;
+        for (int[] nbrs : graph) {
+            edges += nbrs.length;
+        }
+        return edges / 2 - graph.length + new ConnectedComponents(graph).nComponents();
+    }
+
+    private static IRingSet toRingSet(IAtomContainer container, int[][] paths, EdgeToBondMap bondMap) {
+        IRingSet rings = container.getBuilder().newInstance(IRingSet.class);
+        for (int[] path : paths) {
+            IRing ring = container.getBuilder().newInstance(IRing.class);
+            for (int i = 0; i < path.length - 1; i++) {
+                ring.addAtom(container.getAtom(path[i]));
+                ring.addBond(bondMap.get(path[i], path[i + 1]));
+            }
+            rings.addAtomContainer(ring);
+        }
+        return rings;
+    }
+
+    @Override
+    public String toString() {
+        return strategy + ":" + maxDegree + ":" + maxRings;
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2003-2021 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package com.bioinception.chem.fp.fingerprints.helper;
+
+/**
+ * Ring sets a {@link RingPerceptionPolicy} can perceive, from the largest and
+ * most expensive to the smallest. The policy falls back along this order.
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public enum RingStrategy {
+
+    /**
+     * All simple cycles, as found by the
+     * {@link org.openscience.cdk.ringsearch.AllRingsFinder}. Exponential in
+     * the number of fused rings.
+     */
+    ALL,
+    /**
+     * The relevant cycles, the union of all minimum cycle bases. Polynomial to
+     * count, the number of cycles may still be exponential.
+     */
+    RELEVANT,
+    /**
+     * The essential cycles, those in every minimum cycle basis. Polynomial,
+     * used only when they form the unique minimum cycle basis; cages with
+     * interchangeable rings fall back to {@link #MCB}.
+     */
+    ESSENTIAL,
+    /**
+     * A minimum cycle basis, the smallest set of shortest cycles spanning the
+     * cycle space. Polynomial and always found.
+     */
+    MCB
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2003-2021 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package com.bioinception.chem.fp.fingerprints.helper;
+
+import com.bioinception.chem.fp.fingerprints.interfaces.IStartAtomRange;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+
+/**
+ * Splits the start atoms of a path enumeration into ForkJoin subtasks and
+ * merges their results. Every leaf works on its own scratch state, so the
+ * results of a molecule do not depend on the split.
+ *
+ * @param <T> type of the result
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public class StartAtomTask<T> extends RecursiveTask<T> {
+
+    private static final long serialVersionUID = 0x5a7f3c21d94e8b06L;
+
+    /**
+     * Number of leaves per worker thread, leaves are not equally expensive.
+     */
+    private static final int LEAVES_PER_THREAD = 4;
+
+    private final IStartAtomRange<T, ?> range;
+    private final BinaryOperator<T> merge;
+    private final int from;
+    private final int to;
+    private final int grain;
+
+    private StartAtomTask(IStartAtomRange<T, ?> range, BinaryOperator<T> merge, int from, int to, int grain) {
+        this.range = range;
+        this.merge = merge;
+        this.from = from;
+        this.to = to;
+        this.grain = grain;
+    }
+
+    /**
+     * Processes the start atoms [0, atomCount) in the common ForkJoin pool.
+     *
+     * @param <T> type of the result
+     * @param <E> type of the exception thrown by the range
+     * @param atomCount number of start atoms
+     * @param range work on a range of start atoms, called concurrently
+     * @param merge merges the results of two ranges, the first is the lower
+     * range
+     * @return the merged result
+     * @throws E the first exception thrown by a range
+     */
+    @SuppressWarnings("unchecked")
+    public static <T, E extends Exception> T invoke(int atomCount, IStartAtomRange<T, E> range, BinaryOperator<T> merge) throws E {
+        int leaves = ForkJoinPool.getCommonPoolParallelism() * LEAVES_PER_THREAD;
+        int grain = Math.max(1, (atomCount + leaves - 1) / leaves);
+        try {
+            return ForkJoinPool.commonPool().invoke(new StartAtomTask<>(range, merge, 0, atomCount, grain));
+        } catch (RangeException e) {
+            // the pool may rethrow a copy wrapping the original
+            Throwable cause = e.getCause();
+            while (cause instanceof RangeException) {
+                cause = cause.getCause();
+            }
+            throw (E) cause;
+        }
+    }
+
+    @Override
+    protected T compute() {
+        if (to - from <= grain) {
+            try {
+                return range.apply(from, to);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new RangeException(e);
+            }
+        }
+        int mid = (from + to) >>> 1;
+        StartAtomTask<T> lower = new StartAtomTask<>(range, merge, from, mid, grain);
+        StartAtomTask<T> upper = new StartAtomTask<>(range, merge, mid, to, grain);
+        upper.fork();
+        T result = lower.compute();
+        return merge.apply(result, upper.join());
+    }
+
+    /**
+     * Carries a checked exception of a range out of the pool.
+     */
+    private static class RangeException extends RuntimeException {
+
+        private static final long serialVersionUID = 0x2c61e8a94f0b7d35L;
+
+        RangeException(Exception cause) {
+            super(cause);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2003-2021 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package com.bioinception.chem.fp.fingerprints.helper;
+
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.Objects;
+
+/**
+ * A fingerprint together with the {@link FingerprintDescriptor} of the
+ * fingerprinter which generated it. This is the form in which fingerprints are
+ * persisted: the descriptor, a tab and the bits as Base64 of
+ * {@link BitSet#toByteArray()}. A fingerprint whose molecule was walked with a
+ * capped search depth, see {@link AdaptiveDepthPolicy}, is followed by a tab
+ * and the depth used, as in {@code depth=6}.
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public class VersionedFingerprint {
+
+    private static final String DEPTH = "depth=";
+
+    private final BitSet bits;
+    private final FingerprintDescriptor descriptor;
+    private final int effectiveDepth;
+
+    /**
+     * @param bits the fingerprint, not copied
+     * @param descriptor descriptor of the fingerprinter
+     */
+    public VersionedFingerprint(BitSet bits, FingerprintDescriptor descriptor) {
+        this(bits, descriptor, descriptor.getSearchDepth());
+    }
+
+    /**
+     * @param bits the fingerprint, not copied
+     * @param descriptor descriptor of the fingerprinter
+     * @param effectiveDepth search depth the molecule was walked with
+     */
+    public VersionedFingerprint(BitSet bits, FingerprintDescriptor descriptor, int effectiveDepth) {
+        this.bits = Objects.requireNonNull(bits);
+        this.descriptor = Objects.requireNonNull(descriptor);
+        this.effectiveDepth = effectiveDepth;
+    }
+
+    /**
+     * Reads a fingerprint from its persisted form.
+     *
+     * @param persisted string written by {@link #toString()}
+     * @return the fingerprint
+     * @throws IllegalArgumentException if the string is not a versioned
+     * fingerprint
+     */
+    public static VersionedFingerprint parse(String persisted) {
+        int tab = persisted.indexOf('\t');
+        if (tab < 0) {
+            throw new IllegalArgumentException("Missing fingerprint descriptor: " + persisted);
+        }
+        FingerprintDescriptor descriptor = FingerprintDescriptor.parse(persisted.substring(0, tab));
+        int end = persisted.indexOf('\t', tab + 1);
+        int effectiveDepth = descriptor.getSearchDepth();
+        if (end < 0) {
+            end = persisted.length();
+        } else {
+            String depth = persisted.substring(end + 1).trim();
+            if (!depth.startsWith(DEPTH)) {
+                throw new IllegalArgumentException("Invalid effective depth: " + persisted);
+            }
+            try {
+                effectiveDepth = Integer.parseInt(depth.substring(DEPTH.length()));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid effective depth: " + persisted, e);
+            }
+        }
+        BitSet bits = BitSet.valueOf(Base64.getDecoder().decode(persisted.substring(tab + 1, end).trim()));
+        return new VersionedFingerprint(bits, descriptor, effectiveDepth);
+    }
+
+    /**
+     * @return the fingerprint
+     */
+    public BitSet getBits() {
+        return bits;
+    }
+
+    /**
+     * @return descriptor of the fingerprinter
+     */
+    public FingerprintDescriptor getDescriptor() {
+        return descriptor;
+    }
+
+    /**
+     * @return search depth the molecule was walked with, the search depth of
+     * the descriptor unless it was capped
+     */
+    public int getEffectiveDepth() {
+        return effectiveDepth;
+    }
+
+    /**
+     * @param other another fingerprint
+     * @return true if both fingerprints were generated by compatible
+     * fingerprinters
+     */
+    public boolean isCompatible(VersionedFingerprint other) {
+        return descriptor.isCompatible(other.descriptor);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof VersionedFingerprint)) {
+            return false;
+        }
+        VersionedFingerprint other = (VersionedFingerprint) obj;
+        return descriptor.equals(other.descriptor) && effectiveDepth == other.effectiveDepth
+                && bits.equals(other.bits);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * descriptor.hashCode() + effectiveDepth) + bits.hashCode();
+    }
+
+    /**
+     * @return the persisted form of the fingerprint
+     */
+    @Override
+    public String toString() {
+        String persisted = descriptor + "\t" + Base64.getEncoder().encodeToString(bits.toByteArray());
+        if (effectiveDepth != descriptor.getSearchDepth()) {
+            persisted += "\t" + DEPTH + effectiveDepth;
+        }
+        return persisted;
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2003-2021 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package com.bioinception.chem.fp.fingerprints.interfaces;
+
+import java.util.BitSet;
+
+/**
+ * Size bounded in-memory store of fingerprints keyed by structure and
+ * fingerprint descriptor.
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public interface IFingerprintCache {
+
+    /**
+     * @param key cache key
+     * @return the cached fingerprint or null
+     */
+    BitSet get(String key);
+
+    /**
+     * @param key cache key
+     * @param fingerprint the fingerprint, not copied
+     */
+    void put(String key, BitSet fingerprint);
+
+    /**
+     * @return number of cached fingerprints
+     */
+    int size();
+
+    /**
+     * @return maximum number of cached fingerprints
+     */
+    int getMaximumSize();
+
+    /**
+     * @return number of fingerprints evicted (or not admitted) so far
+     */
+    long getEvictionCount();
+
+    /**
+     * Removes all fingerprints.
+     */
+    void clear();
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2003-2021 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package com.bioinception.chem.fp.fingerprints.interfaces;
+
+import com.bioinception.chem.fp.fingerprints.helper.FingerprintStage;
+
+/**
+ * Receives every value recorded by the
+ * {@link com.bioinception.chem.fp.fingerprints.helper.FingerprintMetrics}
+ * while recording is on. Called on the thread generating the fingerprint,
+ * implementations must be thread safe and should return quickly.
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public interface IFingerprintMetricsListener {
+
+    /**
+     * @param stage the stage
+     * @param nanos time spent in the stage, in nanoseconds
+     */
+    void stageTimed(FingerprintStage stage, long nanos);
+
+    /**
+     * @param paths number of paths walked for a molecule
+     */
+    void pathsCounted(long paths);
+
+    /**
+     * @param bits number of bits set in a fingerprint
+     */
+    void bitsSet(int bits);
+}
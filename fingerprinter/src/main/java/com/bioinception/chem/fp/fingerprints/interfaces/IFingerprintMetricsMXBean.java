@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2003-2021 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package com.bioinception.chem.fp.fingerprints.interfaces;
+
+import java.util.Map;
+
+/**
+ * JMX view of the
+ * {@link com.bioinception.chem.fp.fingerprints.helper.FingerprintMetrics}.
+ * The histograms are named after the
+ * {@link com.bioinception.chem.fp.fingerprints.helper.FingerprintStage}s,
+ * whose values are in nanoseconds, and PATHS and BITS, the paths walked per
+ * molecule and the bits set per fingerprint.
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public interface IFingerprintMetricsMXBean {
+
+    /**
+     * @return true if the fingerprinters record their metrics
+     */
+    boolean isEnabled();
+
+    /**
+     * @param enabled true to record the metrics, off by default
+     */
+    void setEnabled(boolean enabled);
+
+    /**
+     * @return the number of values recorded, by histogram
+     */
+    Map<String, Long> getCounts();
+
+    /**
+     * @return the sum of the values recorded, by histogram
+     */
+    Map<String, Long> getTotals();
+
+    /**
+     * @return the largest value recorded, by histogram
+     */
+    Map<String, Long> getMaxima();
+
+    /**
+     * @param histogram name of the histogram
+     * @param percentile percentile, in [0, 100]
+     * @return the value at the percentile, within the precision of the
+     * histogram
+     */
+    long getPercentile(String histogram, double percentile);
+
+    /**
+     * Clears all histograms.
+     */
+    void reset();
+}
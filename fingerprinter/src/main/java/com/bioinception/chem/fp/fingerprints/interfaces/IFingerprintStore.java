@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2003-2021 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package com.bioinception.chem.fp.fingerprints.interfaces;
+
+import java.io.IOException;
+import java.util.BitSet;
+
+/**
+ * Persistent tier behind an {@link IFingerprintCache}.
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public interface IFingerprintStore {
+
+    /**
+     * @param key cache key
+     * @return the stored fingerprint or null
+     * @throws IOException
+     */
+    BitSet get(String key) throws IOException;
+
+    /**
+     * @param key cache key
+     * @param fingerprint the fingerprint
+     * @throws IOException
+     */
+    void put(String key, BitSet fingerprint) throws IOException;
+}
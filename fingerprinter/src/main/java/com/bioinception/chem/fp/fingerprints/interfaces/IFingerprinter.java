@@ -18,6 +18,8 @@
  */
 package com.bioinception.chem.fp.fingerprints.interfaces;
 
+import com.bioinception.chem.fp.fingerprints.helper.FingerprintDescriptor;
+import com.bioinception.chem.fp.fingerprints.helper.VersionedFingerprint;
 import java.util.BitSet;
 import java.util.Map;
 import org.openscience.cdk.exception.CDKException;
@@ -100,4 +102,26 @@ public interface IFingerprinter extends org.openscience.cdk.fingerprint.IFingerp
      * non-ring to ring matches
      */
     void setRespectRingMatches(boolean respectRingMatches);
+
+    /**
+     * Describes the algorithm, size, depth, flags and hash version of this
+     * fingerprinter. Fingerprints are only comparable if their descriptors are
+     * equal.
+     *
+     * @return the descriptor of the fingerprints currently generated
+     */
+    FingerprintDescriptor getDescriptor();
+
+    /**
+     * Generates a fingerprint together with the descriptor of this
+     * fingerprinter, the form in which fingerprints should be persisted.
+     *
+     * @param container The AtomContainer for which a Fingerprint is generated
+     * @return the fingerprint and its descriptor
+     * @throws CDKException
+     */
+    default VersionedFingerprint getVersionedFingerprint(IAtomContainer container) throws CDKException {
+        FingerprintDescriptor descriptor = getDescriptor();
+        return new VersionedFingerprint(getBitFingerprint(container).asBitSet(), descriptor);
+    }
 }
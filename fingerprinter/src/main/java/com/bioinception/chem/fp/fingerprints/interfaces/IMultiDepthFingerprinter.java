@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2003-2021 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package com.bioinception.chem.fp.fingerprints.interfaces;
+
+import java.util.Map;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.fingerprint.IBitFingerprint;
+import org.openscience.cdk.interfaces.IAtomContainer;
+
+/**
+ * Fingerprinter that can generate the fingerprints of several search depths
+ * from a single traversal of the molecule. The paths of the deepest search
+ * include every shorter path, each path only goes into the fingerprints of
+ * the depths it is within.
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public interface IMultiDepthFingerprinter {
+
+    /**
+     * Generates one fingerprint per search depth, each equal to the
+     * fingerprint of a fingerprinter configured with that depth.
+     *
+     * @param container the molecule
+     * @param depths search depths (number of bonds), at least one
+     * @return the fingerprints keyed by depth, in ascending order; a
+     * fingerprinter capping the depth of a molecule keys the depths beyond
+     * the cap by the capped depth
+     * @throws CDKException if there is a timeout in ring or aromaticity
+     * perception, or too many paths
+     */
+    Map<Integer, IBitFingerprint> getBitFingerprints(IAtomContainer container, int... depths) throws CDKException;
+}
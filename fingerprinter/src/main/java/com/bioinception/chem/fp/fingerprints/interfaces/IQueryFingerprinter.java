@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2003-2021 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package com.bioinception.chem.fp.fingerprints.interfaces;
+
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.fingerprint.IBitFingerprint;
+import org.openscience.cdk.interfaces.IAtomContainer;
+
+/**
+ * Fingerprinter that can generate screening fingerprints for substructure
+ * queries. A query fingerprint only sets bits that are set in the (full)
+ * fingerprint of every structure containing the query, so that a target whose
+ * fingerprint misses a query bit can not contain the query.
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public interface IQueryFingerprinter {
+
+    /**
+     * Generates the screening fingerprint of a substructure query, comparable
+     * with the fingerprints of {@code getBitFingerprint} by containment only.
+     *
+     * @param query the substructure query
+     * @return the query fingerprint
+     * @throws CDKException if there is a timeout in ring or aromaticity
+     * perception
+     */
+    IBitFingerprint getQueryFingerprint(IAtomContainer query) throws CDKException;
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2003-2021 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package com.bioinception.chem.fp.fingerprints.interfaces;
+
+import com.bioinception.chem.fp.fingerprints.similarity.FingerprintBlock;
+import com.bioinception.chem.fp.fingerprints.similarity.Hit;
+import com.bioinception.chem.fp.fingerprints.similarity.SimilarityMeasure;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * One partition of a fingerprint store, reached through some transport. Hit
+ * indices are local to the shard.
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public interface IShard {
+
+    /**
+     * @return number of fingerprints in the shard
+     * @throws IOException if the shard can not be reached
+     */
+    int getCount() throws IOException;
+
+    /**
+     * @return number of bits of the fingerprints
+     * @throws IOException if the shard can not be reached
+     */
+    int getSize() throws IOException;
+
+    /**
+     * @param queries the queries
+     * @param measure the similarity measure
+     * @param k maximum number of hits per query
+     * @param threshold minimum score of a hit
+     * @return the hits of every query, best first
+     * @throws IOException if the shard can not be reached
+     */
+    List<List<Hit>> search(FingerprintBlock queries, SimilarityMeasure measure, int k, double threshold) throws IOException;
+
+    /**
+     * @param queries the queries
+     * @return indices of the substructure candidates of every query, ascending
+     * @throws IOException if the shard can not be reached
+     */
+    List<int[]> screen(FingerprintBlock queries) throws IOException;
+}
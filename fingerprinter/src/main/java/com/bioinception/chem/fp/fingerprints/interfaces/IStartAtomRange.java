@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2003-2021 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package com.bioinception.chem.fp.fingerprints.interfaces;
+
+/**
+ * Work on a range of start atoms of a molecule, see
+ * {@link com.bioinception.chem.fp.fingerprints.helper.StartAtomTask}.
+ *
+ * @param <T> type of the result
+ * @param <E> type of the exception thrown
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+@FunctionalInterface
+public interface IStartAtomRange<T, E extends Exception> {
+
+    /**
+     * @param from index of the first start atom
+     * @param to index after the last start atom
+     * @return the result for the range
+     * @throws E if the range can not be processed
+     */
+    T apply(int from, int to) throws E;
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2003-2021 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package com.bioinception.chem.fp.fingerprints.search;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Bit-sliced screening index: for every bit of the fingerprint layout the set
+ * of targets having it, and how many they are. The frequencies are gathered as
+ * fingerprints are added.
+ *
+ * A screen intersects the slices of the query bits, rarest bit first, and
+ * stops as soon as the candidates are gone or few enough to be verified
+ * directly. Common bits (a carbon, a C-C path) are then rarely evaluated.
+ *
+ * <pre>
+ * BitSelectivityIndex index = new BitSelectivityIndex(fingerprinter.getSize());
+ * for (IAtomContainer target : targets) {
+ *     index.add(fingerprinter.getBitFingerprint(target).asBitSet());
+ * }
+ * int[] candidates = index.screen(query, 100);
+ * </pre>
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public class BitSelectivityIndex {
+
+    private final int size;
+    private final BitSet[] slices;
+    private final int[] frequencies;
+    private int count = 0;
+    private int evaluated = 0;
+
+    /**
+     * @param size number of bits of the fingerprints, as given by the
+     * {@code getSize()} of the fingerprinter
+     */
+    public BitSelectivityIndex(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Fingerprint size must be positive: " + size);
+        }
+        this.size = size;
+        this.slices = new BitSet[size];
+        this.frequencies = new int[size];
+    }
+
+    /**
+     * Adds a target fingerprint.
+     *
+     * @param fingerprint the fingerprint
+     * @return index of the target
+     */
+    public int add(BitSet fingerprint) {
+        checkSize(fingerprint);
+        for (int bit = fingerprint.nextSetBit(0); bit >= 0; bit = fingerprint.nextSetBit(bit + 1)) {
+            if (slices[bit] == null) {
+                slices[bit] = new BitSet();
+            }
+            slices[bit].set(count);
+            frequencies[bit]++;
+        }
+        return count++;
+    }
+
+    /**
+     * @return number of targets
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @return number of bits of the fingerprints
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @param bit a bit of the fingerprint layout
+     * @return number of targets with the bit set
+     */
+    public int getFrequency(int bit) {
+        return frequencies[bit];
+    }
+
+    /**
+     * @param bit a bit of the fingerprint layout
+     * @return fraction of the targets with the bit set, 0 for an empty index
+     */
+    public double getSelectivity(int bit) {
+        return count == 0 ? 0.0 : (double) frequencies[bit] / count;
+    }
+
+    /**
+     * @return number of query bits evaluated by the last screen
+     */
+    public int getEvaluatedBitCount() {
+        return evaluated;
+    }
+
+    /**
+     * @param query a query fingerprint
+     * @return the set bits of the query, rarest first (ties by position)
+     */
+    public int[] order(BitSet query) {
+        checkSize(query);
+        long[] keys = new long[query.cardinality()];
+        int n = 0;
+        for (int bit = query.nextSetBit(0); bit >= 0; bit = query.nextSetBit(bit + 1)) {
+            keys[n++] = ((long) frequencies[bit] << 32) | bit;
+        }
+        Arrays.sort(keys);
+        int[] bits = new int[n];
+        for (int i = 0; i < n; i++) {
+            bits[i] = (int) keys[i];
+        }
+        return bits;
+    }
+
+    /**
+     * Exact screen, all query bits are evaluated unless no candidate is left.
+     *
+     * @param query the query fingerprint
+     * @return indices of the targets containing the query fingerprint,
+     * ascending
+     */
+    public int[] screen(BitSet query) {
+        return screen(query, 0);
+    }
+
+    /**
+     * Screens the targets, rarest query bit first. The screen stops once at
+     * most {@code verifyLimit} candidates are left, so they may not contain
+     * all query bits and must be verified.
+     *
+     * @param query the query fingerprint
+     * @param verifyLimit number of candidates small enough to verify
+     * @return indices of the candidates, ascending
+     */
+    public int[] screen(BitSet query, int verifyLimit) {
+        if (verifyLimit < 0) {
+            throw new IllegalArgumentException("Verify limit must not be negative: " + verifyLimit);
+        }
+        int[] bits = order(query);
+        evaluated = 0;
+        BitSet candidates = new BitSet(count);
+        candidates.set(0, count);
+        int remaining = count;
+        for (int bit : bits) {
+            if (remaining <= verifyLimit || remaining == 0) {
+                break;
+            }
+            evaluated++;
+            if (slices[bit] == null) {
+                candidates.clear();
+                remaining = 0;
+                break;
+            }
+            candidates.and(slices[bit]);
+            remaining = candidates.cardinality();
+        }
+        return candidates.stream().toArray();
+    }
+
+    private void checkSize(BitSet fingerprint) {
+        if (fingerprint.length() > size) {
+            throw new IllegalArgumentException("Fingerprint has bit " + (fingerprint.length() - 1)
+                    + " set, size is " + size);
+        }
+    }
+}
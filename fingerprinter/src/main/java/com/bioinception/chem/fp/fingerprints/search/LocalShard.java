@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2003-2021 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package com.bioinception.chem.fp.fingerprints.search;
+
+import com.bioinception.chem.fp.fingerprints.interfaces.IShard;
+import com.bioinception.chem.fp.fingerprints.similarity.BatchSimilaritySearch;
+import com.bioinception.chem.fp.fingerprints.similarity.FingerprintBlock;
+import com.bioinception.chem.fp.fingerprints.similarity.Hit;
+import com.bioinception.chem.fp.fingerprints.similarity.SimilarityMeasure;
+import java.util.List;
+
+/**
+ * In-process shard, also the worker behind a {@link ShardServer}.
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public class LocalShard implements IShard {
+
+    private final FingerprintBlock fingerprints;
+    private final BatchSimilaritySearch search;
+
+    /**
+     * @param fingerprints the fingerprints of the shard
+     */
+    public LocalShard(FingerprintBlock fingerprints) {
+        this.fingerprints = fingerprints;
+        this.search = new BatchSimilaritySearch(fingerprints);
+    }
+
+    @Override
+    public int getCount() {
+        return fingerprints.getCount();
+    }
+
+    @Override
+    public int getSize() {
+        return fingerprints.getSize();
+    }
+
+    @Override
+    public List<List<Hit>> search(FingerprintBlock queries, SimilarityMeasure measure, int k, double threshold) {
+        return search.search(queries, measure, k, threshold);
+    }
+
+    @Override
+    public List<int[]> screen(FingerprintBlock queries) {
+        return search.screen(queries);
+    }
+}
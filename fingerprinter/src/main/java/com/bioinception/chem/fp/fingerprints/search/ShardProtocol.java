@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2003-2021 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package com.bioinception.chem.fp.fingerprints.search;
+
+import com.bioinception.chem.fp.fingerprints.similarity.FingerprintBlock;
+import com.bioinception.chem.fp.fingerprints.similarity.Hit;
+import com.bioinception.chem.fp.fingerprints.similarity.SimilarityMeasure;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary messages between a {@link SocketShard} and a {@link ShardServer}.
+ * A request is an opcode followed by its arguments, a response a status byte
+ * followed by the result or an error message.
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+class ShardProtocol {
+
+    static final byte INFO = 1;
+    static final byte SEARCH = 2;
+    static final byte SCREEN = 3;
+    static final byte OK = 0;
+    static final byte ERROR = 1;
+    /**
+     * Largest query block accepted from the wire, in 64 bit words (32 MB).
+     */
+    static final int MAX_BLOCK_WORDS = 1 << 22;
+
+    private ShardProtocol() {
+    }
+
+    static void writeBlock(DataOutputStream out, FingerprintBlock block) throws IOException {
+        out.writeInt(block.getSize());
+        out.writeInt(block.getCount());
+        long[] words = block.getWords();
+        int n = block.getCount() * block.getWordCount();
+        for (int i = 0; i < n; i++) {
+            out.writeLong(words[i]);
+        }
+    }
+
+    /**
+     * @param expectedSize the fingerprint size of the shard
+     * @throws IllegalArgumentException if the size differs from the expected
+     * size, the count is negative or the block has more than
+     * {@link #MAX_BLOCK_WORDS} words, before anything is allocated
+     */
+    static FingerprintBlock readBlock(DataInputStream in, int expectedSize) throws IOException {
+        int size = in.readInt();
+        int count = in.readInt();
+        if (size != expectedSize) {
+            throw new IllegalArgumentException("Fingerprint size " + size + " does not match the shard size " + expectedSize);
+        }
+        if (count < 0) {
+            throw new IllegalArgumentException("Invalid block of " + count + " fingerprints of size " + size);
+        }
+        // an empty block still allocates the words of one fingerprint
+        if ((long) Math.max(1, count) * ((size + 63L) >>> 6) > MAX_BLOCK_WORDS) {
+            throw new IllegalArgumentException("Block of " + count + " fingerprints of size " + size
+                    + " exceeds " + MAX_BLOCK_WORDS + " words");
+        }
+        FingerprintBlock block = new FingerprintBlock(size, count);
+        long[] packed = new long[block.getWordCount()];
+        for (int i = 0; i < count; i++) {
+            for (int j = 0; j < packed.length; j++) {
+                packed[j] = in.readLong();
+            }
+            block.add(packed);
+        }
+        return block;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the ordinal is not a measure
+     */
+    static SimilarityMeasure readMeasure(DataInputStream in) throws IOException {
+        int ordinal = in.readByte();
+        SimilarityMeasure[] measures = SimilarityMeasure.values();
+        if (ordinal < 0 || ordinal >= measures.length) {
+            throw new IllegalArgumentException("Unknown similarity measure " + ordinal);
+        }
+        return measures[ordinal];
+    }
+
+    static void writeHits(DataOutputStream out, List<List<Hit>> hits) throws IOException {
+        out.writeInt(hits.size());
+        for (List<Hit> list : hits) {
+            out.writeInt(list.size());
+            for (Hit hit : list) {
+                out.writeInt(hit.getIndex());
+                out.writeDouble(hit.getScore());
+            }
+        }
+    }
+
+    static List<List<Hit>> readHits(DataInputStream in) throws IOException {
+        int n = in.readInt();
+        List<List<Hit>> hits = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            int m = in.readInt();
+            List<Hit> list = new ArrayList<>(m);
+            for (int j = 0; j < m; j++) {
+                list.add(new Hit(in.readInt(), in.readDouble()));
+            }
+            hits.add(list);
+        }
+        return hits;
+    }
+
+    static void writeCandidates(DataOutputStream out, List<int[]> candidates) throws IOException {
+        out.writeInt(candidates.size());
+        for (int[] c : candidates) {
+            out.writeInt(c.length);
+            for (int i : c) {
+                out.writeInt(i);
+            }
+        }
+    }
+
+    static List<int[]> readCandidates(DataInputStream in) throws IOException {
+        int n = in.readInt();
+        List<int[]> candidates = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            int[] c = new int[in.readInt()];
+            for (int j = 0; j < c.length; j++) {
+                c[j] = in.readInt();
+            }
+            candidates.add(c);
+        }
+        return candidates;
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2003-2021 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package com.bioinception.chem.fp.fingerprints.search;
+
+import com.bioinception.chem.fp.fingerprints.interfaces.IShard;
+import com.bioinception.chem.fp.fingerprints.similarity.FingerprintBlock;
+import com.bioinception.chem.fp.fingerprints.similarity.Hit;
+import com.bioinception.chem.fp.fingerprints.similarity.SimilarityMeasure;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.List;
+import org.openscience.cdk.tools.ILoggingTool;
+import org.openscience.cdk.tools.LoggingToolFactory;
+
+/**
+ * Serves a shard over TCP to {@link SocketShard} clients, one thread per
+ * connection. A connection is closed when a read blocks for longer than the
+ * read timeout, or after a malformed request has been answered with an
+ * error.
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public class ShardServer implements Closeable {
+
+    /**
+     * The default read timeout of a connection in milliseconds.
+     */
+    public static final int DEFAULT_READ_TIMEOUT = 300000;
+
+    private final IShard shard;
+    private final int readTimeout;
+    private final ServerSocket serverSocket;
+    private final Thread acceptor;
+    private static final ILoggingTool logger
+            = LoggingToolFactory.createLoggingTool(ShardServer.class);
+
+    /**
+     * Starts serving a shard on the loopback address.
+     *
+     * @param shard the shard
+     * @param port the port, 0 for any free port
+     * @throws IOException
+     */
+    public ShardServer(IShard shard, int port) throws IOException {
+        this(shard, port, InetAddress.getLoopbackAddress());
+    }
+
+    /**
+     * Starts serving a shard.
+     *
+     * @param shard the shard
+     * @param port the port, 0 for any free port
+     * @param address the address to bind to
+     * @throws IOException
+     */
+    public ShardServer(IShard shard, int port, InetAddress address) throws IOException {
+        this(shard, port, address, DEFAULT_READ_TIMEOUT);
+    }
+
+    /**
+     * Starts serving a shard.
+     *
+     * @param shard the shard
+     * @param port the port, 0 for any free port
+     * @param address the address to bind to
+     * @param readTimeout read timeout of a connection in milliseconds, 0 for
+     * none
+     * @throws IOException
+     */
+    public ShardServer(IShard shard, int port, InetAddress address, int readTimeout) throws IOException {
+        if (readTimeout < 0) {
+            throw new IllegalArgumentException("Negative read timeout: " + readTimeout);
+        }
+        this.shard = shard;
+        this.readTimeout = readTimeout;
+        this.serverSocket = new ServerSocket(port, 50, address);
+        this.acceptor = new Thread(this::accept, "shard-server-" + serverSocket.getLocalPort());
+        this.acceptor.setDaemon(true);
+        this.acceptor.start();
+    }
+
+    /**
+     * @return the port the server listens on
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setSoTimeout(readTimeout);
+                Thread worker = new Thread(() -> serve(socket), "shard-connection-" + socket.getPort());
+                worker.setDaemon(true);
+                worker.start();
+            } catch (SocketException e) {
+                // closed
+            } catch (IOException e) {
+                logger.warn("Shard server accept failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket s = socket;
+                DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()))) {
+            while (true) {
+                byte op;
+                try {
+                    op = in.readByte();
+                } catch (EOFException e) {
+                    return;
+                }
+                try {
+                    handle(op, in, out);
+                } catch (IllegalArgumentException e) {
+                    // the rest of the request can not be framed
+                    error(out, e);
+                    out.flush();
+                    return;
+                }
+                out.flush();
+            }
+        } catch (IOException e) {
+            logger.debug("Shard connection closed: " + e.getMessage());
+        }
+    }
+
+    private void handle(byte op, DataInputStream in, DataOutputStream out) throws IOException {
+        switch (op) {
+            case ShardProtocol.INFO:
+                out.writeByte(ShardProtocol.OK);
+                out.writeInt(shard.getCount());
+                out.writeInt(shard.getSize());
+                break;
+            case ShardProtocol.SEARCH: {
+                SimilarityMeasure measure = ShardProtocol.readMeasure(in);
+                int k = in.readInt();
+                double threshold = in.readDouble();
+                FingerprintBlock queries = ShardProtocol.readBlock(in, shard.getSize());
+                List<List<Hit>> hits;
+                try {
+                    hits = shard.search(queries, measure, k, threshold);
+                } catch (RuntimeException e) {
+                    error(out, e);
+                    break;
+                }
+                out.writeByte(ShardProtocol.OK);
+                ShardProtocol.writeHits(out, hits);
+                break;
+            }
+            case ShardProtocol.SCREEN: {
+                FingerprintBlock queries = ShardProtocol.readBlock(in, shard.getSize());
+                List<int[]> candidates;
+                try {
+                    candidates = shard.screen(queries);
+                } catch (RuntimeException e) {
+                    error(out, e);
+                    break;
+                }
+                out.writeByte(ShardProtocol.OK);
+                ShardProtocol.writeCandidates(out, candidates);
+                break;
+            }
+            default:
+                throw new IOException("Unknown shard request " + op);
+        }
+    }
+
+    private static void error(DataOutputStream out, RuntimeException e) throws IOException {
+        out.writeByte(ShardProtocol.ERROR);
+        out.writeUTF(String.valueOf(e.getMessage()));
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+    }
+}
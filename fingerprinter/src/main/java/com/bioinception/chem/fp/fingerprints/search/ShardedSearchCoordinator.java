@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2003-2021 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package com.bioinception.chem.fp.fingerprints.search;
+
+import com.bioinception.chem.fp.fingerprints.interfaces.IShard;
+import com.bioinception.chem.fp.fingerprints.similarity.FingerprintBlock;
+import com.bioinception.chem.fp.fingerprints.similarity.Hit;
+import com.bioinception.chem.fp.fingerprints.similarity.SimilarityMeasure;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Fans similarity and substructure screen queries out to the shards of a
+ * fingerprint store and merges the results. Shard i holds the global indices
+ * starting at the sum of the counts of the shards before it, so results are
+ * reported in the index space of the unpartitioned store.
+ *
+ * <pre>
+ * List&lt;IShard&gt; shards = new ArrayList&lt;&gt;();
+ * for (FingerprintBlock part : ShardedSearchCoordinator.partition(store, 4)) {
+ *     shards.add(new LocalShard(part));
+ * }
+ * try (ShardedSearchCoordinator coordinator = new ShardedSearchCoordinator(shards)) {
+ *     List&lt;List&lt;Hit&gt;&gt; hits = coordinator.search(queries, SimilarityMeasure.TANIMOTO, 10, 0.7);
+ * }
+ * </pre>
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public class ShardedSearchCoordinator implements Closeable {
+
+    private final List<IShard> shards;
+    private final int[] offsets;
+    private final int size;
+    private final ExecutorService executor;
+
+    /**
+     * @param shards the shards, in the order of the global indices
+     * @throws IOException if a shard can not be reached
+     */
+    public ShardedSearchCoordinator(List<IShard> shards) throws IOException {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("No shards");
+        }
+        this.shards = new ArrayList<>(shards);
+        this.offsets = new int[shards.size() + 1];
+        this.size = shards.get(0).getSize();
+        for (int i = 0; i < shards.size(); i++) {
+            if (shards.get(i).getSize() != size) {
+                throw new IllegalArgumentException("Shard " + i + " has fingerprints of size "
+                        + shards.get(i).getSize() + ", expected " + size);
+            }
+            offsets[i + 1] = offsets[i] + shards.get(i).getCount();
+        }
+        this.executor = Executors.newFixedThreadPool(shards.size(), r -> {
+            Thread t = new Thread(r, "shard-coordinator");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Splits a store into contiguous, nearly equal shards.
+     *
+     * @param store the fingerprints
+     * @param shardCount number of shards
+     * @return the shards, in order
+     */
+    public static List<FingerprintBlock> partition(FingerprintBlock store, int shardCount) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Shard count must be positive: " + shardCount);
+        }
+        List<FingerprintBlock> parts = new ArrayList<>(shardCount);
+        long[] words = store.getWords();
+        int n = store.getWordCount();
+        long[] packed = new long[n];
+        for (int s = 0; s < shardCount; s++) {
+            int from = (int) ((long) store.getCount() * s / shardCount);
+            int to = (int) ((long) store.getCount() * (s + 1) / shardCount);
+            FingerprintBlock part = new FingerprintBlock(store.getSize(), Math.max(1, to - from));
+            for (int i = from; i < to; i++) {
+                System.arraycopy(words, i * n, packed, 0, n);
+                part.add(packed);
+            }
+            parts.add(part);
+        }
+        return parts;
+    }
+
+    /**
+     * @return total number of fingerprints over all shards
+     */
+    public int getCount() {
+        return offsets[shards.size()];
+    }
+
+    /**
+     * @param queries the queries
+     * @param measure the similarity measure
+     * @param k maximum number of hits per query
+     * @param threshold minimum score of a hit
+     * @return the k best global hits of every query, best first
+     * @throws IOException if a shard fails
+     */
+    public List<List<Hit>> search(FingerprintBlock queries, SimilarityMeasure measure, int k, double threshold) throws IOException {
+        checkQueries(queries);
+        List<Future<List<List<Hit>>>> futures = new ArrayList<>(shards.size());
+        for (IShard shard : shards) {
+            futures.add(executor.submit(() -> shard.search(queries, measure, k, threshold)));
+        }
+        List<List<Hit>> merged = new ArrayList<>(queries.getCount());
+        for (int q = 0; q < queries.getCount(); q++) {
+            merged.add(new ArrayList<>());
+        }
+        for (int s = 0; s < futures.size(); s++) {
+            List<List<Hit>> hits = get(futures.get(s));
+            for (int q = 0; q < queries.getCount(); q++) {
+                for (Hit hit : hits.get(q)) {
+                    merged.get(q).add(new Hit(hit.getIndex() + offsets[s], hit.getScore()));
+                }
+            }
+        }
+        for (int q = 0; q < merged.size(); q++) {
+            List<Hit> hits = merged.get(q);
+            Collections.sort(hits);
+            if (hits.size() > k) {
+                merged.set(q, new ArrayList<>(hits.subList(0, k)));
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * @param queries the queries
+     * @return global indices of the substructure candidates of every query,
+     * ascending
+     * @throws IOException if a shard fails
+     */
+    public List<int[]> screen(FingerprintBlock queries) throws IOException {
+        checkQueries(queries);
+        List<Future<List<int[]>>> futures = new ArrayList<>(shards.size());
+        for (IShard shard : shards) {
+            futures.add(executor.submit(() -> shard.screen(queries)));
+        }
+        List<List<int[]>> perShard = new ArrayList<>(shards.size());
+        for (Future<List<int[]>> future : futures) {
+            perShard.add(get(future));
+        }
+        List<int[]> merged = new ArrayList<>(queries.getCount());
+        for (int q = 0; q < queries.getCount(); q++) {
+            int total = 0;
+            for (List<int[]> c : perShard) {
+                total += c.get(q).length;
+            }
+            int[] candidates = new int[total];
+            int pos = 0;
+            for (int s = 0; s < perShard.size(); s++) {
+                for (int i : perShard.get(s).get(q)) {
+                    candidates[pos++] = i + offsets[s];
+                }
+            }
+            merged.add(candidates);
+        }
+        return merged;
+    }
+
+    private void checkQueries(FingerprintBlock queries) {
+        if (queries.getSize() != size) {
+            throw new IllegalArgumentException("Query size " + queries.getSize()
+                    + " does not match shard size " + size);
+        }
+    }
+
+    private static <T> T get(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a shard", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Shard failed: " + e.getCause(), e.getCause());
+        }
+    }
+
+    /**
+     * Stops the fan-out threads, the shards are not closed.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2003-2021 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package com.bioinception.chem.fp.fingerprints.search;
+
+import com.bioinception.chem.fp.fingerprints.interfaces.IShard;
+import com.bioinception.chem.fp.fingerprints.similarity.FingerprintBlock;
+import com.bioinception.chem.fp.fingerprints.similarity.Hit;
+import com.bioinception.chem.fp.fingerprints.similarity.SimilarityMeasure;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.List;
+
+/**
+ * Client of a remote {@link ShardServer}. Requests on one connection are
+ * serialised; use one client per coordinator thread for concurrency.
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public class SocketShard implements IShard, Closeable {
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private final int count;
+    private final int size;
+
+    /**
+     * Connects to a shard server.
+     *
+     * @param host host of the server
+     * @param port port of the server
+     * @throws IOException
+     */
+    public SocketShard(String host, int port) throws IOException {
+        this.socket = new Socket(host, port);
+        this.socket.setTcpNoDelay(true);
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        out.writeByte(ShardProtocol.INFO);
+        out.flush();
+        readStatus();
+        this.count = in.readInt();
+        this.size = in.readInt();
+    }
+
+    private void readStatus() throws IOException {
+        if (in.readByte() != ShardProtocol.OK) {
+            throw new IOException("Shard request failed: " + in.readUTF());
+        }
+    }
+
+    @Override
+    public int getCount() {
+        return count;
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public synchronized List<List<Hit>> search(FingerprintBlock queries, SimilarityMeasure measure, int k, double threshold) throws IOException {
+        out.writeByte(ShardProtocol.SEARCH);
+        out.writeByte(measure.ordinal());
+        out.writeInt(k);
+        out.writeDouble(threshold);
+        ShardProtocol.writeBlock(out, queries);
+        out.flush();
+        readStatus();
+        return ShardProtocol.readHits(in);
+    }
+
+    @Override
+    public synchronized List<int[]> screen(FingerprintBlock queries) throws IOException {
+        out.writeByte(ShardProtocol.SCREEN);
+        ShardProtocol.writeBlock(out, queries);
+        out.flush();
+        readStatus();
+        return ShardProtocol.readCandidates(in);
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
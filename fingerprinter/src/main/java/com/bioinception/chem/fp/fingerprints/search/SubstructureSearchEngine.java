@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2003-2021 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package com.bioinception.chem.fp.fingerprints.search;
+
+import com.bioinception.chem.fp.fingerprints.helper.AdaptiveDepthPolicy;
+import com.bioinception.chem.fp.fingerprints.interfaces.IQueryFingerprinter;
+import com.bioinception.chem.fp.fingerprints.similarity.FingerprintBlock;
+import com.bioinception.chem.fp.fingerprints.similarity.SimilarityKernels;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+import org.openscience.cdk.aromaticity.Aromaticity;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.fingerprint.IBitFingerprint;
+import org.openscience.cdk.fingerprint.IFingerprinter;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.isomorphism.AtomMatcher;
+import org.openscience.cdk.isomorphism.BondMatcher;
+import org.openscience.cdk.isomorphism.Pattern;
+import org.openscience.cdk.isomorphism.VentoFoggia;
+import org.openscience.cdk.tools.manipulator.AtomContainerManipulator;
+
+/**
+ * Two stage substructure search: the targets whose fingerprint contains all
+ * bits of the query fingerprint are verified with a VF2 {@link Pattern} of the
+ * query, built once per query and stopping at the first mapping
+ * ({@link Pattern#matches(IAtomContainer)}). Candidates are verified in
+ * parallel.
+ *
+ * <pre>
+ * SubstructureSearchEngine engine = new SubstructureSearchEngine(new ScaffoldHashedFingerprinter(1024));
+ * engine.addAll(targets);
+ * int[] hits = engine.search(query);
+ * </pre>
+ *
+ * The screen is only complete if every feature the fingerprinter sets for a
+ * query is also set for its superstructures. Ring bits and aromaticity
+ * perceived on the query alone (a fragment of a ring system) break this, so
+ * true hits can be lost in the screen; they are never reported wrongly, as
+ * every hit is verified. With {@link #setQueryFingerprints(boolean)} the
+ * queries are screened with the query fingerprints of an
+ * {@link IQueryFingerprinter}, which only set such features.
+ * A fingerprinter capping the search depth of large targets with an
+ * {@link AdaptiveDepthPolicy} leaves out their longer paths, so a full
+ * fingerprint screen loses hits as well; screen with query fingerprints,
+ * which are walked no deeper than the minimum depth of the policy.
+ * Targets and queries are verified in a perceived form: atom types and the
+ * CDK aromaticity are perceived on copies, as from
+ * {@link com.bioinception.chem.fp.fingerprints.helper.HashVersion#PERCEPTION_OVERLAY}
+ * the fingerprinters no longer perceive them in place and the bond orders
+ * of Kekul&eacute; inputs would not match. The targets passed in are kept
+ * unchanged.
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public class SubstructureSearchEngine {
+
+    private final IFingerprinter fingerprinter;
+    private final AtomMatcher atomMatcher;
+    private final BondMatcher bondMatcher;
+    private final FingerprintBlock fingerprints;
+    private final List<IAtomContainer> targets = new ArrayList<>();
+    private final List<IAtomContainer> perceived = new ArrayList<>();
+    private boolean parallel = true;
+    private boolean queryFingerprints = false;
+
+    /**
+     * Matches elements and bond orders.
+     *
+     * @param fingerprinter fingerprinter of the screen
+     */
+    public SubstructureSearchEngine(IFingerprinter fingerprinter) {
+        this(fingerprinter, AtomMatcher.forElement(), BondMatcher.forOrder());
+    }
+
+    /**
+     * @param fingerprinter fingerprinter of the screen
+     * @param atomMatcher atom matcher of the verification
+     * @param bondMatcher bond matcher of the verification
+     */
+    public SubstructureSearchEngine(IFingerprinter fingerprinter, AtomMatcher atomMatcher, BondMatcher bondMatcher) {
+        this.fingerprinter = fingerprinter;
+        this.atomMatcher = atomMatcher;
+        this.bondMatcher = bondMatcher;
+        this.fingerprints = new FingerprintBlock(fingerprinter.getSize());
+    }
+
+    /**
+     * @param parallel verify the candidates in parallel (default true)
+     */
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    /**
+     * @param queryFingerprints screen with query fingerprints (default false)
+     * @throws IllegalArgumentException if the fingerprinter does not
+     * generate query fingerprints
+     */
+    public void setQueryFingerprints(boolean queryFingerprints) {
+        if (queryFingerprints && !(fingerprinter instanceof IQueryFingerprinter)) {
+            throw new IllegalArgumentException(fingerprinter.getClass().getSimpleName()
+                    + " does not generate query fingerprints");
+        }
+        this.queryFingerprints = queryFingerprints;
+    }
+
+    /**
+     * Adds a target.
+     *
+     * @param target the target
+     * @return index of the target
+     * @throws CDKException if the target can not be fingerprinted
+     */
+    public int add(IAtomContainer target) throws CDKException {
+        fingerprints.add(fingerprinter.getBitFingerprint(target).asBitSet());
+        perceived.add(perceive(target));
+        targets.add(target);
+        return targets.size() - 1;
+    }
+
+    /**
+     * @param targets the targets
+     * @throws CDKException if a target can not be fingerprinted
+     */
+    public void addAll(Iterable<IAtomContainer> targets) throws CDKException {
+        for (IAtomContainer target : targets) {
+            add(target);
+        }
+    }
+
+    /**
+     * @param index index of a target
+     * @return the target
+     */
+    public IAtomContainer getTarget(int index) {
+        return targets.get(index);
+    }
+
+    /**
+     * @return number of targets
+     */
+    public int getCount() {
+        return targets.size();
+    }
+
+    /**
+     * Fingerprint screen only.
+     *
+     * @param query the query
+     * @return indices of the targets whose fingerprint contains the query
+     * fingerprint, ascending
+     * @throws CDKException if the query can not be fingerprinted
+     */
+    public int[] screen(IAtomContainer query) throws CDKException {
+        IBitFingerprint fingerprint = queryFingerprints
+                ? ((IQueryFingerprinter) fingerprinter).getQueryFingerprint(query)
+                : fingerprinter.getBitFingerprint(query);
+        long[] packed = FingerprintBlock.pack(fingerprint.asBitSet(), fingerprints.getSize());
+        int[] candidates = new int[fingerprints.getCount()];
+        int count = SimilarityKernels.contains(packed, fingerprints, 0, fingerprints.getCount(), candidates);
+        return Arrays.copyOf(candidates, count);
+    }
+
+    /**
+     * Screens and verifies.
+     *
+     * @param query the query
+     * @return indices of the targets containing the query, ascending
+     * @throws CDKException if the query can not be fingerprinted
+     */
+    public int[] search(IAtomContainer query) throws CDKException {
+        int[] candidates = screen(query);
+        return verify(VentoFoggia.findSubstructure(perceive(query), atomMatcher, bondMatcher), candidates);
+    }
+
+    /**
+     * Verifies candidates with a prebuilt pattern. The pattern is matched
+     * against the perceived targets, so it should be built from a query with
+     * perceived atom types and aromaticity.
+     *
+     * @param pattern pattern of the query
+     * @param candidates indices of the candidate targets
+     * @return indices of the candidates containing the query, in the order
+     * of the candidates
+     */
+    public int[] verify(Pattern pattern, int[] candidates) {
+        IntStream stream = Arrays.stream(candidates);
+        if (parallel) {
+            stream = stream.parallel();
+        }
+        return stream.filter(i -> pattern.matches(perceived.get(i))).toArray();
+    }
+
+    /**
+     * @return a copy of the molecule with perceived atom types and aromaticity
+     */
+    private static IAtomContainer perceive(IAtomContainer mol) throws CDKException {
+        IAtomContainer copy;
+        try {
+            copy = mol.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new CDKException("The molecule can not be copied", e);
+        }
+        AtomContainerManipulator.percieveAtomTypesAndConfigureAtoms(copy);
+        Aromaticity.cdkLegacy().apply(copy);
+        return copy;
+    }
+}
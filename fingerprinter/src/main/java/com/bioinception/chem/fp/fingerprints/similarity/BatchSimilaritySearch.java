@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2003-2021 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package com.bioinception.chem.fp.fingerprints.similarity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Scores a batch of queries against a database of fingerprints in one pass
+ * over the database.
+ *
+ * The database is cut into tiles that fit in the cache. Every tile is loaded
+ * once and scored against a block of queries, the queries of a block staying
+ * in L1 while the targets stream past. Each tile keeps its own top-k heap per
+ * query, the heaps are merged at the end, so tiles can be scored in parallel.
+ *
+ * <pre>
+ * FingerprintBlock database = FingerprintBlock.generate(new ScaffoldHashedFingerprinter(1024), molecules);
+ * FingerprintBlock queries = FingerprintBlock.generate(new ScaffoldHashedFingerprinter(1024), queryMolecules);
+ * List&lt;List&lt;Hit&gt;&gt; hits = new BatchSimilaritySearch(database)
+ *         .search(queries, SimilarityMeasure.TANIMOTO, 10, 0.7);
+ * </pre>
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public class BatchSimilaritySearch {
+
+    /**
+     * Default size of a database tile in bytes.
+     */
+    public final static int DEFAULT_TILE_BYTES = 256 * 1024;
+    /**
+     * Default number of queries scored per pass over a tile.
+     */
+    public final static int DEFAULT_QUERY_BLOCK = 64;
+
+    private final FingerprintBlock database;
+    private int tileSize;
+    private int queryBlockSize = DEFAULT_QUERY_BLOCK;
+    private boolean parallel = true;
+
+    /**
+     * @param database the fingerprints to search
+     */
+    public BatchSimilaritySearch(FingerprintBlock database) {
+        this.database = database;
+        this.tileSize = Math.max(1, DEFAULT_TILE_BYTES / (8 * database.getWordCount()));
+    }
+
+    /**
+     * @param tileSize number of database fingerprints per tile
+     */
+    public void setTileSize(int tileSize) {
+        if (tileSize < 1) {
+            throw new IllegalArgumentException("Tile size must be positive: " + tileSize);
+        }
+        this.tileSize = tileSize;
+    }
+
+    /**
+     * @param queryBlockSize number of queries scored per pass over a tile
+     */
+    public void setQueryBlockSize(int queryBlockSize) {
+        if (queryBlockSize < 1) {
+            throw new IllegalArgumentException("Query block size must be positive: " + queryBlockSize);
+        }
+        this.queryBlockSize = queryBlockSize;
+    }
+
+    /**
+     * @param parallel score the tiles in parallel (default true)
+     */
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    private void checkQueries(FingerprintBlock queries) {
+        if (queries.getSize() != database.getSize()) {
+            throw new IllegalArgumentException("Query size " + queries.getSize()
+                    + " does not match database size " + database.getSize());
+        }
+    }
+
+    private IntStream tiles() {
+        int count = (database.getCount() + tileSize - 1) / tileSize;
+        IntStream tiles = IntStream.range(0, count);
+        return parallel ? tiles.parallel() : tiles;
+    }
+
+    /**
+     * Finds the k most similar database fingerprints of every query.
+     *
+     * @param queries the queries, same size as the database
+     * @param measure the similarity measure
+     * @param k maximum number of hits per query
+     * @param threshold minimum score of a hit
+     * @return the hits of every query, best first
+     */
+    public List<List<Hit>> search(FingerprintBlock queries, SimilarityMeasure measure, int k, double threshold) {
+        checkQueries(queries);
+        if (k < 1) {
+            throw new IllegalArgumentException("k must be positive: " + k);
+        }
+        final int nq = queries.getCount();
+        TopK[] merged = tiles()
+                .mapToObj(tile -> scoreTile(tile, queries, measure, k, threshold))
+                .reduce(BatchSimilaritySearch::merge)
+                .orElseGet(() -> newHeaps(nq, k));
+        List<List<Hit>> hits = new ArrayList<>(nq);
+        for (TopK heap : merged) {
+            hits.add(heap.toList());
+        }
+        return hits;
+    }
+
+    private static TopK[] newHeaps(int n, int k) {
+        TopK[] heaps = new TopK[n];
+        for (int i = 0; i < n; i++) {
+            heaps[i] = new TopK(k);
+        }
+        return heaps;
+    }
+
+    private static TopK[] merge(TopK[] a, TopK[] b) {
+        for (int i = 0; i < a.length; i++) {
+            a[i].merge(b[i]);
+        }
+        return a;
+    }
+
+    private TopK[] scoreTile(int tile, FingerprintBlock queries, SimilarityMeasure measure, int k, double threshold) {
+        final int n = database.getWordCount();
+        final long[] targets = database.getWords();
+        final long[] query = queries.getWords();
+        final int from = tile * tileSize;
+        final int to = Math.min(database.getCount(), from + tileSize);
+        TopK[] heaps = newHeaps(queries.getCount(), k);
+        for (int qb = 0; qb < queries.getCount(); qb += queryBlockSize) {
+            final int qEnd = Math.min(queries.getCount(), qb + queryBlockSize);
+            for (int t = from, tOffset = from * n; t < to; t++, tOffset += n) {
+                final int tc = database.getCardinality(t);
+                for (int q = qb, qOffset = qb * n; q < qEnd; q++, qOffset += n) {
+                    int common = SimilarityKernels.andCardinality(query, qOffset, targets, tOffset, n);
+                    double score = measure.score(queries.getCardinality(q), tc, common);
+                    if (score >= threshold && score >= heaps[q].threshold()) {
+                        heaps[q].offer(t, score);
+                    }
+                }
+            }
+        }
+        return heaps;
+    }
+
+    /**
+     * Substructure screen of every query: the database fingerprints which
+     * contain all bits of the query.
+     *
+     * @param queries the queries, same size as the database
+     * @return indices of the candidates of every query, ascending
+     */
+    @SuppressWarnings("unchecked")
+    public List<int[]> screen(FingerprintBlock queries) {
+        checkQueries(queries);
+        final int nq = queries.getCount();
+        final int n = database.getWordCount();
+        List<int[]>[] perTile = tiles().mapToObj(tile -> {
+            final long[] targets = database.getWords();
+            final long[] query = queries.getWords();
+            final int from = tile * tileSize;
+            final int to = Math.min(database.getCount(), from + tileSize);
+            int[][] hits = new int[nq][16];
+            int[] counts = new int[nq];
+            for (int qb = 0; qb < nq; qb += queryBlockSize) {
+                final int qEnd = Math.min(nq, qb + queryBlockSize);
+                for (int t = from, tOffset = from * n; t < to; t++, tOffset += n) {
+                    final int tc = database.getCardinality(t);
+                    for (int q = qb, qOffset = qb * n; q < qEnd; q++, qOffset += n) {
+                        if (tc >= queries.getCardinality(q)
+                                && SimilarityKernels.contains(targets, tOffset, query, qOffset, n)) {
+                            if (counts[q] == hits[q].length) {
+                                hits[q] = Arrays.copyOf(hits[q], 2 * counts[q]);
+                            }
+                            hits[q][counts[q]++] = t;
+                        }
+                    }
+                }
+            }
+            List<int[]> result = new ArrayList<>(nq);
+            for (int q = 0; q < nq; q++) {
+                result.add(Arrays.copyOf(hits[q], counts[q]));
+            }
+            return result;
+        }).toArray(List[]::new);
+
+        List<int[]> result = new ArrayList<>(nq);
+        for (int q = 0; q < nq; q++) {
+            int total = 0;
+            for (List<int[]> tile : perTile) {
+                total += tile.get(q).length;
+            }
+            int[] hits = new int[total];
+            int pos = 0;
+            for (List<int[]> tile : perTile) {
+                int[] h = tile.get(q);
+                System.arraycopy(h, 0, hits, pos, h.length);
+                pos += h.length;
+            }
+            result.add(hits);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2003-2021 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package com.bioinception.chem.fp.fingerprints.similarity;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Containment screen over several resolutions of the same fingerprints. The
+ * smallest folded level is scanned in full, it is a few words per target and
+ * stays in L1/L2 for large collections; every finer level only checks the
+ * survivors of the previous one. The result is the same as a scan at full
+ * resolution.
+ *
+ * <pre>
+ * MultiResolutionFingerprinter fingerprinter
+ *         = new MultiResolutionFingerprinter(new HashedFingerprinter(4096), 1024, 64);
+ * CoarseToFineScreen screen = new CoarseToFineScreen(fingerprinter.getSizes());
+ * for (IAtomContainer target : targets) {
+ *     screen.add(fingerprinter.getFingerprints(target));
+ * }
+ * int[] candidates = screen.screen(fingerprinter.fold(query));
+ * </pre>
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public class CoarseToFineScreen {
+
+    private final FingerprintBlock[] levels;
+    private final int[] survivors;
+
+    /**
+     * @param sizes sizes of the resolutions, full resolution first, as given
+     * by {@link MultiResolutionFingerprinter#getSizes()}
+     */
+    public CoarseToFineScreen(int... sizes) {
+        if (sizes.length == 0) {
+            throw new IllegalArgumentException("No resolution given");
+        }
+        MultiResolutionFingerprinter.checkSizes(sizes[0], Arrays.copyOfRange(sizes, 1, sizes.length));
+        this.levels = new FingerprintBlock[sizes.length];
+        for (int i = 0; i < sizes.length; i++) {
+            levels[i] = new FingerprintBlock(sizes[i]);
+        }
+        this.survivors = new int[sizes.length];
+    }
+
+    /**
+     * Adds the resolutions of a target.
+     *
+     * @param fingerprints fingerprints of the target, full resolution first
+     * @return index of the target
+     */
+    public int add(BitSet[] fingerprints) {
+        checkLevels(fingerprints);
+        // pack every resolution first, so a rejected one leaves no level longer
+        long[][] packed = new long[levels.length][];
+        for (int i = 0; i < levels.length; i++) {
+            packed[i] = FingerprintBlock.pack(fingerprints[i], levels[i].getSize());
+        }
+        int index = -1;
+        for (int i = 0; i < levels.length; i++) {
+            index = levels[i].add(packed[i]);
+        }
+        return index;
+    }
+
+    /**
+     * @return number of targets
+     */
+    public int getCount() {
+        return levels[0].getCount();
+    }
+
+    /**
+     * @param level index of a resolution, 0 is the full resolution
+     * @return the fingerprints of the resolution
+     */
+    public FingerprintBlock getLevel(int level) {
+        return levels[level];
+    }
+
+    /**
+     * @return number of targets left after each resolution in the last
+     * screen, full resolution first
+     */
+    public int[] getSurvivorCounts() {
+        return survivors.clone();
+    }
+
+    /**
+     * @param query fingerprints of the query, full resolution first
+     * @return indices of the targets containing the query at full
+     * resolution, ascending
+     */
+    public int[] screen(BitSet[] query) {
+        checkLevels(query);
+        int last = levels.length - 1;
+        FingerprintBlock coarse = levels[last];
+        int[] candidates = new int[coarse.getCount()];
+        int count = SimilarityKernels.contains(FingerprintBlock.pack(query[last], coarse.getSize()),
+                coarse, 0, coarse.getCount(), candidates);
+        survivors[last] = count;
+        for (int level = last - 1; level >= 0; level--) {
+            FingerprintBlock block = levels[level];
+            long[] packed = FingerprintBlock.pack(query[level], block.getSize());
+            long[] words = block.getWords();
+            int n = block.getWordCount();
+            int kept = 0;
+            for (int i = 0; i < count; i++) {
+                int target = candidates[i];
+                if (SimilarityKernels.contains(words, target * n, packed, 0, n)) {
+                    candidates[kept++] = target;
+                }
+            }
+            count = kept;
+            survivors[level] = count;
+        }
+        return Arrays.copyOf(candidates, count);
+    }
+
+    private void checkLevels(BitSet[] fingerprints) {
+        if (fingerprints.length != levels.length) {
+            throw new IllegalArgumentException("Expected " + levels.length + " resolutions, got " + fingerprints.length);
+        }
+    }
+}
@@ -0,0 +1,307 @@
+/*
+ * Copyright (C) 2003-2021 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package com.bioinception.chem.fp.fingerprints.similarity;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Fixed-width fingerprints in direct (off-heap) memory. The same layout as a
+ * {@link FingerprintBlock}, fingerprint {@code i} occupying words
+ * {@code [i * wordCount, (i + 1) * wordCount)}, but held in native chunks of
+ * direct {@link ByteBuffer}s, so that tens of millions of fingerprints are a
+ * handful of heap objects for the garbage collector instead of one
+ * {@code BitSet} each. A chunk is limited to 2<sup>31</sup> bytes, the arena
+ * grows by whole chunks.
+ *
+ * <pre>
+ * FingerprintArena arena = new FingerprintArena(1024);
+ * arena.addAll(block);
+ * int count = arena.contains(FingerprintBlock.pack(query, 1024), 0, arena.getCount(), hits);
+ * </pre>
+ *
+ * The native memory of a chunk is released when the arena is garbage
+ * collected. Appending is not thread-safe, the kernels may run concurrently
+ * once the arena is filled.
+ *
+ * A {@code MemorySegment} variant (explicit release, no 2<sup>31</sup> byte
+ * chunk limit) is descoped, not ruled out: it belongs in a multi-release jar
+ * under {@code META-INF/versions/22}, where the foreign memory API is final.
+ * Before JDK 22 the API changed with every release, so the variant needs a
+ * JDK 22 build, which this build, compiling for Java 11, does not configure.
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public class FingerprintArena {
+
+    /**
+     * Default number of fingerprints per chunk.
+     */
+    public static final int DEFAULT_CHUNK_CAPACITY = 1 << 18;
+
+    private final int size;
+    private final int wordCount;
+    private final int chunkCapacity;
+    private final List<LongBuffer> words = new ArrayList<>();
+    private final List<IntBuffer> cardinalities = new ArrayList<>();
+    private int count = 0;
+
+    /**
+     * @param size number of bits of the fingerprints
+     */
+    public FingerprintArena(int size) {
+        this(size, DEFAULT_CHUNK_CAPACITY);
+    }
+
+    /**
+     * @param size number of bits of the fingerprints
+     * @param chunkCapacity number of fingerprints per native chunk
+     */
+    public FingerprintArena(int size, int chunkCapacity) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Fingerprint size must be positive: " + size);
+        }
+        this.size = size;
+        this.wordCount = FingerprintBlock.wordCount(size);
+        if (chunkCapacity < 1 || (long) chunkCapacity * wordCount * Long.BYTES > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Chunk of " + chunkCapacity + " fingerprints of "
+                    + wordCount + " words does not fit a buffer");
+        }
+        this.chunkCapacity = chunkCapacity;
+    }
+
+    /**
+     * Appends a fingerprint.
+     *
+     * @param fingerprint the fingerprint
+     * @return ordinal of the fingerprint
+     */
+    public int add(BitSet fingerprint) {
+        return add(FingerprintBlock.pack(fingerprint, size));
+    }
+
+    /**
+     * Appends a packed fingerprint.
+     *
+     * @param packed the fingerprint, {@link #getWordCount()} words
+     * @return ordinal of the fingerprint
+     */
+    public int add(long[] packed) {
+        if (packed.length != wordCount) {
+            throw new IllegalArgumentException("Expected " + wordCount + " words, got " + packed.length);
+        }
+        return append(packed, SimilarityKernels.cardinality(packed, 0, wordCount));
+    }
+
+    /**
+     * Bulk append of all fingerprints of a block, chunk by chunk.
+     *
+     * @param block fingerprints of the same size
+     * @return ordinal of the first fingerprint of the block
+     */
+    public int addAll(FingerprintBlock block) {
+        if (block.getSize() != size) {
+            throw new IllegalArgumentException("Fingerprints of different size: " + block.getSize() + " and " + size);
+        }
+        int first = count;
+        long[] source = block.getWords();
+        int i = 0;
+        while (i < block.getCount()) {
+            int chunk = ensureChunk();
+            int offset = count % chunkCapacity;
+            int n = Math.min(block.getCount() - i, chunkCapacity - offset);
+            LongBuffer target = words.get(chunk);
+            target.position(offset * wordCount);
+            target.put(source, i * wordCount, n * wordCount);
+            IntBuffer cards = cardinalities.get(chunk);
+            for (int k = 0; k < n; k++) {
+                cards.put(offset + k, block.getCardinality(i + k));
+            }
+            i += n;
+            count += n;
+        }
+        return first;
+    }
+
+    private int append(long[] packed, int cardinality) {
+        int chunk = ensureChunk();
+        int offset = count % chunkCapacity;
+        LongBuffer target = words.get(chunk);
+        target.position(offset * wordCount);
+        target.put(packed, 0, wordCount);
+        cardinalities.get(chunk).put(offset, cardinality);
+        return count++;
+    }
+
+    private int ensureChunk() {
+        int chunk = count / chunkCapacity;
+        if (chunk == words.size()) {
+            words.add(ByteBuffer.allocateDirect(chunkCapacity * wordCount * Long.BYTES)
+                    .order(ByteOrder.nativeOrder()).asLongBuffer());
+            cardinalities.add(ByteBuffer.allocateDirect(chunkCapacity * Integer.BYTES)
+                    .order(ByteOrder.nativeOrder()).asIntBuffer());
+        }
+        return chunk;
+    }
+
+    /**
+     * @param ordinal ordinal of a fingerprint
+     * @return the fingerprint, copied onto the heap
+     */
+    public BitSet getFingerprint(int ordinal) {
+        checkOrdinal(ordinal);
+        long[] packed = new long[wordCount];
+        LongBuffer chunk = words.get(ordinal / chunkCapacity);
+        int offset = (ordinal % chunkCapacity) * wordCount;
+        for (int i = 0; i < wordCount; i++) {
+            packed[i] = chunk.get(offset + i);
+        }
+        return BitSet.valueOf(packed);
+    }
+
+    /**
+     * @param ordinal ordinal of a fingerprint
+     * @return number of bits set
+     */
+    public int getCardinality(int ordinal) {
+        checkOrdinal(ordinal);
+        return cardinalities.get(ordinal / chunkCapacity).get(ordinal % chunkCapacity);
+    }
+
+    /**
+     * @return number of bits of the fingerprints
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return number of words per fingerprint
+     */
+    public int getWordCount() {
+        return wordCount;
+    }
+
+    /**
+     * @return number of fingerprints
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @return bytes of native memory reserved
+     */
+    public long getReservedBytes() {
+        return (long) words.size() * chunkCapacity * (wordCount * Long.BYTES + Integer.BYTES);
+    }
+
+    /**
+     * Scores one query against the fingerprints [from, to).
+     *
+     * @param measure the similarity measure
+     * @param query packed query, {@link #getWordCount()} words
+     * @param from first target
+     * @param to end of the targets, exclusive
+     * @param scores receives the score of target i at scores[i - from]
+     */
+    public void score(SimilarityMeasure measure, long[] query, int from, int to, double[] scores) {
+        checkQuery(query);
+        checkRange(from, to);
+        final int n = wordCount;
+        final int q = SimilarityKernels.cardinality(query, 0, n);
+        for (int i = from; i < to;) {
+            LongBuffer chunk = words.get(i / chunkCapacity);
+            IntBuffer cards = cardinalities.get(i / chunkCapacity);
+            int end = Math.min(to, (i / chunkCapacity + 1) * chunkCapacity);
+            for (int k = i % chunkCapacity, offset = k * n; i < end; i++, k++, offset += n) {
+                scores[i - from] = measure.score(q, cards.get(k), andCardinality(query, chunk, offset, n));
+            }
+        }
+    }
+
+    /**
+     * Screens the fingerprints [from, to) for targets containing every bit of
+     * the query.
+     *
+     * @param query packed query, {@link #getWordCount()} words
+     * @param from first target
+     * @param to end of the targets, exclusive
+     * @param hits receives the ordinals of the matching targets
+     * @return number of hits
+     */
+    public int contains(long[] query, int from, int to, int[] hits) {
+        checkQuery(query);
+        checkRange(from, to);
+        final int n = wordCount;
+        final int q = SimilarityKernels.cardinality(query, 0, n);
+        int count = 0;
+        for (int i = from; i < to;) {
+            LongBuffer chunk = words.get(i / chunkCapacity);
+            IntBuffer cards = cardinalities.get(i / chunkCapacity);
+            int end = Math.min(to, (i / chunkCapacity + 1) * chunkCapacity);
+            for (int k = i % chunkCapacity, offset = k * n; i < end; i++, k++, offset += n) {
+                if (cards.get(k) >= q && contains(chunk, offset, query, n)) {
+                    hits[count++] = i;
+                }
+            }
+        }
+        return count;
+    }
+
+    private static int andCardinality(long[] query, LongBuffer chunk, int offset, int n) {
+        int common = 0;
+        for (int i = 0; i < n; i++) {
+            common += Long.bitCount(query[i] & chunk.get(offset + i));
+        }
+        return common;
+    }
+
+    private static boolean contains(LongBuffer chunk, int offset, long[] query, int n) {
+        for (int i = 0; i < n; i++) {
+            if ((query[i] & ~chunk.get(offset + i)) != 0L) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void checkOrdinal(int ordinal) {
+        if (ordinal < 0 || ordinal >= count) {
+            throw new IndexOutOfBoundsException("Fingerprint " + ordinal + " of " + count);
+        }
+    }
+
+    private void checkRange(int from, int to) {
+        if (from < 0 || from > to || to > count) {
+            throw new IndexOutOfBoundsException("Range [" + from + ", " + to + ") of " + count);
+        }
+    }
+
+    private void checkQuery(long[] query) {
+        if (query.length != wordCount) {
+            throw new IllegalArgumentException("Expected a query of " + wordCount + " words, got " + query.length);
+        }
+    }
+}
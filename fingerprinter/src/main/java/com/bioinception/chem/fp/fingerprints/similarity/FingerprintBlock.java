@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2003-2021 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package com.bioinception.chem.fp.fingerprints.similarity;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.fingerprint.IFingerprinter;
+import org.openscience.cdk.interfaces.IAtomContainer;
+
+/**
+ * Fingerprints of one size packed into a single contiguous {@code long[]},
+ * fingerprint {@code i} occupying words {@code [i * wordCount, (i + 1) *
+ * wordCount)}, together with their cardinalities. This is the layout scanned
+ * by {@link SimilarityKernels}.
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public class FingerprintBlock {
+
+    private final int size;
+    private final int wordCount;
+    private long[] words;
+    private int[] cardinalities;
+    private int count = 0;
+
+    /**
+     * @param size number of bits of the fingerprints
+     */
+    public FingerprintBlock(int size) {
+        this(size, 16);
+    }
+
+    /**
+     * @param size number of bits of the fingerprints
+     * @param capacity initial number of fingerprints
+     */
+    public FingerprintBlock(int size, int capacity) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Fingerprint size must be positive: " + size);
+        }
+        this.size = size;
+        this.wordCount = wordCount(size);
+        this.words = new long[Math.max(1, capacity) * wordCount];
+        this.cardinalities = new int[Math.max(1, capacity)];
+    }
+
+    /**
+     * Fingerprints a list of molecules into a block, with any of the
+     * fingerprinters of this package or of the CDK.
+     *
+     * @param fingerprinter the fingerprinter
+     * @param molecules the molecules
+     * @return the fingerprints in the order of the molecules
+     * @throws CDKException
+     */
+    public static FingerprintBlock generate(IFingerprinter fingerprinter, Iterable<IAtomContainer> molecules) throws CDKException {
+        FingerprintBlock block = new FingerprintBlock(fingerprinter.getSize());
+        for (IAtomContainer molecule : molecules) {
+            block.add(fingerprinter.getBitFingerprint(molecule).asBitSet());
+        }
+        return block;
+    }
+
+    /**
+     * @param size number of bits
+     * @return number of 64-bit words holding size bits
+     */
+    public static int wordCount(int size) {
+        return (size + 63) >>> 6;
+    }
+
+    /**
+     * Packs a fingerprint into exactly {@link #wordCount(int)} words.
+     *
+     * @param fingerprint the fingerprint
+     * @param size number of bits of the fingerprint
+     * @return the packed fingerprint
+     * @throws IllegalArgumentException if a bit beyond size is set
+     */
+    public static long[] pack(BitSet fingerprint, int size) {
+        if (fingerprint.length() > size) {
+            throw new IllegalArgumentException("Bit " + (fingerprint.length() - 1)
+                    + " set in a fingerprint of size " + size);
+        }
+        return Arrays.copyOf(fingerprint.toLongArray(), wordCount(size));
+    }
+
+    /**
+     * Appends a fingerprint.
+     *
+     * @param fingerprint the fingerprint
+     * @return index of the fingerprint in the block
+     */
+    public int add(BitSet fingerprint) {
+        return add(pack(fingerprint, size));
+    }
+
+    /**
+     * Appends a packed fingerprint.
+     *
+     * @param packed the fingerprint, {@link #getWordCount()} words
+     * @return index of the fingerprint in the block
+     */
+    public int add(long[] packed) {
+        if (packed.length != wordCount) {
+            throw new IllegalArgumentException("Expected " + wordCount + " words, got " + packed.length);
+        }
+        if (count == cardinalities.length) {
+            words = Arrays.copyOf(words, 2 * words.length);
+            cardinalities = Arrays.copyOf(cardinalities, 2 * cardinalities.length);
+        }
+        System.arraycopy(packed, 0, words, count * wordCount, wordCount);
+        cardinalities[count] = SimilarityKernels.cardinality(packed, 0, wordCount);
+        return count++;
+    }
+
+    /**
+     * @param index index of a fingerprint
+     * @return the fingerprint
+     */
+    public BitSet getFingerprint(int index) {
+        int offset = getOffset(index);
+        return BitSet.valueOf(Arrays.copyOfRange(words, offset, offset + wordCount));
+    }
+
+    /**
+     * @param index index of a fingerprint
+     * @return offset of its first word in {@link #getWords()}
+     */
+    public int getOffset(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Fingerprint " + index + " of " + count);
+        }
+        return index * wordCount;
+    }
+
+    /**
+     * @param index index of a fingerprint
+     * @return number of bits set
+     */
+    public int getCardinality(int index) {
+        return cardinalities[index];
+    }
+
+    /**
+     * @return the packed words of all fingerprints, shared not copied
+     */
+    public long[] getWords() {
+        return words;
+    }
+
+    /**
+     * @return number of bits of the fingerprints
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return number of words per fingerprint
+     */
+    public int getWordCount() {
+        return wordCount;
+    }
+
+    /**
+     * @return number of fingerprints
+     */
+    public int getCount() {
+        return count;
+    }
+}
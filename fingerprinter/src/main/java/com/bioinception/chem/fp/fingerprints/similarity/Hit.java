@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2003-2021 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package com.bioinception.chem.fp.fingerprints.similarity;
+
+/**
+ * A database fingerprint and its score against a query.
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public class Hit implements Comparable<Hit> {
+
+    private final int index;
+    private final double score;
+
+    /**
+     * @param index index of the fingerprint in the database
+     * @param score score against the query
+     */
+    public Hit(int index, double score) {
+        this.index = index;
+        this.score = score;
+    }
+
+    /**
+     * @return index of the fingerprint in the database
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return score against the query
+     */
+    public double getScore() {
+        return score;
+    }
+
+    /**
+     * Best first: higher score, then lower index.
+     *
+     * @param other another hit
+     * @return order of the hits
+     */
+    @Override
+    public int compareTo(Hit other) {
+        int c = Double.compare(other.score, score);
+        return c != 0 ? c : Integer.compare(index, other.index);
+    }
+
+    @Override
+    public String toString() {
+        return index + ":" + score;
+    }
+}
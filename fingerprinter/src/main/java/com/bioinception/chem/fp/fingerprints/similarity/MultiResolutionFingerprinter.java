@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2003-2021 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package com.bioinception.chem.fp.fingerprints.similarity;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.fingerprint.IFingerprinter;
+import org.openscience.cdk.interfaces.IAtomContainer;
+
+/**
+ * Generates a long fingerprint once and derives shorter ones from it by
+ * OR-folding: bit {@code i} of the long fingerprint sets bit {@code i mod m}
+ * of the folded fingerprint of {@code m} bits. Folding keeps containment, if
+ * a query is contained in a target at full resolution it is at every folded
+ * resolution, which is what {@link CoarseToFineScreen} relies on.
+ *
+ * <pre>
+ * MultiResolutionFingerprinter fingerprinter
+ *         = new MultiResolutionFingerprinter(new HashedFingerprinter(4096), 1024, 256, 64);
+ * BitSet[] levels = fingerprinter.getFingerprints(molecule); // 4096, 1024, 256 and 64 bits
+ * </pre>
+ *
+ * Any fingerprinter of this package or of the CDK can be wrapped, e.g.
+ * {@code HashedFingerprinter} or {@code cdk.Fingerprinter}.
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public class MultiResolutionFingerprinter {
+
+    private final IFingerprinter fingerprinter;
+    private final int[] sizes;
+
+    /**
+     * @param fingerprinter the fingerprinter of the full resolution
+     * @param foldedSizes sizes of the folded fingerprints, decreasing, each
+     * a multiple of 64 dividing the previous size
+     */
+    public MultiResolutionFingerprinter(IFingerprinter fingerprinter, int... foldedSizes) {
+        this.fingerprinter = fingerprinter;
+        this.sizes = checkSizes(fingerprinter.getSize(), foldedSizes);
+    }
+
+    /**
+     * @return the wrapped fingerprinter
+     */
+    public IFingerprinter getFingerprinter() {
+        return fingerprinter;
+    }
+
+    /**
+     * @return the sizes of the resolutions, full resolution first
+     */
+    public int[] getSizes() {
+        return sizes.clone();
+    }
+
+    /**
+     * @param container the molecule
+     * @return the fingerprints of the molecule, full resolution first
+     * @throws CDKException
+     */
+    public BitSet[] getFingerprints(IAtomContainer container) throws CDKException {
+        return fold(fingerprinter.getBitFingerprint(container).asBitSet());
+    }
+
+    /**
+     * Folds a fingerprint of the full resolution, for example a query
+     * fingerprint.
+     *
+     * @param fingerprint a fingerprint of the full resolution
+     * @return the fingerprints, full resolution first
+     */
+    public BitSet[] fold(BitSet fingerprint) {
+        BitSet[] levels = new BitSet[sizes.length];
+        long[] words = FingerprintBlock.pack(fingerprint, sizes[0]);
+        levels[0] = BitSet.valueOf(words);
+        for (int i = 1; i < sizes.length; i++) {
+            words = fold(words, sizes[i]);
+            levels[i] = BitSet.valueOf(words);
+        }
+        return levels;
+    }
+
+    /**
+     * OR-folds a packed fingerprint.
+     *
+     * @param words packed fingerprint, a multiple of the folded word count
+     * @param size folded size, a multiple of 64
+     * @return the packed folded fingerprint
+     */
+    public static long[] fold(long[] words, int size) {
+        int n = FingerprintBlock.wordCount(size);
+        if (size % 64 != 0 || words.length % n != 0) {
+            throw new IllegalArgumentException("Can not fold " + words.length + " words to " + size + " bits");
+        }
+        long[] folded = Arrays.copyOf(words, n);
+        for (int i = n; i < words.length; i++) {
+            folded[i % n] |= words[i];
+        }
+        return folded;
+    }
+
+    static int[] checkSizes(int size, int... foldedSizes) {
+        int[] sizes = new int[foldedSizes.length + 1];
+        sizes[0] = size;
+        for (int i = 0; i < foldedSizes.length; i++) {
+            int folded = foldedSizes[i];
+            if (folded < 64 || folded % 64 != 0 || sizes[i] % folded != 0 || folded >= sizes[i]) {
+                throw new IllegalArgumentException("Folded size " + folded
+                        + " must be a multiple of 64 dividing " + sizes[i]);
+            }
+            sizes[i + 1] = folded;
+        }
+        return sizes;
+    }
+}
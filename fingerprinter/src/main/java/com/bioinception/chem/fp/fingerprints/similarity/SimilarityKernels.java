@@ -0,0 +1,234 @@
+/*
+ * Copyright (C) 2003-2021 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package com.bioinception.chem.fp.fingerprints.similarity;
+
+/**
+ * Popcount kernels over packed ({@code long[]}) fingerprints.
+ *
+ * The loops are unrolled four words at a time into independent accumulators
+ * so that {@link Long#bitCount(long)}, which HotSpot compiles to a single
+ * POPCNT, is not serialised on one register. The batch methods score one
+ * query against a range of a {@link FingerprintBlock}; the query cardinality
+ * is computed once and the target cardinalities are stored in the block, so
+ * only the intersection is counted per target.
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public class SimilarityKernels {
+
+    private SimilarityKernels() {
+    }
+
+    /**
+     * @param words packed fingerprints
+     * @param offset first word
+     * @param length number of words
+     * @return number of bits set
+     */
+    public static int cardinality(long[] words, int offset, int length) {
+        int c0 = 0, c1 = 0, c2 = 0, c3 = 0;
+        int i = 0;
+        for (; i + 3 < length; i += 4) {
+            c0 += Long.bitCount(words[offset + i]);
+            c1 += Long.bitCount(words[offset + i + 1]);
+            c2 += Long.bitCount(words[offset + i + 2]);
+            c3 += Long.bitCount(words[offset + i + 3]);
+        }
+        for (; i < length; i++) {
+            c0 += Long.bitCount(words[offset + i]);
+        }
+        return c0 + c1 + c2 + c3;
+    }
+
+    /**
+     * @param a packed fingerprints
+     * @param aOffset first word in a
+     * @param b packed fingerprints
+     * @param bOffset first word in b
+     * @param length number of words
+     * @return number of bits set in both
+     */
+    public static int andCardinality(long[] a, int aOffset, long[] b, int bOffset, int length) {
+        int c0 = 0, c1 = 0, c2 = 0, c3 = 0;
+        int i = 0;
+        for (; i + 3 < length; i += 4) {
+            c0 += Long.bitCount(a[aOffset + i] & b[bOffset + i]);
+            c1 += Long.bitCount(a[aOffset + i + 1] & b[bOffset + i + 1]);
+            c2 += Long.bitCount(a[aOffset + i + 2] & b[bOffset + i + 2]);
+            c3 += Long.bitCount(a[aOffset + i + 3] & b[bOffset + i + 3]);
+        }
+        for (; i < length; i++) {
+            c0 += Long.bitCount(a[aOffset + i] & b[bOffset + i]);
+        }
+        return c0 + c1 + c2 + c3;
+    }
+
+    /**
+     * @param target packed fingerprints
+     * @param tOffset first word of the target
+     * @param query packed fingerprints
+     * @param qOffset first word of the query
+     * @param length number of words
+     * @return true if every bit of the query is set in the target
+     */
+    public static boolean contains(long[] target, int tOffset, long[] query, int qOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            if ((query[qOffset + i] & ~target[tOffset + i]) != 0L) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void checkLength(long[] a, long[] b) {
+        if (a.length != b.length) {
+            throw new IllegalArgumentException("Fingerprints of different size: "
+                    + a.length + " and " + b.length + " words");
+        }
+    }
+
+    /**
+     * @param measure the similarity measure
+     * @param query packed query
+     * @param target packed target of the same size
+     * @return the similarity
+     */
+    public static double score(SimilarityMeasure measure, long[] query, long[] target) {
+        checkLength(query, target);
+        return measure.score(cardinality(query, 0, query.length), cardinality(target, 0, target.length),
+                andCardinality(query, 0, target, 0, query.length));
+    }
+
+    /**
+     * @param query packed query
+     * @param target packed target of the same size
+     * @return Tanimoto similarity
+     */
+    public static double tanimoto(long[] query, long[] target) {
+        return score(SimilarityMeasure.TANIMOTO, query, target);
+    }
+
+    /**
+     * @param query packed query
+     * @param target packed target of the same size
+     * @param alpha weight of the bits only in the query
+     * @param beta weight of the bits only in the target
+     * @return Tversky similarity
+     */
+    public static double tversky(long[] query, long[] target, double alpha, double beta) {
+        checkLength(query, target);
+        return SimilarityMeasure.tversky(cardinality(query, 0, query.length), cardinality(target, 0, target.length),
+                andCardinality(query, 0, target, 0, query.length), alpha, beta);
+    }
+
+    /**
+     * @param target packed target
+     * @param query packed query of the same size
+     * @return true if the query may be a substructure of the target
+     */
+    public static boolean contains(long[] target, long[] query) {
+        checkLength(target, query);
+        return contains(target, 0, query, 0, query.length);
+    }
+
+    /**
+     * Scores one query against the fingerprints [from, to) of a block.
+     *
+     * @param measure the similarity measure
+     * @param query packed query, {@link FingerprintBlock#getWordCount()} words
+     * @param block the targets
+     * @param from first target
+     * @param to end of the targets, exclusive
+     * @param scores receives the score of target i at scores[i - from]
+     */
+    public static void score(SimilarityMeasure measure, long[] query, FingerprintBlock block,
+            int from, int to, double[] scores) {
+        final int n = block.getWordCount();
+        checkQuery(query, n);
+        checkRange(block, from, to);
+        final long[] words = block.getWords();
+        final int q = cardinality(query, 0, n);
+        for (int i = from, offset = from * n; i < to; i++, offset += n) {
+            scores[i - from] = measure.score(q, block.getCardinality(i), andCardinality(query, 0, words, offset, n));
+        }
+    }
+
+    /**
+     * Tversky scores of one query against the fingerprints [from, to) of a
+     * block.
+     *
+     * @param query packed query, {@link FingerprintBlock#getWordCount()} words
+     * @param block the targets
+     * @param from first target
+     * @param to end of the targets, exclusive
+     * @param alpha weight of the bits only in the query
+     * @param beta weight of the bits only in the target
+     * @param scores receives the score of target i at scores[i - from]
+     */
+    public static void tversky(long[] query, FingerprintBlock block, int from, int to,
+            double alpha, double beta, double[] scores) {
+        final int n = block.getWordCount();
+        checkQuery(query, n);
+        checkRange(block, from, to);
+        final long[] words = block.getWords();
+        final int q = cardinality(query, 0, n);
+        for (int i = from, offset = from * n; i < to; i++, offset += n) {
+            scores[i - from] = SimilarityMeasure.tversky(q, block.getCardinality(i),
+                    andCardinality(query, 0, words, offset, n), alpha, beta);
+        }
+    }
+
+    /**
+     * Screens the fingerprints [from, to) of a block for targets containing
+     * every bit of the query.
+     *
+     * @param query packed query, {@link FingerprintBlock#getWordCount()} words
+     * @param block the targets
+     * @param from first target
+     * @param to end of the targets, exclusive
+     * @param hits receives the indices of the matching targets
+     * @return number of hits
+     */
+    public static int contains(long[] query, FingerprintBlock block, int from, int to, int[] hits) {
+        final int n = block.getWordCount();
+        checkQuery(query, n);
+        checkRange(block, from, to);
+        final long[] words = block.getWords();
+        final int q = cardinality(query, 0, n);
+        int count = 0;
+        for (int i = from, offset = from * n; i < to; i++, offset += n) {
+            if (block.getCardinality(i) >= q && contains(words, offset, query, 0, n)) {
+                hits[count++] = i;
+            }
+        }
+        return count;
+    }
+
+    private static void checkRange(FingerprintBlock block, int from, int to) {
+        if (from < 0 || from > to || to > block.getCount()) {
+            throw new IndexOutOfBoundsException("Range [" + from + ", " + to + ") of " + block.getCount());
+        }
+    }
+
+    private static void checkQuery(long[] query, int wordCount) {
+        if (query.length != wordCount) {
+            throw new IllegalArgumentException("Expected a query of " + wordCount + " words, got " + query.length);
+        }
+    }
+}
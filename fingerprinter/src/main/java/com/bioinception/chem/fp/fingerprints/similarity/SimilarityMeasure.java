@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2003-2021 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package com.bioinception.chem.fp.fingerprints.similarity;
+
+/**
+ * Similarity of two fingerprints from the number of bits set in the query,
+ * in the target and in both.
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public enum SimilarityMeasure {
+
+    /**
+     * c / (q + t - c)
+     */
+    TANIMOTO {
+        @Override
+        public double score(int query, int target, int common) {
+            int union = query + target - common;
+            return union == 0 ? 0.0 : (double) common / union;
+        }
+    },
+    /**
+     * 2c / (q + t)
+     */
+    DICE {
+        @Override
+        public double score(int query, int target, int common) {
+            int sum = query + target;
+            return sum == 0 ? 0.0 : 2.0 * common / sum;
+        }
+    },
+    /**
+     * c / sqrt(q * t)
+     */
+    COSINE {
+        @Override
+        public double score(int query, int target, int common) {
+            return query == 0 || target == 0 ? 0.0 : common / Math.sqrt((double) query * target);
+        }
+    },
+    /**
+     * c / q, the fraction of the query bits present in the target.
+     */
+    CONTAINMENT {
+        @Override
+        public double score(int query, int target, int common) {
+            return query == 0 ? 0.0 : (double) common / query;
+        }
+    };
+
+    /**
+     * @param query number of bits set in the query
+     * @param target number of bits set in the target
+     * @param common number of bits set in both
+     * @return the similarity
+     */
+    public abstract double score(int query, int target, int common);
+
+    /**
+     * Tversky index c / (alpha (q - c) + beta (t - c) + c), Tanimoto for
+     * alpha = beta = 1 and Dice for alpha = beta = 0.5.
+     *
+     * @param query number of bits set in the query
+     * @param target number of bits set in the target
+     * @param common number of bits set in both
+     * @param alpha weight of the bits only in the query
+     * @param beta weight of the bits only in the target
+     * @return the similarity
+     */
+    public static double tversky(int query, int target, int common, double alpha, double beta) {
+        double denominator = alpha * (query - common) + beta * (target - common) + common;
+        return denominator == 0.0 ? 0.0 : common / denominator;
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2003-2021 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package com.bioinception.chem.fp.fingerprints.similarity;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Bounded heap keeping the k best hits of one query, the worst hit on top.
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+class TopK {
+
+    private final int k;
+    private final PriorityQueue<Hit> heap;
+
+    TopK(int k) {
+        this.k = k;
+        this.heap = new PriorityQueue<>(Math.min(k, 1024) + 1, Collections.reverseOrder());
+    }
+
+    /**
+     * @return the score a new hit has to beat, or -infinity while not full
+     */
+    double threshold() {
+        return heap.size() < k ? Double.NEGATIVE_INFINITY : heap.peek().getScore();
+    }
+
+    void offer(int index, double score) {
+        if (heap.size() < k) {
+            heap.add(new Hit(index, score));
+        } else {
+            Hit hit = new Hit(index, score);
+            if (hit.compareTo(heap.peek()) < 0) {
+                heap.poll();
+                heap.add(hit);
+            }
+        }
+    }
+
+    void merge(TopK other) {
+        for (Hit hit : other.heap) {
+            offer(hit.getIndex(), hit.getScore());
+        }
+    }
+
+    List<Hit> toList() {
+        List<Hit> hits = new ArrayList<>(heap);
+        Collections.sort(hits);
+        return hits;
+    }
+}
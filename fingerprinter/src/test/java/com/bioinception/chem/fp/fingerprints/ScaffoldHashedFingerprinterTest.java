@@ -6,6 +6,7 @@ package com.bioinception.chem.fp.fingerprints;
 
 import com.bioinception.chem.fp.fingerprints.bi.ScaffoldHashedFingerprinter;
 import com.bioinception.chem.fp.fingerprints.helper.FingerprinterTool;
+import com.bioinception.chem.fp.fingerprints.helper.HashVersion;
 import static com.bioinception.chem.fp.fingerprints.helper.FingerprinterTool.isSubset;
 import java.io.FileNotFoundException;
 import java.util.BitSet;
@@ -243,4 +244,83 @@ public class ScaffoldHashedFingerprinterTest {
 
         Assert.assertFalse(FingerprinterTool.isSubset(fingerprintQ, fingerprintT));
     }
+
+    @Test
+    public void testPathCodesAtomOrder() throws InvalidSmilesException, Exception {
+
+        IAtomContainer molecule1 = smilesParser.parseSmiles("ClC1=CC=C(Br)C=C1C[Mg]");
+        IAtomContainer molecule2 = smilesParser.parseSmiles("[Mg]CC1=CC(Br)=CC=C1Cl");
+        ScaffoldHashedFingerprinter fingerprint = new ScaffoldHashedFingerprinter(1024);
+        fingerprint.setHashVersion(HashVersion.PATH_CODES);
+        BitSet fingerprint1 = fingerprint.getBitFingerprint(molecule1).asBitSet();
+        BitSet fingerprint2 = fingerprint.getBitFingerprint(molecule2).asBitSet();
+        System.out.println("fp1 " + fingerprint1.toString());
+        System.out.println("fp2 " + fingerprint2.toString());
+        Assert.assertTrue(fingerprint1.equals(fingerprint2));
+    }
+
+    /**
+     * The query fingerprint of a fragment is a subset of the fingerprints of
+     * its superstructures, also where the fragment is part of a ring system
+     * or its bonds are aromatic in the target only.
+     *
+     * @throws InvalidSmilesException
+     * @throws CDKException
+     */
+    @Test
+    public void testQueryFingerprintIsSubset() throws InvalidSmilesException, CDKException {
+        String[][] pairs = {
+            {"C(=O)O", "OC(=O)C(=O)CC1=CC=C(O)C=C1"},
+            {"c1ccccc1C", "N[C@@H](CC1=CC=C(O)C=C1)C(O)=O"},
+            {"CC=CC", "c1ccc2ccccc2c1"},
+            {"CC(Br)=C", "CC1=C2C=CC(Br)=CC2=C(Cl)C=C1"},
+            {"CC1=C2C=CC(Br)=CC2=C(Cl)C=C1", "NC(=O)C1=C2C=CC(Br)=CC2=C(Cl)C=C1"}
+        };
+        ScaffoldHashedFingerprinter fingerprint = new ScaffoldHashedFingerprinter(1024);
+        fingerprint.setHashVersion(HashVersion.SEGMENT_LAYOUT);
+        for (String[] pair : pairs) {
+            BitSet fingerprintQ = fingerprint.getQueryFingerprint(smilesParser.parseSmiles(pair[0])).asBitSet();
+            BitSet fingerprintT = fingerprint.getBitFingerprint(smilesParser.parseSmiles(pair[1])).asBitSet();
+            System.out.println(pair[0] + " fpQ " + fingerprintQ.toString());
+            Assert.assertTrue(fingerprintQ.cardinality() > 0);
+            Assert.assertTrue(isSubset(fingerprintT, fingerprintQ));
+        }
+    }
+
+    /**
+     * The path segment of the legacy layout has no fixed offset.
+     *
+     * @throws InvalidSmilesException
+     * @throws CDKException
+     */
+    @Test(expected = IllegalStateException.class)
+    public void testQueryFingerprintNeedsSegmentLayout() throws InvalidSmilesException, CDKException {
+        new ScaffoldHashedFingerprinter(1024).getQueryFingerprint(smilesParser.parseSmiles("C(=O)O"));
+    }
+
+    /**
+     * With the segment layout the ring segments stay empty for an acyclic
+     * molecule and its paths start at the same offset as those of a query.
+     *
+     * @throws InvalidSmilesException
+     * @throws CDKException
+     */
+    @Test
+    public void testSegmentLayoutOffsets() throws InvalidSmilesException, CDKException {
+        ScaffoldHashedFingerprinter fingerprinter = new ScaffoldHashedFingerprinter(1024);
+        fingerprinter.setHashVersion(HashVersion.SEGMENT_LAYOUT);
+        int ringBits = 16;
+        int offset = ringBits + 128;
+
+        BitSet ring = fingerprinter.getBitFingerprint(smilesParser.parseSmiles("c1ccccc1")).asBitSet();
+        System.out.println("fp ring " + ring);
+        Assert.assertTrue(ring.nextSetBit(0) < ringBits);
+        Assert.assertTrue(ring.length() <= 1024);
+
+        BitSet chain = fingerprinter.getBitFingerprint(smilesParser.parseSmiles("ClC(Br)(I)F")).asBitSet();
+        BitSet query = fingerprinter.getQueryFingerprint(smilesParser.parseSmiles("ClC(Br)(I)F")).asBitSet();
+        System.out.println("fp chain " + chain);
+        Assert.assertTrue(chain.nextSetBit(0) >= offset);
+        Assert.assertTrue(chain.equals(query));
+    }
 }
@@ -0,0 +1,176 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.bioinception.chem.fp.fingerprints.cache;
+
+import com.bioinception.chem.fp.fingerprints.hashed.HashedFingerprinter;
+import com.bioinception.chem.fp.fingerprints.helper.HashVersion;
+import java.io.File;
+import java.io.IOException;
+import java.util.BitSet;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.exception.InvalidSmilesException;
+import org.openscience.cdk.smiles.SmilesParser;
+
+/**
+ *
+ * @author Asad
+ */
+public class CachingFingerprinterTest {
+
+    final static SmilesParser smilesParser = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Repeated structures are answered from the cache, a different hash
+     * version is a different key.
+     *
+     * @throws InvalidSmilesException
+     * @throws CDKException
+     */
+    @Test
+    public void testHitsAndMisses() throws InvalidSmilesException, CDKException {
+        HashedFingerprinter hashed = new HashedFingerprinter(1024);
+        CachingFingerprinter fingerprinter = new CachingFingerprinter(hashed,
+                new LRUFingerprintCache(100), StructureKey.CANONICAL_SMILES);
+        BitSet fp1 = fingerprinter.getBitFingerprint(smilesParser.parseSmiles("c1ccccc1CCN")).asBitSet();
+        BitSet fp2 = fingerprinter.getBitFingerprint(smilesParser.parseSmiles("NCCc1ccccc1")).asBitSet();
+        Assert.assertEquals(fp1, fp2);
+        Assert.assertEquals(1, fingerprinter.getStats().getHitCount());
+        Assert.assertEquals(1, fingerprinter.getStats().getMissCount());
+
+        hashed.setHashVersion(HashVersion.FAST_MAPPING);
+        fingerprinter.getBitFingerprint(smilesParser.parseSmiles("NCCc1ccccc1"));
+        System.out.println("stats " + fingerprinter.getStats());
+        Assert.assertEquals(2, fingerprinter.getStats().getMissCount());
+        Assert.assertEquals(2, fingerprinter.getCache().size());
+    }
+
+    /**
+     * The least recently used print is evicted.
+     */
+    @Test
+    public void testLRUEviction() {
+        LRUFingerprintCache cache = new LRUFingerprintCache(2);
+        cache.put("a", new BitSet());
+        cache.put("b", new BitSet());
+        cache.get("a");
+        cache.put("c", new BitSet());
+        Assert.assertNotNull(cache.get("a"));
+        Assert.assertNull(cache.get("b"));
+        Assert.assertEquals(1, cache.getEvictionCount());
+    }
+
+    /**
+     * A scan of one-off keys does not flush a frequently requested key.
+     */
+    @Test
+    public void testTinyLFUResistsScan() {
+        TinyLFUFingerprintCache cache = new TinyLFUFingerprintCache(100);
+        BitSet reagent = new BitSet();
+        reagent.set(7);
+        cache.put("reagent", reagent);
+        for (int i = 0; i < 5; i++) {
+            cache.get("reagent");
+        }
+        for (int i = 0; i < 1000; i++) {
+            String key = "scan" + i;
+            if (cache.get(key) == null) {
+                cache.put(key, new BitSet());
+            }
+        }
+        Assert.assertEquals(reagent, cache.get("reagent"));
+        Assert.assertTrue(cache.size() <= 100);
+    }
+
+    /**
+     * Prints written to the persistent store survive a new cache.
+     *
+     * @throws IOException
+     * @throws InvalidSmilesException
+     * @throws CDKException
+     */
+    @Test
+    public void testPersistentStore() throws IOException, InvalidSmilesException, CDKException {
+        File file = new File(folder.getRoot(), "fingerprints.txt");
+        BitSet expected;
+        try (FileFingerprintStore store = new FileFingerprintStore(file)) {
+            CachingFingerprinter fingerprinter = new CachingFingerprinter(new HashedFingerprinter(1024),
+                    new TinyLFUFingerprintCache(10), store, StructureKey.CANONICAL_SMILES);
+            expected = fingerprinter.getBitFingerprint(smilesParser.parseSmiles("c1ccccc1CCN")).asBitSet();
+        }
+        try (FileFingerprintStore store = new FileFingerprintStore(file)) {
+            CachingFingerprinter fingerprinter = new CachingFingerprinter(new HashedFingerprinter(1024),
+                    new TinyLFUFingerprintCache(10), store, StructureKey.CANONICAL_SMILES);
+            BitSet fp = fingerprinter.getBitFingerprint(smilesParser.parseSmiles("NCCc1ccccc1")).asBitSet();
+            Assert.assertEquals(expected, fp);
+            Assert.assertEquals(1, fingerprinter.getStats().getStoreHitCount());
+            Assert.assertEquals(0, fingerprinter.getStats().getMissCount());
+        }
+    }
+
+    /**
+     * Structures that only differ in the labels of their pseudo atoms have
+     * different keys.
+     *
+     * @throws InvalidSmilesException
+     * @throws CDKException
+     */
+    @Test
+    public void testPseudoAtomLabels() throws InvalidSmilesException, CDKException {
+        String r1 = StructureKey.CANONICAL_SMILES.generate(smilesParser.parseSmiles("[R1]c1ccccc1"));
+        String r2 = StructureKey.CANONICAL_SMILES.generate(smilesParser.parseSmiles("[R2]c1ccccc1"));
+        System.out.println("keys " + r1 + " " + r2);
+        Assert.assertNotEquals(r1, r2);
+        Assert.assertEquals("C1=CC=C(C=C1)CCN",
+                StructureKey.CANONICAL_SMILES.generate(smilesParser.parseSmiles("NCCc1ccccc1")));
+
+        HashedFingerprinter hashed = new HashedFingerprinter(1024);
+        hashed.setHashPseudoAtoms(true);
+        CachingFingerprinter fingerprinter = new CachingFingerprinter(hashed,
+                new LRUFingerprintCache(100), StructureKey.CANONICAL_SMILES);
+        fingerprinter.getBitFingerprint(smilesParser.parseSmiles("[R1]c1ccccc1"));
+        fingerprinter.getBitFingerprint(smilesParser.parseSmiles("[R2]c1ccccc1"));
+        Assert.assertEquals(0, fingerprinter.getStats().getHitCount());
+        Assert.assertEquals(2, fingerprinter.getStats().getMissCount());
+    }
+
+    /**
+     * The store reads the fingerprints from the file by their indexed
+     * offsets, also after appending to an existing file.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testFileStoreOffsets() throws IOException {
+        File file = new File(folder.getRoot(), "offsets.txt");
+        BitSet[] fingerprints = new BitSet[20];
+        try (FileFingerprintStore store = new FileFingerprintStore(file)) {
+            for (int i = 0; i < 10; i++) {
+                fingerprints[i] = new BitSet();
+                fingerprints[i].set(i, 3 * i + 1);
+                store.put("key\u00e9" + i, fingerprints[i]);
+            }
+        }
+        try (FileFingerprintStore store = new FileFingerprintStore(file)) {
+            Assert.assertEquals(10, store.size());
+            for (int i = 10; i < 20; i++) {
+                fingerprints[i] = new BitSet();
+                fingerprints[i].set(i * 7);
+                store.put("key\u00e9" + i, fingerprints[i]);
+            }
+            for (int i = 0; i < 20; i++) {
+                Assert.assertEquals(fingerprints[i], store.get("key\u00e9" + i));
+            }
+            Assert.assertNull(store.get("missing"));
+        }
+    }
+}
@@ -0,0 +1,314 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.bioinception.chem.fp.fingerprints.cdk;
+
+import com.bioinception.chem.fp.fingerprints.helper.AdaptiveDepthPolicy;
+import com.bioinception.chem.fp.fingerprints.helper.FingerprinterTool;
+import com.bioinception.chem.fp.fingerprints.helper.HashVersion;
+import com.bioinception.chem.fp.fingerprints.helper.PathCodes;
+import com.bioinception.chem.fp.fingerprints.helper.PathEncoderOptions;
+import com.bioinception.chem.fp.fingerprints.helper.PathSymmetry;
+import com.bioinception.chem.fp.fingerprints.helper.PerceptionOverlay;
+import com.bioinception.chem.fp.fingerprints.helper.VersionedFingerprint;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.exception.InvalidSmilesException;
+import org.openscience.cdk.fingerprint.IBitFingerprint;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.smiles.SmilesParser;
+
+/**
+ *
+ * @author Asad
+ */
+public class FingerprinterTest {
+
+    final static SmilesParser smilesParser = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+
+    private static BitSet fingerprint(String smiles, HashVersion version) throws CDKException {
+        Fingerprinter fingerprinter = new Fingerprinter(1024);
+        fingerprinter.setHashVersion(version);
+        return fingerprinter.getBitFingerprint(smilesParser.parseSmiles(smiles)).asBitSet();
+    }
+
+    /**
+     * The legacy path hash only reads the first character of a symbol, the
+     * paths through Mg and Mn collide and only the single atom bits differ.
+     *
+     * @throws InvalidSmilesException
+     * @throws CDKException
+     */
+    @Test
+    public void testPathCodesDistinguishSymbols() throws InvalidSmilesException, CDKException {
+        Assert.assertEquals(PathEncoder.appendHash(0, "Mg"), PathEncoder.appendHash(0, "Mn"));
+        BitSet legacy = fingerprint("CC[Mg]", HashVersion.LEGACY);
+        legacy.xor(fingerprint("CC[Mn]", HashVersion.LEGACY));
+        Assert.assertEquals(2, legacy.cardinality());
+
+        BitSet coded = fingerprint("CC[Mg]", HashVersion.PATH_CODES);
+        coded.xor(fingerprint("CC[Mn]", HashVersion.PATH_CODES));
+        System.out.println("fp Mg xor Mn " + coded);
+        Assert.assertTrue(coded.cardinality() > 2);
+    }
+
+    /**
+     * The coded paths do not depend on the atom order of the input.
+     *
+     * @throws InvalidSmilesException
+     * @throws CDKException
+     */
+    @Test
+    public void testPathCodesAtomOrder() throws InvalidSmilesException, CDKException {
+        BitSet fp1 = fingerprint("ClC1=CC=C(Br)C=C1CN", HashVersion.PATH_CODES);
+        BitSet fp2 = fingerprint("NCC1=CC(Br)=CC=C1Cl", HashVersion.PATH_CODES);
+        Assert.assertEquals(fp1, fp2);
+    }
+
+    /**
+     * The paths of a substructure are a subset of those of the
+     * superstructure.
+     *
+     * @throws InvalidSmilesException
+     * @throws CDKException
+     */
+    @Test
+    public void testPathCodesIsSubset() throws InvalidSmilesException, CDKException {
+        BitSet fpQ = fingerprint("CC1=C2C=CC(Br)=CC2=C(Cl)C=C1", HashVersion.PATH_CODES);
+        BitSet fpT = fingerprint("NC(=O)C1=C2C=CC(Br)=CC2=C(Cl)C=C1", HashVersion.PATH_CODES);
+        Assert.assertTrue(FingerprinterTool.isSubset(fpT, fpQ));
+    }
+
+    /**
+     * The fast mapping sets one bit per unique path hash, within the size of
+     * the fingerprint, and keeps the atom order invariance and subset
+     * property.
+     *
+     * @throws InvalidSmilesException
+     * @throws CDKException
+     */
+    @Test
+    public void testFastMapping() throws InvalidSmilesException, CDKException {
+        BitSet fp1 = fingerprint("ClC1=CC=C(Br)C=C1CN", HashVersion.FAST_MAPPING);
+        BitSet fp2 = fingerprint("NCC1=CC(Br)=CC=C1Cl", HashVersion.FAST_MAPPING);
+        Assert.assertEquals(fp1, fp2);
+        Assert.assertTrue(fp1.length() <= 1024);
+
+        BitSet fpQ = fingerprint("CC1=C2C=CC(Br)=CC2=C(Cl)C=C1", HashVersion.FAST_MAPPING);
+        BitSet fpT = fingerprint("NC(=O)C1=C2C=CC(Br)=CC2=C(Cl)C=C1", HashVersion.FAST_MAPPING);
+        System.out.println("fp fast mapping " + fpQ.cardinality() + " " + fpT.cardinality());
+        Assert.assertTrue(FingerprinterTool.isSubset(fpT, fpQ));
+    }
+
+    /**
+     * Hashes every path from scratch, as the encoder did before the hashes
+     * were rolled along the search.
+     */
+    private static void traverse(State state, IAtom beg, IBond prev) {
+        state.push(beg, prev);
+        state.addHash(PathEncoder.encodeUniquePath(state.getAtomPath(), state.getBondPath(), state.buffer));
+        if (state.getAtomPath().size() < state.getMaxDepth()) {
+            for (IBond bond : state.getBonds(beg)) {
+                if (bond.equals(prev)) {
+                    continue;
+                }
+                IAtom nbr = bond.getOther(beg);
+                if (state.visit(nbr)) {
+                    traverse(state, nbr, bond);
+                    state.unvisit(nbr);
+                }
+            }
+        }
+        state.pop();
+    }
+
+    /**
+     * The rolling path hashes set the same bits as hashing every path from
+     * its first atom.
+     *
+     * @throws InvalidSmilesException
+     * @throws CDKException
+     */
+    @Test
+    public void testRollingPathHash() throws InvalidSmilesException, CDKException {
+        String[] smiles = {"CC[Mg]", "NC(=O)C1=C2C=CC(Br)=CC2=C(Cl)C=C1", "OCC1OC(O)C(O)C(O)C1O", "C1CC2CCC1CC2", "C#CC=CC(=O)N[Fe]"};
+        for (String smi : smiles) {
+            IAtomContainer mol = smilesParser.parseSmiles(smi);
+            BitSet rolled = new BitSet(1024);
+            PathEncoder.encodePaths(mol, 8, rolled, 1024, new PathEncoderOptions(42000, false), null);
+            BitSet expected = new BitSet(1024);
+            State state = new State(mol, expected, 1024, 9);
+            for (IAtom atom : mol.atoms()) {
+                state.visit(atom);
+                traverse(state, atom, null);
+                state.unvisit(atom);
+            }
+            System.out.println("fp rolled " + smi + " " + rolled.cardinality());
+            Assert.assertEquals(expected, rolled);
+        }
+    }
+
+    /**
+     * Enumerating the paths from one atom per symmetry class sets the same
+     * bits for every hash version. The classes follow the aromaticity of the
+     * overlay, not the Kekule bonds of the input.
+     *
+     * @throws InvalidSmilesException
+     * @throws CDKException
+     */
+    @Test
+    public void testSymmetryPruning() throws InvalidSmilesException, CDKException {
+        IAtomContainer dichlorobenzene = smilesParser.parseSmiles("Clc1ccc(Cl)cc1");
+        int[] classes = PathSymmetry.classes(dichlorobenzene, PathCodes.of(dichlorobenzene));
+        Assert.assertEquals(3, PathSymmetry.count(classes));
+        IAtomContainer kekule = smilesParser.parseSmiles("ClC1=CC=C(Cl)C=C1");
+        classes = PathSymmetry.classes(kekule, PathCodes.of(kekule, PerceptionOverlay.perceive(kekule)));
+        Assert.assertEquals(3, PathSymmetry.count(classes));
+
+        String[] smiles = {"Clc1ccc(Cl)cc1", "ClC1=CC=C(Cl)C=C1", "CC(C)(C)C(C)(C)C", "C1CCC2CCCCC2C1", "C1CC1.C1CCCCC1", "OCC1OC(O)C(O)C(O)C1O"};
+        for (HashVersion version : HashVersion.values()) {
+            for (String smi : smiles) {
+                Fingerprinter fingerprinter = new Fingerprinter(1024);
+                fingerprinter.setHashVersion(version);
+                BitSet expected = fingerprinter.getBitFingerprint(smilesParser.parseSmiles(smi)).asBitSet();
+                fingerprinter.setSymmetryPruning(true);
+                BitSet pruned = fingerprinter.getBitFingerprint(smilesParser.parseSmiles(smi)).asBitSet();
+                Assert.assertEquals(expected, pruned);
+            }
+        }
+    }
+
+    /**
+     * Splitting the start atoms into subtasks sets the same bits.
+     *
+     * @throws InvalidSmilesException
+     * @throws CDKException
+     */
+    @Test
+    public void testParallelEnumeration() throws InvalidSmilesException, CDKException {
+        String smiles = "CC(C)C[C@H](NC(=O)[C@H](Cc1ccccc1)NC(=O)CNC(=O)CNC(=O)[C@@H](N)Cc1ccc(O)cc1)C(O)=O";
+        for (HashVersion version : HashVersion.values()) {
+            Fingerprinter fingerprinter = new Fingerprinter(1024);
+            fingerprinter.setHashVersion(version);
+            BitSet expected = fingerprinter.getBitFingerprint(smilesParser.parseSmiles(smiles)).asBitSet();
+            fingerprinter.setParallelThreshold(1);
+            BitSet parallel = fingerprinter.getBitFingerprint(smilesParser.parseSmiles(smiles)).asBitSet();
+            Assert.assertEquals(expected, parallel);
+            fingerprinter.setSymmetryPruning(true);
+            Assert.assertEquals(expected, fingerprinter.getBitFingerprint(smilesParser.parseSmiles(smiles)).asBitSet());
+        }
+    }
+
+    /**
+     * The fingerprints of one multi-depth traversal equal the fingerprints
+     * encoded at each depth, for every hash version, sequential and parallel.
+     *
+     * @throws InvalidSmilesException
+     * @throws CDKException
+     */
+    @Test
+    public void testMultiDepthFingerprints() throws InvalidSmilesException, CDKException {
+        String[] smiles = {"NC(=O)C1=C2C=CC(Br)=CC2=C(Cl)C=C1", "CC[Mg].OCC1OC(O)C(O)C(O)C1O", "C1CC2CCC1CC2"};
+        for (HashVersion version : HashVersion.values()) {
+            for (String smi : smiles) {
+                Fingerprinter fingerprinter = new Fingerprinter(1024);
+                fingerprinter.setHashVersion(version);
+                Map<Integer, IBitFingerprint> fingerprints = fingerprinter.getBitFingerprints(smilesParser.parseSmiles(smi), 8, 0, 5, 7);
+                Assert.assertArrayEquals(new Integer[]{0, 5, 7, 8}, fingerprints.keySet().toArray());
+                fingerprinter.setParallelThreshold(1);
+                fingerprinter.setSymmetryPruning(true);
+                Map<Integer, IBitFingerprint> parallel = fingerprinter.getBitFingerprints(smilesParser.parseSmiles(smi), 0, 5, 7, 8);
+                for (int depth : fingerprints.keySet()) {
+                    Fingerprinter single = new Fingerprinter(1024, depth);
+                    single.setHashVersion(version);
+                    BitSet expected = single.getBitFingerprint(smilesParser.parseSmiles(smi)).asBitSet();
+                    Assert.assertEquals(expected, fingerprints.get(depth).asBitSet());
+                    Assert.assertEquals(expected, parallel.get(depth).asBitSet());
+                }
+            }
+        }
+    }
+
+    /**
+     * The perception overlay leaves the input untyped and kekulized, the
+     * Kekule and aromatic forms set the same bits and the subset property
+     * holds.
+     *
+     * @throws InvalidSmilesException
+     * @throws CDKException
+     */
+    @Test
+    public void testPerceptionOverlay() throws InvalidSmilesException, CDKException {
+        IAtomContainer mol = smilesParser.parseSmiles("NC(=O)C1=C2C=CC(Br)=CC2=C(Cl)C=C1");
+        Fingerprinter fingerprinter = new Fingerprinter(1024);
+        fingerprinter.setHashVersion(HashVersion.PERCEPTION_OVERLAY);
+        BitSet fpT = fingerprinter.getBitFingerprint(mol).asBitSet();
+        fingerprinter.getBitFingerprints(mol, 3, 8);
+        for (IAtom atom : mol.atoms()) {
+            Assert.assertNull(atom.getAtomTypeName());
+            Assert.assertNull(atom.getHybridization());
+            Assert.assertFalse(atom.isAromatic());
+        }
+        for (IBond bond : mol.bonds()) {
+            Assert.assertFalse(bond.isAromatic());
+        }
+        Assert.assertEquals(fpT, fingerprint("NC(=O)c1ccc(Cl)c2cc(Br)ccc12", HashVersion.PERCEPTION_OVERLAY));
+        BitSet fpQ = fingerprint("CC1=C2C=CC(Br)=CC2=C(Cl)C=C1", HashVersion.PERCEPTION_OVERLAY);
+        System.out.println("fp overlay " + fpQ.cardinality() + " " + fpT.cardinality());
+        Assert.assertTrue(FingerprinterTool.isSubset(fpT, fpQ));
+    }
+
+    /**
+     * The depth policy caps the walk of a polycyclic molecule, the capped
+     * depth is persisted with the fingerprint and the multi-depth prints
+     * beyond it are keyed by the capped depth.
+     *
+     * @throws InvalidSmilesException
+     * @throws CDKException
+     */
+    @Test
+    public void testDepthPolicy() throws InvalidSmilesException, CDKException {
+        String smiles = "c1cc2ccc3ccc4ccc5ccc6ccc1c7c2c3c4c5c67";
+        Fingerprinter fingerprinter = new Fingerprinter(1024);
+        fingerprinter.setDepthPolicy(new AdaptiveDepthPolicy(1000, 3));
+        int depth = fingerprinter.getEffectiveDepth(smilesParser.parseSmiles(smiles));
+        System.out.println("effective depth " + depth);
+        Assert.assertEquals(5, depth);
+        Assert.assertEquals(Fingerprinter.DEFAULT_SEARCH_DEPTH, fingerprinter.getEffectiveDepth(smilesParser.parseSmiles("CCO")));
+        Assert.assertEquals("1000:3", fingerprinter.getDescriptor().getFlags().get("depthPolicy"));
+
+        BitSet expected = new Fingerprinter(1024, depth).getBitFingerprint(smilesParser.parseSmiles(smiles)).asBitSet();
+        VersionedFingerprint fp = fingerprinter.getVersionedFingerprint(smilesParser.parseSmiles(smiles));
+        Assert.assertEquals(depth, fp.getEffectiveDepth());
+        Assert.assertEquals(expected, fp.getBits());
+        Assert.assertEquals(expected, fingerprinter.getBitFingerprint(smilesParser.parseSmiles(smiles)).asBitSet());
+
+        Map<Integer, IBitFingerprint> fps = fingerprinter.getBitFingerprints(smilesParser.parseSmiles(smiles), 3, 7);
+        Assert.assertEquals(Arrays.asList(3, depth), new ArrayList<>(fps.keySet()));
+        Assert.assertEquals(expected, fps.get(depth).asBitSet());
+        Assert.assertEquals(new Fingerprinter(1024, 3).getBitFingerprint(smilesParser.parseSmiles(smiles)).asBitSet(), fps.get(3).asBitSet());
+    }
+
+    /**
+     * Legacy prints keep the version description they were stored with, the
+     * hash version is described from the first version changing the bits.
+     */
+    @Test
+    public void testVersionDescription() {
+        Fingerprinter fingerprinter = new Fingerprinter(1024);
+        String legacy = fingerprinter.getVersionDescription();
+        System.out.println("version " + legacy);
+        Assert.assertFalse(legacy.contains("hashVersion"));
+        fingerprinter.setHashVersion(HashVersion.FAST_MAPPING);
+        Assert.assertTrue(fingerprinter.getVersionDescription().contains("hashVersion=" + HashVersion.FAST_MAPPING.getVersion()));
+    }
+}
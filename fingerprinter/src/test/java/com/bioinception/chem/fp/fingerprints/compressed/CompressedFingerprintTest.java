@@ -0,0 +1,149 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.bioinception.chem.fp.fingerprints.compressed;
+
+import com.bioinception.chem.fp.fingerprints.hashed.HashedFingerprinter;
+import com.bioinception.chem.fp.fingerprints.similarity.SimilarityMeasure;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.smiles.SmilesParser;
+
+/**
+ *
+ * @author Asad
+ */
+public class CompressedFingerprintTest {
+
+    final static SmilesParser smilesParser = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+
+    private static List<BitSet> fingerprints(int size) {
+        Random random = new Random(42);
+        List<BitSet> fingerprints = new ArrayList<>();
+        for (int cardinality : new int[]{0, 1, 5, 40, 63, 64, 65, 200, size / 2}) {
+            BitSet fingerprint = new BitSet(size);
+            while (fingerprint.cardinality() < cardinality) {
+                fingerprint.set(random.nextInt(size));
+            }
+            fingerprints.add(fingerprint);
+        }
+        BitSet last = new BitSet(size);
+        last.set(size - 1);
+        fingerprints.add(last);
+        BitSet subset = (BitSet) fingerprints.get(7).clone();
+        subset.and(fingerprints.get(8));
+        fingerprints.add(subset);
+        return fingerprints;
+    }
+
+    /**
+     * Both sizes take 16 words, two bytes per position are smaller below 64
+     * positions. The form survives the archive form.
+     */
+    @Test
+    public void testRoundTrip() {
+        for (int size : new int[]{1000, 1024}) {
+            for (BitSet fingerprint : fingerprints(size)) {
+                CompressedFingerprint compressed = CompressedFingerprint.of(fingerprint, size);
+                Assert.assertEquals(fingerprint, compressed.asBitSet());
+                Assert.assertEquals(fingerprint.cardinality(), compressed.getCardinality());
+                Assert.assertEquals(fingerprint.cardinality() < 64, compressed.isSparse());
+                CompressedFingerprint read = CompressedFingerprint.fromBytes(compressed.toBytes());
+                Assert.assertEquals(fingerprint, read.asBitSet());
+                Assert.assertEquals(compressed.isSparse(), read.isSparse());
+                for (int bit = 0; bit < size; bit++) {
+                    Assert.assertEquals(fingerprint.get(bit), compressed.get(bit));
+                }
+            }
+        }
+    }
+
+    /**
+     * The kernels give the results of the BitSets for every pair of forms.
+     */
+    @Test
+    public void testKernels() {
+        int size = 1024;
+        List<BitSet> fingerprints = fingerprints(size);
+        for (BitSet a : fingerprints) {
+            for (BitSet b : fingerprints) {
+                CompressedFingerprint ca = CompressedFingerprint.of(a, size);
+                CompressedFingerprint cb = CompressedFingerprint.of(b, size);
+                BitSet and = (BitSet) a.clone();
+                and.and(b);
+                Assert.assertEquals(and.cardinality(), CompressedFingerprint.andCardinality(ca, cb));
+                Assert.assertEquals(and.equals(b), CompressedFingerprint.contains(ca, cb));
+                double expected = SimilarityMeasure.TANIMOTO.score(a.cardinality(), b.cardinality(), and.cardinality());
+                Assert.assertEquals(expected, CompressedFingerprint.score(SimilarityMeasure.TANIMOTO, ca, cb), 0.0);
+            }
+        }
+    }
+
+    /**
+     * Hashed prints of small molecules are archived in a fraction of the
+     * packed words.
+     *
+     * @throws CDKException
+     */
+    @Test
+    public void testArchiveSize() throws CDKException {
+        HashedFingerprinter fingerprinter = new HashedFingerprinter(1024);
+        for (String smiles : new String[]{"c1ccccc1CCN", "OC(=O)C(=O)CC1=CC=C(O)C=C1", "CCO"}) {
+            BitSet fingerprint = fingerprinter.getBitFingerprint(smilesParser.parseSmiles(smiles)).asBitSet();
+            byte[] archived = CompressedFingerprint.of(fingerprint, 1024).toBytes();
+            System.out.println(smiles + " bits " + fingerprint.cardinality() + " bytes " + archived.length);
+            Assert.assertTrue(archived.length < 128);
+            Assert.assertEquals(fingerprint, CompressedFingerprint.fromBytes(archived).asBitSet());
+        }
+    }
+
+    /**
+     * Archives claiming a size their bytes can not hold are rejected before
+     * the fingerprint is allocated.
+     */
+    @Test
+    public void testCorruptArchives() {
+        for (byte encoding : new byte[]{CompressedFingerprint.DENSE, CompressedFingerprint.SPARSE}) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            out.write(encoding);
+            VarInt.write(out, Integer.MAX_VALUE);
+            VarInt.write(out, 0);
+            try {
+                CompressedFingerprint.fromBytes(out.toByteArray());
+                Assert.fail("size " + Integer.MAX_VALUE + " was accepted");
+            } catch (IllegalArgumentException e) {
+                System.out.println("rejected " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Both forms reject bits outside the fingerprint.
+     */
+    @Test
+    public void testBitOutOfRange() {
+        BitSet fingerprint = new BitSet();
+        fingerprint.set(3);
+        BitSet dense = new BitSet();
+        dense.set(0, 500);
+        for (CompressedFingerprint compressed : new CompressedFingerprint[]{
+            CompressedFingerprint.of(fingerprint, 1000), CompressedFingerprint.of(dense, 1000)}) {
+            for (int bit : new int[]{-1, 1000, 1023}) {
+                try {
+                    compressed.get(bit);
+                    Assert.fail("bit " + bit + " of a " + (compressed.isSparse() ? "sparse" : "dense") + " print");
+                } catch (IndexOutOfBoundsException e) {
+                    // expected
+                }
+            }
+        }
+    }
+}
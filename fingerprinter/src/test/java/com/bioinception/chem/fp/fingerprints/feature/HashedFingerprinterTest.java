@@ -13,6 +13,7 @@ import org.openscience.cdk.DefaultChemObjectBuilder;
 import org.openscience.cdk.exception.CDKException;
 import org.openscience.cdk.exception.InvalidSmilesException;
 import org.openscience.cdk.fingerprint.IFingerprinter;
+import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.smiles.SmilesParser;
 import org.openscience.cdk.tools.manipulator.AtomContainerManipulator;
@@ -254,4 +255,63 @@ public class HashedFingerprinterTest {
 
         Assert.assertFalse(FingerprinterTool.isSubset(fingerprintQ, fingerprintT));
     }
+
+    /**
+     * The features are generated without cloning and without typing the
+     * input, a typed copy gives the same fingerprint.
+     *
+     * @throws InvalidSmilesException
+     * @throws CDKException
+     */
+    @Test
+    public void testInputNotModified() throws InvalidSmilesException, CDKException {
+        IAtomContainer molecule = smilesParser.parseSmiles("OC(=O)C(=O)CC1=CC=C(O)C=C1");
+        IFingerprinter fingerprinter = new FeatureFingerprinter();
+        BitSet fingerprint = fingerprinter.getBitFingerprint(molecule).asBitSet();
+        for (IAtom atom : molecule.atoms()) {
+            Assert.assertNull(atom.getAtomTypeName());
+            Assert.assertNull(atom.getHybridization());
+        }
+        IAtomContainer typed = smilesParser.parseSmiles("OC(=O)C(=O)CC1=CC=C(O)C=C1");
+        AtomContainerManipulator.percieveAtomTypesAndConfigureAtoms(typed);
+        System.out.println("fp " + fingerprint.cardinality());
+        Assert.assertEquals(fingerprint, fingerprinter.getBitFingerprint(typed).asBitSet());
+    }
+
+    /**
+     * The invariant hashes rolled over the feature digits equal the hash
+     * codes of the invariant strings, and those of tyrosine and its feature
+     * fingerprint are unchanged from the string invariants.
+     *
+     * @throws InvalidSmilesException
+     * @throws CDKException
+     */
+    @Test
+    public void testAtomInvariantHashes() throws InvalidSmilesException, CDKException {
+        String[] smiles = {"N[C@@H](CC1=CC=C(O)C=C1)C(O)=O", "[H]C([H])([H])C(=O)[O-].[Na+]", "CC[Mg]Br", "C1CCC2CCCCC2C1"};
+        for (String smi : smiles) {
+            IAtomContainer molecule = smilesParser.parseSmiles(smi);
+            int[] hashes = FeatureGenerator.getAtomInvariantHashes(molecule, null);
+            int i = 0;
+            for (IAtom atom : molecule.atoms()) {
+                String invariant = FeatureGenerator.getAtomFeature(molecule, atom);
+                Assert.assertEquals(invariant, invariant.hashCode(), hashes[i++]);
+            }
+        }
+        // recorded before the invariants were hashed from int arrays
+        String[] tyrosine = {"0011267", "001336667", "00222666", "000346666", "00123666", "00123666", "000346668",
+            "0011168", "00123666", "00123666", "000346688", "0011168", "0001268"};
+        int[] hashes = FeatureGenerator.getAtomInvariantHashes(smilesParser.parseSmiles(smiles[0]), null);
+        Assert.assertEquals(tyrosine.length, hashes.length);
+        for (int i = 0; i < tyrosine.length; i++) {
+            Assert.assertEquals(tyrosine[i], tyrosine[i].hashCode(), hashes[i]);
+        }
+        BitSet expected = new BitSet();
+        for (int bit : new int[]{4, 67, 68, 78, 79, 83, 147, 211, 272, 338, 401, 403, 465}) {
+            expected.set(bit);
+        }
+        BitSet fingerprint = new FeatureFingerprinter().getBitFingerprint(smilesParser.parseSmiles(smiles[0])).asBitSet();
+        System.out.println("tyrosine " + fingerprint);
+        Assert.assertEquals(expected, fingerprint);
+    }
 }
@@ -5,12 +5,14 @@
 package com.bioinception.chem.fp.fingerprints.hashed;
 
 import com.bioinception.chem.fp.fingerprints.helper.FingerprinterTool;
+import com.bioinception.chem.fp.fingerprints.helper.HashVersion;
 import com.bioinception.chem.fp.fingerprints.interfaces.IFingerprinter;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.BitSet;
+import java.util.Map;
 import org.junit.Assert;
 
 import org.junit.Test;
@@ -18,7 +20,10 @@ import org.openscience.cdk.DefaultChemObjectBuilder;
 import org.openscience.cdk.AtomContainer;
 import org.openscience.cdk.exception.CDKException;
 import org.openscience.cdk.exception.InvalidSmilesException;
+import org.openscience.cdk.fingerprint.IBitFingerprint;
+import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
 import org.openscience.cdk.io.MDLV2000Reader;
 import org.openscience.cdk.smiles.SmilesParser;
 import org.openscience.cdk.tools.manipulator.AtomContainerManipulator;
@@ -253,4 +258,119 @@ public class HashedFingerprinterTest {
         ClassLoader classLoader = getClass().getClassLoader();
         return classLoader.getResourceAsStream(fileName);
     }
+
+    /**
+     * Test of HashedFingerprinter with the fast bit mapping
+     *
+     * @throws InvalidSmilesException
+     * @throws CDKException
+     */
+    @Test
+    public void testFastMapping() throws InvalidSmilesException, CDKException {
+        SmilesParser smilesParser = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        IAtomContainer molecule = smilesParser.parseSmiles("NC(=O)C1=C2C=CC(Br)=CC2=C(Cl)C=C1");
+        HashedFingerprinter fingerprint = new HashedFingerprinter(1024);
+        BitSet legacy = fingerprint.getBitFingerprint(molecule).asBitSet();
+        fingerprint.setHashVersion(HashVersion.FAST_MAPPING);
+        BitSet fingerprint1 = fingerprint.getBitFingerprint(molecule).asBitSet();
+        BitSet fingerprint2 = fingerprint.getBitFingerprint(molecule).asBitSet();
+        System.out.println("fp " + fingerprint1.toString());
+        Assert.assertEquals(fingerprint1, fingerprint2);
+        Assert.assertTrue(fingerprint1.length() <= 1024);
+        Assert.assertNotEquals(legacy, fingerprint1);
+    }
+
+    /**
+     * The query fingerprint of a fragment is a subset of the fingerprints of
+     * its superstructures, the full fingerprint of the fragment is not.
+     *
+     * @throws InvalidSmilesException
+     * @throws CDKException
+     */
+    @Test
+    public void testQueryFingerprintIsSubset() throws InvalidSmilesException, CDKException {
+        SmilesParser smilesParser = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        String[][] pairs = {
+            {"C(=O)O", "OC(=O)C(=O)CC1=CC=C(O)C=C1"},
+            {"c1ccccc1C", "N[C@@H](CC1=CC=C(O)C=C1)C(O)=O"},
+            {"CC(C)(C)C", "CC(C)(C)C(=O)N"},
+            {"CC=CC", "c1ccc2ccccc2c1"},
+            {"CC1=C2C=CC(Br)=CC2=C(Cl)C=C1", "NC(=O)C1=C2C=CC(Br)=CC2=C(Cl)C=C1"}
+        };
+        HashedFingerprinter fingerprint = new HashedFingerprinter(1024);
+        fingerprint.setRespectRingMatches(true);
+        for (String[] pair : pairs) {
+            BitSet fingerprintQ = fingerprint.getQueryFingerprint(smilesParser.parseSmiles(pair[0])).asBitSet();
+            BitSet fingerprintT = fingerprint.getBitFingerprint(smilesParser.parseSmiles(pair[1])).asBitSet();
+            System.out.println(pair[0] + " fpQ " + fingerprintQ.toString());
+            Assert.assertTrue(fingerprintQ.cardinality() > 0);
+            Assert.assertTrue(FingerprinterTool.isSubset(fingerprintT, fingerprintQ));
+        }
+        BitSet full = fingerprint.getBitFingerprint(smilesParser.parseSmiles("CC=CC")).asBitSet();
+        BitSet target = fingerprint.getBitFingerprint(smilesParser.parseSmiles("c1ccc2ccccc2c1")).asBitSet();
+        Assert.assertFalse(FingerprinterTool.isSubset(target, full));
+    }
+
+    /**
+     * The fingerprints of one multi-depth walk equal the fingerprints
+     * generated at each depth, for every hash version.
+     *
+     * @throws InvalidSmilesException
+     * @throws CDKException
+     */
+    @Test
+    public void testMultiDepthFingerprints() throws InvalidSmilesException, CDKException {
+        SmilesParser smilesParser = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        String[] smiles = {"NC(=O)C1=C2C=CC(Br)=CC2=C(Cl)C=C1", "CC[Mg].OCC1OC(O)C(O)C(O)C1O", "C[N+](C)(C)CC([O-])=O"};
+        for (HashVersion version : HashVersion.values()) {
+            for (String smi : smiles) {
+                HashedFingerprinter fingerprinter = new HashedFingerprinter(1024);
+                fingerprinter.setHashVersion(version);
+                fingerprinter.setRespectRingMatches(true);
+                fingerprinter.setRespectFormalCharges(true);
+                Map<Integer, IBitFingerprint> fingerprints = fingerprinter.getBitFingerprints(smilesParser.parseSmiles(smi), 8, 5, 7);
+                Assert.assertArrayEquals(new Integer[]{5, 7, 8}, fingerprints.keySet().toArray());
+                for (int depth : fingerprints.keySet()) {
+                    HashedFingerprinter single = new HashedFingerprinter(1024, depth);
+                    single.setHashVersion(version);
+                    single.setRespectRingMatches(true);
+                    single.setRespectFormalCharges(true);
+                    BitSet expected = single.getBitFingerprint(smilesParser.parseSmiles(smi)).asBitSet();
+                    Assert.assertEquals(expected, fingerprints.get(depth).asBitSet());
+                }
+                System.out.println(smi + " depth 5 " + fingerprints.get(5).cardinality() + " depth 8 " + fingerprints.get(8).cardinality());
+            }
+        }
+    }
+
+    /**
+     * The perception overlay leaves the targets and the query untyped and
+     * kekulized, and the query fingerprint is a subset of the target one.
+     *
+     * @throws InvalidSmilesException
+     * @throws CDKException
+     */
+    @Test
+    public void testPerceptionOverlay() throws InvalidSmilesException, CDKException {
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        IAtomContainer target = sp.parseSmiles("OC(=O)C(=O)CC1=CC=C(O)C=C1.[Na+]");
+        IAtomContainer query = sp.parseSmiles("CC1=CC=C(O)C=C1");
+        HashedFingerprinter fingerprinter = new HashedFingerprinter(1024);
+        fingerprinter.setHashVersion(HashVersion.PERCEPTION_OVERLAY);
+        BitSet fpT = fingerprinter.getBitFingerprint(target).asBitSet();
+        BitSet fpQ = fingerprinter.getQueryFingerprint(query).asBitSet();
+        fingerprinter.getBitFingerprints(target, 3, 6);
+        for (IAtomContainer mol : new IAtomContainer[]{target, query}) {
+            for (IAtom atom : mol.atoms()) {
+                Assert.assertNull(atom.getAtomTypeName());
+                Assert.assertNull(atom.getHybridization());
+                Assert.assertFalse(atom.isAromatic());
+            }
+            for (IBond bond : mol.bonds()) {
+                Assert.assertFalse(bond.isAromatic());
+            }
+        }
+        System.out.println("fp overlay " + fpQ.cardinality() + " " + fpT.cardinality());
+        Assert.assertTrue(FingerprinterTool.isSubset(fpT, fpQ));
+    }
 }
@@ -0,0 +1,50 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.bioinception.chem.fp.fingerprints.helper;
+
+import com.bioinception.chem.fp.fingerprints.hashed.HashedFingerprinter;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.exception.InvalidSmilesException;
+import org.openscience.cdk.smiles.SmilesParser;
+
+/**
+ *
+ * @author Asad
+ */
+public class AdaptiveDepthPolicyTest {
+
+    final static SmilesParser smilesParser = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+
+    /**
+     * The path estimate is exact without ring closures, a polycyclic
+     * molecule is walked with a capped depth which is persisted with its
+     * fingerprint.
+     *
+     * @throws InvalidSmilesException
+     * @throws CDKException
+     */
+    @Test
+    public void testAdaptiveDepth() throws InvalidSmilesException, CDKException {
+        double[] estimates = AdaptiveDepthPolicy.estimatePaths(smilesParser.parseSmiles("CCC"), 3);
+        Assert.assertArrayEquals(new double[]{3, 7, 9, 9}, estimates, 0.0);
+
+        String smiles = "c1cc2ccc3ccc4ccc5ccc6ccc1c7c2c3c4c5c67";
+        AdaptiveDepthPolicy policy = new AdaptiveDepthPolicy(1000, 3);
+        HashedFingerprinter fingerprinter = new HashedFingerprinter(1024);
+        fingerprinter.setDepthPolicy(policy);
+        int depth = fingerprinter.getEffectiveDepth(smilesParser.parseSmiles(smiles));
+        System.out.println("effective depth " + depth);
+        Assert.assertEquals(5, depth);
+        Assert.assertEquals(HashedFingerprinter.DEFAULT_SEARCH_DEPTH, fingerprinter.getEffectiveDepth(smilesParser.parseSmiles("CCO")));
+
+        VersionedFingerprint fp = fingerprinter.getVersionedFingerprint(smilesParser.parseSmiles(smiles));
+        Assert.assertEquals(depth, fp.getEffectiveDepth());
+        Assert.assertEquals(fp, VersionedFingerprint.parse(fp.toString()));
+        Assert.assertEquals(new HashedFingerprinter(1024, depth).getBitFingerprint(smilesParser.parseSmiles(smiles)).asBitSet(), fp.getBits());
+    }
+}
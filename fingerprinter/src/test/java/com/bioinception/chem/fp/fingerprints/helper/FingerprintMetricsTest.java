@@ -0,0 +1,143 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.bioinception.chem.fp.fingerprints.helper;
+
+import com.bioinception.chem.fp.fingerprints.cdk.Fingerprinter;
+import com.bioinception.chem.fp.fingerprints.hashed.HashedFingerprinter;
+import com.bioinception.chem.fp.fingerprints.interfaces.IFingerprintMetricsListener;
+import java.lang.management.ManagementFactory;
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.ObjectName;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.smiles.SmilesParser;
+
+/**
+ *
+ * @author Asad
+ */
+public class FingerprintMetricsTest {
+
+    final static SmilesParser smilesParser = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+
+    /**
+     * Stage timings, path and bit counts are recorded only when enabled and
+     * leave the fingerprints unchanged.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testFingerprintMetrics() throws Exception {
+        IAtomContainer molecule = smilesParser.parseSmiles("NC(=O)C1=C2C=CC(Br)=CC2=C(Cl)C=C1");
+        HashedFingerprinter hashed = new HashedFingerprinter(1024);
+        Fingerprinter cdk = new Fingerprinter(1024);
+        BitSet expected = hashed.getBitFingerprint(molecule).asBitSet();
+        BitSet expectedCdk = cdk.getBitFingerprint(molecule).asBitSet();
+
+        FingerprintMetrics metrics = FingerprintMetrics.getInstance();
+        metrics.reset();
+        Assert.assertFalse(metrics.isEnabled());
+        Assert.assertEquals(FingerprintMetrics.NOT_STARTED, FingerprintMetrics.start());
+
+        final AtomicLong events = new AtomicLong();
+        IFingerprintMetricsListener listener = new IFingerprintMetricsListener() {
+            @Override
+            public void stageTimed(FingerprintStage stage, long nanos) {
+                events.incrementAndGet();
+            }
+
+            @Override
+            public void pathsCounted(long paths) {
+                events.incrementAndGet();
+            }
+
+            @Override
+            public void bitsSet(int bits) {
+                events.incrementAndGet();
+            }
+        };
+        FingerprintMetrics.addListener(listener);
+        try {
+            metrics.setEnabled(true);
+            Assert.assertEquals(expected, hashed.getBitFingerprint(molecule).asBitSet());
+            Assert.assertEquals(expectedCdk, cdk.getBitFingerprint(molecule).asBitSet());
+            System.out.println("counts " + metrics.getCounts());
+            System.out.println("totals " + metrics.getTotals());
+
+            Assert.assertTrue(metrics.getCounts().get(FingerprintStage.PERCEPTION.name()) > 0);
+            Assert.assertTrue(metrics.getCounts().get(FingerprintStage.PATH_WALKING.name()) > 0);
+            Assert.assertTrue(metrics.getTotals().get(FingerprintMetrics.PATHS) > 0);
+            Assert.assertEquals(2L, (long) metrics.getCounts().get(FingerprintMetrics.BITS));
+            Assert.assertEquals(expected.cardinality() + expectedCdk.cardinality(),
+                    (long) metrics.getTotals().get(FingerprintMetrics.BITS));
+            Assert.assertTrue(events.get() > 0);
+
+            FingerprintMetrics.registerMBean();
+            Assert.assertTrue(ManagementFactory.getPlatformMBeanServer()
+                    .isRegistered(new ObjectName(FingerprintMetrics.OBJECT_NAME)));
+        } finally {
+            metrics.setEnabled(false);
+            FingerprintMetrics.removeListener(listener);
+            FingerprintMetrics.unregisterMBean();
+            metrics.reset();
+        }
+
+        long before = events.get();
+        hashed.getBitFingerprint(molecule);
+        Assert.assertEquals(before, events.get());
+        Assert.assertEquals(0L, (long) metrics.getCounts().get(FingerprintStage.PERCEPTION.name()));
+
+        LogLinearHistogram histogram = new LogLinearHistogram();
+        for (long i = 1; i <= 100000; i++) {
+            histogram.record(i);
+        }
+        Assert.assertEquals(100000, histogram.getCount());
+        Assert.assertEquals(100000, histogram.getMax());
+        Assert.assertEquals(100000, histogram.getPercentile(100.0));
+        long median = histogram.getPercentile(50.0);
+        Assert.assertTrue(median >= 50000 && median <= 50000 + 50000 / 16);
+    }
+
+    /**
+     * One path count is recorded per fingerprint, summed over the components
+     * of a molecule and over the subtasks of a parallel encoding. The path
+     * encoder times walking and bit setting once each.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testPathsPerMolecule() throws Exception {
+        FingerprintMetrics metrics = FingerprintMetrics.getInstance();
+        metrics.reset();
+        try {
+            metrics.setEnabled(true);
+            new HashedFingerprinter(1024).getBitFingerprint(smilesParser.parseSmiles("c1ccccc1CCN.[Na+].[Cl-]"));
+            Assert.assertEquals(1L, (long) metrics.getCounts().get(FingerprintMetrics.PATHS));
+
+            Fingerprinter cdk = new Fingerprinter(1024);
+            cdk.setHashVersion(HashVersion.FAST_MAPPING);
+            metrics.reset();
+            cdk.getBitFingerprint(smilesParser.parseSmiles("NC(=O)C1=C2C=CC(Br)=CC2=C(Cl)C=C1"));
+            long paths = metrics.getTotals().get(FingerprintMetrics.PATHS);
+            System.out.println("paths " + paths);
+            Assert.assertEquals(1L, (long) metrics.getCounts().get(FingerprintMetrics.PATHS));
+            Assert.assertEquals(1L, (long) metrics.getCounts().get(FingerprintStage.PATH_WALKING.name()));
+            Assert.assertEquals(1L, (long) metrics.getCounts().get(FingerprintStage.BIT_SETTING.name()));
+
+            cdk.setParallelThreshold(1);
+            metrics.reset();
+            cdk.getBitFingerprint(smilesParser.parseSmiles("NC(=O)C1=C2C=CC(Br)=CC2=C(Cl)C=C1"));
+            Assert.assertEquals(1L, (long) metrics.getCounts().get(FingerprintMetrics.PATHS));
+            Assert.assertEquals(paths, (long) metrics.getTotals().get(FingerprintMetrics.PATHS));
+            Assert.assertEquals(1L, (long) metrics.getCounts().get(FingerprintStage.PATH_WALKING.name()));
+        } finally {
+            metrics.setEnabled(false);
+            metrics.reset();
+        }
+    }
+}
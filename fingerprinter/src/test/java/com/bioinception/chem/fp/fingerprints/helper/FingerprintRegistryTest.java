@@ -0,0 +1,83 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.bioinception.chem.fp.fingerprints.helper;
+
+import com.bioinception.chem.fp.fingerprints.feature.FeatureFingerprinter;
+import com.bioinception.chem.fp.fingerprints.hashed.HashedBloomFingerprinter;
+import com.bioinception.chem.fp.fingerprints.hashed.HashedFingerprinter;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.exception.InvalidSmilesException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.smiles.SmilesParser;
+
+/**
+ *
+ * @author Asad
+ */
+public class FingerprintRegistryTest {
+
+    final static SmilesParser smilesParser = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+
+    /**
+     * The descriptors are written and read back unchanged.
+     */
+    @Test
+    public void testDescriptorRoundTrip() {
+        HashedFingerprinter fingerprinter = new HashedFingerprinter(1024);
+        fingerprinter.setRespectRingMatches(true);
+        fingerprinter.setHashVersion(HashVersion.FAST_MAPPING);
+        FingerprintDescriptor descriptor = fingerprinter.getDescriptor();
+        System.out.println("descriptor " + descriptor);
+        Assert.assertEquals(descriptor.toString(), fingerprinter.getVersionDescription());
+        Assert.assertEquals(descriptor, FingerprintDescriptor.parse(descriptor.toString()));
+        Assert.assertEquals(HashVersion.FAST_MAPPING, FingerprintDescriptor.parse(descriptor.toString()).getHashVersion());
+
+        Assert.assertNotNull(new FeatureFingerprinter().getVersionDescription());
+        Assert.assertNotNull(new HashedBloomFingerprinter().getVersionDescription());
+    }
+
+    /**
+     * The persisted form keeps the bits and the descriptor.
+     *
+     * @throws InvalidSmilesException
+     * @throws CDKException
+     */
+    @Test
+    public void testVersionedFingerprintRoundTrip() throws InvalidSmilesException, CDKException {
+        IAtomContainer molecule = smilesParser.parseSmiles("NC(=O)C1=C2C=CC(Br)=CC2=C(Cl)C=C1");
+        VersionedFingerprint fp = new HashedFingerprinter(1024).getVersionedFingerprint(molecule);
+        VersionedFingerprint read = VersionedFingerprint.parse(fp.toString());
+        Assert.assertEquals(fp, read);
+    }
+
+    /**
+     * Prints of different hash versions are rejected.
+     *
+     * @throws InvalidSmilesException
+     * @throws CDKException
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectIncompatible() throws InvalidSmilesException, CDKException {
+        HashedFingerprinter legacy = new HashedFingerprinter(1024);
+        HashedFingerprinter fast = new HashedFingerprinter(1024);
+        fast.setHashVersion(HashVersion.FAST_MAPPING);
+
+        FingerprintRegistry registry = new FingerprintRegistry();
+        Assert.assertEquals(0, registry.register(legacy.getDescriptor()));
+        Assert.assertEquals(1, registry.register(fast.getDescriptor()));
+        Assert.assertEquals(0, registry.register(new HashedFingerprinter(1024).getDescriptor()));
+
+        VersionedFingerprint fp1 = legacy.getVersionedFingerprint(smilesParser.parseSmiles("c1ccccc1CCN"));
+        VersionedFingerprint fp2 = legacy.getVersionedFingerprint(smilesParser.parseSmiles("c1ccccc1CN"));
+        Assert.assertTrue(registry.tanimoto(fp1, fp2) > 0.0);
+        Assert.assertEquals(1.0, registry.tanimoto(fp1, fp1), 0.0);
+
+        VersionedFingerprint fp3 = fast.getVersionedFingerprint(smilesParser.parseSmiles("c1ccccc1CN"));
+        registry.tanimoto(fp1, fp3);
+    }
+}
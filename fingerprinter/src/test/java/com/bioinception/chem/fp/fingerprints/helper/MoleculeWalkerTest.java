@@ -0,0 +1,91 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.bioinception.chem.fp.fingerprints.helper;
+
+import com.bioinception.chem.fp.fingerprints.hashed.HashedFingerprinter;
+import java.util.BitSet;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.exception.InvalidSmilesException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.smiles.SmilesParser;
+
+/**
+ *
+ * @author Asad
+ */
+public class MoleculeWalkerTest {
+
+    final static SmilesParser smilesParser = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+
+    /**
+     * The legacy walker reverses "Cl" into "lC" and stores the same path
+     * twice, the canonical walker stores C, Cl and C-Cl once.
+     *
+     * @throws InvalidSmilesException
+     */
+    @Test
+    public void testCanonicalPathMultiCharacterSymbol() throws InvalidSmilesException {
+        IAtomContainer molecule = smilesParser.parseSmiles("CCl");
+        MoleculeWalker legacy = new MoleculeWalker(1, molecule);
+        MoleculeWalker canonical = new MoleculeWalker(1, molecule, HashVersion.CANONICAL_PATH);
+        System.out.println("legacy " + legacy.getPaths());
+        System.out.println("canonical " + canonical.getPaths());
+        Assert.assertEquals(4, legacy.getPathCount());
+        Assert.assertEquals(3, canonical.getPathCount());
+        Assert.assertTrue(canonical.getPaths().contains("C1Cl"));
+    }
+
+    /**
+     * The canonical paths do not depend on the atom order of the input.
+     *
+     * @throws InvalidSmilesException
+     */
+    @Test
+    public void testCanonicalPathAtomOrder() throws InvalidSmilesException {
+        IAtomContainer molecule1 = smilesParser.parseSmiles("ClCC(Br)CN[Si]");
+        IAtomContainer molecule2 = smilesParser.parseSmiles("[Si]NCC(Br)CCl");
+        MoleculeWalker walker1 = new MoleculeWalker(6, molecule1, HashVersion.CANONICAL_PATH);
+        MoleculeWalker walker2 = new MoleculeWalker(6, molecule2, HashVersion.CANONICAL_PATH);
+        Assert.assertEquals(walker1.getPaths(), walker2.getPaths());
+    }
+
+    /**
+     * Legacy fingerprints are unchanged by default.
+     *
+     * @throws InvalidSmilesException
+     * @throws CDKException
+     */
+    @Test
+    public void testDefaultHashVersion() throws InvalidSmilesException, CDKException {
+        String smiles = "CCCCC1C(=O)N(N(C1=O)C1=CC=CC=C1)C1=CC=CC=C1";
+        HashedFingerprinter fingerprinter = new HashedFingerprinter(1024);
+        Assert.assertEquals(HashVersion.LEGACY, fingerprinter.getHashVersion());
+        BitSet legacy = fingerprinter.getBitFingerprint(smilesParser.parseSmiles(smiles)).asBitSet();
+        fingerprinter.setHashVersion(HashVersion.CANONICAL_PATH);
+        BitSet canonical = fingerprinter.getBitFingerprint(smilesParser.parseSmiles(smiles)).asBitSet();
+        System.out.println("legacy " + legacy);
+        System.out.println("canonical " + canonical);
+        Assert.assertFalse(canonical.isEmpty());
+    }
+
+    /**
+     * Splitting the start atoms into subtasks finds the same paths.
+     *
+     * @throws InvalidSmilesException
+     */
+    @Test
+    public void testParallelWalk() throws InvalidSmilesException {
+        IAtomContainer molecule = smilesParser.parseSmiles("CC(C)C[C@H](NC(=O)[C@H](Cc1ccccc1)NC(=O)CNC(=O)CNC(=O)[C@@H](N)Cc1ccc(O)cc1)C(O)=O");
+        for (HashVersion version : new HashVersion[]{HashVersion.LEGACY, HashVersion.CANONICAL_PATH}) {
+            MoleculeWalker sequential = new MoleculeWalker(7, molecule, version);
+            MoleculeWalker parallel = new MoleculeWalker(7, molecule, version, 1);
+            System.out.println("paths " + version + " " + parallel.getPathCount());
+            Assert.assertEquals(sequential.getPaths(), parallel.getPaths());
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.bioinception.chem.fp.fingerprints.helper;
+
+import com.bioinception.chem.fp.fingerprints.hashed.HashedBloomFingerprinter;
+import java.util.BitSet;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.exception.InvalidSmilesException;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IRingSet;
+import org.openscience.cdk.ringsearch.AllRingsFinder;
+import org.openscience.cdk.smiles.SmilesParser;
+
+/**
+ *
+ * @author Asad
+ */
+public class RingPerceptionPolicyTest {
+
+    final static SmilesParser smilesParser = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+
+    /**
+     * The ring policy falls back along the strategies when the budget is
+     * exceeded, all rings of a cage are found as the ring finder finds them
+     * and the Bloom fingerprints keep their bits. The essential cycles of a
+     * cage do not span its rings, a cage falls back to a minimum cycle basis
+     * which keeps every atom in a ring.
+     *
+     * @throws InvalidSmilesException
+     * @throws CDKException
+     */
+    @Test
+    public void testRingPerceptionPolicy() throws InvalidSmilesException, CDKException {
+        IAtomContainer cubane = smilesParser.parseSmiles("C12C3C4C1C5C2C3C45");
+        IRingSet rings = new RingPerceptionPolicy().findRings(cubane);
+        Assert.assertEquals(RingStrategy.ALL, RingPerceptionPolicy.getStrategy(rings));
+        Assert.assertEquals(new AllRingsFinder().findAllRings(cubane).getAtomContainerCount(), rings.getAtomContainerCount());
+        rings = new RingPerceptionPolicy(RingStrategy.ALL, RingPerceptionPolicy.DEFAULT_MAX_DEGREE, 10).findRings(cubane);
+        Assert.assertEquals(RingStrategy.RELEVANT, RingPerceptionPolicy.getStrategy(rings));
+        Assert.assertEquals(6, rings.getAtomContainerCount());
+        rings = new RingPerceptionPolicy(RingStrategy.ALL, RingPerceptionPolicy.DEFAULT_MAX_DEGREE, 3).findRings(cubane);
+        Assert.assertEquals(RingStrategy.MCB, RingPerceptionPolicy.getStrategy(rings));
+        Assert.assertEquals(5, rings.getAtomContainerCount());
+        for (IAtom atom : cubane.atoms()) {
+            Assert.assertTrue(rings.contains(atom));
+        }
+        rings = new RingPerceptionPolicy(RingStrategy.ESSENTIAL, 1, 0).findRings(cubane);
+        Assert.assertEquals(RingStrategy.MCB, RingPerceptionPolicy.getStrategy(rings));
+        IAtomContainer anthracene = smilesParser.parseSmiles("C1=CC2=CC3=CC=CC=C3C=C2C=C1");
+        rings = new RingPerceptionPolicy(RingStrategy.ESSENTIAL, 1, 0).findRings(anthracene);
+        Assert.assertEquals(RingStrategy.ESSENTIAL, RingPerceptionPolicy.getStrategy(rings));
+        Assert.assertEquals(3, rings.getAtomContainerCount());
+        rings = new RingPerceptionPolicy(RingStrategy.MCB, 1, 0).findRings(cubane);
+        Assert.assertEquals(RingStrategy.MCB, RingPerceptionPolicy.getStrategy(rings));
+        Assert.assertEquals(5, rings.getAtomContainerCount());
+
+        String[] smiles = {"C1=CC2=CC3=CC=CC=C3C=C2C=C1", "C12C3C4C1C5C2C3C45", "OCC1OC(O)C(O)C(O)C1O"};
+        for (String smi : smiles) {
+            HashedBloomFingerprinter fingerprinter = new HashedBloomFingerprinter(1024);
+            fingerprinter.setRespectRingMatches(true);
+            BitSet expected = fingerprinter.getBitFingerprint(smilesParser.parseSmiles(smi)).asBitSet();
+            fingerprinter.setRingPolicy(new RingPerceptionPolicy());
+            Assert.assertEquals(expected, fingerprinter.getBitFingerprint(smilesParser.parseSmiles(smi)).asBitSet());
+            Assert.assertEquals("ALL:684:2147483647", fingerprinter.getDescriptor().getFlags().get("ringPolicy"));
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.bioinception.chem.fp.fingerprints.search;
+
+import com.bioinception.chem.fp.fingerprints.hashed.HashedFingerprinter;
+import com.bioinception.chem.fp.fingerprints.helper.FingerprinterTool;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.smiles.SmilesParser;
+
+/**
+ *
+ * @author Asad
+ */
+public class BitSelectivityIndexTest {
+
+    final static SmilesParser smilesParser = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+    final static String[] TARGETS = {
+        "NC(=O)C1=C2C=CC(Br)=CC2=C(Cl)C=C1",
+        "CC1=C2C=CC(Br)=CC2=C(Cl)C=C1",
+        "c1ccccc1CCN",
+        "c1ccccc1CN",
+        "CCCCC1C(=O)N(N(C1=O)C1=CC=CC=C1)C1=CC=CC=C1",
+        "N[C@@H](CC1=CC=C(O)C=C1)C(O)=O",
+        "OC(=O)C(=O)CC1=CC=C(O)C=C1"
+    };
+
+    /**
+     * The frequencies count the targets per bit, the exact screen returns
+     * the targets containing the query and the early stop a superset of them.
+     *
+     * @throws CDKException
+     */
+    @Test
+    public void testScreen() throws CDKException {
+        HashedFingerprinter fingerprinter = new HashedFingerprinter(1024);
+        BitSelectivityIndex index = new BitSelectivityIndex(fingerprinter.getSize());
+        List<BitSet> fingerprints = new ArrayList<>();
+        for (String smiles : TARGETS) {
+            BitSet fingerprint = fingerprinter.getBitFingerprint(smilesParser.parseSmiles(smiles)).asBitSet();
+            fingerprints.add(fingerprint);
+            index.add(fingerprint);
+        }
+        Assert.assertEquals(TARGETS.length, index.getCount());
+        for (int bit = 0; bit < index.getSize(); bit++) {
+            int frequency = 0;
+            for (BitSet fingerprint : fingerprints) {
+                frequency += fingerprint.get(bit) ? 1 : 0;
+            }
+            Assert.assertEquals(frequency, index.getFrequency(bit));
+        }
+
+        for (String smiles : new String[]{"c1ccccc1CCN", "CC(C)(C)C", "C(=O)O", "c1ccccc1"}) {
+            BitSet query = fingerprinter.getQueryFingerprint(smilesParser.parseSmiles(smiles)).asBitSet();
+            int[] bits = index.order(query);
+            for (int i = 1; i < bits.length; i++) {
+                Assert.assertTrue(index.getFrequency(bits[i - 1]) <= index.getFrequency(bits[i]));
+            }
+            List<Integer> expected = new ArrayList<>();
+            for (int i = 0; i < fingerprints.size(); i++) {
+                if (FingerprinterTool.isSubset(fingerprints.get(i), query)) {
+                    expected.add(i);
+                }
+            }
+            int[] candidates = index.screen(query);
+            System.out.println("query " + smiles + " bits " + bits.length + " evaluated "
+                    + index.getEvaluatedBitCount() + " candidates " + candidates.length);
+            Assert.assertArrayEquals(expected.stream().mapToInt(Integer::intValue).toArray(), candidates);
+
+            int[] early = index.screen(query, 3);
+            Assert.assertTrue(early.length <= Math.max(3, candidates.length));
+            for (int i : candidates) {
+                Assert.assertTrue(Arrays.binarySearch(early, i) >= 0);
+            }
+        }
+    }
+}
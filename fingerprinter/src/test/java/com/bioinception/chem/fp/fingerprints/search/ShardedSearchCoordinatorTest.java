@@ -0,0 +1,153 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.bioinception.chem.fp.fingerprints.search;
+
+import com.bioinception.chem.fp.fingerprints.hashed.HashedFingerprinter;
+import com.bioinception.chem.fp.fingerprints.interfaces.IShard;
+import com.bioinception.chem.fp.fingerprints.similarity.BatchSimilaritySearch;
+import com.bioinception.chem.fp.fingerprints.similarity.FingerprintBlock;
+import com.bioinception.chem.fp.fingerprints.similarity.Hit;
+import com.bioinception.chem.fp.fingerprints.similarity.SimilarityMeasure;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.smiles.SmilesParser;
+
+/**
+ *
+ * @author Asad
+ */
+public class ShardedSearchCoordinatorTest {
+
+    final static SmilesParser smilesParser = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+    final static String[] SMILES = {
+        "NC(=O)C1=C2C=CC(Br)=CC2=C(Cl)C=C1",
+        "CC1=C2C=CC(Br)=CC2=C(Cl)C=C1",
+        "c1ccccc1CCN",
+        "c1ccccc1CN",
+        "CCCCC1C(=O)N(N(C1=O)C1=CC=CC=C1)C1=CC=CC=C1",
+        "N[C@@H](CC1=CC=C(O)C=C1)C(O)=O",
+        "OC(=O)C(=O)CC1=CC=C(O)C=C1",
+        "c1ccccc1"
+    };
+
+    private static FingerprintBlock store() throws CDKException {
+        List<IAtomContainer> molecules = new ArrayList<>();
+        for (String smiles : SMILES) {
+            molecules.add(smilesParser.parseSmiles(smiles));
+        }
+        return FingerprintBlock.generate(new HashedFingerprinter(1024), molecules);
+    }
+
+    private static void assertSameResults(FingerprintBlock store, List<IShard> shards) throws IOException {
+        BatchSimilaritySearch single = new BatchSimilaritySearch(store);
+        List<List<Hit>> expected = single.search(store, SimilarityMeasure.TANIMOTO, 3, 0.1);
+        List<int[]> expectedScreen = single.screen(store);
+        try (ShardedSearchCoordinator coordinator = new ShardedSearchCoordinator(shards)) {
+            Assert.assertEquals(store.getCount(), coordinator.getCount());
+            List<List<Hit>> hits = coordinator.search(store, SimilarityMeasure.TANIMOTO, 3, 0.1);
+            List<int[]> screen = coordinator.screen(store);
+            for (int q = 0; q < store.getCount(); q++) {
+                Assert.assertEquals(expected.get(q).toString(), hits.get(q).toString());
+                Assert.assertArrayEquals(expectedScreen.get(q), screen.get(q));
+            }
+        }
+    }
+
+    /**
+     * In-process shards give the results of the unpartitioned store.
+     *
+     * @throws CDKException
+     * @throws IOException
+     */
+    @Test
+    public void testLocalShards() throws CDKException, IOException {
+        FingerprintBlock store = store();
+        List<IShard> shards = new ArrayList<>();
+        for (FingerprintBlock part : ShardedSearchCoordinator.partition(store, 3)) {
+            shards.add(new LocalShard(part));
+        }
+        assertSameResults(store, shards);
+    }
+
+    /**
+     * Shards served over a socket give the same results.
+     *
+     * @throws CDKException
+     * @throws IOException
+     */
+    @Test
+    public void testSocketShards() throws CDKException, IOException {
+        FingerprintBlock store = store();
+        List<ShardServer> servers = new ArrayList<>();
+        List<IShard> shards = new ArrayList<>();
+        try {
+            for (FingerprintBlock part : ShardedSearchCoordinator.partition(store, 2)) {
+                ShardServer server = new ShardServer(new LocalShard(part), 0);
+                servers.add(server);
+                shards.add(new SocketShard("localhost", server.getPort()));
+            }
+            assertSameResults(store, shards);
+        } finally {
+            for (IShard shard : shards) {
+                ((SocketShard) shard).close();
+            }
+            for (ShardServer server : servers) {
+                server.close();
+            }
+        }
+    }
+
+    /**
+     * A request with an unknown measure, a block of another fingerprint size
+     * or an oversized block is answered with an error and the connection is
+     * closed; the server keeps serving.
+     *
+     * @throws CDKException
+     * @throws IOException
+     */
+    @Test
+    public void testMalformedRequests() throws CDKException, IOException {
+        FingerprintBlock store = store();
+        try (ShardServer server = new ShardServer(new LocalShard(store), 0, InetAddress.getLoopbackAddress(), 10000)) {
+            try (Socket socket = new Socket("localhost", server.getPort())) {
+                DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                DataInputStream in = new DataInputStream(socket.getInputStream());
+                out.writeByte(ShardProtocol.SEARCH);
+                out.writeByte(-1);
+                out.flush();
+                Assert.assertEquals(ShardProtocol.ERROR, in.readByte());
+                System.out.println("error " + in.readUTF());
+                Assert.assertEquals(-1, in.read());
+            }
+            int[][] blocks = {{Integer.MAX_VALUE, Integer.MAX_VALUE}, {Integer.MAX_VALUE, 0}, {store.getSize(), Integer.MAX_VALUE}};
+            for (int[] block : blocks) {
+                try (Socket socket = new Socket("localhost", server.getPort())) {
+                    DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                    DataInputStream in = new DataInputStream(socket.getInputStream());
+                    out.writeByte(ShardProtocol.SCREEN);
+                    out.writeInt(block[0]);
+                    out.writeInt(block[1]);
+                    out.flush();
+                    Assert.assertEquals(ShardProtocol.ERROR, in.readByte());
+                    System.out.println("error " + in.readUTF());
+                    Assert.assertEquals(-1, in.read());
+                }
+            }
+            try (SocketShard shard = new SocketShard("localhost", server.getPort())) {
+                Assert.assertEquals(store.getCount(), shard.getCount());
+            }
+        }
+    }
+}
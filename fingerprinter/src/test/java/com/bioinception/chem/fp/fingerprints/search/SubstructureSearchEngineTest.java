@@ -0,0 +1,170 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.bioinception.chem.fp.fingerprints.search;
+
+import com.bioinception.chem.fp.fingerprints.bi.ScaffoldHashedFingerprinter;
+import com.bioinception.chem.fp.fingerprints.hashed.HashedFingerprinter;
+import com.bioinception.chem.fp.fingerprints.helper.AdaptiveDepthPolicy;
+import com.bioinception.chem.fp.fingerprints.helper.HashVersion;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.CDKConstants;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.isomorphism.AtomMatcher;
+import org.openscience.cdk.isomorphism.BondMatcher;
+import org.openscience.cdk.isomorphism.VentoFoggia;
+import org.openscience.cdk.smiles.SmilesParser;
+
+/**
+ *
+ * @author Asad
+ */
+public class SubstructureSearchEngineTest {
+
+    final static SmilesParser smilesParser = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+    final static String[] TARGETS = {
+        "NC(=O)C1=C2C=CC(Br)=CC2=C(Cl)C=C1",
+        "CC1=C2C=CC(Br)=CC2=C(Cl)C=C1",
+        "c1ccccc1CCN",
+        "c1ccccc1CN",
+        "CCCCC1C(=O)N(N(C1=O)C1=CC=CC=C1)C1=CC=CC=C1",
+        "N[C@@H](CC1=CC=C(O)C=C1)C(O)=O",
+        "OC(=O)C(=O)CC1=CC=C(O)C=C1"
+    };
+    final static String[] QUERIES = {"c1ccccc1C", "CC1=C2C=CC(Br)=CC2=C(Cl)C=C1", "C(=O)O", "c1ccccc1CCN"};
+
+    private static void assertVerifiedCandidates(SubstructureSearchEngine engine) throws CDKException {
+        List<IAtomContainer> targets = new ArrayList<>();
+        for (String smiles : TARGETS) {
+            IAtomContainer target = smilesParser.parseSmiles(smiles);
+            targets.add(target);
+        }
+        engine.addAll(targets);
+        for (String smiles : QUERIES) {
+            IAtomContainer query = smilesParser.parseSmiles(smiles);
+            int[] hits = engine.search(query);
+            int[] candidates = engine.screen(query);
+            List<Integer> expected = new ArrayList<>();
+            for (int i : candidates) {
+                if (VentoFoggia.findSubstructure(query, AtomMatcher.forElement(), BondMatcher.forOrder())
+                        .matches(engine.getTarget(i))) {
+                    expected.add(i);
+                }
+            }
+            System.out.println("query " + smiles + " candidates " + candidates.length + " hits " + hits.length);
+            Assert.assertArrayEquals(expected.stream().mapToInt(Integer::intValue).toArray(), hits);
+        }
+        Assert.assertEquals(2, engine.search(smilesParser.parseSmiles("NCCc1ccccc1"))[0]);
+    }
+
+    /**
+     * The hits are the screened candidates which contain the query.
+     *
+     * @throws CDKException
+     */
+    @Test
+    public void testScaffoldScreen() throws CDKException {
+        assertVerifiedCandidates(new SubstructureSearchEngine(new ScaffoldHashedFingerprinter(1024)));
+    }
+
+    /**
+     * The hits are the screened candidates which contain the query.
+     *
+     * @throws CDKException
+     */
+    @Test
+    public void testHashedScreen() throws CDKException {
+        assertVerifiedCandidates(new SubstructureSearchEngine(new HashedFingerprinter(1024)));
+    }
+
+    /**
+     * Screened with query fingerprints no hit is lost: the hits are those of
+     * verifying every target.
+     *
+     * @throws CDKException
+     */
+    @Test
+    public void testQueryFingerprintScreen() throws CDKException {
+        ScaffoldHashedFingerprinter scaffold = new ScaffoldHashedFingerprinter(1024);
+        scaffold.setHashVersion(HashVersion.SEGMENT_LAYOUT);
+        SubstructureSearchEngine[] engines = {
+            new SubstructureSearchEngine(scaffold),
+            new SubstructureSearchEngine(new HashedFingerprinter(1024))
+        };
+        for (SubstructureSearchEngine engine : engines) {
+            engine.setQueryFingerprints(true);
+            for (String smiles : TARGETS) {
+                engine.add(smilesParser.parseSmiles(smiles));
+            }
+            for (String smiles : QUERIES) {
+                IAtomContainer query = smilesParser.parseSmiles(smiles);
+                int[] hits = engine.search(query);
+                int[] all = new int[engine.getCount()];
+                for (int i = 0; i < all.length; i++) {
+                    all[i] = i;
+                }
+                int[] expected = engine.verify(VentoFoggia.findSubstructure(query, AtomMatcher.forElement(), BondMatcher.forOrder()), all);
+                System.out.println("query " + smiles + " candidates " + engine.screen(query).length + " hits " + hits.length);
+                Assert.assertArrayEquals(expected, hits);
+            }
+        }
+    }
+
+    /**
+     * A target capped by the depth policy holds the short paths only, the
+     * query fingerprint is walked no deeper, so the target is not screened
+     * out.
+     *
+     * @throws CDKException
+     */
+    @Test
+    public void testDepthPolicyScreen() throws CDKException {
+        HashedFingerprinter fingerprinter = new HashedFingerprinter(1024, 8);
+        fingerprinter.setDepthPolicy(new AdaptiveDepthPolicy(400, 3));
+        IAtomContainer target = smilesParser.parseSmiles("c1ccc(cc1)-c1ccc(cc1)-c1ccc(cc1)C(C)(C)C(C)(C)C(C)(C)C");
+        Assert.assertEquals(3, fingerprinter.getEffectiveDepth(target));
+        SubstructureSearchEngine engine = new SubstructureSearchEngine(fingerprinter);
+        engine.setQueryFingerprints(true);
+        engine.add(target);
+        int[] hits = engine.search(smilesParser.parseSmiles("c1ccc(cc1)-c1ccccc1"));
+        System.out.println("capped hits " + hits.length);
+        Assert.assertArrayEquals(new int[]{0}, hits);
+    }
+
+    /**
+     * Kekul&eacute; targets and queries are verified in their perceived form,
+     * also when the fingerprinter leaves them unchanged.
+     *
+     * @throws CDKException
+     */
+    @Test
+    public void testKekuleVerification() throws CDKException {
+        for (HashVersion version : new HashVersion[]{HashVersion.LEGACY, HashVersion.PERCEPTION_OVERLAY}) {
+            HashedFingerprinter fingerprinter = new HashedFingerprinter(1024);
+            fingerprinter.setHashVersion(version);
+            SubstructureSearchEngine engine = new SubstructureSearchEngine(fingerprinter);
+            IAtomContainer target = smilesParser.parseSmiles("OC1=C(N)C=CC=C1");
+            IAtomContainer query = smilesParser.parseSmiles("OC1=CC=CC=C1N");
+            for (IAtomContainer mol : new IAtomContainer[]{target, query}) {
+                for (IBond bond : mol.bonds()) {
+                    bond.setFlag(CDKConstants.ISAROMATIC, false);
+                }
+                for (IAtom atom : mol.atoms()) {
+                    atom.setFlag(CDKConstants.ISAROMATIC, false);
+                }
+            }
+            engine.add(target);
+            int[] hits = engine.search(query);
+            System.out.println(version + " screen " + engine.screen(query).length + " hits " + hits.length);
+            Assert.assertArrayEquals(new int[]{0}, hits);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.bioinception.chem.fp.fingerprints.similarity;
+
+import com.bioinception.chem.fp.fingerprints.bi.ScaffoldHashedFingerprinter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.exception.InvalidSmilesException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.smiles.SmilesParser;
+
+/**
+ *
+ * @author Asad
+ */
+public class BatchSimilaritySearchTest {
+
+    final static SmilesParser smilesParser = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+
+    private static List<IAtomContainer> molecules(String... smiles) throws InvalidSmilesException {
+        List<IAtomContainer> molecules = new ArrayList<>();
+        for (String s : smiles) {
+            molecules.add(smilesParser.parseSmiles(s));
+        }
+        return molecules;
+    }
+
+    /**
+     * Tiled, blocked and parallel scans give the same hits as scoring every
+     * query on its own.
+     *
+     * @throws InvalidSmilesException
+     * @throws CDKException
+     */
+    @Test
+    public void testSearchMatchesSingleQuery() throws InvalidSmilesException, CDKException {
+        FingerprintBlock database = FingerprintBlock.generate(new ScaffoldHashedFingerprinter(1024), molecules(
+                "NC(=O)C1=C2C=CC(Br)=CC2=C(Cl)C=C1",
+                "CC1=C2C=CC(Br)=CC2=C(Cl)C=C1",
+                "c1ccccc1CCN",
+                "c1ccccc1CN",
+                "CCCCC1C(=O)N(N(C1=O)C1=CC=CC=C1)C1=CC=CC=C1",
+                "N[C@@H](CC1=CC=C(O)C=C1)C(O)=O",
+                "OC(=O)C(=O)CC1=CC=C(O)C=C1"));
+        FingerprintBlock queries = FingerprintBlock.generate(new ScaffoldHashedFingerprinter(1024), molecules(
+                "c1ccccc1CCN", "CC1=C2C=CC(Br)=CC2=C(Cl)C=C1", "OC(=O)CC1=CC=C(O)C=C1"));
+
+        BatchSimilaritySearch search = new BatchSimilaritySearch(database);
+        search.setTileSize(2);
+        search.setQueryBlockSize(2);
+        List<List<Hit>> hits = search.search(queries, SimilarityMeasure.TANIMOTO, 3, 0.0);
+        Assert.assertEquals(3, hits.size());
+
+        double[] scores = new double[database.getCount()];
+        for (int q = 0; q < queries.getCount(); q++) {
+            long[] query = FingerprintBlock.pack(queries.getFingerprint(q), 1024);
+            SimilarityKernels.score(SimilarityMeasure.TANIMOTO, query, database, 0, database.getCount(), scores);
+            List<Hit> expected = new ArrayList<>();
+            for (int i = 0; i < scores.length; i++) {
+                expected.add(new Hit(i, scores[i]));
+            }
+            expected.sort(null);
+            System.out.println("hits " + hits.get(q));
+            Assert.assertEquals(3, hits.get(q).size());
+            for (int i = 0; i < 3; i++) {
+                Assert.assertEquals(expected.get(i).getIndex(), hits.get(q).get(i).getIndex());
+                Assert.assertEquals(expected.get(i).getScore(), hits.get(q).get(i).getScore(), 0.0);
+            }
+        }
+        Assert.assertEquals(2, hits.get(0).get(0).getIndex());
+        Assert.assertEquals(1.0, hits.get(0).get(0).getScore(), 0.0);
+
+        List<int[]> screened = search.screen(queries);
+        int[] candidates = new int[database.getCount()];
+        for (int q = 0; q < queries.getCount(); q++) {
+            long[] query = FingerprintBlock.pack(queries.getFingerprint(q), 1024);
+            int count = SimilarityKernels.contains(query, database, 0, database.getCount(), candidates);
+            Assert.assertArrayEquals(Arrays.copyOf(candidates, count), screened.get(q));
+        }
+    }
+}
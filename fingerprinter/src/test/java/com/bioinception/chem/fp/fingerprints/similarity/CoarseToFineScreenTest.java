@@ -0,0 +1,121 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.bioinception.chem.fp.fingerprints.similarity;
+
+import com.bioinception.chem.fp.fingerprints.cdk.Fingerprinter;
+import com.bioinception.chem.fp.fingerprints.hashed.HashedFingerprinter;
+import com.bioinception.chem.fp.fingerprints.helper.FingerprinterTool;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.smiles.SmilesParser;
+
+/**
+ *
+ * @author Asad
+ */
+public class CoarseToFineScreenTest {
+
+    final static SmilesParser smilesParser = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+    final static String[] TARGETS = {
+        "NC(=O)C1=C2C=CC(Br)=CC2=C(Cl)C=C1",
+        "CC1=C2C=CC(Br)=CC2=C(Cl)C=C1",
+        "c1ccccc1CCN",
+        "c1ccccc1CN",
+        "CCCCC1C(=O)N(N(C1=O)C1=CC=CC=C1)C1=CC=CC=C1",
+        "N[C@@H](CC1=CC=C(O)C=C1)C(O)=O",
+        "OC(=O)C(=O)CC1=CC=C(O)C=C1"
+    };
+
+    /**
+     * Bit i of the long fingerprint is bit i mod m of the folded one.
+     */
+    @Test
+    public void testFold() {
+        BitSet fingerprint = new BitSet();
+        fingerprint.set(3);
+        fingerprint.set(1024 + 70);
+        fingerprint.set(4095);
+        long[] folded = MultiResolutionFingerprinter.fold(FingerprintBlock.pack(fingerprint, 4096), 256);
+        BitSet expected = new BitSet();
+        expected.set(3);
+        expected.set(70);
+        expected.set(255);
+        Assert.assertEquals(expected, BitSet.valueOf(folded));
+    }
+
+    /**
+     * The coarse-to-fine screen gives the candidates of a full resolution
+     * scan, with HashedFingerprinter and cdk.Fingerprinter.
+     *
+     * @throws CDKException
+     */
+    @Test
+    public void testScreen() throws CDKException {
+        MultiResolutionFingerprinter[] fingerprinters = {
+            new MultiResolutionFingerprinter(new HashedFingerprinter(4096), 1024, 256, 64),
+            new MultiResolutionFingerprinter(new Fingerprinter(4096), 1024, 64)
+        };
+        for (MultiResolutionFingerprinter fingerprinter : fingerprinters) {
+            CoarseToFineScreen screen = new CoarseToFineScreen(fingerprinter.getSizes());
+            List<BitSet> full = new ArrayList<>();
+            for (String smiles : TARGETS) {
+                BitSet[] levels = fingerprinter.getFingerprints(smilesParser.parseSmiles(smiles));
+                full.add(levels[0]);
+                screen.add(levels);
+            }
+            for (String smiles : new String[]{"c1ccccc1CCN", "c1ccccc1", "CC1=C2C=CC(Br)=CC2=C(Cl)C=C1"}) {
+                BitSet[] query = fingerprinter.getFingerprints(smilesParser.parseSmiles(smiles));
+                List<Integer> expected = new ArrayList<>();
+                for (int i = 0; i < full.size(); i++) {
+                    if (FingerprinterTool.isSubset(full.get(i), query[0])) {
+                        expected.add(i);
+                    }
+                }
+                int[] candidates = screen.screen(query);
+                int[] survivors = screen.getSurvivorCounts();
+                System.out.println("query " + smiles + " survivors " + Arrays.toString(survivors));
+                Assert.assertArrayEquals(expected.stream().mapToInt(Integer::intValue).toArray(), candidates);
+                for (int i = 1; i < survivors.length; i++) {
+                    Assert.assertTrue(survivors[i - 1] <= survivors[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * A folded size must divide the previous one.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testFoldedSize() {
+        new MultiResolutionFingerprinter(new HashedFingerprinter(1024), 384);
+    }
+
+    /**
+     * A target rejected at a coarse resolution is not added to any level.
+     */
+    @Test
+    public void testRejectedAdd() {
+        CoarseToFineScreen screen = new CoarseToFineScreen(1024, 256, 64);
+        BitSet fine = new BitSet();
+        fine.set(1000);
+        BitSet tooLong = new BitSet();
+        tooLong.set(100);
+        try {
+            screen.add(new BitSet[]{fine, new BitSet(), tooLong});
+            Assert.fail("bit 100 of a 64 bit resolution was accepted");
+        } catch (IllegalArgumentException e) {
+            System.out.println("rejected " + e.getMessage());
+        }
+        for (int level = 0; level < 3; level++) {
+            Assert.assertEquals(0, screen.getLevel(level).getCount());
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.bioinception.chem.fp.fingerprints.similarity;
+
+import com.bioinception.chem.fp.fingerprints.hashed.HashedFingerprinter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.smiles.SmilesParser;
+
+/**
+ *
+ * @author Asad
+ */
+public class FingerprintArenaTest {
+
+    final static SmilesParser smilesParser = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+    final static String[] TARGETS = {
+        "NC(=O)C1=C2C=CC(Br)=CC2=C(Cl)C=C1",
+        "CC1=C2C=CC(Br)=CC2=C(Cl)C=C1",
+        "c1ccccc1CCN",
+        "c1ccccc1CN",
+        "CCCCC1C(=O)N(N(C1=O)C1=CC=CC=C1)C1=CC=CC=C1",
+        "N[C@@H](CC1=CC=C(O)C=C1)C(O)=O",
+        "OC(=O)C(=O)CC1=CC=C(O)C=C1"
+    };
+
+    /**
+     * The arena, filled one by one and in bulk across several chunks, gives
+     * the fingerprints and results of the heap block.
+     *
+     * @throws CDKException
+     */
+    @Test
+    public void testArena() throws CDKException {
+        List<IAtomContainer> molecules = new ArrayList<>();
+        for (String smiles : TARGETS) {
+            molecules.add(smilesParser.parseSmiles(smiles));
+        }
+        FingerprintBlock block = FingerprintBlock.generate(new HashedFingerprinter(1024), molecules);
+        FingerprintArena single = new FingerprintArena(1024, 3);
+        for (int i = 0; i < block.getCount(); i++) {
+            Assert.assertEquals(i, single.add(block.getFingerprint(i)));
+        }
+        FingerprintArena bulk = new FingerprintArena(1024, 3);
+        bulk.add(block.getFingerprint(0));
+        Assert.assertEquals(1, bulk.addAll(block));
+        System.out.println("reserved bytes " + bulk.getReservedBytes());
+
+        for (int i = 0; i < block.getCount(); i++) {
+            Assert.assertEquals(block.getFingerprint(i), single.getFingerprint(i));
+            Assert.assertEquals(block.getFingerprint(i), bulk.getFingerprint(i + 1));
+            Assert.assertEquals(block.getCardinality(i), bulk.getCardinality(i + 1));
+        }
+
+        int n = block.getCount();
+        for (int i = 0; i < n; i++) {
+            long[] query = FingerprintBlock.pack(block.getFingerprint(i), 1024);
+            double[] expected = new double[n];
+            double[] scores = new double[n];
+            SimilarityKernels.score(SimilarityMeasure.TANIMOTO, query, block, 0, n, expected);
+            single.score(SimilarityMeasure.TANIMOTO, query, 0, n, scores);
+            Assert.assertArrayEquals(expected, scores, 0.0);
+
+            int[] expectedHits = new int[n];
+            int[] hits = new int[n];
+            int count = SimilarityKernels.contains(query, block, 1, n, expectedHits);
+            Assert.assertEquals(count, single.contains(query, 1, n, hits));
+            Assert.assertArrayEquals(Arrays.copyOf(expectedHits, count), Arrays.copyOf(hits, count));
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.bioinception.chem.fp.fingerprints.similarity;
+
+import com.bioinception.chem.fp.fingerprints.hashed.HashedFingerprinter;
+import com.bioinception.chem.fp.fingerprints.helper.FingerprinterTool;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.exception.InvalidSmilesException;
+import org.openscience.cdk.similarity.Tanimoto;
+import org.openscience.cdk.smiles.SmilesParser;
+
+/**
+ *
+ * @author Asad
+ */
+public class SimilarityKernelsTest {
+
+    final static SmilesParser smilesParser = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+    final static String[] SMILES = {
+        "NC(=O)C1=C2C=CC(Br)=CC2=C(Cl)C=C1",
+        "CC1=C2C=CC(Br)=CC2=C(Cl)C=C1",
+        "c1ccccc1CCN",
+        "CCCCC1C(=O)N(N(C1=O)C1=CC=CC=C1)C1=CC=CC=C1",
+        "N[C@@H](CC1=CC=C(O)C=C1)C(O)=O"
+    };
+
+    private static List<BitSet> fingerprints() throws InvalidSmilesException, CDKException {
+        HashedFingerprinter fingerprinter = new HashedFingerprinter(1024);
+        List<BitSet> fps = new ArrayList<>();
+        for (String smiles : SMILES) {
+            fps.add(fingerprinter.getBitFingerprint(smilesParser.parseSmiles(smiles)).asBitSet());
+        }
+        return fps;
+    }
+
+    /**
+     * The packed kernels agree with the BitSet based CDK Tanimoto and with
+     * {@link FingerprinterTool#isSubset(BitSet, BitSet)}.
+     *
+     * @throws InvalidSmilesException
+     * @throws CDKException
+     */
+    @Test
+    public void testAgreesWithBitSet() throws InvalidSmilesException, CDKException {
+        List<BitSet> fps = fingerprints();
+        FingerprintBlock block = new FingerprintBlock(1024, 2);
+        fps.forEach(block::add);
+        Assert.assertEquals(fps.size(), block.getCount());
+
+        double[] scores = new double[fps.size()];
+        int[] hits = new int[fps.size()];
+        for (BitSet query : fps) {
+            long[] q = FingerprintBlock.pack(query, 1024);
+            SimilarityKernels.score(SimilarityMeasure.TANIMOTO, q, block, 0, block.getCount(), scores);
+            int count = SimilarityKernels.contains(q, block, 0, block.getCount(), hits);
+            int expectedHits = 0;
+            for (int i = 0; i < fps.size(); i++) {
+                BitSet target = fps.get(i);
+                Assert.assertEquals(Tanimoto.calculate(query, target), scores[i], 1e-6);
+                Assert.assertEquals(scores[i],
+                        SimilarityKernels.tversky(q, FingerprintBlock.pack(target, 1024), 1.0, 1.0), 1e-12);
+                if (FingerprinterTool.isSubset(target, query)) {
+                    Assert.assertEquals(i, hits[expectedHits++]);
+                }
+            }
+            Assert.assertEquals(expectedHits, count);
+            Assert.assertEquals(query, block.getFingerprint(fps.indexOf(query)));
+        }
+    }
+
+    /**
+     * Dice, cosine and containment on a hand made example.
+     */
+    @Test
+    public void testMeasures() {
+        long[] q = {0b1111L, 0L};
+        long[] t = {0b0011L, 1L << 63};
+        Assert.assertEquals(2.0 / 5.0, SimilarityKernels.tanimoto(q, t), 1e-12);
+        Assert.assertEquals(4.0 / 7.0, SimilarityKernels.score(SimilarityMeasure.DICE, q, t), 1e-12);
+        Assert.assertEquals(2.0 / Math.sqrt(12.0), SimilarityKernels.score(SimilarityMeasure.COSINE, q, t), 1e-12);
+        Assert.assertEquals(0.5, SimilarityKernels.score(SimilarityMeasure.CONTAINMENT, q, t), 1e-12);
+        Assert.assertEquals(4.0 / 7.0, SimilarityKernels.tversky(q, t, 0.5, 0.5), 1e-12);
+        Assert.assertFalse(SimilarityKernels.contains(t, q));
+        Assert.assertTrue(SimilarityKernels.contains(q, new long[]{0b0101L, 0L}));
+    }
+}